@@ -0,0 +1,106 @@
+package edu.ualberta.med.biobank.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import edu.ualberta.med.biobank.dtos.AliquotSpecimenDTO;
+import edu.ualberta.med.biobank.dtos.AnnotationDTO;
+import edu.ualberta.med.biobank.dtos.CollectionEventDTO;
+import edu.ualberta.med.biobank.dtos.PatientDTO;
+import edu.ualberta.med.biobank.dtos.SourceSpecimenDTO;
+import edu.ualberta.med.biobank.dtos.SpecimenDTO;
+import edu.ualberta.med.biobank.dtos.StudyDTO;
+import jakarta.persistence.Tuple;
+
+/**
+ * Maps a single row to a DTO with each of the {@code fromTuple} mappers used by the services' list and read
+ * queries. The rows cycle through {@link #ROWS} different values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMapperBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private Tuple[] studies = new Tuple[ROWS];
+
+    private Tuple[] patients = new Tuple[ROWS];
+
+    private Tuple[] collectionEvents = new Tuple[ROWS];
+
+    private Tuple[] annotations = new Tuple[ROWS];
+
+    private Tuple[] sourceSpecimens = new Tuple[ROWS];
+
+    private Tuple[] specimens = new Tuple[ROWS];
+
+    private Tuple[] aliquots = new Tuple[ROWS];
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < ROWS; i++) {
+            studies[i] = SyntheticTuples.study(i);
+            patients[i] = SyntheticTuples.patient(i);
+            collectionEvents[i] = SyntheticTuples.collectionEvent(i);
+            annotations[i] = SyntheticTuples.annotation(i);
+            sourceSpecimens[i] = SyntheticTuples.sourceSpecimen(i);
+            specimens[i] = SyntheticTuples.specimen(i);
+            aliquots[i] = SyntheticTuples.aliquotSpecimen(i);
+        }
+    }
+
+    @Benchmark
+    public StudyDTO study() {
+        return StudyDTO.fromTuple(studies[nextIndex()]);
+    }
+
+    @Benchmark
+    public PatientDTO patient() {
+        return PatientDTO.fromTuple(patients[nextIndex()]);
+    }
+
+    @Benchmark
+    public CollectionEventDTO collectionEvent() {
+        return CollectionEventDTO.fromTuple(collectionEvents[nextIndex()]);
+    }
+
+    @Benchmark
+    public AnnotationDTO annotation() {
+        return AnnotationDTO.fromTuple(annotations[nextIndex()]);
+    }
+
+    @Benchmark
+    public SourceSpecimenDTO sourceSpecimen() {
+        return SourceSpecimenDTO.fromTuple(sourceSpecimens[nextIndex()]);
+    }
+
+    @Benchmark
+    public SpecimenDTO specimen() {
+        return SpecimenDTO.fromTuple(specimens[nextIndex()]);
+    }
+
+    @Benchmark
+    public AliquotSpecimenDTO aliquot() {
+        return AliquotSpecimenDTO.fromTuple(aliquots[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1) % ROWS;
+        return index;
+    }
+}
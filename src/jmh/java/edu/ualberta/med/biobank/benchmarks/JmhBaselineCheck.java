@@ -0,0 +1,179 @@
+package edu.ualberta.med.biobank.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares a JMH result file with the checked in baseline and fails if a benchmark got slower, or allocates
+ * more, by more than the tolerance.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@jmh exec:exec@jmh-check
+ * </pre>
+ *
+ * Arguments: the baseline file, the result file and the tolerance in percent. Benchmarks that are only in one
+ * of the files are listed but do not fail the check. An empty result fails the check.
+ *
+ * When the baseline is missing or empty, the result is copied to it and the check passes, so the first run on the
+ * reference machine records the baseline to commit. The result must then have the allocation of each benchmark,
+ * from {@code -prof gc}. A baseline can also be recorded directly:
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@jmh -Djmh.result=src/jmh/baseline.json
+ * </pre>
+ */
+public class JmhBaselineCheck {
+
+    private static final String ALLOCATION_METRIC = "·gc.alloc.rate.norm";
+
+    // allocation differences smaller than this, in bytes per operation, are ignored
+    private static final double ALLOCATION_NOISE = 16;
+
+    private record Score(String mode, double score, String unit, Double allocation) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: JmhBaselineCheck <baseline.json> <result.json> [tolerance-percent]");
+            System.exit(2);
+        }
+
+        var baseline = read(Path.of(args[0]));
+        var result = read(Path.of(args[1]));
+        var tolerance = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+        if (result.isEmpty()) {
+            System.out.printf("no benchmarks in the result %s, run the benchmarks first%n", args[1]);
+            System.exit(1);
+        }
+        if (baseline.isEmpty()) {
+            record(Path.of(args[1]), Path.of(args[0]), result);
+            return;
+        }
+
+        int regressions = 0;
+        for (var entry : new TreeMap<>(result).entrySet()) {
+            var name = entry.getKey();
+            var current = entry.getValue();
+            var previous = baseline.get(name);
+            if (previous == null) {
+                System.out.printf("NEW       %s: %.3f %s%n", name, current.score(), current.unit());
+                continue;
+            }
+
+            var change = (current.score() - previous.score()) / previous.score();
+            // in throughput modes a higher score is better
+            var slower = current.mode().equals("thrpt") ? -change : change;
+            var allocationChange = allocationChange(previous, current);
+            var regressed = slower > tolerance || allocationChange > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+
+            System.out.printf(
+                "%-9s %s: %.3f -> %.3f %s (%+.1f%%)%s%n",
+                regressed ? "REGRESSED" : "OK",
+                name,
+                previous.score(),
+                current.score(),
+                current.unit(),
+                change * 100,
+                current.allocation() == null
+                    ? ""
+                    : ", %.0f -> %.0f B/op".formatted(
+                        previous.allocation() == null ? Double.NaN : previous.allocation(),
+                        current.allocation()
+                    )
+            );
+        }
+        for (var name : baseline.keySet()) {
+            if (!result.containsKey(name)) {
+                System.out.printf("MISSING   %s%n", name);
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmarks regressed by more than %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Copies the result to the baseline. Fails if a benchmark has no allocation, the baseline would then not catch
+     * an allocation regression.
+     */
+    private static void record(Path resultFile, Path baselineFile, Map<String, Score> result) throws IOException {
+        var withoutAllocation = result
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getValue().allocation() == null)
+            .map(Map.Entry::getKey)
+            .toList();
+        if (!withoutAllocation.isEmpty()) {
+            System.out.printf(
+                "no baseline in %s, and the result can not be recorded without -prof gc, no allocation for: %s%n",
+                baselineFile,
+                String.join(", ", withoutAllocation)
+            );
+            System.exit(1);
+        }
+
+        if (baselineFile.getParent() != null) {
+            Files.createDirectories(baselineFile.getParent());
+        }
+        Files.copy(resultFile, baselineFile, StandardCopyOption.REPLACE_EXISTING);
+        System.out.printf(
+            "no baseline, recorded %d benchmarks from %s in %s%n",
+            result.size(),
+            resultFile,
+            baselineFile
+        );
+        System.out.printf("commit %s, the following runs are compared with it%n", baselineFile);
+    }
+
+    private static double allocationChange(Score previous, Score current) {
+        if (previous.allocation() == null || current.allocation() == null) {
+            return 0;
+        }
+        var difference = current.allocation() - previous.allocation();
+        if (difference < ALLOCATION_NOISE) {
+            return 0;
+        }
+        return previous.allocation() < 1 ? Double.POSITIVE_INFINITY : difference / previous.allocation();
+    }
+
+    /**
+     * Reads the scores in a JMH JSON result, by benchmark name and parameters.
+     */
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return scores;
+        }
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            var name = new StringBuilder(run.path("benchmark").asText());
+            run.path("params").fields().forEachRemaining(param -> {
+                name.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            });
+
+            var primary = run.path("primaryMetric");
+            var allocation = run.path("secondaryMetrics").path(ALLOCATION_METRIC);
+            scores.put(
+                name.toString(),
+                new Score(
+                    run.path("mode").asText(),
+                    primary.path("score").asDouble(),
+                    primary.path("scoreUnit").asText(),
+                    allocation.isMissingNode() ? null : allocation.path("score").asDouble()
+                )
+            );
+        }
+        return scores;
+    }
+}
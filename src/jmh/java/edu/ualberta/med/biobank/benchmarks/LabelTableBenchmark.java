@@ -0,0 +1,135 @@
+package edu.ualberta.med.biobank.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import edu.ualberta.med.biobank.domain.Capacity;
+import edu.ualberta.med.biobank.domain.ContainerLabelingScheme;
+import edu.ualberta.med.biobank.domain.ContainerType;
+import edu.ualberta.med.biobank.domain.type.LabelingLayout;
+import edu.ualberta.med.biobank.domain.util.RowColPos;
+import edu.ualberta.med.biobank.domain.util.SbsLabeling;
+
+/**
+ * Converts positions to labels, and labels to positions, for every position of a container, the way a box
+ * layout screen does.
+ *
+ * Run with the GC profiler, {@code gc.alloc.rate.norm} should be close to 0 bytes per operation for the
+ * {@code containerType*} and {@code sbs*} benchmarks. The {@code computed*} benchmarks label the positions
+ * without a table, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LabelTableBenchmark {
+
+    /**
+     * The labeling scheme ID, and the capacity of a container type that uses it.
+     */
+    @Param({ "1:8:12", "2:24:24", "3:9:9", "4:2:2", "5:9:9", "6:26:26", "7:85:2" })
+    public String scheme;
+
+    @Param({ "VERTICAL", "HORIZONTAL" })
+    public LabelingLayout layout;
+
+    private ContainerType containerType;
+
+    private RowColPos[] positions;
+
+    private String[] labels;
+
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        var values = scheme.split(":");
+        var rows = Integer.parseInt(values[1]);
+        var cols = Integer.parseInt(values[2]);
+
+        var labelingScheme = new ContainerLabelingScheme();
+        labelingScheme.setId(Integer.parseInt(values[0]));
+        labelingScheme.setMinChars(2);
+        labelingScheme.setMaxChars(labelingScheme.getId() == 1 || labelingScheme.getId() == 7 ? 3 : 2);
+
+        containerType = new ContainerType();
+        containerType.setChildLabelingScheme(labelingScheme);
+        containerType.setCapacity(new Capacity(rows, cols));
+        containerType.setLabelingLayout(layout);
+
+        positions = new RowColPos[rows * cols];
+        labels = new String[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                var position = new RowColPos(row, col);
+                positions[row * cols + col] = position;
+                labels[row * cols + col] = containerType.getPositionString(position);
+            }
+        }
+    }
+
+    @Benchmark
+    public String containerTypeLabel() {
+        return containerType.getPositionString(positions[nextIndex()]);
+    }
+
+    @Benchmark
+    public RowColPos containerTypePosition() throws Exception {
+        return containerType.getRowColFromPositionString(labels[nextIndex()]);
+    }
+
+    @Benchmark
+    public String computedLabel() {
+        var position = positions[nextIndex()];
+        return ContainerLabelingScheme.getPositionString(
+            null,
+            position,
+            containerType.getChildLabelingScheme().getId(),
+            containerType.getRowCapacity(),
+            containerType.getColCapacity(),
+            layout
+        );
+    }
+
+    @Benchmark
+    public RowColPos computedPosition() throws Exception {
+        return containerType.getChildLabelingScheme().getRowColFromPositionString(
+            null,
+            labels[nextIndex()],
+            containerType.getRowCapacity(),
+            containerType.getColCapacity(),
+            layout
+        );
+    }
+
+    @Benchmark
+    public String sbsLabel() {
+        var position = positions[nextIndex()];
+        return SbsLabeling.fromRowCol(position.getRow() % 16, position.getCol() % SbsLabeling.SBS_MAX_COLS);
+    }
+
+    @Benchmark
+    public RowColPos sbsPosition() {
+        var position = positions[nextIndex()];
+        return SbsLabeling.toRowCol(
+            SbsLabeling.fromRowCol(position.getRow() % 16, position.getCol() % SbsLabeling.SBS_MAX_COLS)
+        );
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == positions.length ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,94 @@
+package edu.ualberta.med.biobank.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+
+/**
+ * A {@link Tuple} backed by a map, used to feed the DTO mappers with synthetic rows.
+ *
+ * Values are returned as they were added, so they must have the type the database driver would return, for
+ * example a {@code Long} for a count.
+ */
+public class MapTuple implements Tuple {
+
+    private record Element(String alias, Class<?> javaType) implements TupleElement<Object> {
+
+        @Override
+        public Class<? extends Object> getJavaType() {
+            return javaType;
+        }
+
+        @Override
+        public String getAlias() {
+            return alias;
+        }
+    }
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    private final List<String> aliases = new ArrayList<>();
+
+    public MapTuple with(String alias, Object value) {
+        if (!values.containsKey(alias)) {
+            aliases.add(alias);
+        }
+        values.put(alias, value);
+        return this;
+    }
+
+    /**
+     * Returns a copy of this tuple, so that rows that only differ in a few columns can share their setup.
+     */
+    public MapTuple copy() {
+        var copy = new MapTuple();
+        values.forEach(copy::with);
+        return copy;
+    }
+
+    @Override
+    public <X> X get(TupleElement<X> element) {
+        return element.getJavaType().cast(values.get(element.getAlias()));
+    }
+
+    @Override
+    public <X> X get(String alias, Class<X> type) {
+        return type.cast(get(alias));
+    }
+
+    @Override
+    public Object get(String alias) {
+        if (!values.containsKey(alias)) {
+            throw new IllegalArgumentException("unknown alias: " + alias);
+        }
+        return values.get(alias);
+    }
+
+    @Override
+    public <X> X get(int i, Class<X> type) {
+        return type.cast(get(i));
+    }
+
+    @Override
+    public Object get(int i) {
+        return values.get(aliases.get(i));
+    }
+
+    @Override
+    public Object[] toArray() {
+        return aliases.stream().map(values::get).toArray();
+    }
+
+    @Override
+    public List<TupleElement<?>> getElements() {
+        return aliases.stream()
+            .<TupleElement<?>>map(alias -> {
+                var value = values.get(alias);
+                return new Element(alias, value != null ? value.getClass() : Object.class);
+            })
+            .toList();
+    }
+}
@@ -0,0 +1,106 @@
+package edu.ualberta.med.biobank.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Rows with the aliases and value types returned by the repositories' native queries, for the DTO mappers.
+ *
+ * The values only depend on {@code index}, so each run of a benchmark maps the same rows.
+ */
+public final class SyntheticTuples {
+
+    private static final String[] SPECIMEN_TYPES = { "Serum", "Plasma", "Buffy coat", "Urine", "Whole blood" };
+
+    private static final String[] CENTERS = { "CBSR", "CALGARY", "EDMONTON", "KINGSTON" };
+
+    private static final String[] ANNOTATION_TYPES = { "text", "number", "date_time", "select_single" };
+
+    private static final long BASE_TIME = 1_500_000_000_000L;
+
+    private SyntheticTuples() {
+    }
+
+    public static MapTuple study(int index) {
+        return new MapTuple()
+            .with("id", index)
+            .with("name", "Study %04d".formatted(index))
+            .with("nameShort", "S%04d".formatted(index))
+            .with("activityStatusId", 1)
+            .with("version", 3);
+    }
+
+    public static MapTuple patient(int index) {
+        return new MapTuple()
+            .with("id", index)
+            .with("pnumber", "P%06d".formatted(index))
+            .with("createdAt", new Date(BASE_TIME + index * 60_000L))
+            .with("specimenCount", 25L)
+            .with("aliquotCount", 100L)
+            .with("commentCount", 1L)
+            .with("studyId", 1 + index % 20)
+            .with("studyNameShort", "S%04d".formatted(1 + index % 20));
+    }
+
+    public static MapTuple collectionEvent(int index) {
+        return new MapTuple()
+            .with("id", index)
+            .with("visitNumber", 1 + index % 5)
+            .with("ACTIVITY_STATUS_ID", 1)
+            .with("patientId", index / 5)
+            .with("patientNumber", "P%06d".formatted(index / 5))
+            .with("studyId", 1 + index % 20)
+            .with("studyNameShort", "S%04d".formatted(1 + index % 20))
+            .with("commentCount", 2L);
+    }
+
+    public static MapTuple annotation(int index) {
+        return new MapTuple()
+            .with("attributeType", ANNOTATION_TYPES[index % ANNOTATION_TYPES.length])
+            .with("attributeLabel", "Attribute %d".formatted(index))
+            .with("attributeValue", "value %d".formatted(index));
+    }
+
+    public static MapTuple sourceSpecimen(int index) {
+        return specimenColumns(index)
+            .with("visitNumber", 1 + index % 5)
+            .with("hasSpecimenComments", index % 10 == 0 ? 1 : 0)
+            .with("processingEventId", index % 3 == 0 ? null : index / 3);
+    }
+
+    public static MapTuple specimen(int index) {
+        return specimenColumns(index)
+            .with("parentSpecimenId", index % 4 == 0 ? null : index - 1)
+            .with("hasSpecimenComments", index % 10 == 0 ? 'Y' : 'N')
+            .with("studyId", 1 + index % 20)
+            .with("studyNameShort", "S%04d".formatted(1 + index % 20))
+            .with("processingEventId", index % 3 == 0 ? null : index / 3);
+    }
+
+    public static MapTuple aliquotSpecimen(int index) {
+        return specimenColumns(index)
+            .with("parentSpecimenId", index / 20)
+            .with("hasSpecimenComments", index % 10 == 0 ? 'Y' : 'N')
+            .with("studyId", 1 + index % 20)
+            .with("studyNameShort", "S%04d".formatted(1 + index % 20))
+            .with("processingEventId", index / 100);
+    }
+
+    private static MapTuple specimenColumns(int index) {
+        return new MapTuple()
+            .with("specimenId", index)
+            .with("specimenInventoryId", "A%09d".formatted(index))
+            .with("specimenTypeId", 1 + index % SPECIMEN_TYPES.length)
+            .with("specimenTypeNameShort", SPECIMEN_TYPES[index % SPECIMEN_TYPES.length])
+            .with("specimenCreatedAt", new Date(BASE_TIME + index * 1_000L))
+            .with("specimenQuantity", BigDecimal.valueOf(index % 50, 1))
+            .with("specimenActivityStatusId", 1)
+            .with("patientNumber", "P%06d".formatted(index / 100))
+            .with("originCenterId", 1 + index % CENTERS.length)
+            .with("originCenterNameShort", CENTERS[index % CENTERS.length])
+            .with("currentCenterId", 1 + (index + 1) % CENTERS.length)
+            .with("currentCenterNameShort", CENTERS[(index + 1) % CENTERS.length])
+            .with("position", "A%d".formatted(1 + index % 12))
+            .with("worksheet", index % 7 == 0 ? "WS%05d".formatted(index / 7) : null);
+    }
+}
@@ -0,0 +1,180 @@
+package edu.ualberta.med.biobank.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.support.TransactionTemplate;
+import edu.ualberta.med.biobank.BiobankApplication;
+import edu.ualberta.med.biobank.domain.util.EventAttrTypeEnum;
+import edu.ualberta.med.biobank.repositories.CollectionEventRepository;
+import edu.ualberta.med.biobank.test.Factory;
+import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Tuple;
+
+/**
+ * Compares loading a large visit with the single query used before the visit was loaded with separate queries
+ * for its header, annotations and source specimens.
+ *
+ * The application is started with the test configuration, so the database is created by Testcontainers and
+ * Docker must be running. Each benchmark returns the number of rows it read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VisitLoadBenchmark {
+
+    private static final int NUM_SPECIMENS = 50;
+
+    private static final int NUM_ALIQUOTS = 10;
+
+    // the types that have a global event attribute in the test database
+    private static final EventAttrTypeEnum[] ANNOTATION_TYPES = {
+        EventAttrTypeEnum.NUMBER,
+        EventAttrTypeEnum.TEXT,
+        EventAttrTypeEnum.SELECT_SINGLE,
+        EventAttrTypeEnum.SELECT_MULTIPLE
+    };
+
+    private static final String SINGLE_QUERY_SQL =
+        """
+        select
+            ce.id,
+            ce.visit_number as visitNumber,
+            ce.ACTIVITY_STATUS_ID,
+            ce.patient_id as patientId,
+            p.pnumber as patientNumber,
+            study.id as studyId,
+            study.name_short as studyNameShort,
+            sea.id as attributeId,
+            eat.NAME attributeType,
+            gea.LABEL attributeLabel,
+            ea.VALUE attributeValue,
+            if(spc.ORIGINAL_COLLECTION_EVENT_ID = ce.id,1,0 ) as isSourceSpecimen,
+            spc.id specimenId,
+            spc.INVENTORY_ID as specimenInventoryId,
+            spc.CREATED_AT specimenCreatedAt,
+            spc.QUANTITY as specimenQuantity,
+            spc.ACTIVITY_STATUS_ID as specimenActivityStatusId,
+            st.id as specimenTypeId,
+            st.NAME_SHORT as specimenTypeNameShort,
+            oi.CENTER_ID as originCenterId,
+            c.NAME_SHORT as originCenterNameShort,
+            cc.ID as currentCenterId,
+            cc.NAME_SHORT as currentCenterNameShort,
+            concat(container.label, "|", spos.POSITION_STRING, " (", top_container_type.NAME_SHORT, ")") as `position`,
+            pe.ID processingEventId,
+            pe.WORKSHEET as worksheet,
+            if( spccmt.SPECIMEN_ID != null,1,0 ) hasSpecimenComments,
+            (select count(*) from collection_event_comment cec where cec.COLLECTION_EVENT_ID=ce.id) as commentCount
+        from collection_event ce
+        left join specimen spc on spc.COLLECTION_EVENT_ID = ce.ID
+        left join patient p on p.id = ce.patient_id
+        left join study on study.id = p.study_id
+        left join study_event_attr sea on sea.STUDY_ID= study.ID
+        left join global_event_attr gea on gea.id = sea.GLOBAL_EVENT_ATTR_ID
+        left join event_attr ea on ea.STUDY_EVENT_ATTR_ID = sea.ID and ea.COLLECTION_EVENT_ID=ce.id
+        left join event_attr_type eat on eat.ID = gea.EVENT_ATTR_TYPE_ID
+        left join specimen_type st on st.ID = spc.SPECIMEN_TYPE_ID
+        left join origin_info oi on oi.ID = spc.ORIGIN_INFO_ID
+        left join center c on c.id = oi.CENTER_ID
+        left join center cc on cc.id = spc.CURRENT_CENTER_ID
+        left join specimen_comment spccmt on spccmt.SPECIMEN_ID = spc.ID
+        left join specimen_position spos on spos.SPECIMEN_ID = spc.id
+        left join container on container.id = spos.CONTAINER_ID
+        left join container top_container on top_container.id = container.TOP_CONTAINER_ID
+        left join container_type top_container_type on top_container_type.id = top_container.CONTAINER_TYPE_ID
+        left join processing_event pe on pe.id = spc.PROCESSING_EVENT_ID
+        where
+            p.pnumber = :pnumber
+            and ce.visit_number = :vnumber
+        order by spc.CREATED_AT
+        """;
+
+    private ConfigurableApplicationContext context;
+
+    private EntityManager em;
+
+    private TransactionTemplate readOnly;
+
+    private CollectionEventRepository collectionEventRepository;
+
+    private String pnumber;
+
+    private int ceventId;
+
+    private int vnumber;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(BiobankApplication.class).properties("server.port=0").run();
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        collectionEventRepository = context.getBean(CollectionEventRepository.class);
+
+        var transactionTemplate = context.getBean(TransactionTemplate.class);
+        transactionTemplate.executeWithoutResult(status -> {
+            var factory = new Factory(em);
+            var patient = new PatientFixtureBuilder()
+                .numCollectionEvents(1)
+                .numCollectionEventComments(5)
+                .numSpecimens(NUM_SPECIMENS)
+                .numAliquots(NUM_ALIQUOTS)
+                .build(factory);
+            var cevent = patient.getCollectionEvents().stream().findFirst().get();
+
+            for (EventAttrTypeEnum type : ANNOTATION_TYPES) {
+                factory.setDefaultEventAttrTypeEnum(type);
+                factory.createStudyEventAttr();
+                factory.createCeventEventAttr();
+            }
+            pnumber = patient.getPnumber();
+            ceventId = cevent.getId();
+            vnumber = cevent.getVisitNumber();
+        });
+
+        readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int singleQuery() {
+        return readOnly.execute(status -> em
+            .createNativeQuery(SINGLE_QUERY_SQL, Tuple.class)
+            .setParameter("pnumber", pnumber)
+            .setParameter("vnumber", vnumber)
+            .getResultList()
+            .size());
+    }
+
+    @Benchmark
+    public int separateQueries() {
+        return readOnly.execute(status -> {
+            var header = collectionEventRepository.findByPatientAndVnumber(pnumber, vnumber, Tuple.class);
+            var studyId = header.iterator().next().get("studyId", Number.class).intValue();
+            var annotations = collectionEventRepository.annotations(ceventId, studyId, Tuple.class);
+            var specimens = collectionEventRepository.sourceSpecimens(ceventId, Tuple.class);
+            return header.size() + annotations.size() + specimens.size();
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package edu.ualberta.med.biobank.services;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import edu.ualberta.med.biobank.benchmarks.SyntheticTuples;
+import edu.ualberta.med.biobank.dtos.CollectionEventDTO;
+import jakarta.persistence.Tuple;
+
+/**
+ * Folds the rows of a visit's header, annotations and source specimens into a {@link CollectionEventDTO}, as
+ * {@code CollectionEventService.getInternal} does once the queries have returned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionEventServiceBenchmark {
+
+    @Param({ "10" })
+    public int annotations;
+
+    @Param({ "5", "200" })
+    public int sourceSpecimens;
+
+    private Tuple header;
+
+    private List<Tuple> annotationRows;
+
+    private List<Tuple> sourceSpecimenRows;
+
+    @Setup
+    public void setup() {
+        header = SyntheticTuples.collectionEvent(1);
+        annotationRows = IntStream.range(0, annotations).<Tuple>mapToObj(SyntheticTuples::annotation).toList();
+        sourceSpecimenRows = IntStream.range(0, sourceSpecimens)
+            .<Tuple>mapToObj(SyntheticTuples::sourceSpecimen)
+            .toList();
+    }
+
+    @Benchmark
+    public CollectionEventDTO fromTuples() {
+        return CollectionEventService.fromTuples(header, annotationRows, sourceSpecimenRows);
+    }
+}
@@ -0,0 +1,157 @@
+package edu.ualberta.med.biobank.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import edu.ualberta.med.biobank.benchmarks.MapTuple;
+import edu.ualberta.med.biobank.domain.PermissionEnum;
+import edu.ualberta.med.biobank.dtos.UserDTO;
+import jakarta.persistence.Tuple;
+
+/**
+ * Folds the rows of the user query into a {@link UserDTO}, and checks the user's permissions.
+ *
+ * The rows are the product of the user's memberships, and each membership's centers, studies, role permissions
+ * and membership permissions, as the query returns them. The {@code *Uncompiled} benchmarks check permissions
+ * by walking the memberships instead of using the compiled {@code UserPermissions}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private static final int CENTERS_PER_DOMAIN = 2;
+
+    private static final int ROLE_PERMISSIONS = 10;
+
+    private static final int MEMBERSHIP_PERMISSIONS = 2;
+
+    private static final int CHECKS = 1024;
+
+    @Param({ "1", "10" })
+    public int memberships;
+
+    @Param({ "5", "50" })
+    public int studiesPerDomain;
+
+    private List<Tuple> rows;
+
+    private UserDTO user;
+
+    private UserDTO uncompiledUser;
+
+    private PermissionEnum[] permissions = new PermissionEnum[CHECKS];
+
+    private Integer[] centerIds = new Integer[CHECKS];
+
+    private Integer[] studyIds = new Integer[CHECKS];
+
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        var random = new SplittableRandom(42);
+        var allPermissions = PermissionEnum.valuesList();
+        rows = new ArrayList<>();
+
+        var user = new MapTuple()
+            .with("ID", 1)
+            .with("FULL_NAME", "Benchmark User")
+            .with("LOGIN", "benchmark")
+            .with("PASSWORD", "$2a$10$abcdefghijklmnopqrstuv")
+            .with("ACTIVITY_STATUS_ID", 1)
+            .with("API_KEY", null)
+            .with("GROUP_ID", 2)
+            .with("GROUP_NAME", "Technicians");
+
+        for (int m = 0; m < memberships; m++) {
+            var membership = user.copy()
+                .with("MEMBERSHIP_ID", 100 + m)
+                .with("EVERY_PERMISSION", false)
+                .with("DOMAIN_ID", 200 + m)
+                .with("ALL_CENTERS", false)
+                .with("ALL_STUDIES", false)
+                .with("ROLE_ID", 300 + m)
+                .with("ROLE_NAME", "Role " + m);
+
+            for (int c = 0; c < CENTERS_PER_DOMAIN; c++) {
+                for (int s = 0; s < studiesPerDomain; s++) {
+                    for (int rp = 0; rp < ROLE_PERMISSIONS; rp++) {
+                        for (int mp = 0; mp < MEMBERSHIP_PERMISSIONS; mp++) {
+                            rows.add(
+                                membership.copy()
+                                    .with("CENTER_ID", 1 + random.nextInt(20))
+                                    .with("STUDY_ID", 1 + random.nextInt(500))
+                                    .with("ROLE_PERMISSION_ID", randomPermission(random, allPermissions))
+                                    .with("MEMBERSHIP_PERMISSION_ID", randomPermission(random, allPermissions))
+                            );
+                        }
+                    }
+                }
+            }
+        }
+
+        this.user = UserService.userTuplesToDTO(rows).iterator().next();
+        this.uncompiledUser = new UserDTO(
+            this.user.userId(),
+            this.user.fullName(),
+            this.user.username(),
+            this.user.password(),
+            this.user.status(),
+            this.user.apiKey(),
+            this.user.groups(),
+            this.user.memberships(),
+            null
+        );
+
+        for (int i = 0; i < CHECKS; i++) {
+            permissions[i] = allPermissions.get(2 + random.nextInt(allPermissions.size() - 2));
+            centerIds[i] = random.nextInt(4) == 0 ? null : 1 + random.nextInt(20);
+            studyIds[i] = 1 + random.nextInt(500);
+        }
+    }
+
+    @Benchmark
+    public Collection<UserDTO> userTuplesToDTO() {
+        return UserService.userTuplesToDTO(rows);
+    }
+
+    @Benchmark
+    public boolean hasPermission() {
+        int i = nextIndex();
+        return user.hasPermission(permissions[i], centerIds[i], studyIds[i]);
+    }
+
+    @Benchmark
+    public boolean hasPermissionUncompiled() {
+        int i = nextIndex();
+        return uncompiledUser.hasPermission(permissions[i], centerIds[i], studyIds[i]);
+    }
+
+    private static Integer randomPermission(SplittableRandom random, List<PermissionEnum> permissions) {
+        // skip the unused permissions
+        return permissions.get(2 + random.nextInt(permissions.size() - 2)).getId();
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (index + 1) % CHECKS;
+        return index;
+    }
+}
@@ -0,0 +1,111 @@
+package edu.ualberta.med.biobank.services.catalogue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import edu.ualberta.med.biobank.dtos.AliquotDTO;
+import edu.ualberta.med.biobank.util.CancellationToken;
+
+/**
+ * Writes rows to a catalogue and reports the time and allocation per row, for each format.
+ *
+ * Each invocation writes {@link #ROWS} rows to a new writer, so that a spreadsheet never reaches the maximum
+ * number of rows in a sheet. The XLSX writer flushes rows to a temporary file as it goes, so the cost of the
+ * file format is included. {@link #writeAndSave()} also saves the file, which finishes the spreadsheet's archive
+ * or the compressed stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudyCatalogueWriterBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private static final String[] SPECIMEN_TYPES = { "Serum", "Plasma", "Buffy coat", "Urine", "Whole blood" };
+
+    private static final String[] CENTERS = { "CBSR", "CALGARY", "EDMONTON", "KINGSTON" };
+
+    @Param({ "XLSX", "CSV", "TSV", "CSV_GZIP", "TSV_GZIP" })
+    public CatalogueFormat format;
+
+    private AliquotDTO[] aliquots = new AliquotDTO[ROWS];
+
+    private Path folder;
+
+    private final CancellationToken cancellation = new CancellationToken();
+
+    @Setup
+    public void setup() throws IOException {
+        folder = Files.createTempDirectory("catalogue-benchmark");
+        for (int i = 0; i < ROWS; i++) {
+            int visit = i / 20;
+            int patient = visit / 5;
+            aliquots[i] = new AliquotDTO(
+                "BENCH",
+                "P%06d".formatted(patient),
+                visit % 5 + 1,
+                "A%09d".formatted(i),
+                SPECIMEN_TYPES[i % SPECIMEN_TYPES.length],
+                new Date(1_500_000_000_000L + visit * 86_400_000L),
+                BigDecimal.valueOf(i % 50, 1),
+                CENTERS[patient % CENTERS.length],
+                "FR%02d".formatted(i % 40)
+            );
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int write() throws IOException {
+        var file = folder.resolve("BENCH_catalogue." + format.extension());
+        try (var writer = StudyCatalogueService.createWriter(file, format)) {
+            for (AliquotDTO aliquot : aliquots) {
+                writer.write(aliquot);
+            }
+            return writer.rowCount();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int writeAndSave() throws IOException {
+        var file = folder.resolve("BENCH_saved." + format.extension());
+        try (var writer = StudyCatalogueService.createWriter(file, format)) {
+            for (AliquotDTO aliquot : aliquots) {
+                writer.write(aliquot);
+            }
+            writer.save(cancellation);
+            return writer.rowCount();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package edu.ualberta.med.biobank.auth;
+
+import edu.ualberta.med.biobank.util.ExpiringCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * A {@link JwtDecoder} that keeps the tokens decoded by another decoder, so that a token sent with many requests
+ * has its signature checked once.
+ *
+ * Tokens are looked up by a 64 bit hash of their compact form, and a cached token is only used when it is equal
+ * to the one being decoded, so two tokens with the same hash are never confused. A token is kept until it
+ * expires, or for {@code maxTtl} if that is sooner. Tokens that fail to decode are not kept.
+ *
+ * When several requests bring the same token at once, it is decoded once and the other requests wait for the
+ * result.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private record CachedJwt(String token, Jwt jwt) {
+
+        boolean matches(String other) {
+            return MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.US_ASCII),
+                other.getBytes(StandardCharsets.US_ASCII)
+            );
+        }
+    }
+
+    private final JwtDecoder delegate;
+
+    private final ExpiringCache<Long, CachedJwt> cache;
+
+    private final ConcurrentMap<String, CompletableFuture<Jwt>> inFlight = new ConcurrentHashMap<>();
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maxSize, Duration maxTtl) {
+        this.delegate = delegate;
+        this.cache = new ExpiringCache<>(maxSize, maxTtl);
+    }
+
+    /**
+     * Registers the cache's size and hit and miss counts with {@code registry}.
+     */
+    public CachingJwtDecoder bindTo(MeterRegistry registry) {
+        cache.bindTo(registry, "jwt");
+        return this;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        if (token == null || !cache.isEnabled()) {
+            return delegate.decode(token);
+        }
+
+        var key = hash(token);
+        var cached = lookup(key, token);
+        if (cached != null) {
+            return cached;
+        }
+
+        var flight = new CompletableFuture<Jwt>();
+        var other = inFlight.putIfAbsent(token, flight);
+        if (other != null) {
+            return await(other);
+        }
+
+        try {
+            // another request may have decoded the token since the lookup above
+            var jwt = lookup(key, token);
+            if (jwt == null) {
+                jwt = delegate.decode(token);
+                put(key, token, jwt);
+            }
+            flight.complete(jwt);
+            return jwt;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(token, flight);
+        }
+    }
+
+    /**
+     * The 64 bit FNV-1a hash of the token's characters.
+     */
+    static long hash(String token) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private Jwt lookup(long key, String token) {
+        return cache.get(key).filter(cached -> cached.matches(token)).map(CachedJwt::jwt).orElse(null);
+    }
+
+    private void put(long key, String token, Jwt jwt) {
+        var expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            cache.put(key, new CachedJwt(token, jwt));
+            return;
+        }
+
+        var ttl = Duration.between(Instant.now(), expiresAt);
+        if (!ttl.isNegative() && !ttl.isZero()) {
+            cache.put(key, new CachedJwt(token, jwt), ttl);
+        }
+    }
+
+    private static Jwt await(CompletableFuture<Jwt> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
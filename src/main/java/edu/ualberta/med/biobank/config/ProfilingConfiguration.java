@@ -0,0 +1,30 @@
+package edu.ualberta.med.biobank.config;
+
+import edu.ualberta.med.biobank.profiling.ProfilingDataSource;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wraps the data source so that the statements run while handling a request are added to its profile, see
+ * {@link edu.ualberta.med.biobank.profiling.RequestProfileFilter}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "biobank.request-profile.enabled", havingValue = "true", matchIfMissing = true)
+public class ProfilingConfiguration {
+
+    @Bean
+    static BeanPostProcessor profilingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProfilingDataSource)) {
+                    return new ProfilingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
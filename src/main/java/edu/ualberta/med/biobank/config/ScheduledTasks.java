@@ -5,6 +5,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -15,6 +16,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import edu.ualberta.med.biobank.errors.AppError;
 import edu.ualberta.med.biobank.errors.ValidationError;
+import edu.ualberta.med.biobank.services.TaskService;
 import edu.ualberta.med.biobank.util.LoggingUtils;
 import io.jbock.util.Either;
 
@@ -27,6 +29,12 @@ public class ScheduledTasks {
     @Value("${biobank.catalogue.folder}")
     private String catalogueFolder;
 
+    private TaskService taskService;
+
+    public ScheduledTasks(TaskService taskService) {
+        this.taskService = taskService;
+    }
+
     @Scheduled(cron = "0 0 3 * * ?")
     public void runAt3AM() {
         logger.info("Task performed at {}", LocalDateTime.now());
@@ -34,6 +42,9 @@ public class ScheduledTasks {
         if (result.isLeft()) {
             logger.error("task error: %s".formatted(LoggingUtils.prettyPrintJson(result.getLeft().get())));
         }
+
+        var purged = taskService.purge(Duration.ofHours(24));
+        logger.info("removed {} finished tasks", purged);
     }
 
     // @Scheduled(fixedRate = 5000)
@@ -9,7 +9,11 @@ import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
 import edu.ualberta.med.biobank.auth.BiobankPasswordEncoder;
+import edu.ualberta.med.biobank.auth.CachingJwtDecoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
 import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
@@ -44,14 +48,26 @@ public class SecurityConfiguration {
 
     private ApiKeyAuthFilter apiKeyAuthFilter;
 
+    private final MeterRegistry meterRegistry;
+
+    private final int jwtCacheSize;
+
+    private final long jwtCacheTtl;
+
     public SecurityConfiguration(
         RsaKeyProperties jwtConfigProperties,
         CustomBasicAuthenticationEntryPoint customBasicAuthenticationEntryPoint,
-        ApiKeyAuthFilter apiKeyAuthFilter
+        ApiKeyAuthFilter apiKeyAuthFilter,
+        MeterRegistry meterRegistry,
+        @Value("${biobank.jwt-cache.max-size:10000}") int jwtCacheSize,
+        @Value("${biobank.jwt-cache.max-ttl-seconds:300}") long jwtCacheTtl
     ) {
         this.jwtConfigProperties = jwtConfigProperties;
         this.customBasicAuthenticationEntryPoint = customBasicAuthenticationEntryPoint;
         this.apiKeyAuthFilter = apiKeyAuthFilter;
+        this.meterRegistry = meterRegistry;
+        this.jwtCacheSize = jwtCacheSize;
+        this.jwtCacheTtl = jwtCacheTtl;
     }
 
     @Bean
@@ -116,9 +132,14 @@ public class SecurityConfiguration {
         return source;
     }
 
+    /**
+     * Tokens are sent with every request from the web client, their signature is checked the first time and the
+     * decoded token is kept for up to {@code biobank.jwt-cache.max-ttl-seconds}.
+     */
     @Bean
     JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withPublicKey(jwtConfigProperties.publicKey()).build();
+        var decoder = NimbusJwtDecoder.withPublicKey(jwtConfigProperties.publicKey()).build();
+        return new CachingJwtDecoder(decoder, jwtCacheSize, Duration.ofSeconds(jwtCacheTtl)).bindTo(meterRegistry);
     }
 
     @Bean
@@ -0,0 +1,233 @@
+package edu.ualberta.med.biobank.controllers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import edu.ualberta.med.biobank.errors.BadRequest;
+import edu.ualberta.med.biobank.errors.EntityNotFound;
+import edu.ualberta.med.biobank.exception.AppErrorException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Sends catalogue files, supporting conditional and partial requests so that an interrupted download can be
+ * resumed.
+ *
+ * The ETag is derived from the task ID in the file's name and the file's size. Byte ranges are supported for a
+ * single range, a request for several ranges is answered with the whole file. CSV and TSV files that were not
+ * saved compressed are compressed when the client accepts gzip and did not ask for a range.
+ *
+ * Files are copied with {@link FileChannel#transferTo}, or by Tomcat with sendfile when the connector supports
+ * it.
+ */
+@Component
+class CatalogueFileSender {
+
+    // the study name can not contain path separators, so the file is always in the catalogue folder, nor
+    // characters that would break the Content-Disposition header
+    private static final Pattern NAME_PATTERN = Pattern.compile(
+        "^(?<study>[^/\\\\\"\\r\\n\\x00]+)"
+            + "_(?<task>\\p{XDigit}{8}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{4}-\\p{XDigit}{12})"
+            + "\\.(?<extension>xlsx|csv|tsv|csv\\.gz|tsv\\.gz)$"
+    );
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * An inclusive range of bytes. A range where {@code start > end} can not be satisfied.
+     */
+    private record ByteRange(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+
+        boolean isSatisfiable() {
+            return start <= end;
+        }
+    }
+
+    @Value("${biobank.catalogue.folder}")
+    private String catalogueFolder;
+
+    /**
+     * @throws AppErrorException with a {@link BadRequest} error if {@code name} is not the name of a catalogue
+     * file, or an {@link EntityNotFound} error if the file does not exist.
+     */
+    public void send(String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Matcher matcher = NAME_PATTERN.matcher(name);
+        if (!matcher.matches()) {
+            throw new AppErrorException(new BadRequest("invalid file name"));
+        }
+
+        var path = Paths.get(catalogueFolder, name);
+        if (!Files.isRegularFile(path)) {
+            throw new AppErrorException(new EntityNotFound("no such file"));
+        }
+
+        var size = Files.size(path);
+        var extension = matcher.group("extension");
+        var compressible = extension.equals("csv") || extension.equals("tsv");
+        var gzip = compressible && request.getHeader(HttpHeaders.RANGE) == null && acceptsGzip(request);
+        var etag = "\"%s-%d%s\"".formatted(matcher.group("task"), size, gzip ? "-gzip" : "");
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "\"");
+        response.setContentType(contentType(extension));
+        if (compressible) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            if (!isHead(request)) {
+                try (var output = new GZIPOutputStream(response.getOutputStream())) {
+                    transfer(path, new ByteRange(0, size - 1), output);
+                }
+            }
+            return;
+        }
+
+        var range = new ByteRange(0, size - 1);
+        var rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        var ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            var requested = parseRange(rangeHeader, size);
+            if (requested != null && !requested.isSatisfiable()) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */%d".formatted(size));
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (requested != null) {
+                range = requested;
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(
+                    HttpHeaders.CONTENT_RANGE,
+                    "bytes %d-%d/%d".formatted(range.start(), range.end(), size)
+                );
+            }
+        }
+
+        response.setContentLengthLong(range.length());
+        if (isHead(request) || range.length() == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, Long.valueOf(range.start()));
+            request.setAttribute(SENDFILE_END, Long.valueOf(range.end() + 1));
+            return;
+        }
+        transfer(path, range, response.getOutputStream());
+    }
+
+    /**
+     * Returns the requested range, or null if the header is not a single byte range and should be ignored.
+     */
+    private static ByteRange parseRange(String header, long size) {
+        var matcher = RANGE_PATTERN.matcher(header.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        var first = matcher.group(1);
+        var last = matcher.group(2);
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                // a suffix range: the last N bytes
+                var suffix = Long.parseLong(last);
+                return suffix == 0 ? new ByteRange(0, -1) : new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+
+            var start = Long.parseLong(first);
+            var end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (!last.isEmpty() && Long.parseLong(last) < start) {
+                return null;
+            }
+            return start >= size ? new ByteRange(0, -1) : new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+            .map(String::trim)
+            .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+            .anyMatch(tag -> tag.equals("*") || tag.equals(etag));
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        var acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        return Arrays.stream(acceptEncoding.split(","))
+            .map(encoding -> encoding.replace(" ", "").toLowerCase())
+            .filter(encoding -> encoding.equals("gzip") || encoding.startsWith("gzip;"))
+            .anyMatch(encoding -> !encoding.endsWith("q=0"));
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+
+    private static String contentType(String extension) {
+        return switch (extension) {
+            case "csv" -> "text/csv";
+            case "tsv" -> "text/tab-separated-values";
+            case "csv.gz", "tsv.gz" -> "application/gzip";
+            default -> "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        };
+    }
+
+    private static void transfer(Path path, ByteRange range, OutputStream output) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var target = Channels.newChannel(output);
+            var position = range.start();
+            var remaining = range.length();
+            while (remaining > 0) {
+                var transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+}
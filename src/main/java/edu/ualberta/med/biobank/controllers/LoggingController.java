@@ -1,15 +1,21 @@
 package edu.ualberta.med.biobank.controllers;
 
+import java.time.Instant;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import edu.ualberta.med.biobank.domain.LogFilter;
+import edu.ualberta.med.biobank.dtos.LogPageDTO;
 import edu.ualberta.med.biobank.dtos.LoggingDTO;
+import edu.ualberta.med.biobank.exception.AppErrorException;
 import edu.ualberta.med.biobank.services.LoggingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -38,6 +44,37 @@ public class LoggingController {
         return data;
     }
 
+    /**
+     * Lists the entries a page at a time, newest first. Pass the {@code next} token of a page to get the older
+     * entries, or its {@code newer} token to get the entries added since.
+     *
+     * {@code from} and {@code to} are ISO instants, such as {@code 2024-01-31T00:00:00Z}.
+     */
+    @Operation(security = { @SecurityRequirement(name = "bearer-key") })
+    @GetMapping("/entries")
+    public LogPageDTO entries(
+            @RequestParam Optional<String> token,
+            @RequestParam Optional<Integer> size,
+            @RequestParam Optional<String> username,
+            @RequestParam Optional<String> pnumber,
+            @RequestParam Optional<String> inventoryId,
+            @RequestParam Optional<String> action,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Optional<Instant> from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Optional<Instant> to,
+            @RequestParam(defaultValue = "false") boolean total) {
+        var filter = new LogFilter(
+            username.orElse(null),
+            pnumber.orElse(null),
+            inventoryId.orElse(null),
+            action.orElse(null),
+            from.map(Date::from).orElse(null),
+            to.map(Date::from).orElse(null)
+        );
+        return loggingService
+            .loggingPage(filter, token.orElse(null), size.orElse(10), total)
+            .orElseThrow(err -> new AppErrorException(err));
+    }
+
     @Operation(security = { @SecurityRequirement(name = "bearer-key") })
     @GetMapping("/latest")
     public List<LoggingDTO> latest() {
@@ -1,8 +1,15 @@
 package edu.ualberta.med.biobank.controllers;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -10,11 +17,17 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -24,14 +37,19 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ualberta.med.biobank.domain.SpecimenRequest;
+import edu.ualberta.med.biobank.domain.SpecimenRequestLine;
 import edu.ualberta.med.biobank.dtos.AliquotSpecimenDTO;
 import edu.ualberta.med.biobank.dtos.SourceSpecimenAddDTO;
 import edu.ualberta.med.biobank.dtos.SourceSpecimenDTO;
 import edu.ualberta.med.biobank.dtos.SpecimenPullDTO;
+import edu.ualberta.med.biobank.dtos.SpecimenPullLineDTO;
 import edu.ualberta.med.biobank.errors.BadRequest;
 import edu.ualberta.med.biobank.exception.AppErrorException;
 import edu.ualberta.med.biobank.services.SpecimenService;
+import edu.ualberta.med.biobank.util.DateUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 
@@ -43,10 +61,17 @@ public class SpecimenController {
     private final Logger logger = LoggerFactory.getLogger(SpecimenController.class);
 
 
+    private static final String[] CSV_HEADERS = {
+        "Line", "Patient #", "Inventory ID", "Date Drawn", "Specimen Type", "Location", "Status", "Error"
+    };
+
     private final SpecimenService specimenService;
 
-    SpecimenController(SpecimenService specimenService) {
+    private final ObjectMapper objectMapper;
+
+    SpecimenController(SpecimenService specimenService, ObjectMapper objectMapper) {
         this.specimenService = specimenService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(security = { @SecurityRequirement(name = "bearer-key") })
@@ -66,13 +91,16 @@ public class SpecimenController {
 
     @Operation(security = { @SecurityRequirement(name = "bearer-key") })
     @PostMapping("request")
-    public Collection<SpecimenPullDTO> request(@RequestParam("file") MultipartFile file, @RequestParam("timezone") String timezone) {
+    public Collection<SpecimenPullDTO> request(
+        @RequestParam("file") MultipartFile file,
+        @RequestParam("timezone") String timezone,
+        @RequestParam(value = "seed", defaultValue = "0") long seed
+    ) {
         if (file.isEmpty()) {
             throw new AppErrorException(new BadRequest("the file is empty"));
         }
 
         ZoneId zoneId = ZoneId.of(timezone);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
         var requested = new ArrayList<SpecimenRequest>();
         try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
@@ -80,20 +108,130 @@ public class SpecimenController {
             Iterable<CSVRecord> records = csvFormat.parse(reader);
 
             for (CSVRecord record : records) {
-                LocalDateTime localDateTime = LocalDateTime.parse(record.get(1) + "T00:00:00", formatter);
-                ZonedDateTime userTime = localDateTime.atZone(zoneId);
-
-                requested.add(new SpecimenRequest(
-                    record.get(0),
-                    Date.from(userTime.toInstant()),
-                    record.get(2),
-                    Integer.parseInt(record.get(3))
-                ));
+                requested.add(parseRequest(record, zoneId));
             }
-            return specimenService.specimenRequest(requested);
+            return specimenService.specimenRequest(requested, seed);
         } catch (Exception e) {
             throw new AppErrorException(new BadRequest(e.getMessage()));
         }
     }
 
+    /**
+     * Streaming version of {@link #request}, selected with the {@code format} parameter.
+     *
+     * The results are written as they are resolved, either as newline delimited JSON ({@code format=ndjson}) or
+     * as CSV ({@code format=csv}). Each result has the number of the line it was resolved from. A line that
+     * cannot be read produces a result with an error, instead of failing the whole request.
+     */
+    @Operation(security = { @SecurityRequirement(name = "bearer-key") })
+    @PostMapping(value = "request", params = "format")
+    public ResponseEntity<StreamingResponseBody> requestStream(
+        @RequestParam("file") MultipartFile file,
+        @RequestParam("timezone") String timezone,
+        @RequestParam("format") String format,
+        @RequestParam(value = "seed", defaultValue = "0") long seed
+    ) {
+        if (file.isEmpty()) {
+            throw new AppErrorException(new BadRequest("the file is empty"));
+        }
+
+        ZoneId zoneId;
+        try {
+            zoneId = ZoneId.of(timezone);
+        } catch (DateTimeException e) {
+            throw new AppErrorException(new BadRequest("invalid timezone: " + timezone));
+        }
+
+        MediaType contentType = switch (format) {
+            case "ndjson" -> MediaType.APPLICATION_NDJSON;
+            case "csv" -> new MediaType("text", "csv");
+            default -> throw new AppErrorException(new BadRequest("invalid format: " + format));
+        };
+
+        StreamingResponseBody body = outputStream -> {
+            try (
+                Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
+                CSVParser parser = CSVFormat.DEFAULT.builder().build().parse(reader);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))
+            ) {
+                var lines = requestLines(parser, zoneId);
+                if (format.equals("csv")) {
+                    var printer = new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(CSV_HEADERS).build());
+                    specimenService.specimenRequest(lines, seed, chunk -> writeCsv(printer, chunk));
+                    printer.flush();
+                } else {
+                    specimenService.specimenRequest(lines, seed, chunk -> writeNdjson(writer, chunk));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+
+        return ResponseEntity.ok().contentType(contentType).body(body);
+    }
+
+    private static SpecimenRequest parseRequest(CSVRecord record, ZoneId zoneId) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+        LocalDateTime localDateTime = LocalDateTime.parse(record.get(1) + "T00:00:00", formatter);
+        ZonedDateTime userTime = localDateTime.atZone(zoneId);
+
+        return new SpecimenRequest(
+            record.get(0),
+            Date.from(userTime.toInstant()),
+            record.get(2),
+            Integer.parseInt(record.get(3))
+        );
+    }
+
+    private static Iterator<SpecimenRequestLine> requestLines(CSVParser parser, ZoneId zoneId) {
+        var records = parser.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
+
+            @Override
+            public SpecimenRequestLine next() {
+                var record = records.next();
+                try {
+                    return SpecimenRequestLine.valid(record.getRecordNumber(), parseRequest(record, zoneId));
+                } catch (RuntimeException e) {
+                    return SpecimenRequestLine.invalid(record.getRecordNumber(), "invalid line: " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    private void writeNdjson(Writer writer, List<SpecimenPullLineDTO> chunk) {
+        try {
+            for (SpecimenPullLineDTO result : chunk) {
+                writer.write(objectMapper.writeValueAsString(result));
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsv(CSVPrinter printer, List<SpecimenPullLineDTO> chunk) {
+        try {
+            for (SpecimenPullLineDTO result : chunk) {
+                printer.printRecord(
+                    result.line(),
+                    result.pnumber(),
+                    result.inventoryId(),
+                    result.dateDrawn() != null ? DateUtil.dateToString(result.dateDrawn()) : null,
+                    result.specimenType(),
+                    result.location(),
+                    result.activityStatus(),
+                    result.error()
+                );
+            }
+            printer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -1,6 +1,6 @@
 package edu.ualberta.med.biobank.controllers;
 
-import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
@@ -10,14 +10,9 @@ import java.util.Optional;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -35,20 +30,19 @@ import edu.ualberta.med.biobank.dtos.CatalogueTaskDTO;
 import edu.ualberta.med.biobank.dtos.SourceSpecimenTypeDTO;
 import edu.ualberta.med.biobank.dtos.StudyDTO;
 import edu.ualberta.med.biobank.dtos.StudyNameDTO;
-import edu.ualberta.med.biobank.errors.EntityNotFound;
+import edu.ualberta.med.biobank.errors.BadRequest;
 import edu.ualberta.med.biobank.exception.AppErrorException;
 import edu.ualberta.med.biobank.services.StudyService;
+import edu.ualberta.med.biobank.services.catalogue.CatalogueFormat;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping(path = "/api/studies", produces = "application/json")
 public class StudyController {
 
-    @Value("${biobank.catalogue.folder}")
-    private String catalogueFolder;
-
     @SuppressWarnings("unused")
     Logger logger = LoggerFactory.getLogger(StudyController.class);
 
@@ -56,9 +50,16 @@ public class StudyController {
 
     private ApplicationEventPublisher eventPublisher;
 
-    StudyController(StudyService studyService, ApplicationEventPublisher eventPublisher) {
+    private CatalogueFileSender catalogueFileSender;
+
+    StudyController(
+        StudyService studyService,
+        ApplicationEventPublisher eventPublisher,
+        CatalogueFileSender catalogueFileSender
+    ) {
         this.studyService = studyService;
         this.eventPublisher = eventPublisher;
+        this.catalogueFileSender = catalogueFileSender;
     }
 
     @Operation(security = { @SecurityRequirement(name = "bearer-key") })
@@ -98,8 +99,14 @@ public class StudyController {
 
     @Operation(security = { @SecurityRequirement(name = "bearer-key") })
     @PostMapping("/catalogues/{nameshort}")
-    public ResponseEntity<String> catlogue(@PathVariable String nameshort, HttpServletRequest request) {
-        var task = studyService.catalogueCreate(nameshort);
+    public ResponseEntity<String> catlogue(
+        @PathVariable String nameshort,
+        @RequestParam(defaultValue = "xlsx") String format,
+        HttpServletRequest request
+    ) {
+        var catalogueFormat = CatalogueFormat.fromExtension(format)
+            .orElseThrow(() -> new AppErrorException(new BadRequest("invalid format: " + format)));
+        var task = studyService.catalogueCreate(nameshort, catalogueFormat);
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         eventPublisher.publishEvent(new StudyCatalogueRequestEvent(auth.getName(), nameshort));
 
@@ -121,31 +128,13 @@ public class StudyController {
 
     @Operation(security = { @SecurityRequirement(name = "bearer-key") })
     @GetMapping("/catalogues/download/{name}")
-    public ResponseEntity<?> downloadCatalogue(@PathVariable(value = "name") String fileName) {
+    public void downloadCatalogue(
+        @PathVariable(value = "name") String fileName,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         eventPublisher.publishEvent(new StudyCatalogueDownloadEvent(auth.getName(), fileName));
-
-        var fileMaybe = downloadFile(fileName);
-        if (fileMaybe.isEmpty()) {
-            throw new AppErrorException(new EntityNotFound("no such file"));
-        }
-        var file = fileMaybe.get();
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-            .contentType(MediaType.APPLICATION_OCTET_STREAM)
-            .body(file);
-    }
-
-    private Optional<Resource> downloadFile(String fileName) {
-        File dir = new File(catalogueFolder + "/" + fileName);
-        try {
-            if (dir.exists()) {
-                Resource resource = new UrlResource(dir.toURI());
-                return Optional.of(resource);
-            }
-        } catch (Exception e) {
-            logger.error(e.getMessage());
-        }
-        return Optional.empty();
+        catalogueFileSender.send(fileName, request, response);
     }
 }
@@ -0,0 +1,35 @@
+package edu.ualberta.med.biobank.db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+public class V1_3__Task extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (var statement = context.getConnection().createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS TASK");
+
+            var sql =
+                """
+                  CREATE TABLE TASK (
+                    ID char(36) NOT NULL,
+                    STATE varchar(20) NOT NULL,
+                    PROGRESS integer NOT NULL DEFAULT 0,
+                    OWNER varchar(255) DEFAULT NULL,
+                    OPERATION_TYPE varchar(50) NOT NULL,
+                    PAYLOAD text DEFAULT NULL,
+                    NODE varchar(255) DEFAULT NULL,
+                    CREATED_AT datetime NOT NULL,
+                    UPDATED_AT datetime NOT NULL,
+                    HEARTBEAT_AT datetime DEFAULT NULL,
+                    LEASE_UNTIL datetime DEFAULT NULL,
+                    PRIMARY KEY (ID),
+                    KEY `TASK_STATE_LEASE_IDX` (`STATE`, `LEASE_UNTIL`),
+                    KEY `TASK_NODE_IDX` (`NODE`)
+                  ) ENGINE=InnoDB DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs;
+                """;
+            statement.execute(sql);
+        }
+    }
+}
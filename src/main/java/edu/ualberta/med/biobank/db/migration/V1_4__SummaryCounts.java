@@ -0,0 +1,78 @@
+package edu.ualberta.med.biobank.db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Adds the tables holding the specimen and comment counts of each patient and collection event, and fills them
+ * from the existing rows. Aliquots are not kept here, they are counted when read.
+ */
+public class V1_4__SummaryCounts extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (var statement = context.getConnection().createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS PATIENT_SUMMARY");
+            statement.execute("DROP TABLE IF EXISTS COLLECTION_EVENT_SUMMARY");
+
+            statement.execute(
+                """
+                  CREATE TABLE COLLECTION_EVENT_SUMMARY (
+                    COLLECTION_EVENT_ID integer NOT NULL,
+                    SPECIMEN_COUNT bigint NOT NULL DEFAULT 0,
+                    COMMENT_COUNT bigint NOT NULL DEFAULT 0,
+                    FIRST_SPECIMEN_AT datetime DEFAULT NULL,
+                    PRIMARY KEY (COLLECTION_EVENT_ID)
+                  ) ENGINE=InnoDB DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs;
+                """
+            );
+
+            statement.execute(
+                """
+                  CREATE TABLE PATIENT_SUMMARY (
+                    PATIENT_ID integer NOT NULL,
+                    SPECIMEN_COUNT bigint NOT NULL DEFAULT 0,
+                    COMMENT_COUNT bigint NOT NULL DEFAULT 0,
+                    PRIMARY KEY (PATIENT_ID)
+                  ) ENGINE=InnoDB DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs;
+                """
+            );
+
+            statement.execute(
+                """
+                  INSERT INTO COLLECTION_EVENT_SUMMARY
+                    (COLLECTION_EVENT_ID, SPECIMEN_COUNT, COMMENT_COUNT, FIRST_SPECIMEN_AT)
+                  SELECT
+                    ce.ID,
+                    coalesce(src.n, 0),
+                    coalesce(cmt.n, 0),
+                    src.first_created_at
+                  FROM collection_event ce
+                  LEFT JOIN (
+                    SELECT ORIGINAL_COLLECTION_EVENT_ID id, count(*) n, min(CREATED_AT) first_created_at
+                    FROM specimen
+                    WHERE ORIGINAL_COLLECTION_EVENT_ID IS NOT NULL
+                    GROUP BY ORIGINAL_COLLECTION_EVENT_ID
+                  ) src ON src.id = ce.ID
+                  LEFT JOIN (
+                    SELECT COLLECTION_EVENT_ID id, count(*) n FROM collection_event_comment GROUP BY COLLECTION_EVENT_ID
+                  ) cmt ON cmt.id = ce.ID
+                """
+            );
+
+            statement.execute(
+                """
+                  INSERT INTO PATIENT_SUMMARY (PATIENT_ID, SPECIMEN_COUNT, COMMENT_COUNT)
+                  SELECT
+                    p.ID,
+                    coalesce(sum(ces.SPECIMEN_COUNT), 0),
+                    (SELECT count(*) FROM patient_comment pc WHERE pc.PATIENT_ID = p.ID)
+                  FROM patient p
+                  LEFT JOIN collection_event ce ON ce.PATIENT_ID = p.ID
+                  LEFT JOIN COLLECTION_EVENT_SUMMARY ces ON ces.COLLECTION_EVENT_ID = ce.ID
+                  GROUP BY p.ID
+                """
+            );
+        }
+    }
+}
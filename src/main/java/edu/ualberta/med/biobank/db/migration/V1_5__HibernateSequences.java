@@ -0,0 +1,56 @@
+package edu.ualberta.med.biobank.db.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Moves the rows of {@code hibernate_sequences} past the IDs already used in their tables.
+ *
+ * {@link edu.ualberta.med.biobank.domain.util.CustomIdGenerator} only seeds a segment from {@code max(ID)} when the
+ * segment has no row yet. Rows written by other clients, or before IDs were reserved from this table, can be behind
+ * the table's IDs, and the first block reserved from them would hand out IDs that are already used. Segments that do
+ * not name a table with an {@code ID} column are left as they are.
+ */
+public class V1_5__HibernateSequences extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        var connection = context.getConnection();
+        List<String[]> segments = new ArrayList<>();
+
+        try (
+            var statement = connection.prepareStatement(
+                """
+                  SELECT hs.sequence_name, c.TABLE_NAME
+                  FROM hibernate_sequences hs
+                  JOIN information_schema.COLUMNS c
+                    ON c.TABLE_SCHEMA = database()
+                    AND lower(c.TABLE_NAME) = lower(hs.sequence_name)
+                    AND upper(c.COLUMN_NAME) = 'ID'
+                """
+            );
+            var resultSet = statement.executeQuery()
+        ) {
+            while (resultSet.next()) {
+                segments.add(new String[] { resultSet.getString(1), resultSet.getString(2) });
+            }
+        }
+
+        for (var segment : segments) {
+            try (
+                var statement = connection.prepareStatement(
+                    """
+                      UPDATE hibernate_sequences
+                      SET next_val = greatest(coalesce(next_val, 0), (SELECT coalesce(max(ID), 0) + 1 FROM `%s`))
+                      WHERE sequence_name = ?
+                    """.formatted(segment[1])
+                )
+            ) {
+                statement.setString(1, segment[0]);
+                statement.executeUpdate();
+            }
+        }
+    }
+}
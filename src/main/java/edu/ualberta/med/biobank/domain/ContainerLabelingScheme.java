@@ -1,6 +1,7 @@
 package edu.ualberta.med.biobank.domain;
 
 import edu.ualberta.med.biobank.domain.type.LabelingLayout;
+import edu.ualberta.med.biobank.domain.util.LabelTable;
 import edu.ualberta.med.biobank.domain.util.RowColPos;
 import edu.ualberta.med.biobank.domain.util.SbsLabeling;
 import jakarta.persistence.Column;
@@ -8,6 +9,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // TODO: should be an enum? Maybe make types that require java code, but put parameters and names
 // into the database?
@@ -35,6 +38,15 @@ public class ContainerLabelingScheme extends DomainEntity implements HasName {
 
     public static final int BOX_85_BY_2_MAX_COLS = 2;
 
+    /**
+     * The maximum number of label tables kept, see {@link #labelTable}.
+     */
+    private static final int MAX_LABEL_TABLES = 256;
+
+    private record LabelTableKey(int schemeId, int rows, int cols, LabelingLayout layout) {}
+
+    private static final Map<LabelTableKey, LabelTable> labelTables = new ConcurrentHashMap<>();
+
     @Column(name = "NAME", length = 50, unique = true)
     private String name;
 
@@ -269,6 +281,79 @@ public class ContainerLabelingScheme extends DomainEntity implements HasName {
         Integer rowCapacity,
         Integer colCapacity,
         LabelingLayout labelingLayout
+    ) {
+        var table = labelTable(childLabelingSchemeId, rowCapacity, colCapacity, labelingLayout);
+        return getPositionString(table, rcp, childLabelingSchemeId, rowCapacity, colCapacity, labelingLayout);
+    }
+
+    /**
+     * Same as {@link #getPositionString(RowColPos, Integer, Integer, Integer, LabelingLayout)}, but the label is
+     * taken from {@code table} when it has one for the position.
+     *
+     * @param table the table returned by {@link #labelTable} for the other parameters, can be null.
+     */
+    public static String getPositionString(
+        LabelTable table,
+        RowColPos rcp,
+        Integer childLabelingSchemeId,
+        Integer rowCapacity,
+        Integer colCapacity,
+        LabelingLayout labelingLayout
+    ) {
+        if (table != null) {
+            var label = table.label(rcp.getRow(), rcp.getCol());
+            if (label != null) {
+                return label;
+            }
+        }
+        return toPositionString(rcp, childLabelingSchemeId, rowCapacity, colCapacity, labelingLayout);
+    }
+
+    /**
+     * Returns the table with the labels of all the positions in a container with the given labeling scheme,
+     * capacity and layout. Tables are created when first used and then shared.
+     *
+     * Returns null if the capacity is not known or too large for a table, the label is then computed each time.
+     */
+    public static LabelTable labelTable(
+        Integer childLabelingSchemeId,
+        Integer rowCapacity,
+        Integer colCapacity,
+        LabelingLayout labelingLayout
+    ) {
+        if (childLabelingSchemeId == null || rowCapacity == null || colCapacity == null
+            || rowCapacity <= 0 || colCapacity <= 0
+            || (long) rowCapacity * colCapacity > LabelTable.MAX_POSITIONS) {
+            return null;
+        }
+
+        var key = new LabelTableKey(childLabelingSchemeId, rowCapacity, colCapacity, labelingLayout);
+        var table = labelTables.get(key);
+        if (table == null) {
+            table = LabelTable.create(
+                childLabelingSchemeId,
+                rowCapacity,
+                colCapacity,
+                labelingLayout,
+                rcp -> toPositionString(rcp, childLabelingSchemeId, rowCapacity, colCapacity, labelingLayout)
+            );
+            // capacities come from the container types, so there are few of them
+            if (labelTables.size() < MAX_LABEL_TABLES) {
+                var existing = labelTables.putIfAbsent(key, table);
+                if (existing != null) {
+                    table = existing;
+                }
+            }
+        }
+        return table;
+    }
+
+    private static String toPositionString(
+        RowColPos rcp,
+        Integer childLabelingSchemeId,
+        Integer rowCapacity,
+        Integer colCapacity,
+        LabelingLayout labelingLayout
     ) {
         switch (childLabelingSchemeId) {
             case 1:
@@ -496,6 +581,55 @@ public class ContainerLabelingScheme extends DomainEntity implements HasName {
         Integer rowCapacity,
         Integer colCapacity,
         LabelingLayout labelingLayout
+    ) throws Exception {
+        var table = labelTable(getId(), rowCapacity, colCapacity, labelingLayout);
+        return getRowColFromPositionString(table, position, rowCapacity, colCapacity, labelingLayout);
+    }
+
+    /**
+     * Same as {@link #getRowColFromPositionString(String, Integer, Integer, LabelingLayout)}, but the position is
+     * taken from {@code table} when it has the label.
+     *
+     * Labels that are not in the table are parsed, so that the error for an invalid label is the same.
+     *
+     * @param table the table returned by {@link #labelTable} for this scheme and the other parameters, can be
+     * null.
+     */
+    public RowColPos getRowColFromPositionString(
+        LabelTable table,
+        String position,
+        Integer rowCapacity,
+        Integer colCapacity,
+        LabelingLayout labelingLayout
+    ) throws Exception {
+        if (table != null && hasLabelLength(position)) {
+            var rcp = table.position(position);
+            if (rcp != null) {
+                return rcp;
+            }
+        }
+        return toRowCol(position, rowCapacity, colCapacity, labelingLayout);
+    }
+
+    /**
+     * The SBS standard accepts 2 or 3 characters, the other schemes check the label's length against their
+     * minimum and maximum.
+     */
+    private boolean hasLabelLength(String position) {
+        if (getId() == 1) {
+            return true;
+        }
+        return position != null
+            && getMinChars() != null
+            && getMaxChars() != null
+            && (position.length() == getMinChars() || position.length() == getMaxChars());
+    }
+
+    private RowColPos toRowCol(
+        String position,
+        Integer rowCapacity,
+        Integer colCapacity,
+        LabelingLayout labelingLayout
     ) throws Exception {
         switch (getId()) {
             case 1:
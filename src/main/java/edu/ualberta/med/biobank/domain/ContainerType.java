@@ -24,6 +24,7 @@ import org.hibernate.annotations.SQLInsert;
 
 import edu.ualberta.med.biobank.domain.type.LabelingLayout;
 import edu.ualberta.med.biobank.domain.type.LabelingLayoutConverter;
+import edu.ualberta.med.biobank.domain.util.LabelTable;
 import edu.ualberta.med.biobank.domain.util.RowColPos;
 
 /**
@@ -104,6 +105,9 @@ public class ContainerType extends DomainEntity implements HasName, HasNameShort
     @Convert(converter = LabelingLayoutConverter.class)
     private LabelingLayout labelingLayout;
 
+    @Transient
+    private LabelTable labelTable;
+
     @Override
     public String getName() {
         return this.name;
@@ -239,6 +243,7 @@ public class ContainerType extends DomainEntity implements HasName, HasNameShort
     @Transient
     public String getPositionString(RowColPos position) {
         return ContainerLabelingScheme.getPositionString(
+                labelTable(),
                 position,
                 getChildLabelingScheme().getId(),
                 getRowCapacity(),
@@ -250,7 +255,21 @@ public class ContainerType extends DomainEntity implements HasName, HasNameShort
     @Transient
     public RowColPos getRowColFromPositionString(String position) throws Exception {
         return getChildLabelingScheme().getRowColFromPositionString(
-                position, getRowCapacity(), getColCapacity(), getLabelingLayout());
+                labelTable(), position, getRowCapacity(), getColCapacity(), getLabelingLayout());
+    }
+
+    /**
+     * The shared label table for this type's labeling scheme, capacity and layout. It is kept until one of them
+     * changes.
+     */
+    private LabelTable labelTable() {
+        var schemeId = getChildLabelingScheme().getId();
+        var rows = getRowCapacity();
+        var cols = getColCapacity();
+        if ((labelTable == null) || !labelTable.isFor(schemeId, rows, cols, labelingLayout)) {
+            labelTable = ContainerLabelingScheme.labelTable(schemeId, rows, cols, labelingLayout);
+        }
+        return labelTable;
     }
 
     public LabelingLayout getLabelingLayout() {
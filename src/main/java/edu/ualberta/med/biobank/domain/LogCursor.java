@@ -0,0 +1,57 @@
+package edu.ualberta.med.biobank.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * A position in the LOG table, handed to clients as an opaque continuation token.
+ *
+ * A {@code BEFORE} cursor continues with the entries older than an entry, ordered by creation time and ID, both
+ * descending. An {@code AFTER} cursor continues with the entries that have a larger ID than an entry, in ascending
+ * order, and is used to poll for entries added since.
+ */
+public record LogCursor(Direction direction, Date createdAt, Integer id) {
+
+    public enum Direction {
+        BEFORE,
+        AFTER
+    }
+
+    public static LogCursor before(Date createdAt, Integer id) {
+        return new LogCursor(Direction.BEFORE, createdAt, id);
+    }
+
+    public static LogCursor after(Integer id) {
+        return new LogCursor(Direction.AFTER, null, id);
+    }
+
+    public String encode() {
+        var value = switch (direction) {
+            case BEFORE -> "b.%s.%d".formatted(createdAt == null ? "" : createdAt.getTime(), id);
+            case AFTER -> "a.%d".formatted(id);
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns the cursor for a token created by {@link #encode()}, or nothing when the token is not valid.
+     */
+    public static Optional<LogCursor> decode(String token) {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            var parts = value.split("\\.", -1);
+            if (parts.length == 2 && parts[0].equals("a")) {
+                return Optional.of(after(Integer.valueOf(parts[1])));
+            }
+            if (parts.length == 3 && parts[0].equals("b")) {
+                var createdAt = parts[1].isEmpty() ? null : new Date(Long.parseLong(parts[1]));
+                return Optional.of(before(createdAt, Integer.valueOf(parts[2])));
+            }
+        } catch (IllegalArgumentException e) {
+            // not base64 or not a number, NumberFormatException is an IllegalArgumentException
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,23 @@
+package edu.ualberta.med.biobank.domain;
+
+import java.util.Date;
+
+/**
+ * Restricts the LOG entries listed. Null fields do not restrict the entries, {@code from} is inclusive and
+ * {@code to} is exclusive.
+ */
+public record LogFilter(
+    String username,
+    String patientNumber,
+    String inventoryId,
+    String action,
+    Date from,
+    Date to
+) {
+
+    public static final LogFilter NONE = new LogFilter(null, null, null, null, null, null);
+
+    public boolean isEmpty() {
+        return equals(NONE);
+    }
+}
@@ -1,5 +1,7 @@
 package edu.ualberta.med.biobank.domain;
 
+import edu.ualberta.med.biobank.util.CancellationToken;
+
 /**
  * Used by the task service to represent a running task.
  *
@@ -8,6 +10,8 @@ public abstract class Operation {
 
     protected Task task;
 
+    private final CancellationToken cancellation = new CancellationToken();
+
     public Operation(Task task) {
         this.task = task;
     }
@@ -15,4 +19,29 @@ public abstract class Operation {
     public Task task() {
         return this.task;
     }
+
+    /**
+     * Identifies the kind of operation when it is stored, see {@code TaskService#registerOperation}.
+     */
+    public abstract String type();
+
+    /**
+     * The information needed to create the operation again from a stored task.
+     */
+    public abstract String payload();
+
+    /**
+     * Operations with the same key do the same work. A new operation is not run while one with the same key is
+     * queued or running, the caller is given the existing operation's task instead.
+     */
+    public String deduplicationKey() {
+        return type() + ":" + payload();
+    }
+
+    /**
+     * Cancelled when the operation's task is cancelled, or when the application shuts down.
+     */
+    public CancellationToken cancellation() {
+        return cancellation;
+    }
 }
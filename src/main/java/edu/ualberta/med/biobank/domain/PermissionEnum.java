@@ -154,6 +154,13 @@ public enum PermissionEnum {
         return EnumSet.copyOf(requires);
     }
 
+    /**
+     * Same as {@code getRequires().contains(require)}, without copying the set.
+     */
+    public boolean isRequired(Require require) {
+        return requires.contains(require);
+    }
+
     public String getName() {
         return name;
     }
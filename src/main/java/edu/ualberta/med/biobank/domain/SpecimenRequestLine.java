@@ -0,0 +1,19 @@
+package edu.ualberta.med.biobank.domain;
+
+/**
+ * A line read from a specimen pull file. Either {@code request} or {@code error} is null.
+ */
+public record SpecimenRequestLine(long line, SpecimenRequest request, String error) {
+
+    public static SpecimenRequestLine valid(long line, SpecimenRequest request) {
+        return new SpecimenRequestLine(line, request, null);
+    }
+
+    public static SpecimenRequestLine invalid(long line, String error) {
+        return new SpecimenRequestLine(line, null, error);
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+}
@@ -3,21 +3,36 @@ package edu.ualberta.med.biobank.domain;
 import java.util.UUID;
 
 enum TaskState {
-    CREATED, RUNNING, COMPLETED, CANCELLED
+    CREATED, RUNNING, COMPLETED, CANCELLED, FAILED
 }
 
+/**
+ * The state of the work done by an {@link Operation}. The finished states, completed, cancelled and failed, are
+ * final: changing the state of a finished task returns the task unchanged.
+ */
 public record Task(UUID id, int progress, TaskState state) {
 
     public Task toRunning() {
-        return new Task(this.id(), this.progress(), TaskState.RUNNING);
+        return to(TaskState.RUNNING);
     }
 
     public Task toCompleted() {
-        return new Task(this.id(), this.progress(), TaskState.COMPLETED);
+        return to(TaskState.COMPLETED);
     }
 
     public Task toCancelled() {
-        return new Task(this.id(), this.progress(), TaskState.CANCELLED);
+        return to(TaskState.CANCELLED);
+    }
+
+    /**
+     * The operation stopped with an error, its result was not created.
+     */
+    public Task toFailed() {
+        return to(TaskState.FAILED);
+    }
+
+    private Task to(TaskState next) {
+        return isFinished() ? this : new Task(this.id(), this.progress(), next);
     }
 
     public Task withProgress(int progress) {
@@ -32,6 +47,21 @@ public record Task(UUID id, int progress, TaskState state) {
         return state.equals(TaskState.COMPLETED);
     }
 
+    public boolean isCancelled() {
+        return state.equals(TaskState.CANCELLED);
+    }
+
+    public boolean isFailed() {
+        return state.equals(TaskState.FAILED);
+    }
+
+    /**
+     * Returns true if the task has completed, has been cancelled or has failed.
+     */
+    public boolean isFinished() {
+        return isCompleted() || isCancelled() || isFailed();
+    }
+
     public String stateName() {
         return this.state.name();
     }
@@ -39,4 +69,18 @@ public record Task(UUID id, int progress, TaskState state) {
     public static Task create() {
         return new Task(UUID.randomUUID(), 0, TaskState.CREATED);
     }
+
+    /**
+     * A task for work that was already done, for example by an earlier task whose result is reused.
+     */
+    public static Task completed(UUID id) {
+        return new Task(id, 100, TaskState.COMPLETED);
+    }
+
+    /**
+     * Creates a task from a state name returned by {@link #stateName()}, used when reading stored tasks.
+     */
+    public static Task fromStateName(UUID id, int progress, String stateName) {
+        return new Task(id, progress, TaskState.valueOf(stateName));
+    }
 }
@@ -1,20 +1,20 @@
 package edu.ualberta.med.biobank.domain.util;
 
-import java.io.Serializable;
-import org.hibernate.HibernateException;
-import org.hibernate.engine.spi.SharedSessionContractImplementor;
-import org.hibernate.id.IdentifierGenerator;
-import org.hibernate.id.enhanced.OptimizerFactory;
+import java.util.Properties;
+import org.hibernate.MappingException;
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
 import org.hibernate.id.enhanced.TableGenerator;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import jakarta.persistence.FlushModeType;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
 
 /**
  * Inherits from {@link TableGenerator} with the following changes:
  * <p>
  * <ul>
- * <li>Force the use of the {@link OptimizerFactory.POOL} strategy, where the
+ * <li>Force the use of the {@link StandardOptimizerDescriptor#POOLED_LO} strategy, where the
  * value shown in the database is the next legal value to use. That is, the
  * value is the low end of the increment size, as opposed to the high end.</li>
  * <li>Force the segment value default to be the entity's table name (note that
@@ -24,30 +24,63 @@ import jakarta.persistence.FlushModeType;
  * configured initial value.</li>
  * </ul>
  *
+ * IDs are reserved in blocks of {@code increment_size} from the {@code hibernate_sequences} table
+ * and handed out from memory, so the database is only accessed once per block instead of once per
+ * insert. Since each block is reserved with a row lock on the segment, several nodes can insert into
+ * the same table without being given the same IDs. Segment rows that existed before IDs were reserved this way
+ * are moved past their table's IDs by {@code V1_5__HibernateSequences}.
+ *
  * See property "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred" in application.properties.
  *
  * @author Jonathan Ferland
  */
-public class CustomIdGenerator implements IdentifierGenerator {
+public class CustomIdGenerator extends TableGenerator {
 
-    private static final long serialVersionUID = 1L;
+    private String entityTableName;
 
-    // private final Logger logger = LoggerFactory.getLogger(CustomIdGenerator.class);
+    private String entityIdColumnName;
 
     @Override
-    public Serializable generate(SharedSessionContractImplementor session, Object obj) throws HibernateException {
-        String sql =
-                "select coalesce(max(%s) + 1) from %s".formatted(
-                session.getEntityPersister(obj.getClass().getName(), obj).getIdentifierPropertyName(),
-                obj.getClass().getSimpleName()
-        );
-
-        var query = session.createQuery(sql, Integer.class);
-        query.setFlushMode(FlushModeType.COMMIT);
-        Integer id = query.getSingleResultOrNull();
-        if (id == null) {
-            return 1;
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.setProperty(OptimizableGenerator.OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+
+        if (!params.containsKey(CONFIG_PREFER_SEGMENT_PER_ENTITY)) {
+            params.setProperty(CONFIG_PREFER_SEGMENT_PER_ENTITY, "true");
         }
-        return id;
+
+        entityTableName = params.getProperty(PersistentIdentifierGenerator.TABLE);
+        entityIdColumnName = params.getProperty(PersistentIdentifierGenerator.PK, "ID");
+
+        super.configure(type, params, serviceRegistry);
+    }
+
+    /**
+     * The segment row is created the first time an ID is needed for a table. The value bound to the
+     * second parameter is the initial value as adjusted by {@link TableGenerator} (it is one less than
+     * the initial value when the generator stores the last used value). The same adjustment is applied
+     * to the maximum ID found in the table so that both storage modes continue after the existing
+     * rows.
+     *
+     * The inserted value will not match the one the parent class expects when the table already has
+     * rows. In that case the update that reserves the block does not modify any rows and the parent
+     * class selects the segment again, this time reading the seeded value.
+     */
+    @Override
+    protected String buildInsertQuery(String formattedPhysicalTableName, SqlStringGenerationContext context) {
+        if (entityTableName == null) {
+            return super.buildInsertQuery(formattedPhysicalTableName, context);
+        }
+
+        return """
+            insert into %s (%s, %s)
+            select ?, greatest(coalesce(max(%s) + 1 - %d, 0), 0) + ? from %s
+            """.formatted(
+                formattedPhysicalTableName,
+                getSegmentColumnName(),
+                getValueColumnName(),
+                entityIdColumnName,
+                getInitialValue(),
+                entityTableName
+            );
     }
 }
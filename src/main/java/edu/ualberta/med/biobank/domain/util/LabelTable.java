@@ -0,0 +1,189 @@
+package edu.ualberta.med.biobank.domain.util;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+import edu.ualberta.med.biobank.domain.type.LabelingLayout;
+
+/**
+ * The labels of all the positions in a container, for one labeling scheme, capacity and layout.
+ *
+ * Labels are looked up by position in an array, and positions by label in a perfect hash table: each label has
+ * its own slot, so a lookup compares at most one label. Neither lookup allocates.
+ *
+ * Tables are immutable and can be shared by threads.
+ */
+public final class LabelTable {
+
+    /**
+     * Tables are not created for containers with more positions than this.
+     */
+    public static final int MAX_POSITIONS = 10_000;
+
+    // the number of multipliers tried for each size of the hash table, before trying a larger table
+    private static final int SEED_ATTEMPTS = 64;
+
+    // the hash table is at most this many times larger than the smallest size tried
+    private static final int MAX_GROWTH_BITS = 4;
+
+    private final int schemeId;
+
+    private final int rows;
+
+    private final int cols;
+
+    private final LabelingLayout layout;
+
+    // by position: row * cols + col, null if the position has no label
+    private final String[] labels;
+
+    private final RowColPos[] positions;
+
+    // by slot: the position of the label in the slot plus one, 0 if the slot is empty; null when two labels have
+    // the same hash code, positions are then not looked up by label
+    private final int[] slots;
+
+    private final int seed;
+
+    private final int shift;
+
+    private LabelTable(
+        int schemeId,
+        int rows,
+        int cols,
+        LabelingLayout layout,
+        String[] labels,
+        RowColPos[] positions,
+        int[] slots,
+        int seed,
+        int shift
+    ) {
+        this.schemeId = schemeId;
+        this.rows = rows;
+        this.cols = cols;
+        this.layout = layout;
+        this.labels = labels;
+        this.positions = positions;
+        this.slots = slots;
+        this.seed = seed;
+        this.shift = shift;
+    }
+
+    /**
+     * Creates the table by labeling each position with {@code labeler}. A position is left without a label if
+     * {@code labeler} returns null or throws an exception for it.
+     *
+     * @throws IllegalArgumentException if the container has more than {@link #MAX_POSITIONS} positions.
+     */
+    public static LabelTable create(
+        int schemeId,
+        int rows,
+        int cols,
+        LabelingLayout layout,
+        Function<RowColPos, String> labeler
+    ) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > MAX_POSITIONS) {
+            throw new IllegalArgumentException("invalid capacity: %d x %d".formatted(rows, cols));
+        }
+
+        var labels = new String[rows * cols];
+        var positions = new RowColPos[rows * cols];
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                var position = new RowColPos(row, col);
+                String label;
+                try {
+                    label = labeler.apply(position);
+                } catch (RuntimeException e) {
+                    label = null;
+                }
+                if (label != null) {
+                    labels[row * cols + col] = label.intern();
+                    positions[row * cols + col] = position;
+                    count++;
+                }
+            }
+        }
+
+        // multiplicative hashing: the slot is the top bits of hashCode * seed, each size is tried with several
+        // odd seeds until one gives every label its own slot
+        int minBits = Math.max(4, 32 - Integer.numberOfLeadingZeros(Math.max(1, count * 2 - 1)));
+        for (int bits = minBits; bits <= minBits + MAX_GROWTH_BITS; bits++) {
+            int shift = 32 - bits;
+            for (int attempt = 0; attempt < SEED_ATTEMPTS; attempt++) {
+                int seed = 0x9E3779B9 + attempt * 0x7F4A7C16;
+                var slots = slots(labels, seed, shift, 1 << bits);
+                if (slots != null) {
+                    return new LabelTable(schemeId, rows, cols, layout, labels, positions, slots, seed, shift);
+                }
+            }
+            if (hasDuplicateHash(labels)) {
+                break;
+            }
+        }
+        return new LabelTable(schemeId, rows, cols, layout, labels, positions, null, 0, 0);
+    }
+
+    /**
+     * Returns true if this is the table for the given scheme, capacity and layout.
+     */
+    public boolean isFor(Integer schemeId, Integer rows, Integer cols, LabelingLayout layout) {
+        return schemeId != null
+            && rows != null
+            && cols != null
+            && this.schemeId == schemeId
+            && this.rows == rows
+            && this.cols == cols
+            && this.layout == layout;
+    }
+
+    /**
+     * Returns the label for the position, or null if the position has no label or is not in the container.
+     */
+    public String label(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return null;
+        }
+        return labels[row * cols + col];
+    }
+
+    /**
+     * Returns the position with the label, or null if no position has this label.
+     */
+    public RowColPos position(String label) {
+        if (slots == null || label == null) {
+            return null;
+        }
+        int index = slots[(label.hashCode() * seed) >>> shift] - 1;
+        if (index < 0 || !labels[index].equals(label)) {
+            return null;
+        }
+        return positions[index];
+    }
+
+    private static int[] slots(String[] labels, int seed, int shift, int size) {
+        var slots = new int[size];
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] == null) {
+                continue;
+            }
+            int slot = (labels[i].hashCode() * seed) >>> shift;
+            if (slots[slot] != 0) {
+                return null;
+            }
+            slots[slot] = i + 1;
+        }
+        return slots;
+    }
+
+    private static boolean hasDuplicateHash(String[] labels) {
+        Set<Integer> hashes = new HashSet<>();
+        for (String label : labels) {
+            if (label != null && !hashes.add(label.hashCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
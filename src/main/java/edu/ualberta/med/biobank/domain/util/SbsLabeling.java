@@ -9,15 +9,29 @@ public class SbsLabeling {
     public static final int ROW_DEFAULT = 8;
     public static final int COL_DEFAULT = 12;
 
+    // the SBS labels do not depend on the container's capacity, a single table has all of them
+    private static final LabelTable LABELS = LabelTable.create(
+        1,
+        SBS_ROW_LABELLING_PATTERN.length(),
+        SBS_MAX_COLS,
+        null,
+        rcp -> label(rcp.getRow(), rcp.getCol())
+    );
+
     /**
      * Get the string corresponding to the given RowColPos and using the SBS standard. 2:1 will
-     * return C2.
+     * return C2. The labels are precomputed, see {@link LabelTable}.
      */
     public static String fromRowCol(final RowColPos rcp) {
         return fromRowCol(rcp.getRow(), rcp.getCol());
     }
 
     public static String fromRowCol(int row, int col) {
+        var label = LABELS.label(row, col);
+        return label != null ? label : label(row, col);
+    }
+
+    private static String label(int row, int col) {
         if (row >= SBS_ROW_LABELLING_PATTERN.length()) {
             throw new IllegalArgumentException("invalid row size for position: " + row);
         }
@@ -28,7 +42,6 @@ public class SbsLabeling {
         sb.append(SBS_ROW_LABELLING_PATTERN.charAt(row));
         sb.append(col + 1);
         return sb.toString();
-
     }
 
     /**
@@ -36,6 +49,11 @@ public class SbsLabeling {
      * be A2 or F12.
      */
     public static RowColPos toRowCol(String label) {
+        var position = LABELS.position(label);
+        return position != null ? position : parse(label);
+    }
+
+    private static RowColPos parse(String label) {
         if ((label.length() < 2) || (label.length() > 3)) {
             throw new IllegalArgumentException("invalid length for label string: " + label);
         }
@@ -6,9 +6,18 @@ import edu.ualberta.med.biobank.domain.Task;
 
 public record CatalogueTaskDTO(UUID id, int progress, String state, String nameShort, Optional<String> fileUrl) {
     public static CatalogueTaskDTO fromTask(Task task, String nameShort) {
+        return fromTask(task, nameShort, "xlsx");
+    }
+
+    /**
+     * @param extension the extension of the catalogue's file, used in the URL of a completed task.
+     */
+    public static CatalogueTaskDTO fromTask(Task task, String nameShort, String extension) {
         Optional<String> fileUrl = Optional.empty();
         if (task.isCompleted()) {
-            fileUrl = Optional.of("/api/studies/catalogues/download/%s_%s.xlsx".formatted(nameShort, task.id()));
+            fileUrl = Optional.of(
+                "/api/studies/catalogues/download/%s_%s.%s".formatted(nameShort, task.id(), extension)
+            );
         }
         return new CatalogueTaskDTO(task.id(), task.progress(), task.stateName(), nameShort, fileUrl);
     }
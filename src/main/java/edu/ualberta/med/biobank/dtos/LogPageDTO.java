@@ -0,0 +1,13 @@
+package edu.ualberta.med.biobank.dtos;
+
+import java.util.List;
+
+/**
+ * A page of LOG entries.
+ *
+ * @param next the token for the older entries, null when there are none.
+ * @param newer the token for the entries added after the ones on this page.
+ * @param approximateTotal an estimate of the number of entries that match the filters, from the table's
+ *     statistics, only present when requested.
+ */
+public record LogPageDTO(List<LoggingDTO> entries, String next, String newer, Long approximateTotal) {}
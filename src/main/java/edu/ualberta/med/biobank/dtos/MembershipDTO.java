@@ -75,12 +75,12 @@ public record MembershipDTO(
         if (everyPermission) {
             allPermissions.addAll(PermissionEnum.valuesList());
         } else {
-            permissions.addAll(permissions);
+            allPermissions.addAll(permissions);
             for (RoleDTO role : roles.values()) {
-                permissions.addAll(role.permissions());
+                allPermissions.addAll(role.permissions());
             }
         }
-        return permissions;
+        return allPermissions;
     }
 
     private DomainDTO getDomain() {
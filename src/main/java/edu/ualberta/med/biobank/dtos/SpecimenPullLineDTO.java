@@ -0,0 +1,35 @@
+package edu.ualberta.med.biobank.dtos;
+
+import java.util.Date;
+
+/**
+ * A result of a streamed specimen pull request, tagged with the line of the pull file it was resolved from.
+ * When the line could not be read, only {@code line} and {@code error} are set.
+ */
+public record SpecimenPullLineDTO(
+    Long line,
+    String pnumber,
+    String inventoryId,
+    Date dateDrawn,
+    String specimenType,
+    String location,
+    String activityStatus,
+    String error
+) {
+    public static SpecimenPullLineDTO fromSpecimenPull(long line, SpecimenPullDTO pull) {
+        return new SpecimenPullLineDTO(
+            line,
+            pull.pnumber(),
+            pull.inventoryId(),
+            pull.dateDrawn(),
+            pull.specimenType(),
+            pull.location(),
+            pull.activityStatus(),
+            null
+        );
+    }
+
+    public static SpecimenPullLineDTO error(long line, String error) {
+        return new SpecimenPullLineDTO(line, null, null, null, null, null, null, error);
+    }
+}
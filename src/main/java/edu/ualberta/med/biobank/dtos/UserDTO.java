@@ -3,6 +3,7 @@ package edu.ualberta.med.biobank.dtos;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import edu.ualberta.med.biobank.domain.PermissionEnum;
 import edu.ualberta.med.biobank.domain.Status;
 import jakarta.persistence.Tuple;
@@ -15,7 +16,8 @@ public record UserDTO(
     String status,
     String apiKey,
     HashMap<Integer, GroupDTO> groups,
-    HashMap<Integer, MembershipDTO> memberships
+    HashMap<Integer, MembershipDTO> memberships,
+    @JsonIgnore UserPermissions userPermissions
 ) {
     public static UserDTO fromTuple(Tuple data) {
         return new UserDTO(
@@ -26,7 +28,26 @@ public record UserDTO(
             Status.fromId(data.get("ACTIVITY_STATUS_ID", Integer.class)).getName(),
             data.get("API_KEY", String.class),
             new HashMap<>(),
-            new HashMap<>()
+            new HashMap<>(),
+            null
+        );
+    }
+
+    /**
+     * Returns a copy of this user with its memberships compiled into {@link UserPermissions}. Must be called
+     * once all the memberships have been added.
+     */
+    public UserDTO withUserPermissions() {
+        return new UserDTO(
+            userId,
+            fullName,
+            username,
+            password,
+            status,
+            apiKey,
+            groups,
+            memberships,
+            UserPermissions.fromMemberships(memberships.values())
         );
     }
 
@@ -42,6 +63,9 @@ public record UserDTO(
     }
 
     public boolean hasPermission(PermissionEnum permission, Integer centerId, Integer studyId) {
+        if (userPermissions != null) {
+            return userPermissions.hasPermission(permission, centerId, studyId);
+        }
         for (MembershipDTO m : this.memberships.values()) {
             if (m.isAllowed(permission, centerId, studyId)) return true;
         }
@@ -49,6 +73,9 @@ public record UserDTO(
     }
 
     public boolean hasAllStudies() {
+        if (userPermissions != null) {
+            return userPermissions.hasAllStudies();
+        }
         for (MembershipDTO m : this.memberships.values()) {
             for (DomainDTO d : m.domains().values()) {
                 if (d.allStudies()) {
@@ -70,6 +97,9 @@ public record UserDTO(
     }
 
     public boolean hasAllCenters() {
+        if (userPermissions != null) {
+            return userPermissions.hasAllCenters();
+        }
         for (MembershipDTO m : this.memberships.values()) {
             for (DomainDTO d : m.domains().values()) {
                 if (d.allCenters()) {
@@ -0,0 +1,129 @@
+package edu.ualberta.med.biobank.dtos;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import edu.ualberta.med.biobank.domain.PermissionEnum;
+import edu.ualberta.med.biobank.domain.PermissionEnum.Require;
+
+/**
+ * The memberships of a user reduced to what is needed to answer
+ * {@link #hasPermission(PermissionEnum, Integer, Integer)}.
+ *
+ * Built once, when the user is loaded, from its {@link MembershipDTO}-s. Instances are immutable and checking a
+ * permission does not allocate any objects.
+ */
+public final class UserPermissions {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPermissions.class);
+
+    /**
+     * A single membership: the permissions it grants, from the membership and its roles, and the centers and
+     * studies of its domain. The ID arrays are sorted.
+     */
+    private record Grant(
+        EnumSet<PermissionEnum> permissions,
+        boolean allCenters,
+        boolean allStudies,
+        int[] centerIds,
+        int[] studyIds
+    ) {
+
+        boolean isAllowed(PermissionEnum permission, Integer centerId, Integer studyId) {
+            if (!permissions.contains(permission)) {
+                return false;
+            }
+            if (!allCenters && permission.isRequired(Require.ALL_CENTERS)) {
+                return false;
+            }
+            if (!allStudies && permission.isRequired(Require.ALL_STUDIES)) {
+                return false;
+            }
+            boolean hasCenter = centerId == null || allCenters || Arrays.binarySearch(centerIds, centerId) >= 0;
+            boolean hasStudy = studyId == null || allStudies || Arrays.binarySearch(studyIds, studyId) >= 0;
+            return hasCenter && hasStudy;
+        }
+    }
+
+    private final Grant[] grants;
+
+    private final boolean allCenters;
+
+    private final boolean allStudies;
+
+    private UserPermissions(Grant[] grants) {
+        this.grants = grants;
+
+        boolean centers = false;
+        boolean studies = false;
+        for (Grant grant : grants) {
+            centers |= grant.allCenters;
+            studies |= grant.allStudies;
+        }
+        this.allCenters = centers;
+        this.allStudies = studies;
+    }
+
+    public static UserPermissions fromMemberships(Collection<MembershipDTO> memberships) {
+        return new UserPermissions(
+            memberships.stream().map(UserPermissions::grantFromMembership).toArray(Grant[]::new)
+        );
+    }
+
+    /**
+     * If centerId is null, it means we do not care about its value, otherwise the membership's domain must
+     * contain the center. The same applies to studyId.
+     */
+    public boolean hasPermission(PermissionEnum permission, Integer centerId, Integer studyId) {
+        for (Grant grant : grants) {
+            if (grant.isAllowed(permission, centerId, studyId)) return true;
+        }
+        return false;
+    }
+
+    public boolean hasAllCenters() {
+        return allCenters;
+    }
+
+    public boolean hasAllStudies() {
+        return allStudies;
+    }
+
+    private static Grant grantFromMembership(MembershipDTO membership) {
+        if (membership.domains().size() != 1) {
+            // same as MembershipDTO, which fails when checking the permission, but here the user can still
+            // log in and use their other memberships
+            logger.error("membership {} has to have a single domain", membership.id());
+            return new Grant(EnumSet.noneOf(PermissionEnum.class), false, false, new int[0], new int[0]);
+        }
+
+        var domain = membership.domains().values().iterator().next();
+        return new Grant(
+            permissionSet(membership),
+            Boolean.TRUE.equals(domain.allCenters()),
+            Boolean.TRUE.equals(domain.allStudies()),
+            sortedIds(domain.centerIds()),
+            sortedIds(domain.studyIds())
+        );
+    }
+
+    private static EnumSet<PermissionEnum> permissionSet(MembershipDTO membership) {
+        if (Boolean.TRUE.equals(membership.everyPermission())) {
+            return EnumSet.allOf(PermissionEnum.class);
+        }
+
+        var permissions = EnumSet.noneOf(PermissionEnum.class);
+        permissions.addAll(membership.permissions());
+        for (RoleDTO role : membership.roles().values()) {
+            permissions.addAll(role.permissions());
+        }
+        return permissions;
+    }
+
+    private static int[] sortedIds(Set<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+}
@@ -0,0 +1,10 @@
+package edu.ualberta.med.biobank.errors;
+
+public class ServiceUnavailable extends AppError {
+
+    private static final long serialVersionUID = 1L;
+
+    public ServiceUnavailable(String message) {
+        super(message);
+    }
+}
@@ -16,6 +16,7 @@ import edu.ualberta.med.biobank.errors.BadRequest;
 import edu.ualberta.med.biobank.errors.EntityNotFound;
 import edu.ualberta.med.biobank.errors.Forbidden;
 import edu.ualberta.med.biobank.errors.PermissionError;
+import edu.ualberta.med.biobank.errors.ServiceUnavailable;
 import edu.ualberta.med.biobank.errors.Unauthorized;
 import edu.ualberta.med.biobank.errors.ValidationError;
 
@@ -49,6 +50,7 @@ public class CustomizedResponseEntityExceptionHandler extends ResponseEntityExce
             case Forbidden e -> HttpStatus.FORBIDDEN;
             case PermissionError e -> HttpStatus.FORBIDDEN;
             case Unauthorized e -> HttpStatus.UNAUTHORIZED;
+            case ServiceUnavailable e -> HttpStatus.SERVICE_UNAVAILABLE;
             default -> HttpStatus.INTERNAL_SERVER_ERROR;
         };
 
@@ -1,6 +1,7 @@
 package edu.ualberta.med.biobank.permission;
 
 import edu.ualberta.med.biobank.errors.AppError;
+import edu.ualberta.med.biobank.profiling.RequestProfile;
 import io.jbock.util.Either;
 
 /**
@@ -11,5 +12,13 @@ import io.jbock.util.Either;
  * @author jferland
  */
 public interface Permission {
-    public Either<AppError, Boolean> isAllowed();
+
+    /**
+     * Checks the permission, adding the time taken to the request's profile.
+     */
+    public default Either<AppError, Boolean> isAllowed() {
+        return RequestProfile.permission(this::check);
+    }
+
+    public Either<AppError, Boolean> check();
 }
@@ -19,7 +19,7 @@ public class ClinicReadPermission implements Permission {
     }
 
     @Override
-    public Either<AppError, Boolean> isAllowed() {
+    public Either<AppError, Boolean> check() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         ApplicationContext applicationContext = ApplicationContextProvider.getApplicationContext();
 
@@ -19,7 +19,7 @@ public class SiteReadPermission implements Permission {
     }
 
     @Override
-    public Either<AppError, Boolean> isAllowed() {
+    public Either<AppError, Boolean> check() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         ApplicationContext applicationContext = ApplicationContextProvider.getApplicationContext();
 
@@ -27,7 +27,7 @@ public class CollectionEventReadPermission implements Permission {
     }
 
     @Override
-    public Either<AppError, Boolean> isAllowed() {
+    public Either<AppError, Boolean> check() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         ApplicationContext applicationContext = ApplicationContextProvider.getApplicationContext();
 
@@ -0,0 +1,160 @@
+package edu.ualberta.med.biobank.profiling;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A {@link DataSource} whose connections add the statements they run, and the rows these return, to the
+ * {@link RequestProfile} of the thread running them. Statements run on threads without a profile are not
+ * measured.
+ */
+public class ProfilingDataSource extends DelegatingDataSource {
+
+    static final String UNKNOWN_SQL = "(unknown)";
+
+    public ProfilingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        var connection = super.getConnection();
+        return wrap(Connection.class, new ConnectionHandler(connection));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        var connection = super.getConnection(username, password);
+        return wrap(Connection.class, new ConnectionHandler(connection));
+    }
+
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        var loader = ProfilingDataSource.class.getClassLoader();
+        return type.cast(Proxy.newProxyInstance(loader, new Class<?>[] { type }, handler));
+    }
+
+    private abstract static class Handler implements InvocationHandler {
+
+        protected final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> handle(method, args);
+            };
+        }
+
+        abstract Object handle(Method method, Object[] args) throws Throwable;
+
+        protected Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static class ConnectionHandler extends Handler {
+
+        ConnectionHandler(Connection target) {
+            super(target);
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            var result = call(method, args);
+            if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                // prepareStatement and prepareCall take the SQL as their first argument, createStatement does not
+                var sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                return wrap(method.getReturnType(), new StatementHandler(result, sql));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler extends Handler {
+
+        private String sql;
+
+        StatementHandler(Object target, String sql) {
+            super(target);
+            this.sql = sql;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            var name = method.getName();
+            var profile = RequestProfile.current();
+            if (profile == null) {
+                return call(method, args);
+            }
+
+            if (name.startsWith("execute")) {
+                if (args != null && args.length > 0 && args[0] instanceof String s) {
+                    sql = s;
+                }
+                var start = System.nanoTime();
+                try {
+                    return resultSet(call(method, args));
+                } finally {
+                    profile.statementExecuted(sql(), System.nanoTime() - start);
+                }
+            }
+            if (name.equals("getResultSet")) {
+                return resultSet(call(method, args));
+            }
+            return call(method, args);
+        }
+
+        private Object resultSet(Object result) {
+            if (result instanceof ResultSet) {
+                return wrap(ResultSet.class, new ResultSetHandler(result, sql()));
+            }
+            return result;
+        }
+
+        private String sql() {
+            return sql == null ? UNKNOWN_SQL : sql;
+        }
+    }
+
+    private static class ResultSetHandler extends Handler {
+
+        private final String sql;
+
+        ResultSetHandler(Object target, String sql) {
+            super(target);
+            this.sql = sql;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            var profile = RequestProfile.current();
+            if (profile == null || !method.getName().equals("next")) {
+                return call(method, args);
+            }
+
+            var start = System.nanoTime();
+            var result = call(method, args);
+            if (Boolean.TRUE.equals(result)) {
+                profile.rowFetched(sql, System.nanoTime() - start);
+            }
+            return result;
+        }
+    }
+}
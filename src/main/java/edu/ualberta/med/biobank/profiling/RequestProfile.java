@@ -0,0 +1,231 @@
+package edu.ualberta.med.biobank.profiling;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Where the time handling a request went: the SQL statements it ran, the rows they returned, and the time spent
+ * running them, checking permissions, and building and writing the response.
+ *
+ * A profile is attached to the thread handling the request by {@link RequestProfileFilter}, and the connections
+ * from {@link ProfilingDataSource} add the statements run on that thread. Work done on other threads, such as
+ * writing audit log records, is not included.
+ *
+ * The phases are:
+ *
+ * <ul>
+ *   <li>database: running statements and reading their rows,
+ *   <li>permission: {@link edu.ualberta.med.biobank.permission.Permission#isAllowed()}, including the statements it
+ *       runs,
+ *   <li>assembly: everything else done before the response body is written, mostly building the DTOs,
+ *   <li>serialization: writing the response body, less the statements run meanwhile.
+ * </ul>
+ */
+public final class RequestProfile {
+
+    public record QueryStats(String sql, int count, long rows, Duration time) {}
+
+    private static final class Query {
+
+        private int count;
+
+        private long rows;
+
+        private long nanos;
+    }
+
+    // statements are grouped by their SQL, past this many different statements the rest are grouped together
+    static final int MAX_QUERIES = 200;
+
+    static final String OTHER_QUERIES = "(other statements)";
+
+    private static final ThreadLocal<RequestProfile> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Query> queries = new LinkedHashMap<>();
+
+    private long endNanos;
+
+    private long bodyNanos;
+
+    private long dbNanos;
+
+    private long dbNanosBeforeBody;
+
+    private long permissionNanos;
+
+    private long permissionDbNanos;
+
+    private boolean inPermission;
+
+    private int statements;
+
+    private long rows;
+
+    private RequestProfile() {}
+
+    /**
+     * Starts a profile and attaches it to the current thread.
+     */
+    public static RequestProfile start() {
+        var profile = new RequestProfile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    /**
+     * The profile attached to the current thread, or null when the thread is not handling a request.
+     */
+    public static RequestProfile current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stops the profile and detaches it from the current thread.
+     */
+    public void finish() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+        if (endNanos == 0) {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Runs a permission check, adding the time it takes to the current profile.
+     */
+    public static <T> T permission(Supplier<T> check) {
+        var profile = CURRENT.get();
+        if (profile == null || profile.inPermission) {
+            return check.get();
+        }
+
+        profile.inPermission = true;
+        var start = System.nanoTime();
+        var dbStart = profile.dbNanos;
+        try {
+            return check.get();
+        } finally {
+            profile.inPermission = false;
+            profile.permissionNanos += System.nanoTime() - start;
+            profile.permissionDbNanos += profile.dbNanos - dbStart;
+        }
+    }
+
+    void statementExecuted(String sql, long nanos) {
+        statements++;
+        dbNanos += nanos;
+        var query = query(sql);
+        query.count++;
+        query.nanos += nanos;
+    }
+
+    void rowFetched(String sql, long nanos) {
+        rows++;
+        dbNanos += nanos;
+        var query = query(sql);
+        query.rows++;
+        query.nanos += nanos;
+    }
+
+    /**
+     * Marks the start of the response body, anything done after this is counted as serialization.
+     */
+    void bodyStarted() {
+        if (bodyNanos == 0) {
+            bodyNanos = System.nanoTime();
+            dbNanosBeforeBody = dbNanos;
+        }
+    }
+
+    public int statements() {
+        return statements;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public Duration total() {
+        return Duration.ofNanos(end() - startNanos);
+    }
+
+    public Duration database() {
+        return Duration.ofNanos(dbNanos);
+    }
+
+    public Duration permission() {
+        return Duration.ofNanos(permissionNanos);
+    }
+
+    public Duration assembly() {
+        var until = bodyNanos == 0 ? end() : bodyNanos;
+        var db = bodyNanos == 0 ? dbNanos : dbNanosBeforeBody;
+        var nanos = until - startNanos - db - (permissionNanos - permissionDbNanos);
+        return Duration.ofNanos(Math.max(0, nanos));
+    }
+
+    public Duration serialization() {
+        if (bodyNanos == 0) {
+            return Duration.ZERO;
+        }
+        var nanos = end() - bodyNanos - (dbNanos - dbNanosBeforeBody);
+        return Duration.ofNanos(Math.max(0, nanos));
+    }
+
+    /**
+     * The statements run so far, grouped by their SQL, the slowest first.
+     */
+    public List<QueryStats> queries() {
+        var result = new ArrayList<QueryStats>(queries.size());
+        queries.forEach((sql, query) ->
+            result.add(new QueryStats(sql, query.count, query.rows, Duration.ofNanos(query.nanos)))
+        );
+        result.sort(Comparator.comparing(QueryStats::time).reversed());
+        return result;
+    }
+
+    /**
+     * The value of a {@code Server-Timing} header for the phases so far. Serialization is only included once the
+     * profile has finished, the header is usually sent before the body is written.
+     */
+    public String serverTiming() {
+        var timings = new ArrayList<String>();
+        timings.add("db;dur=%s;desc=\"%d statements, %d rows\"".formatted(millis(database()), statements, rows));
+        timings.add("perm;dur=%s".formatted(millis(permission())));
+        timings.add("app;dur=%s".formatted(millis(assembly())));
+        if (endNanos != 0 && bodyNanos != 0) {
+            timings.add("ser;dur=%s".formatted(millis(serialization())));
+        }
+        timings.add("total;dur=%s".formatted(millis(total())));
+        return String.join(", ", timings);
+    }
+
+    static String millis(Duration duration) {
+        return String.format(Locale.ROOT, "%.1f", duration.toNanos() / 1_000_000.0);
+    }
+
+    private long end() {
+        return endNanos == 0 ? System.nanoTime() : endNanos;
+    }
+
+    private Query query(String sql) {
+        var query = queries.get(sql);
+        if (query == null) {
+            if (queries.size() >= MAX_QUERIES) {
+                return queries.computeIfAbsent(OTHER_QUERIES, key -> new Query());
+            }
+            query = new Query();
+            queries.put(sql, query);
+        }
+        return query;
+    }
+}
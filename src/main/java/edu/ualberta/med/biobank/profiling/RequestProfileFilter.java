@@ -0,0 +1,236 @@
+package edu.ualberta.med.biobank.profiling;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Profiles every request, see {@link RequestProfile}, and reports where its time went:
+ *
+ * <ul>
+ *   <li>in a {@code Server-Timing} response header, added when the response body is started, if
+ *       {@code biobank.request-profile.server-timing} is set,
+ *   <li>in the {@code biobank.request.phases} timers and the {@code biobank.request.statements} and
+ *       {@code biobank.request.rows} summaries, tagged with the endpoint's path pattern,
+ *   <li>in a log line listing the slowest statements, for requests slower than
+ *       {@code biobank.request-profile.slow-request-ms}.
+ * </ul>
+ *
+ * The profile is also kept in the {@link #PROFILE_ATTRIBUTE} request attribute. For asynchronous requests, such as
+ * streamed catalogues, only the work done before the request is handed off is profiled.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RequestProfileFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestProfileFilter.class);
+
+    public static final String PROFILE_ATTRIBUTE = RequestProfile.class.getName();
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final int SLOW_REQUEST_QUERIES = 5;
+
+    private static final int SLOW_REQUEST_SQL_LENGTH = 300;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final boolean serverTiming;
+
+    private final Duration slowRequest;
+
+    public RequestProfileFilter(
+        MeterRegistry meterRegistry,
+        @Value("${biobank.request-profile.enabled:true}") boolean enabled,
+        @Value("${biobank.request-profile.server-timing:false}") boolean serverTiming,
+        @Value("${biobank.request-profile.slow-request-ms:1000}") long slowRequestMs
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.serverTiming = serverTiming;
+        this.slowRequest = Duration.ofMillis(slowRequestMs);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        var profile = RequestProfile.start();
+        var profiledResponse = new ProfiledResponse(response, profile);
+        request.setAttribute(PROFILE_ATTRIBUTE, profile);
+
+        try {
+            filterChain.doFilter(request, profiledResponse);
+        } finally {
+            profile.finish();
+            profiledResponse.addServerTiming();
+            record(request, response, profile);
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, RequestProfile profile) {
+        var endpoint = endpoint(request);
+        var tags = Tags.of("method", request.getMethod(), "endpoint", endpoint);
+
+        phaseTimer(tags, "database").record(profile.database());
+        phaseTimer(tags, "permission").record(profile.permission());
+        phaseTimer(tags, "assembly").record(profile.assembly());
+        phaseTimer(tags, "serialization").record(profile.serialization());
+        DistributionSummary.builder("biobank.request.statements")
+            .description("SQL statements run by a request")
+            .tags(tags)
+            .register(meterRegistry)
+            .record(profile.statements());
+        DistributionSummary.builder("biobank.request.rows")
+            .description("rows read by a request")
+            .tags(tags)
+            .register(meterRegistry)
+            .record(profile.rows());
+
+        if (profile.total().compareTo(slowRequest) >= 0) {
+            logger.warn(
+                "slow request: method={} endpoint={} uri={} status={} total_ms={} db_ms={} permission_ms={} "
+                    + "assembly_ms={} serialization_ms={} statements={} rows={} top_queries=[{}]",
+                request.getMethod(),
+                endpoint,
+                request.getRequestURI(),
+                response.getStatus(),
+                RequestProfile.millis(profile.total()),
+                RequestProfile.millis(profile.database()),
+                RequestProfile.millis(profile.permission()),
+                RequestProfile.millis(profile.assembly()),
+                RequestProfile.millis(profile.serialization()),
+                profile.statements(),
+                profile.rows(),
+                topQueries(profile)
+            );
+        }
+    }
+
+    /**
+     * The path pattern of the controller method that handled the request, the URI itself would give each patient its
+     * own timer.
+     */
+    private static String endpoint(HttpServletRequest request) {
+        var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? "UNKNOWN" : pattern.toString();
+    }
+
+    private Timer phaseTimer(Tags tags, String phase) {
+        return Timer.builder("biobank.request.phases")
+            .description("time spent by requests in each phase")
+            .tags(tags)
+            .tag("phase", phase)
+            .register(meterRegistry);
+    }
+
+    private static String topQueries(RequestProfile profile) {
+        return profile
+            .queries()
+            .stream()
+            .limit(SLOW_REQUEST_QUERIES)
+            .map(query ->
+                "{count=%d rows=%d ms=%s sql=\"%s\"}".formatted(
+                    query.count(),
+                    query.rows(),
+                    RequestProfile.millis(query.time()),
+                    abbreviate(query.sql())
+                )
+            )
+            .collect(Collectors.joining(", "));
+    }
+
+    private static String abbreviate(String sql) {
+        var line = sql.replaceAll("\\s+", " ").strip().replace("\"", "'");
+        return line.length() <= SLOW_REQUEST_SQL_LENGTH ? line : line.substring(0, SLOW_REQUEST_SQL_LENGTH) + "...";
+    }
+
+    /**
+     * Adds the {@code Server-Timing} header before the response is committed, headers cannot be added after, and
+     * marks the start of the body in the profile.
+     */
+    private class ProfiledResponse extends HttpServletResponseWrapper {
+
+        private final RequestProfile profile;
+
+        private boolean serverTimingAdded;
+
+        ProfiledResponse(HttpServletResponse response, RequestProfile profile) {
+            super(response);
+            this.profile = profile;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            bodyStarted();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            bodyStarted();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addServerTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addServerTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addServerTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addServerTiming();
+            super.sendRedirect(location);
+        }
+
+        private void bodyStarted() {
+            profile.bodyStarted();
+            addServerTiming();
+        }
+
+        void addServerTiming() {
+            if (serverTiming && !serverTimingAdded && !isCommitted()) {
+                serverTimingAdded = true;
+                setHeader(SERVER_TIMING_HEADER, profile.serverTiming());
+            }
+        }
+    }
+}
@@ -1,29 +1,44 @@
 package edu.ualberta.med.biobank.repositories;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import edu.ualberta.med.biobank.domain.CollectionEvent;
+import jakarta.transaction.Transactional;
 
 @Repository
 public interface CollectionEventRepository
     extends JpaRepository<CollectionEvent, Integer>, JpaSpecificationExecutor<CollectionEvent> {
+    /**
+     * The specimen count and first specimen time are read from the collection event's summary. Events without a
+     * summary, created outside this application, have them computed instead until the summaries are repaired.
+     * Aliquots are always counted, since they are added by the legacy client.
+     */
     @Query(
         value = """
         select
             ce.id,
             ce.visit_number as visitNumber,
             ce.ACTIVITY_STATUS_ID,
-            COUNT(distinct ospc.id) as specimenCount,
-            COUNT(distinct aspc.id) - COUNT(distinct ospc.id) as aliquotCount,
-            MIN(ospc.created_at) as createdAt
+            coalesce(
+                ces.SPECIMEN_COUNT,
+                (select count(*) from specimen spc where spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID)
+            ) as specimenCount,
+            (select count(*) from specimen spc where spc.COLLECTION_EVENT_ID = ce.ID)
+            - (select count(*) from specimen spc where spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID) as aliquotCount,
+            if(
+                ces.COLLECTION_EVENT_ID is null,
+                (select min(spc.CREATED_AT) from specimen spc where spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID),
+                ces.FIRST_SPECIMEN_AT
+            ) as createdAt
         from collection_event ce
-        left join specimen ospc on ospc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID
-        left join specimen aspc on aspc.COLLECTION_EVENT_ID = ce.ID
+        left join COLLECTION_EVENT_SUMMARY ces on ces.COLLECTION_EVENT_ID = ce.ID
         where ce.PATIENT_ID in (select id from patient p where p.pnumber = :pnumber)
-        group by ce.id
         order by ce.visit_number
         """,
         nativeQuery = true
@@ -40,16 +55,57 @@ public interface CollectionEventRepository
             p.pnumber as patientNumber,
             study.id as studyId,
             study.name_short as studyNameShort,
+            coalesce(
+                ces.COMMENT_COUNT,
+                (select count(*) from collection_event_comment cec where cec.COLLECTION_EVENT_ID=ce.id)
+            ) as commentCount
+        from collection_event ce
+        join patient p on p.id = ce.patient_id
+        join study on study.id = p.study_id
+        left join COLLECTION_EVENT_SUMMARY ces on ces.COLLECTION_EVENT_ID = ce.ID
+        where
+            p.pnumber = :pnumber
+            and ce.visit_number = :vnumber
+        """,
+        nativeQuery = true
+    )
+    public <T> Collection<T> findByPatientAndVnumber(String pnumber, Integer vnumber, Class<T> type);
+
+    /**
+     * Returns one row for each of the study's event attributes, with the value it has for the collection
+     * event, if any.
+     */
+    @Query(
+        value = """
+        select
             sea.id as attributeId,
             eat.NAME attributeType,
             gea.LABEL attributeLabel,
-            ea.VALUE attributeValue,
-            if(spc.ORIGINAL_COLLECTION_EVENT_ID = ce.id,1,0 ) as isSourceSpecimen,
+            ea.VALUE attributeValue
+        from study_event_attr sea
+        left join global_event_attr gea on gea.id = sea.GLOBAL_EVENT_ATTR_ID
+        left join event_attr_type eat on eat.ID = gea.EVENT_ATTR_TYPE_ID
+        left join event_attr ea on ea.STUDY_EVENT_ATTR_ID = sea.ID and ea.COLLECTION_EVENT_ID = :ceventId
+        where sea.STUDY_ID = :studyId
+        order by sea.id
+        """,
+        nativeQuery = true
+    )
+    public <T> Collection<T> annotations(Integer ceventId, Integer studyId, Class<T> type);
+
+    /**
+     * Returns one row for each specimen collected in the collection event. Aliquots are not included.
+     */
+    @Query(
+        value = """
+        select
             spc.id specimenId,
             spc.INVENTORY_ID as specimenInventoryId,
             spc.CREATED_AT specimenCreatedAt,
             spc.QUANTITY as specimenQuantity,
             spc.ACTIVITY_STATUS_ID as specimenActivityStatusId,
+            p.pnumber as patientNumber,
+            ce.visit_number as visitNumber,
             st.id as specimenTypeId,
             st.NAME_SHORT as specimenTypeNameShort,
             oi.CENTER_ID as originCenterId,
@@ -59,34 +115,27 @@ public interface CollectionEventRepository
             concat(container.label, "|", spos.POSITION_STRING, " (", top_container_type.NAME_SHORT, ")") as `position`,
             pe.ID processingEventId,
             pe.WORKSHEET as worksheet,
-            if( spccmt.SPECIMEN_ID != null,1,0 ) hasSpecimenComments,
-            (select count(*) from collection_event_comment cec where cec.COLLECTION_EVENT_ID=ce.id) as commentCount
-        from collection_event ce
-        left join specimen spc on spc.COLLECTION_EVENT_ID = ce.ID
-        left join patient p on p.id = ce.patient_id
-        left join study on study.id = p.study_id
-        left join study_event_attr sea on sea.STUDY_ID= study.ID
-        left join global_event_attr gea on gea.id = sea.GLOBAL_EVENT_ATTR_ID
-        left join event_attr ea on ea.STUDY_EVENT_ATTR_ID = sea.ID and ea.COLLECTION_EVENT_ID=ce.id
-        left join event_attr_type eat on eat.ID = gea.EVENT_ATTR_TYPE_ID
+            if(exists(select 1 from specimen_comment spccmt where spccmt.SPECIMEN_ID = spc.ID),1,0) hasSpecimenComments
+        from specimen spc
+        join collection_event ce on ce.id = spc.COLLECTION_EVENT_ID
+        join patient p on p.id = ce.patient_id
         left join specimen_type st on st.ID = spc.SPECIMEN_TYPE_ID
         left join origin_info oi on oi.ID = spc.ORIGIN_INFO_ID
         left join center c on c.id = oi.CENTER_ID
         left join center cc on cc.id = spc.CURRENT_CENTER_ID
-        left join specimen_comment spccmt on spccmt.SPECIMEN_ID = spc.ID
         left join specimen_position spos on spos.SPECIMEN_ID = spc.id
         left join container on container.id = spos.CONTAINER_ID
         left join container top_container on top_container.id = container.TOP_CONTAINER_ID
         left join container_type top_container_type on top_container_type.id = top_container.CONTAINER_TYPE_ID
         left join processing_event pe on pe.id = spc.PROCESSING_EVENT_ID
         where
-            p.pnumber = :pnumber
-            and ce.visit_number = :vnumber
-        order by spc.CREATED_AT
+            spc.COLLECTION_EVENT_ID = :ceventId
+            and spc.ORIGINAL_COLLECTION_EVENT_ID = :ceventId
+        order by spc.CREATED_AT, spc.id
         """,
         nativeQuery = true
     )
-    public <T> Collection<T> findByPatientAndVnumber(String pnumber, Integer vnumber, Class<T> type);
+    public <T> Collection<T> sourceSpecimens(Integer ceventId, Class<T> type);
 
     @Query(
         value = """
@@ -108,4 +157,127 @@ public interface CollectionEventRepository
         nativeQuery = true
     )
     public <T> Collection<T> comments(String pnumber, Integer vnumber, Class<T> type);
+
+    @Modifying
+    @Query(
+        value = "insert into COLLECTION_EVENT_SUMMARY (COLLECTION_EVENT_ID) values (:ceventId)",
+        nativeQuery = true
+    )
+    void createSummary(Integer ceventId);
+
+    @Modifying
+    @Query(value = "delete from COLLECTION_EVENT_SUMMARY where COLLECTION_EVENT_ID = :ceventId", nativeQuery = true)
+    void deleteSummary(Integer ceventId);
+
+    /**
+     * Adds to the specimen count of the collection event's summary, and moves its first specimen time back to
+     * {@code createdAt} when that is earlier. Does nothing when the collection event has no summary.
+     */
+    @Modifying
+    @Query(
+        value = """
+        update COLLECTION_EVENT_SUMMARY
+        set
+            SPECIMEN_COUNT = SPECIMEN_COUNT + :specimens,
+            FIRST_SPECIMEN_AT = least(coalesce(FIRST_SPECIMEN_AT, :createdAt), :createdAt)
+        where COLLECTION_EVENT_ID = :ceventId
+        """,
+        nativeQuery = true
+    )
+    int addSpecimensToSummary(Integer ceventId, long specimens, Date createdAt);
+
+    /**
+     * Adds to the comment count of the collection event's summary. Does nothing when the collection event has no
+     * summary.
+     */
+    @Modifying
+    @Query(
+        value = """
+        update COLLECTION_EVENT_SUMMARY
+        set COMMENT_COUNT = COMMENT_COUNT + :comments
+        where COLLECTION_EVENT_ID = :ceventId
+        """,
+        nativeQuery = true
+    )
+    int addCommentsToSummary(Integer ceventId, long comments);
+
+    @Query(value = "select ID from collection_event where ID > :afterId order by ID limit :limit", nativeQuery = true)
+    List<Integer> findIdsAfter(Integer afterId, int limit);
+
+    /**
+     * Returns the collection events, out of {@code ids}, whose summary is missing or differs from the specimens
+     * and comments in the database.
+     */
+    @Query(
+        value = """
+        select id
+        from (
+            select
+                ce.ID id,
+                ces.COLLECTION_EVENT_ID summary_id,
+                ces.SPECIMEN_COUNT specimen_count,
+                ces.COMMENT_COUNT comment_count,
+                ces.FIRST_SPECIMEN_AT first_specimen_at,
+                (select count(*) from specimen spc where spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID) specimens,
+                (select count(*) from collection_event_comment cec where cec.COLLECTION_EVENT_ID = ce.ID) comments,
+                (select min(spc.CREATED_AT) from specimen spc where spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID)
+                    first_created_at
+            from collection_event ce
+            left join COLLECTION_EVENT_SUMMARY ces on ces.COLLECTION_EVENT_ID = ce.ID
+            where ce.ID in (:ids)
+        ) counts
+        where
+            summary_id is null
+            or specimen_count <> specimens
+            or comment_count <> comments
+            or not (first_specimen_at <=> first_created_at)
+        """,
+        nativeQuery = true
+    )
+    List<Integer> findDriftedSummaries(Collection<Integer> ids);
+
+    /**
+     * Counts the specimens and comments of the collection events again, and creates or replaces their summaries.
+     */
+    @Modifying
+    @Transactional
+    @Query(
+        value = """
+        insert into COLLECTION_EVENT_SUMMARY
+            (COLLECTION_EVENT_ID, SPECIMEN_COUNT, COMMENT_COUNT, FIRST_SPECIMEN_AT)
+        select id, specimens, comments, first_created_at
+        from (
+            select
+                ce.ID id,
+                (select count(*) from specimen spc where spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID) specimens,
+                (select count(*) from collection_event_comment cec where cec.COLLECTION_EVENT_ID = ce.ID) comments,
+                (select min(spc.CREATED_AT) from specimen spc where spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID)
+                    first_created_at
+            from collection_event ce
+            where ce.ID in (:ids)
+        ) counts
+        on duplicate key update
+            SPECIMEN_COUNT = values(SPECIMEN_COUNT),
+            COMMENT_COUNT = values(COMMENT_COUNT),
+            FIRST_SPECIMEN_AT = values(FIRST_SPECIMEN_AT)
+        """,
+        nativeQuery = true
+    )
+    int recomputeSummaries(Collection<Integer> ids);
+
+    /**
+     * Deletes the summaries of collection events that no longer exist.
+     */
+    @Modifying
+    @Transactional
+    @Query(
+        value = """
+        delete ces
+        from COLLECTION_EVENT_SUMMARY ces
+        left join collection_event ce on ce.ID = ces.COLLECTION_EVENT_ID
+        where ce.ID is null
+        """,
+        nativeQuery = true
+    )
+    int deleteOrphanSummaries();
 }
@@ -0,0 +1,185 @@
+package edu.ualberta.med.biobank.repositories;
+
+import edu.ualberta.med.biobank.domain.LogCursor;
+import edu.ualberta.med.biobank.domain.LogFilter;
+import edu.ualberta.med.biobank.dtos.LoggingDTO;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Lists LOG entries a page at a time, continuing from the last entry of the previous page (keyset pagination).
+ *
+ * Unlike offset pagination, the cost of a page does not depend on how deep it is and the table is not counted.
+ * Entries are filtered on columns covered by the {@code log_*_ndx} indexes where possible: the patient number,
+ * the inventory ID and the creation time. Filters on the user name or the action are applied while the entries
+ * are read in order, and stop as soon as the page is full.
+ */
+@Repository
+public class CustomLogRepository {
+
+    private static final String SELECT_SQL =
+        """
+        select
+            log.ID id,
+            log.USERNAME username,
+            log.CREATED_AT createdAt,
+            log.CENTER center,
+            log.ACTION action,
+            log.PATIENT_NUMBER patientNumber,
+            log.INVENTORY_ID inventoryId,
+            log.LOCATION_LABEL locationLabel,
+            log.DETAILS details,
+            log.TYPE type
+        from log
+        """;
+
+    // same as "(log.CREATED_AT, log.ID) < (?, ?)", but MariaDB does not read a range of an index for a row
+    // comparison, it would scan log_created_at_ndx from the newest entry on every page
+    //
+    // entries without a creation time are sorted last by "created_at desc", they are not matched by this seek and
+    // are read with NULL_TAIL_SQL once the entries with a creation time have all been read
+    static final String BEFORE_SQL = "(log.CREATED_AT < ? or (log.CREATED_AT = ? and log.ID < ?))";
+
+    static final String BEFORE_NULL_SQL = "(log.CREATED_AT is null and log.ID < ?)";
+
+    static final String NULL_TAIL_SQL = "log.CREATED_AT is null";
+
+    static final String NEWEST_FIRST = "order by log.CREATED_AT desc, log.ID desc";
+
+    static final String NULL_TAIL_ORDER = "order by log.ID desc";
+
+    private static final String ESTIMATED_TABLE_ROWS_SQL =
+        "select TABLE_ROWS from information_schema.TABLES where TABLE_SCHEMA = database() and TABLE_NAME = 'log'";
+
+    // same as "spring.jpa.properties.hibernate.jdbc.time_zone" in application.properties
+    private static final TimeZone DB_TIME_ZONE = TimeZone.getTimeZone("UTC");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CustomLogRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns up to {@code limit} entries matching {@code filter}, continuing from {@code cursor}, or starting
+     * with the newest entry when {@code cursor} is null.
+     */
+    public List<LoggingDTO> findPage(LogFilter filter, LogCursor cursor, int limit) {
+        if (cursor != null && cursor.direction() == LogCursor.Direction.AFTER) {
+            return query(filter, "log.ID > ?", List.of(cursor.id()), "order by log.ID asc", limit);
+        }
+        if (cursor == null) {
+            return query(filter, null, List.of(), NEWEST_FIRST, limit);
+        }
+        if (cursor.createdAt() == null) {
+            return query(filter, BEFORE_NULL_SQL, List.of(cursor.id()), NEWEST_FIRST, limit);
+        }
+
+        var seekParams = List.of(cursor.createdAt(), cursor.createdAt(), cursor.id());
+        var page = query(filter, BEFORE_SQL, seekParams, NEWEST_FIRST, limit);
+        if (page.size() < limit && filter.from() == null && filter.to() == null) {
+            page = new ArrayList<>(page);
+            page.addAll(query(filter, NULL_TAIL_SQL, List.of(), NULL_TAIL_ORDER, limit - page.size()));
+        }
+        return page;
+    }
+
+    private List<LoggingDTO> query(LogFilter filter, String seek, List<?> seekParams, String order, int limit) {
+        var conditions = new ArrayList<String>();
+        var params = new ArrayList<Object>();
+        addFilter(filter, conditions, params);
+        if (seek != null) {
+            conditions.add(seek);
+            params.addAll(seekParams);
+        }
+        params.add(limit);
+
+        return jdbcTemplate.query(pageSql(conditions, order), setter(params), (rs, rowNum) -> fromResultSet(rs));
+    }
+
+    /**
+     * The query for a page of entries matching all of {@code conditions}, its last parameter is the page size.
+     */
+    static String pageSql(List<String> conditions, String order) {
+        return SELECT_SQL + where(conditions) + order + " limit ?";
+    }
+
+    /**
+     * Returns an estimate of the number of entries matching {@code filter}, without reading them. The estimate
+     * comes from the table's statistics, and for a filter, from the number of rows the optimizer expects to read.
+     */
+    public long estimateCount(LogFilter filter) {
+        if (filter.isEmpty()) {
+            Long rows = jdbcTemplate.queryForObject(ESTIMATED_TABLE_ROWS_SQL, Long.class);
+            return rows == null ? 0 : rows;
+        }
+
+        var conditions = new ArrayList<String>();
+        var params = new ArrayList<Object>();
+        addFilter(filter, conditions, params);
+        Long rows = jdbcTemplate.query(
+            "explain select 1 from log " + where(conditions),
+            setter(params),
+            rs -> rs.next() ? rs.getLong("rows") : 0L
+        );
+        return rows == null ? 0 : rows;
+    }
+
+    private static void addFilter(LogFilter filter, List<String> conditions, List<Object> params) {
+        addCondition("log.USERNAME = ?", filter.username(), conditions, params);
+        addCondition("log.PATIENT_NUMBER = ?", filter.patientNumber(), conditions, params);
+        addCondition("log.INVENTORY_ID = ?", filter.inventoryId(), conditions, params);
+        addCondition("log.ACTION = ?", filter.action(), conditions, params);
+        addCondition("log.CREATED_AT >= ?", filter.from(), conditions, params);
+        addCondition("log.CREATED_AT < ?", filter.to(), conditions, params);
+    }
+
+    private static void addCondition(String condition, Object value, List<String> conditions, List<Object> params) {
+        if (value != null) {
+            conditions.add(condition);
+            params.add(value);
+        }
+    }
+
+    private static String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : "where " + String.join(" and ", conditions) + "\n";
+    }
+
+    private static PreparedStatementSetter setter(List<Object> params) {
+        return (PreparedStatement statement) -> {
+            for (int i = 0; i < params.size(); i++) {
+                if (params.get(i) instanceof Date date) {
+                    statement.setTimestamp(i + 1, new Timestamp(date.getTime()), Calendar.getInstance(DB_TIME_ZONE));
+                } else {
+                    statement.setObject(i + 1, params.get(i));
+                }
+            }
+        };
+    }
+
+    private static LoggingDTO fromResultSet(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("createdAt", Calendar.getInstance(DB_TIME_ZONE));
+        return new LoggingDTO(
+            rs.getInt("id"),
+            createdAt == null ? null : new Date(createdAt.getTime()),
+            rs.getString("username"),
+            rs.getString("center"),
+            rs.getString("action"),
+            rs.getString("patientNumber"),
+            rs.getString("inventoryId"),
+            rs.getString("locationLabel"),
+            rs.getString("details"),
+            rs.getString("type")
+        );
+    }
+}
@@ -1,10 +1,23 @@
 package edu.ualberta.med.biobank.repositories;
 
 import edu.ualberta.med.biobank.domain.SpecimenPull;
+import edu.ualberta.med.biobank.domain.SpecimenRequest;
 import edu.ualberta.med.biobank.domain.Status;
-import java.util.Date;
+import edu.ualberta.med.biobank.dtos.AliquotDTO;
+import edu.ualberta.med.biobank.util.CancellationToken;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
@@ -13,32 +26,170 @@ public class CustomSpecimenRepository {
 
     private JdbcTemplate jdbcTemplate;
 
+    /**
+     * Selects the pull choices for a batch of requests. The requests are joined as a derived table built from
+     * {@link #PULL_REQUEST_ROW_SQL}, one for each request, so that a single query serves the whole batch.
+     *
+     * A specimen matches when its top specimen was created on the day drawn, the day before or the day after.
+     * This is the same as {@code abs(datediff(stop.created_at, date_drawn)) <= 1}, but written as a range on
+     * {@code created_at} so that the database can use an index.
+     */
     private static final String PULL_CHOICES_SQL =
         """
         select
+           req.request_index,
            p.pnumber,
            s.inventory_id,
            stop.created_at date_drawn,
            concat(ct.label, sp.position_string) location,
            styp.name_short specimen_type,
            s.activity_status_id status_id
-        from specimen s
-           left join collection_event ce on ce.id = s.collection_event_id
-           left join patient p on p.id = ce.patient_id
-           left join specimen stop on stop.id = s.top_specimen_id
-           left join specimen_type styp on styp.id = s.specimen_type_id
-           left join specimen_position sp on sp.specimen_id = s.id
-           left join container ct on ct.id = sp.container_id
-        where ct.label not like "SS%"
-           and p.pnumber = ?
-           and abs(datediff(stop.created_at, ?)) <= 1
-           and styp.name_short = ?
+        from (%s) req
+           join patient p on p.pnumber = req.pnumber
+           join collection_event ce on ce.patient_id = p.id
+           join specimen s on s.collection_event_id = ce.id
+           join specimen stop on stop.id = s.top_specimen_id
+           join specimen_type styp on styp.id = s.specimen_type_id and styp.name_short = req.specimen_type
+           join specimen_position sp on sp.specimen_id = s.id
+           join container ct on ct.id = sp.container_id
+        where ct.label not like "SS%%"
+           and stop.created_at >= req.day_drawn - interval 1 day
+           and stop.created_at < req.day_drawn + interval 2 day
            and s.activity_status_id != 2
         order by
+           req.request_index,
            s.activity_status_id,
-           rand()
+           s.inventory_id
         """;
 
+    private static final String PULL_REQUEST_ROW_SQL =
+        "select ? request_index, ? pnumber, date(?) day_drawn, ? specimen_type";
+
+    /**
+     * The maximum number of requests resolved by a single query.
+     */
+    private static final int PULL_CHOICES_BATCH_SIZE = 500;
+
+    private static final String CATALOGUE_FROM_SQL =
+        """
+        from
+          specimen spc
+          left join specimen pspc on pspc.id = spc.parent_specimen_id
+          join specimen_type stype on stype.id = spc.specimen_type_id
+          join collection_event ce on ce.id = spc.collection_event_id
+          left join processing_event pe on pe.id = pspc.processing_event_id
+          join patient pt on pt.id = ce.patient_id
+          join study on study.id = pt.study_id
+          join center on center.id = spc.current_center_id
+          join site_study on site_study.study_id = study.id
+          join center site on site.id = site_study.site_id
+          left join specimen_position spos on spos.specimen_id = spc.id
+          left join container cntr on cntr.id = spos.container_id
+          left join container top_cntr on top_cntr.id = cntr.top_container_id
+          left join container_type top_cntr_type on top_cntr_type.id = top_cntr.container_type_id
+        where
+          study.name_short = ?
+          and top_cntr_type.name_short not like 'SS%'
+          and spc.activity_status_id = 1
+        """;
+
+    private static final String CATALOGUE_SELECT_SQL =
+        """
+        select
+          study.name_short study,
+          pt.pnumber pnumber,
+          spc.inventory_id,
+          spc.created_at,
+          pspc.created_at time_drawn,
+          spc.quantity,
+          center.name_short center,
+          ce.visit_number,
+          pe.worksheet worksheet,
+          pspc.inventory_id parent_inventory_id,
+          stype.name specimen_type,
+          top_cntr_type.name_short top_container,
+          cntr.label,
+          spos.position_string position
+        """;
+
+    private static final String CATALOGUE_ORDER_SQL =
+        """
+        order by
+          pt.pnumber,
+          ce.visit_number,
+          spc.inventory_id,
+          spc.created_at,
+          pspc.inventory_id,
+          stype.name
+        """;
+
+    static final String CATALOGUE_SQL = CATALOGUE_SELECT_SQL + CATALOGUE_FROM_SQL + CATALOGUE_ORDER_SQL;
+
+    /**
+     * Same as {@link #CATALOGUE_SQL} but only for the patients with a patient number in a range. The range's
+     * start is inclusive and its end is exclusive, a null end means the range is not bounded.
+     */
+    static final String CATALOGUE_RANGE_SQL =
+        CATALOGUE_SELECT_SQL +
+        CATALOGUE_FROM_SQL +
+        """
+          and pt.pnumber >= ?
+          and (? is null or pt.pnumber < ?)
+        """ +
+        CATALOGUE_ORDER_SQL;
+
+    /**
+     * Selects the patient numbers where each of {@code ?} partitions of the study's patients starts, in order.
+     * The partitions have about the same number of patients.
+     */
+    static final String CATALOGUE_PARTITIONS_SQL =
+        """
+        select pnumber
+        from (
+          select
+            pt.pnumber,
+            row_number() over (order by pt.pnumber) row_num,
+            count(*) over () patients
+          from patient pt
+          join study on study.id = pt.study_id
+          where study.name_short = ?
+        ) p
+        where mod(row_num - 1, ceil(patients / ?)) = 0
+        order by pnumber
+        """;
+
+    static final String CATALOGUE_COUNT_SQL = "select count(distinct spc.id) " + CATALOGUE_FROM_SQL;
+
+    /**
+     * Selects values that change whenever a specimen of the study, or its position, is added, changed or
+     * removed. Versions only increase, so their sum changes when any row is updated.
+     */
+    static final String CATALOGUE_FINGERPRINT_SQL =
+        """
+        select
+          concat_ws('.',
+            count(spc.id),
+            coalesce(max(spc.id), 0),
+            coalesce(sum(spc.version), 0),
+            count(spos.id),
+            coalesce(max(spos.id), 0),
+            coalesce(sum(spos.version), 0)
+          )
+        from
+          specimen spc
+          join collection_event ce on ce.id = spc.collection_event_id
+          join patient pt on pt.id = ce.patient_id
+          join study on study.id = pt.study_id
+          left join specimen_position spos on spos.specimen_id = spc.id
+        where
+          study.name_short = ?
+        """;
+
+    /**
+     * The number of rows the database driver holds in memory while streaming the catalogue.
+     */
+    private static final int CATALOGUE_FETCH_SIZE = 1000;
+
     RowMapper<SpecimenPull> pullChoiceRowMapper = (rs, rowNum) -> {
         return new SpecimenPull(
             rs.getString("pnumber"),
@@ -50,11 +201,180 @@ public class CustomSpecimenRepository {
         );
     };
 
+    RowMapper<AliquotDTO> aliquotRowMapper = (rs, rowNum) -> {
+        return new AliquotDTO(
+            rs.getString("study"),
+            rs.getString("pnumber"),
+            rs.getInt("visit_number"),
+            rs.getString("inventory_id"),
+            rs.getString("specimen_type"),
+            rs.getTimestamp("time_drawn"),
+            rs.getBigDecimal("quantity"),
+            rs.getString("center"),
+            rs.getString("top_container")
+        );
+    };
+
     public CustomSpecimenRepository(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public List<SpecimenPull> pullChoices(String pnumber, Date dateDrawn, String specimenType) {
-        return jdbcTemplate.query(PULL_CHOICES_SQL, pullChoiceRowMapper, pnumber, dateDrawn, specimenType);
+    /**
+     * Returns the specimens that can be pulled for each request, keyed by the request's index in
+     * {@code requests}. The choices for a request are ordered by activity status, and then by inventory ID.
+     * Requests without any choices are not present in the map.
+     */
+    public Map<Integer, List<SpecimenPull>> pullChoices(List<SpecimenRequest> requests) {
+        Map<Integer, List<SpecimenPull>> choices = new HashMap<>();
+
+        for (int start = 0; start < requests.size(); start += PULL_CHOICES_BATCH_SIZE) {
+            var batch = requests.subList(start, Math.min(start + PULL_CHOICES_BATCH_SIZE, requests.size()));
+            var args = new ArrayList<Object>(batch.size() * 4);
+            for (int i = 0; i < batch.size(); i++) {
+                var request = batch.get(i);
+                args.add(start + i);
+                args.add(request.pnumber());
+                args.add(request.dateDrawn());
+                args.add(request.specimenType());
+            }
+
+            RowCallbackHandler handler = rs -> {
+                choices
+                    .computeIfAbsent(rs.getInt("request_index"), index -> new ArrayList<>())
+                    .add(pullChoiceRowMapper.mapRow(rs, rs.getRow()));
+            };
+            jdbcTemplate.query(pullChoicesSql(batch.size()), handler, args.toArray());
+        }
+
+        return choices;
+    }
+
+    /**
+     * The query for the pull choices of {@code requests} requests, each request binds the four parameters of
+     * {@link #PULL_REQUEST_ROW_SQL}.
+     */
+    static String pullChoicesSql(int requests) {
+        var requestRows = String.join(" union all ", Collections.nCopies(requests, PULL_REQUEST_ROW_SQL));
+        return PULL_CHOICES_SQL.formatted(requestRows);
+    }
+
+    /**
+     * Returns a value that changes whenever the specimens of the study, or their positions, change. Used to
+     * tell if a catalogue created earlier is still current.
+     *
+     * Changes to the containers, for example a relabelled container, are not detected.
+     */
+    public String catalogueFingerprint(String studyNameShort) {
+        return jdbcTemplate.queryForObject(CATALOGUE_FINGERPRINT_SQL, String.class, studyNameShort);
+    }
+
+    /**
+     * Returns the number of aliquots {@link #catalogue} passes to its consumer for the study.
+     */
+    public long catalogueCount(String studyNameShort) {
+        Long count = jdbcTemplate.queryForObject(CATALOGUE_COUNT_SQL, Long.class, studyNameShort);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Streams the aliquots in the inventory for a study to {@code consumer}, in patient number and visit
+     * number order.
+     *
+     * The rows are read with a forward only cursor, so only {@link #CATALOGUE_FETCH_SIZE} rows are held in
+     * memory at a time. The query can return the same specimen more than once, but since the rows are
+     * sorted by inventory ID the duplicates are adjacent and only the first one is passed on.
+     *
+     * When {@code cancellation} is cancelled the running statement is cancelled on the server, and a
+     * {@link CancellationException} is thrown.
+     *
+     * @return the number of aliquots passed to {@code consumer}.
+     */
+    public int catalogue(String studyNameShort, CancellationToken cancellation, Consumer<AliquotDTO> consumer) {
+        return catalogue(CATALOGUE_SQL, new Object[] { studyNameShort }, cancellation, consumer);
+    }
+
+    /**
+     * Same as {@link #catalogue(String, CancellationToken, Consumer)}, but only for the patients with a patient
+     * number from {@code fromPnumber}, inclusive, to {@code toPnumber}, exclusive. If {@code toPnumber} is null
+     * the range includes all the patient numbers after {@code fromPnumber}.
+     *
+     * Patient numbers are compared by the database, so ranges should be created with
+     * {@link #cataloguePartitions(String, int)}.
+     */
+    public int catalogue(
+        String studyNameShort,
+        String fromPnumber,
+        String toPnumber,
+        CancellationToken cancellation,
+        Consumer<AliquotDTO> consumer
+    ) {
+        var params = new Object[] { studyNameShort, fromPnumber, toPnumber, toPnumber };
+        return catalogue(CATALOGUE_RANGE_SQL, params, cancellation, consumer);
+    }
+
+    /**
+     * Splits the study's patients into at most {@code partitions} ranges with about the same number of patients.
+     *
+     * @return the first patient number of each range, in order. A range ends where the next one starts.
+     */
+    public List<String> cataloguePartitions(String studyNameShort, int partitions) {
+        return jdbcTemplate.queryForList(CATALOGUE_PARTITIONS_SQL, String.class, studyNameShort, partitions);
+    }
+
+    private int catalogue(
+        String sql,
+        Object[] params,
+        CancellationToken cancellation,
+        Consumer<AliquotDTO> consumer
+    ) {
+        ResultSetExtractor<Integer> extractor = rs -> {
+            int count = 0;
+            String previousInventoryId = null;
+            while (rs.next()) {
+                cancellation.throwIfCancelled();
+                var inventoryId = rs.getString("inventory_id");
+                if (inventoryId.equals(previousInventoryId)) {
+                    continue;
+                }
+                previousInventoryId = inventoryId;
+                consumer.accept(aliquotRowMapper.mapRow(rs, count));
+                count++;
+            }
+            return count;
+        };
+
+        Runnable[] unregister = { () -> {} };
+        try {
+            var count = jdbcTemplate.query(
+                connection -> {
+                    var statement = connection.prepareStatement(
+                        sql,
+                        ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY
+                    );
+                    statement.setFetchSize(CATALOGUE_FETCH_SIZE);
+                    for (int i = 0; i < params.length; i++) {
+                        statement.setObject(i + 1, params[i]);
+                    }
+                    unregister[0] = cancellation.onCancel(() -> {
+                        try {
+                            statement.cancel();
+                        } catch (SQLException e) {
+                            // the statement has already completed
+                        }
+                    });
+                    return statement;
+                },
+                extractor
+            );
+            return count == null ? 0 : count;
+        } catch (DataAccessException e) {
+            if (cancellation.isCancelled()) {
+                throw new CancellationException();
+            }
+            throw e;
+        } finally {
+            unregister[0].run();
+        }
     }
 }
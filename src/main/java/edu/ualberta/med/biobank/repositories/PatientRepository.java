@@ -1,12 +1,14 @@
 package edu.ualberta.med.biobank.repositories;
 
 import edu.ualberta.med.biobank.domain.Patient;
+import jakarta.transaction.Transactional;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -20,6 +22,11 @@ public interface PatientRepository extends JpaRepository<Patient, Integer> {
     @EntityGraph(attributePaths = { "study", "collectionEvents" })
     public List<Patient> findAll(Specification<Patient> spec);
 
+    /**
+     * The specimen and comment counts are read from the patient's summary. Patients without a summary, created
+     * outside this application, have them counted instead until the summaries are repaired. Aliquots are always
+     * counted, since they are added by the legacy client.
+     */
     @Query(
         value = """
         select
@@ -28,17 +35,26 @@ public interface PatientRepository extends JpaRepository<Patient, Integer> {
             p.CREATED_AT as createdAt,
             study.id as studyId,
             study.name_short as studyNameShort,
-            COUNT(distinct ospc.id) as specimenCount,
-            COUNT(distinct aspc.id) - COUNT(distinct ospc.id) as aliquotCount,
-            COUNT(distinct pc.COMMENT_ID) as commentCount
+            coalesce(
+                ps.SPECIMEN_COUNT,
+                (select count(*) from collection_event ce
+                    join specimen spc on spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID
+                    where ce.PATIENT_ID = p.ID)
+            ) as specimenCount,
+            (select count(*) from collection_event ce
+                join specimen spc on spc.COLLECTION_EVENT_ID = ce.ID
+                where ce.PATIENT_ID = p.ID)
+            - (select count(*) from collection_event ce
+                join specimen spc on spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID
+                where ce.PATIENT_ID = p.ID) as aliquotCount,
+            coalesce(
+                ps.COMMENT_COUNT,
+                (select count(*) from patient_comment pc where pc.PATIENT_ID = p.ID)
+            ) as commentCount
         from patient p
         join study on study.ID = p.STUDY_ID
-        left join collection_event ce on ce.PATIENT_ID = p.ID
-        left join specimen ospc on ospc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID
-        left join specimen aspc on aspc.COLLECTION_EVENT_ID = ce.ID
-        left join patient_comment pc ON pc.patient_id=p.id
+        left join PATIENT_SUMMARY ps on ps.PATIENT_ID = p.ID
         where p.pnumber = :pnumber
-        group by p.id
         """,
         nativeQuery = true
     )
@@ -61,4 +77,100 @@ public interface PatientRepository extends JpaRepository<Patient, Integer> {
         nativeQuery = true
     )
     <T> Collection<T> patientComments(String pnumber, Class<T> type);
+
+    @Modifying
+    @Query(value = "insert into PATIENT_SUMMARY (PATIENT_ID) values (:patientId)", nativeQuery = true)
+    void createSummary(Integer patientId);
+
+    /**
+     * Adds to the counts of the patient's summary. Does nothing when the patient has no summary.
+     */
+    @Modifying
+    @Query(
+        value = """
+        update PATIENT_SUMMARY
+        set
+            SPECIMEN_COUNT = SPECIMEN_COUNT + :specimens,
+            COMMENT_COUNT = COMMENT_COUNT + :comments
+        where PATIENT_ID = :patientId
+        """,
+        nativeQuery = true
+    )
+    int addToSummary(Integer patientId, long specimens, long comments);
+
+    @Query(value = "select ID from patient where ID > :afterId order by ID limit :limit", nativeQuery = true)
+    List<Integer> findIdsAfter(Integer afterId, int limit);
+
+    /**
+     * Returns the patients, out of {@code ids}, whose summary is missing or has counts that differ from the
+     * specimens and comments in the database.
+     */
+    @Query(
+        value = """
+        select id
+        from (
+            select
+                p.ID id,
+                ps.PATIENT_ID summary_id,
+                ps.SPECIMEN_COUNT specimen_count,
+                ps.COMMENT_COUNT comment_count,
+                (select count(*) from collection_event ce
+                    join specimen spc on spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID
+                    where ce.PATIENT_ID = p.ID) specimens,
+                (select count(*) from patient_comment pc where pc.PATIENT_ID = p.ID) comments
+            from patient p
+            left join PATIENT_SUMMARY ps on ps.PATIENT_ID = p.ID
+            where p.ID in (:ids)
+        ) counts
+        where
+            summary_id is null
+            or specimen_count <> specimens
+            or comment_count <> comments
+        """,
+        nativeQuery = true
+    )
+    List<Integer> findDriftedSummaries(Collection<Integer> ids);
+
+    /**
+     * Counts the specimens and comments of the patients again, and creates or replaces their summaries.
+     */
+    @Modifying
+    @Transactional
+    @Query(
+        value = """
+        insert into PATIENT_SUMMARY (PATIENT_ID, SPECIMEN_COUNT, COMMENT_COUNT)
+        select id, specimens, comments
+        from (
+            select
+                p.ID id,
+                (select count(*) from collection_event ce
+                    join specimen spc on spc.ORIGINAL_COLLECTION_EVENT_ID = ce.ID
+                    where ce.PATIENT_ID = p.ID) specimens,
+                (select count(*) from patient_comment pc where pc.PATIENT_ID = p.ID) comments
+            from patient p
+            where p.ID in (:ids)
+        ) counts
+        on duplicate key update
+            SPECIMEN_COUNT = values(SPECIMEN_COUNT),
+            COMMENT_COUNT = values(COMMENT_COUNT)
+        """,
+        nativeQuery = true
+    )
+    int recomputeSummaries(Collection<Integer> ids);
+
+    /**
+     * Deletes the summaries of patients that no longer exist.
+     */
+    @Modifying
+    @Transactional
+    @Query(
+        value = """
+        delete ps
+        from PATIENT_SUMMARY ps
+        left join patient p on p.ID = ps.PATIENT_ID
+        where p.ID is null
+        """,
+        nativeQuery = true
+    )
+    int deleteOrphanSummaries();
 }
@@ -60,6 +60,23 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     )
     <T> Collection<T> findByApiKey(String apiKey, Class<T> type);
 
+    /**
+     * Returns a value that changes when API keys are added, removed or given to another user.
+     */
+    @Query(
+        value = """
+        select concat_ws(
+            ':',
+            count(*),
+            coalesce(max(ID), 0),
+            coalesce(bit_xor(crc32(concat(USER_ID, ':', API_KEY))), 0)
+        )
+        from user_api_key
+        """,
+        nativeQuery = true
+    )
+    String apiKeysFingerprint();
+
     @EntityGraph("user-with-groups-and-memberships")
     public List<User> findAll(Specification<User> spec);
 }
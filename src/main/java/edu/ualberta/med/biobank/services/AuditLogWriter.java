@@ -0,0 +1,186 @@
+package edu.ualberta.med.biobank.services;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import edu.ualberta.med.biobank.domain.Log;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Writes {@link Log} records to the LOG table on a background thread.
+ *
+ * Records are queued in a bounded buffer and inserted with JDBC batches, either when {@code batchSize} records
+ * are waiting or when {@code flushInterval} milliseconds have passed since the first record of the batch was
+ * queued. When the buffer is full the caller writes its record itself, so records are not discarded when the
+ * writer falls behind. The buffer is flushed when the application shuts down.
+ */
+@Service
+class AuditLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static final String INSERT_SQL =
+        """
+        insert into LOG (USERNAME, CREATED_AT, CENTER, ACTION, PATIENT_NUMBER, INVENTORY_ID, LOCATION_LABEL, DETAILS, TYPE)
+        values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    // same as "spring.jpa.properties.hibernate.jdbc.time_zone" in application.properties
+    private static final TimeZone DB_TIME_ZONE = TimeZone.getTimeZone("UTC");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BlockingQueue<Log> queue;
+
+    private final int batchSize;
+
+    private final long flushInterval;
+
+    private final Counter writtenCounter;
+
+    private final Counter droppedCounter;
+
+    private final Counter backpressureCounter;
+
+    private final Thread worker;
+
+    private volatile boolean running = true;
+
+    AuditLogWriter(
+        JdbcTemplate jdbcTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${biobank.audit.queue-capacity:10000}") int queueCapacity,
+        @Value("${biobank.audit.batch-size:200}") int batchSize,
+        @Value("${biobank.audit.flush-interval-ms:1000}") long flushInterval
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.worker = new Thread(this::run, "audit-log-writer");
+        this.worker.setDaemon(true);
+
+        Gauge.builder("biobank.audit.queue.depth", queue, BlockingQueue::size)
+            .description("audit records waiting to be written")
+            .register(meterRegistry);
+        writtenCounter = Counter.builder("biobank.audit.written")
+            .description("audit records written to the LOG table")
+            .register(meterRegistry);
+        droppedCounter = Counter.builder("biobank.audit.dropped")
+            .description("audit records that could not be written to the LOG table")
+            .register(meterRegistry);
+        backpressureCounter = Counter.builder("biobank.audit.backpressure")
+            .description("audit records written by the caller because the queue was full")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        worker.start();
+    }
+
+    /**
+     * Queues the record to be written. If the queue is full, or the writer has been shut down, the record
+     * is written before this method returns.
+     */
+    public void submit(Log log) {
+        if (running && queue.offer(log)) {
+            return;
+        }
+        backpressureCounter.increment();
+        write(List.of(log));
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    @EventListener
+    public void shutdownSubscriber(ContextClosedEvent event) {
+        running = false;
+        try {
+            worker.join(flushInterval + TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Log> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            logger.info("writing {} queued audit records on shutdown", remaining.size());
+            write(remaining);
+        }
+    }
+
+    private void run() {
+        List<Log> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                var first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Log> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, log) -> {
+                var createdAt = log.getCreatedAt() != null ? new Timestamp(log.getCreatedAt().getTime()) : null;
+                statement.setString(1, log.getUsername());
+                statement.setTimestamp(2, createdAt, Calendar.getInstance(DB_TIME_ZONE));
+                statement.setString(3, log.getCenter());
+                statement.setString(4, log.getAction());
+                statement.setString(5, log.getPatientNumber());
+                statement.setString(6, log.getInventoryId());
+                statement.setString(7, log.getLocationLabel());
+                statement.setString(8, log.getDetails());
+                statement.setString(9, log.getType());
+            });
+            writtenCounter.increment(batch.size());
+        } catch (DataAccessException e) {
+            droppedCounter.increment(batch.size());
+            logger.error("could not write {} audit records: {}", batch.size(), e.getMessage());
+        }
+    }
+}
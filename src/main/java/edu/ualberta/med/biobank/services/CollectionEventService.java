@@ -42,7 +42,6 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -77,6 +76,8 @@ public class CollectionEventService {
 
     private UserService userService;
 
+    private SummaryCountService summaryCountService;
+
     private ApplicationEventPublisher eventPublisher;
 
     private Validator validator;
@@ -89,6 +90,7 @@ public class CollectionEventService {
         EventAttrRepository eventAttrRepository,
         PatientService patientService,
         UserService userService,
+        SummaryCountService summaryCountService,
         Validator validator,
         ApplicationEventPublisher eventPublisher
     ) {
@@ -96,6 +98,7 @@ public class CollectionEventService {
         this.eventAttrRepository = eventAttrRepository;
         this.patientService = patientService;
         this.userService = userService;
+        this.summaryCountService = summaryCountService;
         this.validator = validator;
         this.eventPublisher = eventPublisher;
     }
@@ -128,6 +131,7 @@ public class CollectionEventService {
         });
     }
 
+    @Transactional
     public Either<AppError, CollectionEventDTO> add(String pnumber, CollectionEventAddDTO ceventInfo) {
         if (pnumber == null) {
             throw new IllegalArgumentException("patient number cannot be null");
@@ -174,6 +178,7 @@ public class CollectionEventService {
                         newEvent.setVisitNumber(ceventInfo.vnumber());
                         newEvent.setActivityStatus(Status.ACTIVE);
                         collectionEventRepository.save(newEvent);
+                        summaryCountService.collectionEventCreated(newEvent.getId());
 
                         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
                         eventPublisher.publishEvent(
@@ -212,7 +217,7 @@ public class CollectionEventService {
                         return Either.left(new PermissionError("study: %s".formatted(ceventDTO.studyNameShort())));
                     }
 
-                    if (vnumber != ceventInfo.vnumber() && getInternal(pnumber, ceventInfo.vnumber()).isRight()) {
+                    if (!vnumber.equals(ceventInfo.vnumber()) && getInternal(pnumber, ceventInfo.vnumber()).isRight()) {
                         return Either.left(new Forbidden("visit number exists: %d".formatted(ceventInfo.vnumber())));
                     }
 
@@ -229,16 +234,20 @@ public class CollectionEventService {
                         cevent.getEventAttrs().addAll(attrsToAdd);
                         cevent.setVisitNumber(ceventInfo.vnumber());
                         cevent.setActivityStatus(newStatus);
-                        CollectionEvent savedCevent = collectionEventRepository.saveAndFlush(cevent);
+                        collectionEventRepository.saveAndFlush(cevent);
 
                         String username = SecurityContextHolder.getContext().getAuthentication().getName();
                         eventPublisher.publishEvent(new VisitUpdatedEvent(username, pnumber, vnumber));
-                        return Either.right(CollectionEventDTO.fromCollectionEvent(savedCevent));
+
+                        // read back with the same queries as a GET, building the reply from the entity would load
+                        // each source specimen's associations one at a time
+                        return getInternal(pnumber, ceventInfo.vnumber());
                     });
                 });
         });
     }
 
+    @Transactional
     public Either<AppError, Boolean> delete(String pnumber, Integer vnumber) {
         return getInternal(pnumber, vnumber).flatMap(ceventDTO -> {
             CollectionEventDeletePermission permission = new CollectionEventDeletePermission(ceventDTO.studyId());
@@ -254,6 +263,7 @@ public class CollectionEventService {
                     }
 
                     collectionEventRepository.deleteById(ceventDTO.id());
+                    summaryCountService.collectionEventDeleted(ceventDTO.id());
 
                     Authentication auth = SecurityContextHolder.getContext().getAuthentication();
                     eventPublisher.publishEvent(new VisitDeletedEvent(auth.getName(), pnumber, vnumber));
@@ -292,6 +302,7 @@ public class CollectionEventService {
         });
     }
 
+    @Transactional
     public Either<AppError, CommentDTO> addComment(String pnumber, Integer vnumber, CommentAddDTO commentDTO) {
         var violations = validator.validate(commentDTO);
 
@@ -325,6 +336,7 @@ public class CollectionEventService {
                     CollectionEvent eventToUpdate = collectionEventRepository.getReferenceById(ceventDTO.id());
                     eventToUpdate.getComments().add(comment);
                     collectionEventRepository.save(eventToUpdate);
+                    summaryCountService.collectionEventCommentAdded(ceventDTO.id());
 
                     eventPublisher.publishEvent(new VisitUpdatedEvent(userDto.username(), pnumber, vnumber));
                     return Either.right(CommentDTO.fromComment(comment));
@@ -338,10 +350,6 @@ public class CollectionEventService {
      * It does not check for user permissions or update the LOG table.
      */
     Either<AppError, CollectionEventDTO> getInternal(String pnumber, Integer vnumber) {
-        Map<Integer, CollectionEventDTO> cevents = new HashMap<>();
-        Map<Integer, AnnotationDTO> attributes = new HashMap<>();
-        Map<Integer, SourceSpecimenDTO> sourceSpecimens = new HashMap<>();
-
         if (pnumber == null) {
             throw new IllegalArgumentException("patient number cannot be null");
         }
@@ -349,39 +357,40 @@ public class CollectionEventService {
             throw new IllegalArgumentException("visit number cannot be null");
         }
 
-        collectionEventRepository
-            .findByPatientAndVnumber(pnumber, vnumber, Tuple.class)
-            .stream()
-            .forEach(row -> {
-                var ceventId = row.get("id", Integer.class);
-                cevents.computeIfAbsent(ceventId, id -> CollectionEventDTO.fromTuple(row));
-
-                var attributeId = row.get("attributeId", Integer.class);
-                if (attributeId != null) {
-                    attributes.computeIfAbsent(attributeId, id -> AnnotationDTO.fromTuple(row));
-                }
-
-                var isSourceSpecimen = row.get("isSourceSpecimen", Integer.class);
-                if (isSourceSpecimen == 1) {
-                    var specimenId = row.get("specimenId", Integer.class);
-                    if (specimenId != null) {
-                        sourceSpecimens.computeIfAbsent(specimenId, id -> SourceSpecimenDTO.fromTuple(row));
-                    }
-                }
-            });
-
+        // the header, annotations and source specimens are loaded with separate queries, a single query would
+        // return the product of the number of annotations and the number of specimens
+        var cevents = collectionEventRepository.findByPatientAndVnumber(pnumber, vnumber, Tuple.class);
         if (cevents.size() != 1) {
             return Either.left(new EntityNotFound("collection event by pnumber and vnumber"));
         }
 
-        final var cevent = cevents
-            .entrySet()
-            .iterator()
-            .next()
-            .getValue()
-            .withExtras(new ArrayList<>(attributes.values()), new ArrayList<>(sourceSpecimens.values()));
+        var header = cevents.iterator().next();
+        var id = header.get("id", Number.class).intValue();
+        var studyId = header.get("studyId", Number.class).intValue();
+        return Either.right(
+            fromTuples(
+                header,
+                collectionEventRepository.annotations(id, studyId, Tuple.class),
+                collectionEventRepository.sourceSpecimens(id, Tuple.class)
+            )
+        );
+    }
 
-        return Either.right(cevent);
+    /**
+     * Creates the collection event from the rows returned by the queries for its header, its annotations and its
+     * source specimens.
+     */
+    static CollectionEventDTO fromTuples(
+        Tuple header,
+        Collection<Tuple> annotations,
+        Collection<Tuple> sourceSpecimens
+    ) {
+        List<AnnotationDTO> annotationDTOs = annotations.stream().map(AnnotationDTO::fromTuple).toList();
+        List<SourceSpecimenDTO> sourceSpecimenDTOs = sourceSpecimens.stream()
+            .map(SourceSpecimenDTO::fromTuple)
+            .toList();
+        return CollectionEventDTO.fromTuple(header)
+            .withExtras(new ArrayList<>(annotationDTOs), new ArrayList<>(sourceSpecimenDTOs));
     }
 
     /**
@@ -1,5 +1,6 @@
 package edu.ualberta.med.biobank.services;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import org.slf4j.Logger;
@@ -23,8 +24,15 @@ import edu.ualberta.med.biobank.applicationevents.VisitDeletedEvent;
 import edu.ualberta.med.biobank.applicationevents.VisitReadEvent;
 import edu.ualberta.med.biobank.applicationevents.VisitUpdatedEvent;
 import edu.ualberta.med.biobank.domain.Log;
+import edu.ualberta.med.biobank.domain.LogCursor;
+import edu.ualberta.med.biobank.domain.LogFilter;
+import edu.ualberta.med.biobank.dtos.LogPageDTO;
 import edu.ualberta.med.biobank.dtos.LoggingDTO;
+import edu.ualberta.med.biobank.errors.AppError;
+import edu.ualberta.med.biobank.errors.BadRequest;
+import edu.ualberta.med.biobank.repositories.CustomLogRepository;
 import edu.ualberta.med.biobank.repositories.LoggingRepository;
+import io.jbock.util.Either;
 import jakarta.persistence.Tuple;
 
 @Service
@@ -33,10 +41,25 @@ public class LoggingService {
     @SuppressWarnings("unused")
     final Logger logger = LoggerFactory.getLogger(LoggingService.class);
 
+    /**
+     * The largest page returned by {@link #loggingPage}.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private LoggingRepository loggingRepository;
 
-    public LoggingService(LoggingRepository loggingRepository) {
+    private CustomLogRepository customLogRepository;
+
+    private AuditLogWriter auditLogWriter;
+
+    public LoggingService(
+        LoggingRepository loggingRepository,
+        CustomLogRepository customLogRepository,
+        AuditLogWriter auditLogWriter
+    ) {
         this.loggingRepository = loggingRepository;
+        this.customLogRepository = customLogRepository;
+        this.auditLogWriter = auditLogWriter;
     }
 
     public Page<LoggingDTO> loggingPagination(Integer pageNumber, Integer pageSize, String sort) {
@@ -50,6 +73,54 @@ public class LoggingService {
         return data.map(d -> LoggingDTO.fromTuple(d));
     }
 
+    /**
+     * Returns a page of the entries matching {@code filter}. The first page, when {@code token} is null, starts
+     * with the newest entry. The page's {@code next} token continues with older entries, and its {@code newer}
+     * token with the entries added since, in the order they were added.
+     *
+     * Unlike {@link #loggingPagination}, the table is not counted. When {@code withTotal} is true, an estimate of
+     * the number of matching entries is added.
+     */
+    public Either<AppError, LogPageDTO> loggingPage(LogFilter filter, String token, int size, boolean withTotal) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return Either.left(new BadRequest("page size must be between 1 and %d".formatted(MAX_PAGE_SIZE)));
+        }
+
+        LogCursor cursor = null;
+        if (token != null) {
+            var decoded = LogCursor.decode(token);
+            if (decoded.isEmpty()) {
+                return Either.left(new BadRequest("invalid page token"));
+            }
+            cursor = decoded.get();
+        }
+
+        // one more entry than needed tells whether there is a next page
+        var entries = new ArrayList<>(customLogRepository.findPage(filter, cursor, size + 1));
+        var hasMore = entries.size() > size;
+        if (hasMore) {
+            entries.remove(size);
+        }
+
+        var after = cursor != null && cursor.direction() == LogCursor.Direction.AFTER;
+        String next = null;
+        if (!after && hasMore) {
+            var last = entries.get(entries.size() - 1);
+            next = LogCursor.before(last.createdAt(), last.id()).encode();
+        }
+
+        var lastId = entries.stream().mapToInt(LoggingDTO::id).max();
+        String newer = null;
+        if (lastId.isPresent()) {
+            newer = LogCursor.after(lastId.getAsInt()).encode();
+        } else if (after) {
+            newer = token;
+        }
+
+        var total = withTotal ? customLogRepository.estimateCount(filter) : null;
+        return Either.right(new LogPageDTO(entries, next, newer, total));
+    }
+
     public List<LoggingDTO> loggingLatest() {
         Collection<Tuple> data = loggingRepository.getLastest();
         return data.stream().map(d -> LoggingDTO.fromTuple(d)).toList();
@@ -62,7 +133,7 @@ public class LoggingService {
             .action("login")
             .username(event.getUsername())
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -74,7 +145,7 @@ public class LoggingService {
             .patientNumber(event.getPnumber())
             .type("Patient")
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -86,7 +157,7 @@ public class LoggingService {
             .patientNumber(event.getPnumber())
             .type("Patient")
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -98,7 +169,7 @@ public class LoggingService {
             .patientNumber(event.getPnumber())
             .type("Patient")
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -111,7 +182,7 @@ public class LoggingService {
             .type("CollectionEvent")
             .details("visit: %s".formatted(event.getVnumber()))
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -124,7 +195,7 @@ public class LoggingService {
             .type("CollectionEvent")
             .details("visit: %s".formatted(event.getVnumber()))
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -137,7 +208,7 @@ public class LoggingService {
             .type("CollectionEvent")
             .details("visit: %s".formatted(event.getVnumber()))
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -150,7 +221,7 @@ public class LoggingService {
             .type("CollectionEvent")
             .details("visit: %s".formatted(event.getVnumber()))
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -163,7 +234,7 @@ public class LoggingService {
             .inventoryId(event.getInventoryId())
             .type("Specimen")
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -175,7 +246,7 @@ public class LoggingService {
             .type("StudyCatalogue")
             .details("study: %s".formatted(event.getStudyNameShort()))
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -187,7 +258,7 @@ public class LoggingService {
             .type("StudyCatalogue")
             .details("filename: %s".formatted(event.getFilename()))
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 
     @EventListener
@@ -197,6 +268,6 @@ public class LoggingService {
             .username(event.getUsername())
             .type("report")
             .build();
-        loggingRepository.save(logEvent);
+        auditLogWriter.submit(logEvent);
     }
 }
@@ -24,6 +24,7 @@ import edu.ualberta.med.biobank.repositories.PatientRepository;
 import edu.ualberta.med.biobank.repositories.StudyRepository;
 import io.jbock.util.Either;
 import jakarta.persistence.Tuple;
+import jakarta.transaction.Transactional;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import java.util.ArrayList;
@@ -54,6 +55,8 @@ public class PatientService {
 
     private UserService userService;
 
+    private SummaryCountService summaryCountService;
+
     private Validator validator;
 
     public PatientService(
@@ -61,6 +64,7 @@ public class PatientService {
         CollectionEventRepository collectionEventRepository,
         StudyRepository studyRepository,
         UserService userService,
+        SummaryCountService summaryCountService,
         Validator validator,
         ApplicationEventPublisher eventPublisher
     ) {
@@ -68,6 +72,7 @@ public class PatientService {
         this.collectionEventRepository = collectionEventRepository;
         this.studyRepository = studyRepository;
         this.userService = userService;
+        this.summaryCountService = summaryCountService;
         this.validator = validator;
         this.eventPublisher = eventPublisher;
     }
@@ -97,6 +102,7 @@ public class PatientService {
         });
     }
 
+    @Transactional
     public Either<AppError, PatientDTO> add(PatientAddDTO dto) {
         var violations = validator.validate(dto);
 
@@ -138,6 +144,7 @@ public class PatientService {
                 patient.setStudy(study);
                 patient.setCreatedAt(new Date());
                 Patient savedPatient = patientRepository.save(patient);
+                summaryCountService.patientCreated(savedPatient.getId());
 
                 Authentication auth = SecurityContextHolder.getContext().getAuthentication();
                 eventPublisher.publishEvent(new PatientCreatedEvent(auth.getName(), dto.pnumber()));
@@ -236,6 +243,7 @@ public class PatientService {
             });
     }
 
+    @Transactional
     public Either<AppError, CommentDTO> addComment(String pnumber, CommentAddDTO commentDTO) {
         var violations = validator.validate(commentDTO);
 
@@ -269,6 +277,7 @@ public class PatientService {
                     Patient patientToUpdate = patientRepository.getReferenceById(patient.id());
                     patientToUpdate.getComments().add(comment);
                     patientRepository.save(patientToUpdate);
+                    summaryCountService.patientCommentAdded(patient.id());
 
                     eventPublisher.publishEvent(new PatientUpdatedEvent(userDto.username(), pnumber));
                     return Either.right(CommentDTO.fromComment(comment));
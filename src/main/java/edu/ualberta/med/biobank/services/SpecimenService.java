@@ -2,10 +2,15 @@ package edu.ualberta.med.biobank.services;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
@@ -19,7 +24,9 @@ import edu.ualberta.med.biobank.domain.Clinic;
 import edu.ualberta.med.biobank.domain.CollectionEvent;
 import edu.ualberta.med.biobank.domain.OriginInfo;
 import edu.ualberta.med.biobank.domain.Specimen;
+import edu.ualberta.med.biobank.domain.SpecimenPull;
 import edu.ualberta.med.biobank.domain.SpecimenRequest;
+import edu.ualberta.med.biobank.domain.SpecimenRequestLine;
 import edu.ualberta.med.biobank.domain.SpecimenType;
 import edu.ualberta.med.biobank.domain.Status;
 import edu.ualberta.med.biobank.dtos.AliquotSpecimenDTO;
@@ -29,6 +36,7 @@ import edu.ualberta.med.biobank.dtos.SourceSpecimenAddDTO;
 import edu.ualberta.med.biobank.dtos.SourceSpecimenDTO;
 import edu.ualberta.med.biobank.dtos.SpecimenDTO;
 import edu.ualberta.med.biobank.dtos.SpecimenPullDTO;
+import edu.ualberta.med.biobank.dtos.SpecimenPullLineDTO;
 import edu.ualberta.med.biobank.dtos.SpecimenTypeDTO;
 import edu.ualberta.med.biobank.errors.AppError;
 import edu.ualberta.med.biobank.errors.BadRequest;
@@ -47,6 +55,7 @@ import edu.ualberta.med.biobank.util.LoggingUtils;
 import edu.ualberta.med.biobank.util.StringUtil;
 import io.jbock.util.Either;
 import jakarta.persistence.Tuple;
+import jakarta.transaction.Transactional;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 
@@ -56,6 +65,11 @@ public class SpecimenService {
     @SuppressWarnings("unused")
     final Logger logger = LoggerFactory.getLogger(SpecimenService.class);
 
+    /**
+     * The number of lines of a streamed pull request resolved together.
+     */
+    private static final int PULL_CHUNK_SIZE = 500;
+
     private final SpecimenRepository specimenRepository;
 
     private final CollectionEventService collectionEventService;
@@ -74,6 +88,8 @@ public class SpecimenService {
 
     private final CustomSpecimenRepository customSpecimenRepository;
 
+    private final SummaryCountService summaryCountService;
+
     private final ApplicationEventPublisher eventPublisher;
 
     private final Validator validator;
@@ -88,6 +104,7 @@ public class SpecimenService {
         SpecimenTypeRepository specimenTypeRepository,
         OriginInfoRepository originInfoRepository,
         CustomSpecimenRepository customSpecimenRepository,
+        SummaryCountService summaryCountService,
         ApplicationEventPublisher eventPublisher,
         Validator validator
     ) {
@@ -100,6 +117,7 @@ public class SpecimenService {
         this.specimenTypeRepository = specimenTypeRepository;
         this.originInfoRepository = originInfoRepository;
         this.customSpecimenRepository = customSpecimenRepository;
+        this.summaryCountService = summaryCountService;
         this.validator = validator;
         this.eventPublisher = eventPublisher;
     }
@@ -165,39 +183,80 @@ public class SpecimenService {
         });
     }
 
-    public List<SpecimenPullDTO> specimenRequest(List<SpecimenRequest> requests) {
+    /**
+     * Picks the specimens to pull for each request.
+     *
+     * The choices for all the requests are loaded with a few batched queries. For each request, the choices are
+     * shuffled, using a random generator seeded from {@code seed} and the request's line number, counting from
+     * one, and the first {@code count} are picked. Choices with a lower activity status are always picked first. A
+     * specimen is only picked once, even if it matches more than one request. If there are not enough choices, a
+     * {@code NOT_FOUND} entry with the missing count is added for the request.
+     *
+     * The same requests and seed pick the same specimens, unless the inventory has changed, here and in the
+     * streaming version.
+     */
+    public List<SpecimenPullDTO> specimenRequest(List<SpecimenRequest> requests, long seed) {
+        var choicesByRequest = customSpecimenRepository.pullChoices(requests);
+        var picked = new HashSet<String>();
         var results = new ArrayList<SpecimenPullDTO>();
-        for (SpecimenRequest request : requests) {
-            var pullChoices = customSpecimenRepository.pullChoices(
-                request.pnumber(),
-                request.dateDrawn(),
-                request.specimenType()
+
+        for (int i = 0; i < requests.size(); i++) {
+            var choices = choicesByRequest.getOrDefault(i, List.of());
+            results.addAll(pick(requests.get(i), choices, pullRandom(seed, i + 1), picked));
+        }
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        eventPublisher.publishEvent(new SpecimenPullRequestEvent(auth.getName()));
+
+        return results;
+    }
+
+    /**
+     * Streaming version of {@link #specimenRequest(List, long)}.
+     *
+     * The lines are read {@link #PULL_CHUNK_SIZE} at a time. Each chunk is resolved with a single query and its
+     * results are passed to {@code consumer} before the next chunk is read, so memory use does not depend on the
+     * number of lines. Lines that could not be read are passed on as errors, the other lines are still
+     * resolved. The random generator for a line is seeded from {@code seed} and the line number.
+     */
+    public void specimenRequest(
+        Iterator<SpecimenRequestLine> lines,
+        long seed,
+        Consumer<List<SpecimenPullLineDTO>> consumer
+    ) {
+        var picked = new HashSet<String>();
+
+        while (lines.hasNext()) {
+            var chunk = new ArrayList<SpecimenRequestLine>(PULL_CHUNK_SIZE);
+            while (lines.hasNext() && chunk.size() < PULL_CHUNK_SIZE) {
+                chunk.add(lines.next());
+            }
+
+            var valid = chunk.stream().filter(SpecimenRequestLine::isValid).toList();
+            var choicesByRequest = customSpecimenRepository.pullChoices(
+                valid.stream().map(SpecimenRequestLine::request).toList()
             );
 
-            for (int j = 0; j < request.count(); j++) {
-                if (j < pullChoices.size()) {
-                    var dto = SpecimenPullDTO.fromSpecimenPull(pullChoices.get(j));
-                    results.add(dto);
+            var results = new ArrayList<SpecimenPullLineDTO>();
+            int validIndex = 0;
+            for (SpecimenRequestLine line : chunk) {
+                if (!line.isValid()) {
+                    results.add(SpecimenPullLineDTO.error(line.line(), line.error()));
+                    continue;
                 }
-            }
 
-            if (pullChoices.size() < request.count()) {
-                results.add(new SpecimenPullDTO(
-                    request.pnumber(),
-                    "",
-                    request.dateDrawn(),
-                    request.specimenType(),
-                    "NOT_FOUND(%s)".formatted(request.count() - pullChoices.size()),
-                    Status.NONE.toString()));
+                var choices = choicesByRequest.getOrDefault(validIndex++, List.of());
+                pick(line.request(), choices, pullRandom(seed, line.line()), picked)
+                    .forEach(pull -> results.add(SpecimenPullLineDTO.fromSpecimenPull(line.line(), pull)));
             }
+            consumer.accept(results);
         }
 
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         eventPublisher.publishEvent(new SpecimenPullRequestEvent(auth.getName()));
-
-        return results;
     }
 
+    @Transactional
     public Either<AppError, SourceSpecimenDTO> add(SourceSpecimenAddDTO dto) {
         return validateSpecimen(dto).flatMap(info -> {
             var permission = new CollectionEventUpdatePermission(info.visit().studyId(), info.clinic().id());
@@ -230,6 +289,11 @@ public class SpecimenService {
                     specimen.setSampleErrors(StringUtil.EMPTY_STRING);
                     specimen.setSpecimenType(specimenType);
                     specimenRepository.save(specimen);
+                    summaryCountService.sourceSpecimenAdded(
+                        info.visit().patientId(),
+                        info.visit().id(),
+                        specimen.getCreatedAt()
+                    );
 
                     Authentication auth = SecurityContextHolder.getContext().getAuthentication();
                     eventPublisher.publishEvent(new VisitUpdatedEvent(auth.getName(), dto.pnumber(), dto.vnumber()));
@@ -296,4 +360,58 @@ public class SpecimenService {
             )
         );
     }
+
+    /**
+     * Picks up to {@code request.count()} of the choices, skipping those already in {@code picked}. If there
+     * are not enough choices, a {@code NOT_FOUND} entry with the missing count is added.
+     */
+    private static List<SpecimenPullDTO> pick(
+        SpecimenRequest request,
+        List<SpecimenPull> choices,
+        Random random,
+        Set<String> picked
+    ) {
+        var results = new ArrayList<SpecimenPullDTO>();
+        for (SpecimenPull choice : shuffleByStatus(choices, random)) {
+            if (results.size() >= request.count()) {
+                break;
+            }
+            if (picked.add(choice.inventoryId())) {
+                results.add(SpecimenPullDTO.fromSpecimenPull(choice));
+            }
+        }
+
+        if (results.size() < request.count()) {
+            results.add(new SpecimenPullDTO(
+                request.pnumber(),
+                "",
+                request.dateDrawn(),
+                request.specimenType(),
+                "NOT_FOUND(%s)".formatted(request.count() - results.size()),
+                Status.NONE.toString()));
+        }
+        return results;
+    }
+
+    private static Random pullRandom(long seed, long position) {
+        return new Random(seed ^ (position * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * Shuffles the choices that have the same activity status. The choices must be sorted by activity status.
+     */
+    private static List<SpecimenPull> shuffleByStatus(List<SpecimenPull> choices, Random random) {
+        var result = new ArrayList<>(choices);
+        int start = 0;
+        while (start < result.size()) {
+            var status = result.get(start).activityStatus();
+            int end = start + 1;
+            while (end < result.size() && result.get(end).activityStatus() == status) {
+                end++;
+            }
+            Collections.shuffle(result.subList(start, end), random);
+            start = end;
+        }
+        return result;
+    }
 }
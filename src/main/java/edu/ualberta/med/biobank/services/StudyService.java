@@ -32,11 +32,11 @@ import edu.ualberta.med.biobank.exception.AppErrorException;
 import edu.ualberta.med.biobank.permission.patients.StudyReadPermission;
 import edu.ualberta.med.biobank.repositories.StudyRepository;
 import edu.ualberta.med.biobank.services.catalogue.CatalogueCreateOp;
+import edu.ualberta.med.biobank.services.catalogue.CatalogueFormat;
+import edu.ualberta.med.biobank.services.catalogue.StudyCatalogueCache;
 import edu.ualberta.med.biobank.util.LoggingUtils;
 import io.jbock.util.Either;
 import jakarta.persistence.Tuple;
-import org.springframework.beans.factory.annotation.Value;
-import java.io.File;
 
 @Service
 public class StudyService {
@@ -44,18 +44,23 @@ public class StudyService {
     @SuppressWarnings("unused")
     private final Logger logger = LoggerFactory.getLogger(StudyService.class);
 
-    @Value("${biobank.catalogue.folder}")
-    private String catalogueFolder;
-
     private StudyRepository studyRepository;
 
     private final TaskService taskService;
 
+    private final StudyCatalogueCache studyCatalogueCache;
+
     UserService userService;
 
-    public StudyService(StudyRepository studyRepository, TaskService taskService, UserService userService) {
+    public StudyService(
+        StudyRepository studyRepository,
+        TaskService taskService,
+        StudyCatalogueCache studyCatalogueCache,
+        UserService userService
+    ) {
         this.studyRepository = studyRepository;
         this.taskService = taskService;
+        this.studyCatalogueCache = studyCatalogueCache;
         this.userService = userService;
     }
 
@@ -191,7 +196,7 @@ public class StudyService {
             });
     }
 
-    public CatalogueTaskDTO catalogueCreate(String nameShort) {
+    public CatalogueTaskDTO catalogueCreate(String nameShort, CatalogueFormat format) {
         var studyMaybe = findByNameShort(nameShort);
         if (studyMaybe.isLeft()) {
             throw new AppErrorException(studyMaybe.getLeft().get());
@@ -200,9 +205,13 @@ public class StudyService {
         var study = studyMaybe.getRight().get();
         logger.info("catalogue requested for study %s".formatted(study.nameShort()));
 
-        var op = new CatalogueCreateOp(study.nameShort());
-        taskService.submit(op);
-        return CatalogueTaskDTO.fromTask(op.task(), nameShort);
+        var cached = studyCatalogueCache.find(study.nameShort(), format);
+        if (cached.isPresent()) {
+            return CatalogueTaskDTO.fromTask(cached.get(), nameShort, format.extension());
+        }
+
+        var task = taskService.submit(new CatalogueCreateOp(study.nameShort(), format));
+        return CatalogueTaskDTO.fromTask(task, nameShort, format.extension());
     }
 
     public CatalogueTaskDTO catalogueTaskStatus(String nameShort, UUID id) {
@@ -210,16 +219,15 @@ public class StudyService {
         if (task == null) {
             throw new AppErrorException(new BadRequest("invalid task id"));
         }
-        var result = CatalogueTaskDTO.fromTask(task, nameShort);
         if (task.isCompleted()) {
-            var pathname = "%s/%s_%s.xlsx".formatted(catalogueFolder, nameShort, id);
-            File path = new File(pathname);
-            if (!path.exists()) {
+            var format = studyCatalogueCache.savedFormat(nameShort, id);
+            if (format.isEmpty()) {
                 var cancelledTask = task.toCancelled();
                 return CatalogueTaskDTO.fromTask(cancelledTask, nameShort);
             }
+            return CatalogueTaskDTO.fromTask(task, nameShort, format.get().extension());
         }
-        return result;
+        return CatalogueTaskDTO.fromTask(task, nameShort);
     }
 
     public void catalogueTaskDelete(UUID id) {
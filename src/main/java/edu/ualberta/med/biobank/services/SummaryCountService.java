@@ -0,0 +1,136 @@
+package edu.ualberta.med.biobank.services;
+
+import edu.ualberta.med.biobank.repositories.CollectionEventRepository;
+import edu.ualberta.med.biobank.repositories.PatientRepository;
+import jakarta.transaction.Transactional;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the source specimen and comment counts of patients and collection events in the PATIENT_SUMMARY and
+ * COLLECTION_EVENT_SUMMARY tables, so that they are not counted each time a patient or visit is read.
+ *
+ * The counts are changed in the same transaction as the rows they count, so they only follow what this application
+ * writes. Aliquots are added by the legacy client and are therefore not kept here, they are counted when read.
+ * Specimens and comments added outside this application, by the legacy client or by hand, leave the summaries out
+ * of date until {@link #repair()} runs.
+ */
+@Service
+public class SummaryCountService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SummaryCountService.class);
+
+    private final PatientRepository patientRepository;
+
+    private final CollectionEventRepository collectionEventRepository;
+
+    private final int repairBatchSize;
+
+    public SummaryCountService(
+        PatientRepository patientRepository,
+        CollectionEventRepository collectionEventRepository,
+        @Value("${biobank.summaries.repair-batch-size:1000}") int repairBatchSize
+    ) {
+        this.patientRepository = patientRepository;
+        this.collectionEventRepository = collectionEventRepository;
+        this.repairBatchSize = repairBatchSize;
+    }
+
+    @Transactional
+    public void patientCreated(Integer patientId) {
+        patientRepository.createSummary(patientId);
+    }
+
+    @Transactional
+    public void patientCommentAdded(Integer patientId) {
+        patientRepository.addToSummary(patientId, 0, 1);
+    }
+
+    @Transactional
+    public void collectionEventCreated(Integer ceventId) {
+        collectionEventRepository.createSummary(ceventId);
+    }
+
+    /**
+     * Only collection events without specimens can be deleted, so the patient's counts do not change.
+     */
+    @Transactional
+    public void collectionEventDeleted(Integer ceventId) {
+        collectionEventRepository.deleteSummary(ceventId);
+    }
+
+    @Transactional
+    public void collectionEventCommentAdded(Integer ceventId) {
+        collectionEventRepository.addCommentsToSummary(ceventId, 1);
+    }
+
+    @Transactional
+    public void sourceSpecimenAdded(Integer patientId, Integer ceventId, Date createdAt) {
+        collectionEventRepository.addSpecimensToSummary(ceventId, 1, createdAt);
+        patientRepository.addToSummary(patientId, 1, 0);
+    }
+
+    /**
+     * Compares the summaries with the rows they count, and counts again the ones that are missing or differ.
+     * Summaries of deleted patients and collection events are removed.
+     *
+     * The rows are checked {@code biobank.summaries.repair-batch-size} at a time, each batch is repaired in its own
+     * transaction.
+     */
+    @Scheduled(cron = "${biobank.summaries.repair-cron:0 30 3 * * ?}")
+    public void repair() {
+        var ceventsRepaired = repair(
+            collectionEventRepository::findIdsAfter,
+            collectionEventRepository::findDriftedSummaries,
+            collectionEventRepository::recomputeSummaries
+        );
+        var ceventsRemoved = collectionEventRepository.deleteOrphanSummaries();
+
+        // patient counts are checked against the specimens, not the collection event summaries, so the order
+        // does not matter
+        var patientsRepaired = repair(
+            patientRepository::findIdsAfter,
+            patientRepository::findDriftedSummaries,
+            patientRepository::recomputeSummaries
+        );
+        var patientsRemoved = patientRepository.deleteOrphanSummaries();
+
+        logger.info(
+            "summaries repaired: {} collection events, {} patients; removed: {} collection events, {} patients",
+            ceventsRepaired,
+            patientsRepaired,
+            ceventsRemoved,
+            patientsRemoved
+        );
+    }
+
+    private int repair(
+        BiFunction<Integer, Integer, List<Integer>> idsAfter,
+        Function<List<Integer>, List<Integer>> drifted,
+        Function<List<Integer>, Integer> recompute
+    ) {
+        var repaired = 0;
+        var lastId = 0;
+        while (true) {
+            var ids = idsAfter.apply(lastId, repairBatchSize);
+            if (ids.isEmpty()) {
+                return repaired;
+            }
+            lastId = ids.get(ids.size() - 1);
+
+            var toRepair = drifted.apply(ids);
+            if (!toRepair.isEmpty()) {
+                logger.debug("repairing {} summaries after id {}", toRepair.size(), lastId);
+                recompute.apply(toRepair);
+                repaired += toRepair.size();
+            }
+        }
+    }
+}
@@ -1,55 +1,136 @@
 package edu.ualberta.med.biobank.services;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import edu.ualberta.med.biobank.domain.Operation;
 import edu.ualberta.med.biobank.domain.Task;
-
+import edu.ualberta.med.biobank.exception.AppErrorException;
+import edu.ualberta.med.biobank.services.tasks.OperationExecutor;
+import edu.ualberta.med.biobank.services.tasks.OperationFailedEvent;
+import edu.ualberta.med.biobank.services.tasks.TaskStore;
+import edu.ualberta.med.biobank.services.tasks.TaskStore.StoredTask;
+
+/**
+ * Keeps track of the tasks created for long running {@link Operation}-s.
+ *
+ * The tasks are kept in a {@link TaskStore}. When the store is shared by several nodes, each node renews the
+ * leases of the tasks it is running, and claims the tasks left behind by nodes that stopped. The node running a
+ * task only changes the task while it holds the claim, a user can cancel a task from any node. An operation can
+ * only be run again on another node if its type was registered with {@link #registerOperation}.
+ *
+ * Operations are run by an {@link OperationExecutor}.
+ */
 @Service
 public class TaskService {
 
     @SuppressWarnings("unused")
     private static final Logger logger = LoggerFactory.getLogger(TaskService.class);
 
+    /**
+     * The maximum number of tasks claimed from other nodes each time the store is polled.
+     */
+    private static final int CLAIM_LIMIT = 10;
+
+    private TaskStore store;
+
+    private OperationExecutor executor;
 
-    private ApplicationEventPublisher publisher;
+    private String node;
 
-    private Map<UUID, Task> tasks = new ConcurrentHashMap<>();
+    private Duration lease;
+
+    private Map<String, BiFunction<Task, String, ? extends Operation>> operationFactories = new ConcurrentHashMap<>();
+
+    public TaskService(
+        TaskStore store,
+        OperationExecutor executor,
+        @Value("${biobank.tasks.node:}") String node,
+        @Value("${biobank.tasks.lease-seconds:60}") long leaseSeconds
+    ) {
+        this.store = store;
+        this.executor = executor;
+        this.node = node.isBlank() ? defaultNode() : node;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+    }
 
-    public TaskService(ApplicationEventPublisher publisher) {
-        this.publisher = publisher;
+    /**
+     * Allows operations of {@code type}, created on another node, to be run on this one.
+     */
+    public void registerOperation(String type, BiFunction<Task, String, ? extends Operation> factory) {
+        operationFactories.put(type, factory);
     }
 
     public Task get(UUID id) {
-        return tasks.get(id);
+        return store.get(id).orElse(null);
     }
 
-    public void submit(Operation op) {
-        tasks.computeIfAbsent(op.task().id(), id -> op.task());
-        publisher.publishEvent(op);
+    /**
+     * Queues the operation to be run.
+     *
+     * @return the task that tracks the work. It is not {@code op}'s task when the same operation was already
+     * queued or running, the caller joins that operation instead.
+     */
+    public Task submit(Operation op) {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        var owner = auth != null ? auth.getName() : null;
+        var accepted = executor.submit(
+            op,
+            owner,
+            () -> store.create(new StoredTask(op.task(), owner, op.type(), op.payload()), node, lease)
+        );
+        return accepted.task();
+    }
+
+    /**
+     * Makes the completed task of an operation that is not run again, because its result is reused, known to
+     * this service. Nothing is changed if the task is already known.
+     */
+    public Task restoreCompleted(Operation op) {
+        var existing = store.get(op.task().id());
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        var owner = auth != null ? auth.getName() : null;
+        try {
+            store.create(new StoredTask(op.task(), owner, op.type(), op.payload()), node, lease);
+        } catch (DuplicateKeyException e) {
+            // restored by another node at the same time
+        }
+        return op.task();
     }
 
     public void start(UUID id) {
-        tasks.computeIfPresent(id, (_id, task) -> task.toRunning());
+        store.updateClaimed(id, node, task -> task.toRunning());
     }
 
     public void progress(UUID id, int progress) {
-        tasks.computeIfPresent(id, (_id, task) -> task.withProgress(progress));
+        store.progress(id, progress);
     }
 
     public void cancel(UUID id) {
-        tasks.computeIfPresent(id, (_id, task) -> task.toCancelled());
+        store.update(id, task -> task.toCancelled());
+        executor.cancel(id);
     }
 
     public Boolean active(UUID id)  {
-        var task = tasks.get(id);
+        var task = get(id);
         if (task == null) {
             throw new IllegalArgumentException("Task %s not found".formatted(id.toString()));
         }
@@ -57,13 +138,72 @@ public class TaskService {
     }
 
     public void complete(UUID id) {
-        tasks.computeIfPresent(id, (_id, task) -> task.toCompleted());
+        store.updateClaimed(id, node, task -> task.toCompleted());
+    }
+
+    /**
+     * Marks the task as failed, its operation stopped without creating its result.
+     */
+    public void fail(UUID id) {
+        store.updateClaimed(id, node, task -> task.toFailed());
+    }
+
+    @EventListener
+    public void operationFailed(OperationFailedEvent event) {
+        fail(event.op().task().id());
+    }
+
+    /**
+     * Removes the finished tasks that have not changed for {@code age}.
+     */
+    public int purge(Duration age) {
+        return store.purge(age);
     }
 
     public void shutdown() {
-        tasks.values().stream().forEach(task -> {
-            tasks.computeIfPresent(task.id(), (_id, t) -> t.toCancelled());
-        });
+        executor.shutdown();
+        store.release(node);
+    }
+
+    /**
+     * Renews the leases of the tasks running on this node, stops the ones cancelled on another node, and runs
+     * the operations of the tasks whose lease expired.
+     */
+    @Scheduled(
+        fixedDelayString = "${biobank.tasks.poll-interval-ms:15000}",
+        initialDelayString = "${biobank.tasks.poll-interval-ms:15000}"
+    )
+    public void poll() {
+        try {
+            store.heartbeat(node, executor.activeTasks(), lease);
+            for (UUID id : executor.runningTasks()) {
+                if (store.get(id).map(Task::isCancelled).orElse(false)) {
+                    executor.cancel(id);
+                }
+            }
+
+            for (StoredTask stored : store.claimExpired(node, lease, CLAIM_LIMIT)) {
+                var factory = operationFactories.get(stored.operationType());
+                if (factory == null) {
+                    logger.error(
+                        "task {}: no operation registered for type {}",
+                        stored.task().id(),
+                        stored.operationType()
+                    );
+                    store.updateClaimed(stored.task().id(), node, task -> task.toCancelled());
+                    continue;
+                }
+                logger.info("task {}: claimed by node {}", stored.task().id(), node);
+                var op = factory.apply(stored.task(), stored.payload());
+                var accepted = executor.submit(op, stored.owner(), () -> {});
+                if (accepted != op) {
+                    // the same operation is already running here, under another task
+                    store.updateClaimed(stored.task().id(), node, task -> task.toCancelled());
+                }
+            }
+        } catch (DataAccessException | AppErrorException e) {
+            logger.error("could not poll the task store: {}", e.getMessage());
+        }
     }
 
     @EventListener
@@ -71,4 +211,14 @@ public class TaskService {
         logger.info("received app shutdown event");
         this.shutdown();
     }
+
+    private static String defaultNode() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return "%s:%d".formatted(host, ProcessHandle.current().pid());
+    }
 }
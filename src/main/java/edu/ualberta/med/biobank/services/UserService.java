@@ -1,5 +1,6 @@
 package edu.ualberta.med.biobank.services;
 
+import edu.ualberta.med.biobank.applicationevents.UserLoggedInEvent;
 import edu.ualberta.med.biobank.domain.PermissionEnum;
 import edu.ualberta.med.biobank.domain.User;
 import edu.ualberta.med.biobank.dtos.DomainDTO;
@@ -10,30 +11,98 @@ import edu.ualberta.med.biobank.dtos.UserDTO;
 import edu.ualberta.med.biobank.errors.AppError;
 import edu.ualberta.med.biobank.errors.EntityNotFound;
 import edu.ualberta.med.biobank.repositories.UserRepository;
+import edu.ualberta.med.biobank.util.ExpiringCache;
 import edu.ualberta.med.biobank.util.LoggingUtils;
 import io.jbock.util.Either;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Tuple;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 @Service
 public class UserService {
 
-    private final Logger logger = LoggerFactory.getLogger(UserService.class);
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     @PersistenceContext
     private EntityManager em;
 
     private UserRepository userRepository;
 
-    UserService(UserRepository userRepository) {
+    /**
+     * Users, with their memberships, resolved by {@link #findOneWithMemberships}, keyed by username.
+     */
+    private ExpiringCache<String, UserDTO> membershipCache;
+
+    /**
+     * Users resolved by {@link #findByApiKey}, keyed by a hash of the API key. The keys themselves are not kept.
+     */
+    private ExpiringCache<String, UserDTO> apiKeyCache;
+
+    /**
+     * Hashes of API keys that did not match a user, so that requests repeating an unknown key do not reach the
+     * database. Kept apart from {@link #apiKeyCache} so that a flood of unknown keys does not evict valid ones.
+     */
+    private ExpiringCache<String, Boolean> unknownApiKeyCache;
+
+    /**
+     * Incremented when the API keys change, a lookup that started before the change does not cache its result.
+     */
+    private final AtomicLong apiKeyGeneration = new AtomicLong();
+
+    private volatile String apiKeysFingerprint;
+
+    private Timer apiKeyLookupCached;
+
+    private Timer apiKeyLookupUnknown;
+
+    private Timer apiKeyLookupDatabase;
+
+    UserService(
+        UserRepository userRepository,
+        MeterRegistry meterRegistry,
+        @Value("${biobank.users.membership-cache.max-size:1000}") int membershipCacheSize,
+        @Value("${biobank.users.membership-cache.ttl-seconds:60}") long membershipCacheTtl,
+        @Value("${biobank.users.api-key-cache.max-size:1000}") int apiKeyCacheSize,
+        @Value("${biobank.users.api-key-cache.ttl-seconds:60}") long apiKeyCacheTtl,
+        @Value("${biobank.users.api-key-cache.unknown-max-size:10000}") int unknownApiKeyCacheSize,
+        @Value("${biobank.users.api-key-cache.unknown-ttl-seconds:10}") long unknownApiKeyCacheTtl
+    ) {
         this.userRepository = userRepository;
+        this.membershipCache = new ExpiringCache<String, UserDTO>(
+            membershipCacheSize,
+            Duration.ofSeconds(membershipCacheTtl)
+        ).bindTo(meterRegistry, "memberships");
+        this.apiKeyCache = new ExpiringCache<String, UserDTO>(
+            apiKeyCacheSize,
+            Duration.ofSeconds(apiKeyCacheTtl)
+        ).bindTo(meterRegistry, "api-keys");
+        this.unknownApiKeyCache = new ExpiringCache<String, Boolean>(
+            unknownApiKeyCacheSize,
+            Duration.ofSeconds(unknownApiKeyCacheTtl)
+        ).bindTo(meterRegistry, "unknown-api-keys");
+        this.apiKeyLookupCached = apiKeyLookupTimer(meterRegistry, "cache");
+        this.apiKeyLookupUnknown = apiKeyLookupTimer(meterRegistry, "unknown-cache");
+        this.apiKeyLookupDatabase = apiKeyLookupTimer(meterRegistry, "database");
     }
 
     public User getById(int id) {
@@ -51,27 +120,143 @@ public class UserService {
         return Either.right(user);
     }
 
+    /**
+     * Users are cached for {@code biobank.users.api-key-cache.ttl-seconds}, and unknown keys for
+     * {@code biobank.users.api-key-cache.unknown-ttl-seconds}. Both are discarded when {@link #checkApiKeys()}
+     * finds that the USER_API_KEY table has changed, so a revoked key is refused within
+     * {@code biobank.users.api-key-cache.check-interval-ms} on every node, or the TTL if that is shorter.
+     */
     public Either<AppError, UserDTO> findByApiKey(String apiKey) {
+        var start = System.nanoTime();
+        var hash = hashApiKey(apiKey);
+
+        var cached = apiKeyCache.get(hash);
+        if (cached.isPresent()) {
+            apiKeyLookupCached.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Either.right(cached.get());
+        }
+
+        if (unknownApiKeyCache.get(hash).isPresent()) {
+            apiKeyLookupUnknown.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Either.left(new EntityNotFound("user by API key"));
+        }
+
+        var generation = apiKeyGeneration.get();
         var users = userTuplesToDTO(userRepository.findByApiKey(apiKey, Tuple.class));
+        var cacheable = generation == apiKeyGeneration.get();
+        apiKeyLookupDatabase.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
         if (users.size() <= 0) {
+            if (cacheable) {
+                unknownApiKeyCache.put(hash, true);
+            }
             return Either.left(new EntityNotFound("user by API key"));
         }
 
         var user = users.stream().findFirst().get();
         logger.debug("user: {}", LoggingUtils.prettyPrintJson(user));
+        if (cacheable) {
+            apiKeyCache.put(hash, user);
+        }
         return Either.right(user);
     }
 
+    /**
+     * Discards the cached API key lookups when the USER_API_KEY table has changed, on this node or another.
+     */
+    @Scheduled(
+        fixedDelayString = "${biobank.users.api-key-cache.check-interval-ms:10000}",
+        initialDelayString = "${biobank.users.api-key-cache.check-interval-ms:10000}"
+    )
+    public void checkApiKeys() {
+        String fingerprint;
+        try {
+            fingerprint = userRepository.apiKeysFingerprint();
+        } catch (DataAccessException e) {
+            // the cached lookups cannot be checked, they are not trusted
+            logger.warn("could not check the API keys: {}", e.getMessage());
+            invalidateApiKeys();
+            return;
+        }
+
+        if (!Objects.equals(fingerprint, apiKeysFingerprint)) {
+            invalidateApiKeys();
+            apiKeysFingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Discards the cached API key lookups, the next request with an API key looks it up in the database.
+     */
+    public void invalidateApiKeys() {
+        apiKeyGeneration.incrementAndGet();
+        apiKeyCache.invalidateAll();
+        unknownApiKeyCache.invalidateAll();
+    }
+
+    /**
+     * The user's memberships are cached for {@code biobank.users.membership-cache.ttl-seconds}, so changes
+     * made to them outside this application take up to that long to be used. Changes made by this
+     * application should call {@link #invalidateMemberships(String)}.
+     */
     public Either<AppError, UserDTO> findOneWithMemberships(String username) {
-        var users = userTuplesToDTO(userRepository.findByLogin(username, Tuple.class));
-        if (users.size() != 1) {
+        var user = membershipCache.get(username, this::loadOneWithMemberships);
+        if (user == null) {
             return Either.left(new EntityNotFound("user by username"));
         }
-        var user = users.stream().findFirst().get();
         return Either.right(user);
     }
 
-    private Collection<UserDTO> userTuplesToDTO(Collection<Tuple> tuples) {
+    /**
+     * Discards the cached memberships for the user, the next permission check loads them from the database.
+     */
+    public void invalidateMemberships(String username) {
+        membershipCache.invalidate(username);
+    }
+
+    /**
+     * Discards the cached memberships for all users.
+     */
+    public void invalidateAllMemberships() {
+        membershipCache.invalidateAll();
+    }
+
+    @EventListener
+    void handleUserLoggedInEvent(UserLoggedInEvent event) {
+        // a user logging in gets the memberships currently in the database
+        invalidateMemberships(event.getUsername());
+    }
+
+    private static String hashApiKey(String apiKey) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Timer apiKeyLookupTimer(MeterRegistry registry, String source) {
+        return Timer.builder("biobank.api-key.lookups")
+            .description("time taken to resolve the user for an API key")
+            .tag("source", source)
+            .register(registry);
+    }
+
+    private UserDTO loadOneWithMemberships(String username) {
+        var users = userTuplesToDTO(userRepository.findByLogin(username, Tuple.class));
+        if (users.size() != 1) {
+            return null;
+        }
+        return users.stream().findFirst().get();
+    }
+
+    /**
+     * Folds the rows returned by {@link UserRepository#findByLogin} into users, one row for each combination of
+     * the user's groups, memberships, domains, roles and permissions.
+     */
+    static Collection<UserDTO> userTuplesToDTO(Collection<Tuple> tuples) {
         Map<Integer, UserDTO> users = new HashMap<>();
 
         tuples
@@ -126,6 +311,6 @@ public class UserService {
                 }
             });
 
-        return users.values();
+        return users.values().stream().map(UserDTO::withUserPermissions).toList();
     }
 }
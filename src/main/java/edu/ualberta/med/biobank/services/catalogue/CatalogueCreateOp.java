@@ -4,14 +4,55 @@ import edu.ualberta.med.biobank.domain.Operation;
 import edu.ualberta.med.biobank.domain.Task;
 
 public class CatalogueCreateOp extends Operation {
+
+    public static final String TYPE = "study-catalogue";
+
+    private static final char PAYLOAD_SEPARATOR = '|';
+
     private String studyNameShort;
 
-    public CatalogueCreateOp(String studyNameShort) {
-        super(Task.create());
+    private CatalogueFormat format;
+
+    public CatalogueCreateOp(String studyNameShort, CatalogueFormat format) {
+        this(Task.create(), studyNameShort, format);
+    }
+
+    CatalogueCreateOp(Task task, String studyNameShort, CatalogueFormat format) {
+        super(task);
         this.studyNameShort = studyNameShort;
+        this.format = format;
+    }
+
+    /**
+     * Creates the operation for a stored task, see {@link #payload()}.
+     */
+    static CatalogueCreateOp fromPayload(Task task, String payload) {
+        var separator = payload.indexOf(PAYLOAD_SEPARATOR);
+        if (separator < 0) {
+            return new CatalogueCreateOp(task, payload, CatalogueFormat.XLSX);
+        }
+        var format = CatalogueFormat.fromExtension(payload.substring(0, separator)).orElse(CatalogueFormat.XLSX);
+        return new CatalogueCreateOp(task, payload.substring(separator + 1), format);
     }
 
     public String studyNameShort() {
         return studyNameShort;
     }
+
+    public CatalogueFormat format() {
+        return format;
+    }
+
+    @Override
+    public String type() {
+        return TYPE;
+    }
+
+    /**
+     * The format's extension and the study's short name.
+     */
+    @Override
+    public String payload() {
+        return format.extension() + PAYLOAD_SEPARATOR + studyNameShort;
+    }
 }
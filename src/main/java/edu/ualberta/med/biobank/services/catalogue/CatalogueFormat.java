@@ -0,0 +1,36 @@
+package edu.ualberta.med.biobank.services.catalogue;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The file formats a study catalogue can be created in.
+ */
+public enum CatalogueFormat {
+    XLSX("xlsx"),
+    CSV("csv"),
+    TSV("tsv"),
+    CSV_GZIP("csv.gz"),
+    TSV_GZIP("tsv.gz");
+
+    private final String extension;
+
+    CatalogueFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * The file name extension, without the leading dot. Also the name used to select the format in requests.
+     */
+    public String extension() {
+        return extension;
+    }
+
+    public boolean isGzipped() {
+        return extension.endsWith(".gz");
+    }
+
+    public static Optional<CatalogueFormat> fromExtension(String extension) {
+        return Arrays.stream(values()).filter(f -> f.extension.equalsIgnoreCase(extension)).findFirst();
+    }
+}
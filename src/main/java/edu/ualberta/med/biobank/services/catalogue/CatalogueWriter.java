@@ -0,0 +1,47 @@
+package edu.ualberta.med.biobank.services.catalogue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import edu.ualberta.med.biobank.dtos.AliquotDTO;
+import edu.ualberta.med.biobank.util.CancellationToken;
+
+/**
+ * Writes the aliquots of a study catalogue to a file.
+ *
+ * The file only appears under its name once {@link #save(CancellationToken)} completes. Closing a writer that was
+ * not saved discards what was written.
+ */
+interface CatalogueWriter extends Closeable {
+
+    /**
+     * The columns of a catalogue, in all formats.
+     */
+    SheetConfig[] COLUMNS = new SheetConfig[] {
+        new SheetConfig("Patient #", 3500),
+        new SheetConfig("Visit #", 2500),
+        new SheetConfig("Inventory ID", 4000),
+        new SheetConfig("Specimen Type", 7000),
+        new SheetConfig("Time Drawn", 6500),
+        new SheetConfig("Quantity", 4500),
+        new SheetConfig("Center", 3000),
+        new SheetConfig("Top Container", 3000)
+    };
+
+    /**
+     * Adds a row for the aliquot.
+     *
+     * @throws java.io.UncheckedIOException if the row could not be written.
+     */
+    void write(AliquotDTO aliquot);
+
+    /**
+     * The number of aliquots written so far.
+     */
+    int rowCount();
+
+    /**
+     * Completes the file. Stops with a {@link java.util.concurrent.CancellationException} when
+     * {@code cancellation} is cancelled.
+     */
+    void save(CancellationToken cancellation) throws IOException;
+}
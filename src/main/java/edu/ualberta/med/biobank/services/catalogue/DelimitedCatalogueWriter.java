@@ -0,0 +1,145 @@
+package edu.ualberta.med.biobank.services.catalogue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import edu.ualberta.med.biobank.dtos.AliquotDTO;
+import edu.ualberta.med.biobank.util.CancellationToken;
+import edu.ualberta.med.biobank.util.DateUtil;
+
+/**
+ * Writes a study catalogue as comma or tab separated values, optionally compressed with gzip.
+ *
+ * Unlike {@link StudyCatalogueWriter}, rows are not kept in memory: each row is written to a buffer that is
+ * flushed to the file as it fills. The file is written as {@code <filename>.part} and renamed when saved.
+ *
+ * A catalogue can also be written in parts, by several writers created with {@link #chunk(Path, CatalogueFormat)},
+ * that are then added in order to the catalogue's writer with {@link #append(Path, int)}.
+ */
+class DelimitedCatalogueWriter implements CatalogueWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path target;
+
+    private final Path partial;
+
+    private final OutputStream output;
+
+    private final CSVPrinter printer;
+
+    private final Object[] values = new Object[COLUMNS.length];
+
+    private int rowCount = 0;
+
+    private boolean saved = false;
+
+    public DelimitedCatalogueWriter(Path target, CatalogueFormat format) throws IOException {
+        this(target, format, true);
+    }
+
+    private DelimitedCatalogueWriter(Path target, CatalogueFormat format, boolean complete) throws IOException {
+        this.target = target;
+        this.partial = target.resolveSibling(target.getFileName() + ".part");
+
+        OutputStream stream = Channels.newOutputStream(
+            FileChannel.open(
+                partial,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            )
+        );
+        if (complete && format.isGzipped()) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        this.output = stream;
+
+        var csvFormat = switch (format) {
+            case TSV, TSV_GZIP -> CSVFormat.TDF;
+            default -> CSVFormat.DEFAULT;
+        };
+        if (complete) {
+            var headers = Arrays.stream(COLUMNS).map(SheetConfig::heading).toArray(String[]::new);
+            csvFormat = csvFormat.builder().setHeader(headers).build();
+        }
+        this.printer = new CSVPrinter(
+            new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE),
+            csvFormat
+        );
+    }
+
+    /**
+     * Creates a writer for a part of a catalogue. The part has no headers and is not compressed.
+     */
+    static DelimitedCatalogueWriter chunk(Path target, CatalogueFormat format) throws IOException {
+        return new DelimitedCatalogueWriter(target, format, false);
+    }
+
+    /**
+     * Adds the rows of a part, saved by a writer created with {@link #chunk(Path, CatalogueFormat)}, after the
+     * rows written so far.
+     */
+    void append(Path chunk, int rows) throws IOException {
+        printer.flush();
+        Files.copy(chunk, output);
+        rowCount += rows;
+    }
+
+    @Override
+    public void write(AliquotDTO aliquot) {
+        values[0] = aliquot.pnumber();
+        values[1] = aliquot.visitNumber();
+        values[2] = aliquot.inventoryId();
+        values[3] = aliquot.specimenType();
+        values[4] = aliquot.timeDrawn() != null ? DateUtil.dateToString(aliquot.timeDrawn()) : "";
+        values[5] = aliquot.quantity() != null ? aliquot.quantity().toPlainString() : "";
+        values[6] = aliquot.center();
+        values[7] = aliquot.topContainer();
+
+        try {
+            printer.printRecord(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rowCount++;
+    }
+
+    @Override
+    public int rowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void save(CancellationToken cancellation) throws IOException {
+        cancellation.throwIfCancelled();
+        printer.close();
+        cancellation.throwIfCancelled();
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        saved = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!saved) {
+            try {
+                printer.close();
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+}
@@ -1,23 +1,37 @@
 package edu.ualberta.med.biobank.services.catalogue;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import edu.ualberta.med.biobank.dtos.AliquotDTO;
-import edu.ualberta.med.biobank.repositories.SpecimenRepository;
+import edu.ualberta.med.biobank.repositories.CustomSpecimenRepository;
 import edu.ualberta.med.biobank.services.TaskService;
-import jakarta.persistence.Tuple;
+import edu.ualberta.med.biobank.util.CancellationToken;
+import jakarta.annotation.PreDestroy;
 
 /**
  * This class implements the catalogue generation as a long running service.
+ *
+ * Large CSV and TSV catalogues are created in parallel: the study's patients are split into ranges of patient
+ * numbers, each range is read on its own connection and written to its own part, and the parts are joined in
+ * order. At most {@code biobank.catalogue.parallelism} ranges are read at the same time, by all the catalogues
+ * being created. XLSX catalogues are always created by a single thread, since a workbook can not be written
+ * concurrently.
  */
 @Service
 class StudyCatalogueService {
@@ -25,47 +39,230 @@ class StudyCatalogueService {
     @SuppressWarnings("unused")
     private static final Logger logger = LoggerFactory.getLogger(StudyCatalogueService.class);
 
+    /**
+     * The task's progress is updated each time this many rows are written.
+     */
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    /**
+     * The study is split in this many ranges for each thread, so that threads that finish early can read
+     * another range.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
     @Value("${biobank.catalogue.folder}")
     private String catalogueFolder;
 
     private TaskService taskService;
 
-    private SpecimenRepository specimenRepository;
+    private CustomSpecimenRepository customSpecimenRepository;
+
+    private StudyCatalogueCache catalogueCache;
+
+    private int parallelism;
+
+    private long partitionMinAliquots;
+
+    private ExecutorService partitionExecutor;
 
-    public StudyCatalogueService(TaskService taskService, SpecimenRepository specimenRepository) {
+    public StudyCatalogueService(
+        TaskService taskService,
+        CustomSpecimenRepository customSpecimenRepository,
+        StudyCatalogueCache catalogueCache,
+        @Value("${biobank.catalogue.parallelism:1}") int parallelism,
+        @Value("${biobank.catalogue.partition-min-aliquots:100000}") long partitionMinAliquots
+    ) {
         this.taskService = taskService;
-        this.specimenRepository = specimenRepository;
+        this.customSpecimenRepository = customSpecimenRepository;
+        this.catalogueCache = catalogueCache;
+        this.parallelism = parallelism;
+        this.partitionMinAliquots = partitionMinAliquots;
+        if (parallelism > 1) {
+            var threadCount = new AtomicInteger();
+            this.partitionExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                var thread = new Thread(runnable, "catalogue-partition-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.taskService.registerOperation(CatalogueCreateOp.TYPE, CatalogueCreateOp::fromPayload);
     }
 
-    @Async
+    /**
+     * Called on one of the {@link edu.ualberta.med.biobank.services.tasks.OperationExecutor}'s threads. Any other
+     * exception, for example from a range read on a partition thread, is passed on and the executor marks the task
+     * as failed.
+     */
     @EventListener
     public void catalogue(CatalogueCreateOp op) {
-        logger.info("Starting task %s..".formatted(op.task().id()));
-        taskService.start(op.task().id());
+        var taskId = op.task().id();
+        var cancellation = op.cancellation();
+        logger.info("Starting task %s..".formatted(taskId));
+        taskService.start(taskId);
+
+        // taken before reading the specimens, so that changes made while the catalogue is created are detected
+        var fingerprint = catalogueCache.fingerprint(op.studyNameShort());
+        var total = customSpecimenRepository.catalogueCount(op.studyNameShort());
+
+        var file = catalogueCache.catalogueFile(op.studyNameShort(), taskId, op.format());
+        createCatalogueFolderIfNotExist();
+
+        try (var writer = createWriter(file, op.format())) {
+            if (writer instanceof DelimitedCatalogueWriter delimited && isPartitioned(total)) {
+                writePartitions(op, delimited, file, total);
+            } else {
+                customSpecimenRepository.catalogue(op.studyNameShort(), cancellation, aliquot -> {
+                    writer.write(aliquot);
+                    if (writer.rowCount() % PROGRESS_INTERVAL == 0) {
+                        taskService.progress(taskId, progress(writer.rowCount(), total));
+                    }
+                });
+            }
+
+            writer.save(cancellation);
+            catalogueCache.saved(op.studyNameShort(), taskId, op.format(), fingerprint);
+            taskService.progress(taskId, 100);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("task {}: could not write catalogue {}", taskId, file, e);
+            taskService.fail(taskId);
+            return;
+        } catch (CancellationException e) {
+            logger.info("task cancelled %s..".formatted(taskId));
+            return;
+        }
+
+        logger.info("task finished %s..".formatted(taskId));
+        taskService.complete(taskId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (partitionExecutor != null) {
+            partitionExecutor.shutdownNow();
+        }
+    }
+
+    private boolean isPartitioned(long total) {
+        return partitionExecutor != null && total >= partitionMinAliquots;
+    }
+
+    /**
+     * Reads the ranges of patients on the partition threads, each to its own part, and then adds the parts to
+     * {@code writer} in order. The task's progress is the sum of the rows written by all the ranges.
+     *
+     * If a range fails, or the operation is cancelled, the other ranges are stopped.
+     */
+    private void writePartitions(CatalogueCreateOp op, DelimitedCatalogueWriter writer, Path file, long total)
+        throws IOException {
+        var taskId = op.task().id();
+        var starts = customSpecimenRepository.cataloguePartitions(
+            op.studyNameShort(),
+            parallelism * PARTITIONS_PER_THREAD
+        );
+        var rows = new AtomicIntegerArray(starts.size());
+        var cancellation = new CancellationToken();
+        var unregister = op.cancellation().onCancel(cancellation::cancel);
 
-        Map<String, AliquotDTO> specimens = new LinkedHashMap<>();
-        specimenRepository
-            .findByStudy(op.studyNameShort(), Tuple.class)
-            .stream()
-            .forEach(row -> {
-            var inventoryId = row.get("inventory_Id", String.class);
-            specimens.computeIfAbsent(inventoryId, id -> AliquotDTO.fromTuple(row));
-        });
+        List<Path> chunks = new ArrayList<>();
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < starts.size(); i++) {
+                var partition = i;
+                var from = starts.get(i);
+                var to = i + 1 < starts.size() ? starts.get(i + 1) : null;
+                var chunk = file.resolveSibling("%s.%d".formatted(file.getFileName(), i));
+                chunks.add(chunk);
 
-        taskService.progress(op.task().id(), 50);
+                results.add(partitionExecutor.submit(() -> {
+                    try (var chunkWriter = DelimitedCatalogueWriter.chunk(chunk, op.format())) {
+                        customSpecimenRepository.catalogue(op.studyNameShort(), from, to, cancellation, aliquot -> {
+                            chunkWriter.write(aliquot);
+                            if (rows.incrementAndGet(partition) % PROGRESS_INTERVAL == 0) {
+                                taskService.progress(taskId, progress(sum(rows), total));
+                            }
+                        });
+                        chunkWriter.save(cancellation);
+                        return chunkWriter.rowCount();
+                    }
+                }));
+            }
 
+            for (int i = 0; i < results.size(); i++) {
+                var count = await(results.get(i), cancellation);
+                logger.debug("task {}: range {} of {} has {} aliquots", taskId, i + 1, results.size(), count);
+                writer.append(chunks.get(i), count);
+            }
+        } finally {
+            unregister.run();
+            cancellation.cancel();
+            awaitStopped(results);
+            for (Path chunk : chunks) {
+                Files.deleteIfExists(chunk);
+            }
+        }
+    }
+
+    /**
+     * Waits for a range to be written. If it failed, the exception it failed with is thrown.
+     */
+    private static int await(Future<Integer> result, CancellationToken cancellation) throws IOException {
         try {
-            var filename = "%s/%s_%s.xlsx".formatted(catalogueFolder, op.studyNameShort(), op.task().id());
-            createCatalogueFolderIfNotExist();
-            var writer = new StudyCatalogueWriter(specimens.values());
-            writer.write(filename);
-            taskService.progress(op.task().id(), 100);
-        } catch (IOException e) {
-            e.printStackTrace();
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancellation.cancel();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            cancellation.cancel();
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
         }
+    }
 
-        logger.info("task finished %s..".formatted(op.task().id()));
-        taskService.complete(op.task().id());
+    /**
+     * Waits for the ranges that are still being written to stop, so that their parts can be removed.
+     */
+    private static void awaitStopped(List<Future<Integer>> results) {
+        for (Future<Integer> result : results) {
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | CancellationException e) {
+                // already reported by await()
+            }
+        }
+    }
+
+    private static int sum(AtomicIntegerArray values) {
+        int sum = 0;
+        for (int i = 0; i < values.length(); i++) {
+            sum += values.get(i);
+        }
+        return sum;
+    }
+
+    static CatalogueWriter createWriter(Path file, CatalogueFormat format) throws IOException {
+        return switch (format) {
+            case XLSX -> new StudyCatalogueWriter(file);
+            default -> new DelimitedCatalogueWriter(file, format);
+        };
+    }
+
+    /**
+     * Saving the file takes some time, so 100 is only reported once it has been written.
+     */
+    private static int progress(int rows, long total) {
+        if (total <= 0) {
+            return 0;
+        }
+        return (int) Math.min(99, rows * 100L / total);
     }
 
     private void createCatalogueFolderIfNotExist() {
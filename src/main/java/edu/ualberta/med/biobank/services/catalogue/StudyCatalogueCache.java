@@ -0,0 +1,198 @@
+package edu.ualberta.med.biobank.services.catalogue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import edu.ualberta.med.biobank.domain.Task;
+import edu.ualberta.med.biobank.repositories.CustomSpecimenRepository;
+import edu.ualberta.med.biobank.services.TaskService;
+
+/**
+ * Reuses a catalogue created earlier when the study's specimens have not changed since.
+ *
+ * When a catalogue is saved, the study's fingerprint, see {@link CustomSpecimenRepository#catalogueFingerprint},
+ * taken before the specimens were read, is saved next to it in a file with the {@code .fingerprint} extension.
+ * A new request for the study is given the task of the catalogue with the current fingerprint, if there is one.
+ *
+ * The files in {@code biobank.catalogue.folder} are kept under {@code biobank.catalogue.disk-budget-mb}, the
+ * least recently used catalogues are removed first.
+ */
+@Service
+public class StudyCatalogueCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudyCatalogueCache.class);
+
+    private static final String FINGERPRINT_EXTENSION = ".fingerprint";
+
+    @Value("${biobank.catalogue.folder}")
+    private String catalogueFolder;
+
+    @Value("${biobank.catalogue.disk-budget-mb:1024}")
+    private long diskBudgetMb;
+
+    private TaskService taskService;
+
+    private CustomSpecimenRepository customSpecimenRepository;
+
+    public StudyCatalogueCache(TaskService taskService, CustomSpecimenRepository customSpecimenRepository) {
+        this.taskService = taskService;
+        this.customSpecimenRepository = customSpecimenRepository;
+    }
+
+    public String fingerprint(String studyNameShort) {
+        return customSpecimenRepository.catalogueFingerprint(studyNameShort);
+    }
+
+    /**
+     * Returns the completed task of a catalogue for the study, in {@code format}, that is still current. Nothing
+     * is returned if the task was cancelled after it completed.
+     */
+    public Optional<Task> find(String studyNameShort, CatalogueFormat format) {
+        var folder = Paths.get(catalogueFolder);
+        if (!Files.isDirectory(folder)) {
+            return Optional.empty();
+        }
+
+        var fingerprint = fingerprint(studyNameShort);
+        var prefix = studyNameShort + "_";
+        var suffix = "." + format.extension() + FINGERPRINT_EXTENSION;
+        try (Stream<Path> files = Files.list(folder)) {
+            var match = files
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+                .flatMap(id -> parseTaskId(id).stream())
+                .filter(taskId -> {
+                    var catalogue = catalogueFile(studyNameShort, taskId, format);
+                    return Files.isRegularFile(catalogue) && fingerprint.equals(readFingerprint(catalogue));
+                })
+                .findFirst();
+            if (match.isEmpty()) {
+                return Optional.empty();
+            }
+
+            var taskId = match.get();
+            var catalogue = catalogueFile(studyNameShort, taskId, format);
+
+            // the 24 hour clean up and the disk budget remove the least recently used files first, the fingerprint
+            // is touched as well so that the clean up does not remove it while the catalogue is kept
+            var now = FileTime.fromMillis(System.currentTimeMillis());
+            Files.setLastModifiedTime(catalogue, now);
+            Files.setLastModifiedTime(fingerprintFile(catalogue), now);
+            logger.info("reusing catalogue {} for study {}", taskId, studyNameShort);
+            var op = new CatalogueCreateOp(Task.completed(taskId), studyNameShort, format);
+            var task = taskService.restoreCompleted(op);
+            return Optional.of(task).filter(Task::isCompleted);
+        } catch (IOException e) {
+            logger.error("could not search the catalogue folder: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records the fingerprint of a saved catalogue, and removes older catalogues if the folder is over budget.
+     */
+    void saved(String studyNameShort, UUID taskId, CatalogueFormat format, String fingerprint) {
+        var catalogue = catalogueFile(studyNameShort, taskId, format);
+        try {
+            Files.writeString(fingerprintFile(catalogue), fingerprint, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("could not save the fingerprint for catalogue {}: {}", taskId, e.getMessage());
+        }
+        evict(catalogue);
+    }
+
+    /**
+     * Returns the format of the catalogue saved for the task, if its file exists.
+     */
+    public Optional<CatalogueFormat> savedFormat(String studyNameShort, UUID taskId) {
+        return Arrays.stream(CatalogueFormat.values())
+            .filter(format -> Files.isRegularFile(catalogueFile(studyNameShort, taskId, format)))
+            .findFirst();
+    }
+
+    Path catalogueFile(String studyNameShort, UUID taskId, CatalogueFormat format) {
+        return Paths.get(catalogueFolder, "%s_%s.%s".formatted(studyNameShort, taskId, format.extension()));
+    }
+
+    /**
+     * Removes the least recently used catalogues, and their fingerprints, until the folder is within budget.
+     * {@code keep} is never removed.
+     */
+    private void evict(Path keep) {
+        var budget = diskBudgetMb * 1024 * 1024;
+        List<Path> catalogues = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(Paths.get(catalogueFolder))) {
+            for (Path path : files.filter(Files::isRegularFile).toList()) {
+                total += Files.size(path);
+                if (isCatalogue(path)) {
+                    catalogues.add(path);
+                }
+            }
+            catalogues.sort(Comparator.comparing(StudyCatalogueCache::lastModified));
+
+            for (Path path : catalogues) {
+                if (total <= budget) {
+                    break;
+                }
+                if (path.equals(keep)) {
+                    continue;
+                }
+                total -= Files.size(path);
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(fingerprintFile(path));
+                logger.info("removed catalogue {} to stay within the disk budget", path.getFileName());
+            }
+        } catch (IOException e) {
+            logger.error("could not remove old catalogues: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isCatalogue(Path path) {
+        var name = path.getFileName().toString();
+        return Arrays.stream(CatalogueFormat.values()).anyMatch(format -> name.endsWith("." + format.extension()));
+    }
+
+    private static Path fingerprintFile(Path catalogue) {
+        return catalogue.resolveSibling(catalogue.getFileName() + FINGERPRINT_EXTENSION);
+    }
+
+    private static String readFingerprint(Path catalogue) {
+        try {
+            return Files.readString(fingerprintFile(catalogue), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Optional<UUID> parseTaskId(String value) {
+        try {
+            return Optional.of(UUID.fromString(value));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
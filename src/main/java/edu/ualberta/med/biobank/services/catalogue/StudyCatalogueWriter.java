@@ -1,18 +1,22 @@
 package edu.ualberta.med.biobank.services.catalogue;
 
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.util.Collection;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFFont;
 import edu.ualberta.med.biobank.dtos.AliquotDTO;
+import edu.ualberta.med.biobank.util.CancellationToken;
 import edu.ualberta.med.biobank.util.DateUtil;
 
 record SheetConfig(String heading, Integer width) {
@@ -20,23 +24,18 @@ record SheetConfig(String heading, Integer width) {
 
 /**
  * Creates a spreadsheet containing the aliquots present in the inventory for a study.
+ *
+ * Rows are added one at a time with {@link #write(AliquotDTO)}. Only the last {@link #ROW_WINDOW} rows
+ * are kept in memory, older rows are flushed to a temporary file until {@link #save(CancellationToken)} is
+ * called.
  */
-class StudyCatalogueWriter {
+class StudyCatalogueWriter implements CatalogueWriter {
 
-    private static final SheetConfig[] CONFIG = new SheetConfig[] {
-        new SheetConfig("Patient #", 3500),
-        new SheetConfig("Visit #", 2500),
-        new SheetConfig("Inventory ID", 4000),
-        new SheetConfig("Specimen Type", 7000),
-        new SheetConfig("Time Drawn", 6500),
-        new SheetConfig("Quantity", 4500),
-        new SheetConfig("Center", 3000),
-        new SheetConfig("Top Container", 3000)
-    };
+    private static final int ROW_WINDOW = 100;
 
-    private Collection<AliquotDTO> aliquots;
+    private final Path target;
 
-    private Workbook workbook;
+    private SXSSFWorkbook workbook;
 
     private Sheet sheet;
 
@@ -44,20 +43,53 @@ class StudyCatalogueWriter {
 
     private CellStyle bodyCellStyle;
 
-    public StudyCatalogueWriter(Collection<AliquotDTO> aliquots) {
-        this.aliquots = aliquots;
-    }
-
-    public void write(String filename) throws IOException {
-        workbook = new SXSSFWorkbook(100);
+    public StudyCatalogueWriter(Path target) {
+        this.target = target;
+        workbook = new SXSSFWorkbook(ROW_WINDOW);
         sheet = workbook.createSheet("Specimens");
 
         createHeaders();
 
         sheet.createFreezePane(0, 1);
+    }
 
-        FileOutputStream outputStream = new FileOutputStream(filename);
-        workbook.write(outputStream);
+    /**
+     * Adds a row for the aliquot to the spreadsheet.
+     */
+    @Override
+    public void write(AliquotDTO aliquot) {
+        createRow(aliquot);
+    }
+
+    @Override
+    public int rowCount() {
+        return currentRow - 1;
+    }
+
+    /**
+     * Writes the spreadsheet to a temporary file, which is renamed to the target file once complete, so a
+     * partially written file is never visible under the target's name.
+     *
+     * Writing stops with a {@link java.util.concurrent.CancellationException} when {@code cancellation} is
+     * cancelled, and the temporary file is removed.
+     */
+    @Override
+    public void save(CancellationToken cancellation) throws IOException {
+        var partial = target.resolveSibling(target.getFileName() + ".part");
+        try {
+            var fileStream = new FileOutputStream(partial.toFile());
+            try (var outputStream = new CancellableOutputStream(fileStream, cancellation)) {
+                workbook.write(outputStream);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.dispose();
         workbook.close();
     }
 
@@ -79,7 +111,7 @@ class StudyCatalogueWriter {
         Row header = sheet.createRow(currentRow++);
 
         var index = 0;
-        for (SheetConfig config : CONFIG) {
+        for (SheetConfig config : COLUMNS) {
             sheet.setColumnWidth(index, config.width());
 
             Cell headerCell = header.createCell(index);
@@ -88,10 +120,6 @@ class StudyCatalogueWriter {
 
             index++;
         }
-
-        for (AliquotDTO aliquot: aliquots) {
-            createRow(aliquot);
-        }
     }
 
     private void createRow(AliquotDTO aliquot) {
@@ -119,4 +147,26 @@ class StudyCatalogueWriter {
         cell.setCellValue(value);
         cell.setCellStyle(bodyCellStyle);
     }
+
+    private static class CancellableOutputStream extends FilterOutputStream {
+
+        private final CancellationToken cancellation;
+
+        CancellableOutputStream(OutputStream out, CancellationToken cancellation) {
+            super(out);
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            cancellation.throwIfCancelled();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            cancellation.throwIfCancelled();
+            out.write(b, off, len);
+        }
+    }
 }
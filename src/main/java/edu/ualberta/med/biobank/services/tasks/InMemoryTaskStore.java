@@ -0,0 +1,90 @@
+package edu.ualberta.med.biobank.services.tasks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import edu.ualberta.med.biobank.domain.Task;
+
+/**
+ * Keeps the tasks in this process. Tasks are lost when the application stops, and are not visible to other
+ * nodes, so this store is only suitable when the application runs on a single node.
+ */
+@Component
+@ConditionalOnProperty(name = "biobank.tasks.store", havingValue = "memory", matchIfMissing = true)
+class InMemoryTaskStore implements TaskStore {
+
+    private record Entry(StoredTask stored, Instant updatedAt) {
+
+        Entry withTask(Task task) {
+            var s = stored;
+            return new Entry(new StoredTask(task, s.owner(), s.operationType(), s.payload()), Instant.now());
+        }
+    }
+
+    private Map<UUID, Entry> tasks = new ConcurrentHashMap<>();
+
+    @Override
+    public void create(StoredTask task, String node, Duration lease) {
+        tasks.putIfAbsent(task.task().id(), new Entry(task, Instant.now()));
+    }
+
+    @Override
+    public Optional<Task> get(UUID id) {
+        return Optional.ofNullable(tasks.get(id)).map(entry -> entry.stored().task());
+    }
+
+    @Override
+    public Optional<Task> update(UUID id, UnaryOperator<Task> change) {
+        var entry = tasks.computeIfPresent(id, (_id, e) -> e.withTask(change.apply(e.stored().task())));
+        return Optional.ofNullable(entry).map(e -> e.stored().task());
+    }
+
+    /**
+     * All tasks belong to this node.
+     */
+    @Override
+    public Optional<Task> updateClaimed(UUID id, String node, UnaryOperator<Task> change) {
+        return update(id, change);
+    }
+
+    @Override
+    public void progress(UUID id, int progress) {
+        update(id, task -> task.withProgress(progress));
+    }
+
+    @Override
+    public void heartbeat(String node, Collection<UUID> ids, Duration lease) {
+        // all tasks belong to this node
+    }
+
+    @Override
+    public List<StoredTask> claimExpired(String node, Duration lease, int limit) {
+        return List.of();
+    }
+
+    /**
+     * No other node can run the tasks, so they are cancelled.
+     */
+    @Override
+    public void release(String node) {
+        tasks.replaceAll((id, entry) -> entry.stored().task().isFinished()
+            ? entry
+            : entry.withTask(entry.stored().task().toCancelled()));
+    }
+
+    @Override
+    public int purge(Duration age) {
+        var cutoff = Instant.now().minus(age);
+        int before = tasks.size();
+        tasks.values().removeIf(entry -> entry.stored().task().isFinished() && entry.updatedAt().isBefore(cutoff));
+        return before - tasks.size();
+    }
+}
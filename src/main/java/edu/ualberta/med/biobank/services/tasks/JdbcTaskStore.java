@@ -0,0 +1,243 @@
+package edu.ualberta.med.biobank.services.tasks;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import edu.ualberta.med.biobank.domain.Task;
+
+/**
+ * Keeps the tasks in the TASK table, so that they are visible to all the nodes that share the database and
+ * survive a restart.
+ *
+ * Changes of state are written immediately. Progress updates are kept in memory and written in a single batch
+ * every {@code biobank.tasks.progress-flush-ms} milliseconds, only the latest progress of each task is written.
+ *
+ * Tasks are claimed with a conditional update on the task's lease, so only one node succeeds when several try to
+ * claim the same task. Lease times use the database's clock, not the nodes'. Changes of state made by the node
+ * running a task are also conditional on the task's NODE, so a node that lost its claim can not change the task
+ * once another node has claimed it.
+ */
+@Component
+@ConditionalOnProperty(name = "biobank.tasks.store", havingValue = "jdbc")
+class JdbcTaskStore implements TaskStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcTaskStore.class);
+
+    /**
+     * Number of times a change of state is retried when the task is changed by another node at the same time.
+     */
+    private static final int UPDATE_ATTEMPTS = 3;
+
+    private static final String UNFINISHED = "STATE in ('CREATED', 'RUNNING')";
+
+    private static final String INSERT_SQL =
+        """
+        insert into TASK (ID, STATE, PROGRESS, OWNER, OPERATION_TYPE, PAYLOAD, NODE, CREATED_AT, UPDATED_AT,
+            HEARTBEAT_AT, LEASE_UNTIL)
+        values (?, ?, ?, ?, ?, ?, ?, now(), now(), now(), now() + interval ? second)
+        """;
+
+    private static final String SELECT_SQL =
+        "select ID, STATE, PROGRESS, OWNER, OPERATION_TYPE, PAYLOAD from TASK where ID = ?";
+
+    private static final String UPDATE_STATE_SQL =
+        "update TASK set STATE = ?, PROGRESS = ?, UPDATED_AT = now() where ID = ? and STATE = ?";
+
+    private static final String UPDATE_CLAIMED_STATE_SQL = UPDATE_STATE_SQL + " and NODE = ?";
+
+    private static final String UPDATE_PROGRESS_SQL =
+        "update TASK set PROGRESS = ?, UPDATED_AT = now() where ID = ? and " + UNFINISHED;
+
+    // followed by the list of IDs
+    private static final String HEARTBEAT_SQL =
+        "update TASK set HEARTBEAT_AT = now(), LEASE_UNTIL = now() + interval ? second where NODE = ? and "
+            + UNFINISHED + " and ID in ";
+
+    private static final String EXPIRED_SQL =
+        "select ID from TASK where " + UNFINISHED + " and LEASE_UNTIL < now() order by CREATED_AT limit ?";
+
+    private static final String CLAIM_SQL =
+        """
+        update TASK
+        set STATE = 'CREATED', PROGRESS = 0, NODE = ?, UPDATED_AT = now(), HEARTBEAT_AT = now(),
+            LEASE_UNTIL = now() + interval ? second
+        where ID = ? and STATE in ('CREATED', 'RUNNING') and LEASE_UNTIL < now()
+        """;
+
+    private static final String RELEASE_SQL =
+        "update TASK set LEASE_UNTIL = now() where NODE = ? and " + UNFINISHED;
+
+    private static final String PURGE_SQL =
+        "delete from TASK where STATE in ('COMPLETED', 'CANCELLED', 'FAILED') "
+            + "and UPDATED_AT < now() - interval ? second";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<UUID, Integer> pendingProgress = new ConcurrentHashMap<>();
+
+    public JdbcTaskStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void create(StoredTask stored, String node, Duration lease) {
+        var task = stored.task();
+        jdbcTemplate.update(
+            INSERT_SQL,
+            task.id().toString(),
+            task.stateName(),
+            task.progress(),
+            stored.owner(),
+            stored.operationType(),
+            stored.payload(),
+            node,
+            lease.toSeconds()
+        );
+    }
+
+    @Override
+    public Optional<Task> get(UUID id) {
+        return find(id).map(stored -> {
+            var progress = pendingProgress.get(id);
+            return progress == null ? stored.task() : stored.task().withProgress(progress);
+        });
+    }
+
+    @Override
+    public Optional<Task> update(UUID id, UnaryOperator<Task> change) {
+        return update(id, null, change);
+    }
+
+    @Override
+    public Optional<Task> updateClaimed(UUID id, String node, UnaryOperator<Task> change) {
+        return update(id, node, change);
+    }
+
+    /**
+     * Writes the change if the task still has the state it was read with and, when {@code node} is not null, is
+     * still claimed by {@code node}.
+     */
+    private Optional<Task> update(UUID id, String node, UnaryOperator<Task> change) {
+        for (int attempt = 0; attempt < UPDATE_ATTEMPTS; attempt++) {
+            var current = get(id);
+            if (current.isEmpty()) {
+                return current;
+            }
+
+            var updated = change.apply(current.get());
+            if (updated.equals(current.get())) {
+                return current;
+            }
+
+            var args = new ArrayList<Object>(
+                List.of(updated.stateName(), updated.progress(), id.toString(), current.get().stateName())
+            );
+            if (node != null) {
+                args.add(node);
+            }
+            int rows = jdbcTemplate.update(node == null ? UPDATE_STATE_SQL : UPDATE_CLAIMED_STATE_SQL, args.toArray());
+            if (rows == 1) {
+                pendingProgress.remove(id, current.get().progress());
+                return Optional.of(updated);
+            }
+        }
+        logger.warn("task {} was changed, or claimed, by another node, its state was not updated", id);
+        return get(id);
+    }
+
+    @Override
+    public void progress(UUID id, int progress) {
+        pendingProgress.put(id, progress);
+    }
+
+    @Override
+    public void heartbeat(String node, Collection<UUID> ids, Duration lease) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        var args = new ArrayList<Object>(ids.size() + 2);
+        args.add(lease.toSeconds());
+        args.add(node);
+        ids.forEach(id -> args.add(id.toString()));
+        var sql = HEARTBEAT_SQL + "(" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        jdbcTemplate.update(sql, args.toArray());
+    }
+
+    @Override
+    public List<StoredTask> claimExpired(String node, Duration lease, int limit) {
+        var ids = jdbcTemplate.queryForList(EXPIRED_SQL, String.class, limit);
+        var claimed = new ArrayList<StoredTask>();
+        for (String id : ids) {
+            if (jdbcTemplate.update(CLAIM_SQL, node, lease.toSeconds(), id) == 1) {
+                var uuid = UUID.fromString(id);
+                pendingProgress.remove(uuid);
+                find(uuid).ifPresent(claimed::add);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * The progress of the tasks running on this node is lost, the operations are started again by the node that
+     * claims them.
+     */
+    @Override
+    public void release(String node) {
+        flushProgress();
+        jdbcTemplate.update(RELEASE_SQL, node);
+    }
+
+    @Override
+    public int purge(Duration age) {
+        return jdbcTemplate.update(PURGE_SQL, age.toSeconds());
+    }
+
+    @Scheduled(fixedDelayString = "${biobank.tasks.progress-flush-ms:1000}")
+    public void flushProgress() {
+        if (pendingProgress.isEmpty()) {
+            return;
+        }
+
+        var batch = pendingProgress.entrySet().stream().map(Map.Entry::copyOf).toList();
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_PROGRESS_SQL, batch, batch.size(), (statement, entry) -> {
+                statement.setInt(1, entry.getValue());
+                statement.setString(2, entry.getKey().toString());
+            });
+            // a newer progress, reported while writing this batch, is written with the next batch
+            batch.forEach(entry -> pendingProgress.remove(entry.getKey(), entry.getValue()));
+        } catch (DataAccessException e) {
+            logger.error("could not write the progress of {} tasks: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private Optional<StoredTask> find(UUID id) {
+        return jdbcTemplate.query(SELECT_SQL, JdbcTaskStore::storedTask, id.toString()).stream().findFirst();
+    }
+
+    private static StoredTask storedTask(ResultSet rs, int rowNum) throws SQLException {
+        var task = Task.fromStateName(
+            UUID.fromString(rs.getString("ID")),
+            rs.getInt("PROGRESS"),
+            rs.getString("STATE")
+        );
+        return new StoredTask(task, rs.getString("OWNER"), rs.getString("OPERATION_TYPE"), rs.getString("PAYLOAD"));
+    }
+}
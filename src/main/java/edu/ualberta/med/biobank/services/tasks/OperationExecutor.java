@@ -0,0 +1,384 @@
+package edu.ualberta.med.biobank.services.tasks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import edu.ualberta.med.biobank.domain.Operation;
+import edu.ualberta.med.biobank.errors.ServiceUnavailable;
+import edu.ualberta.med.biobank.exception.AppErrorException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Runs {@link Operation}-s on a fixed number of worker threads.
+ *
+ * An operation is run by publishing it as an application event from a worker thread, so its listener must not
+ * be {@code @Async}. Waiting operations are queued per user, and the workers take them from each user's queue
+ * in turn, so a user that submits many operations does not delay the operations of the other users.
+ *
+ * An operation is not queued when one with the same {@link Operation#deduplicationKey()} is already queued or
+ * running on this node, the existing operation is returned to the caller instead.
+ *
+ * When an operation's listener throws, an {@link OperationFailedEvent} is published so that the operation's task
+ * is not left running.
+ */
+@Component
+public class OperationExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationExecutor.class);
+
+    private record Job(Operation op, long queuedAt) {
+    }
+
+    private final ApplicationEventPublisher publisher;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int concurrency;
+
+    private final int queueCapacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    // the queues of the users with waiting operations, in the order they are served
+    private final LinkedHashMap<String, Deque<Job>> queues = new LinkedHashMap<>();
+
+    // the queued and running operations, by deduplication key and by task
+    private final Map<String, Operation> byKey = new HashMap<>();
+
+    private final Map<UUID, Operation> byTask = new HashMap<>();
+
+    private final Map<UUID, Operation> running = new HashMap<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private int queued = 0;
+
+    // the places in the queue reserved by operations whose tasks are being created
+    private int reserved = 0;
+
+    private boolean stopped = false;
+
+    private final Counter joinedCounter;
+
+    private final Counter rejectedCounter;
+
+    private final Counter cancelledCounter;
+
+    public OperationExecutor(
+        ApplicationEventPublisher publisher,
+        MeterRegistry meterRegistry,
+        @Value("${biobank.operations.concurrency:2}") int concurrency,
+        @Value("${biobank.operations.queue-capacity:100}") int queueCapacity
+    ) {
+        this.publisher = publisher;
+        this.meterRegistry = meterRegistry;
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+
+        Gauge.builder("biobank.operations.queued", this, OperationExecutor::queuedCount)
+            .description("operations waiting for a worker")
+            .register(meterRegistry);
+        Gauge.builder("biobank.operations.running", this, OperationExecutor::runningCount)
+            .description("operations being run by a worker")
+            .register(meterRegistry);
+        joinedCounter = Counter.builder("biobank.operations.joined")
+            .description("operations not run because the same operation was queued or running")
+            .register(meterRegistry);
+        rejectedCounter = Counter.builder("biobank.operations.rejected")
+            .description("operations rejected because the queue was full")
+            .register(meterRegistry);
+        cancelledCounter = Counter.builder("biobank.operations.cancelled")
+            .description("operations cancelled while queued or running")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        for (int i = 0; i < concurrency; i++) {
+            var worker = new Thread(this::work, "operation-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues the operation, unless the same operation is already queued or running.
+     *
+     * {@code onAccepted} is called before the operation can be taken by a worker, and only if the operation is
+     * accepted. It is called without holding the executor's lock, since it usually writes the operation's task to
+     * the database, while a place in the queue is reserved for the operation. Operations submitted in the meantime
+     * with the same deduplication key join it. If {@code onAccepted} throws, the reservation is released and the
+     * exception is passed on to the caller.
+     *
+     * @return the operation that will do the work: {@code op}, or the operation it joined.
+     *
+     * @throws AppErrorException with a {@link ServiceUnavailable} error when the queue is full.
+     */
+    public Operation submit(Operation op, String owner, Runnable onAccepted) {
+        lock.lock();
+        try {
+            var existing = byKey.get(op.deduplicationKey());
+            if (existing != null) {
+                joinedCounter.increment();
+                return existing;
+            }
+            if (stopped || queued + reserved >= queueCapacity) {
+                throw rejected();
+            }
+
+            reserved++;
+            byKey.put(op.deduplicationKey(), op);
+            byTask.put(op.task().id(), op);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            onAccepted.run();
+        } catch (RuntimeException | Error e) {
+            lock.lock();
+            try {
+                reserved--;
+                forget(op);
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+
+        lock.lock();
+        try {
+            reserved--;
+            if (byTask.get(op.task().id()) != op) {
+                // cancelled while its task was being created
+                return op;
+            }
+            if (stopped) {
+                forget(op);
+                throw rejected();
+            }
+
+            queues
+                .computeIfAbsent(owner == null ? "" : owner, k -> new ArrayDeque<>())
+                .add(new Job(op, System.nanoTime()));
+            queued++;
+            available.signal();
+            return op;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the operation for the task from the queue, or stops it if it is running.
+     *
+     * @return false if no operation for the task is queued or running on this node.
+     */
+    public boolean cancel(UUID taskId) {
+        Operation op;
+        lock.lock();
+        try {
+            op = byTask.get(taskId);
+            if (op == null) {
+                return false;
+            }
+            if (!running.containsKey(taskId)) {
+                for (var it = queues.values().iterator(); it.hasNext();) {
+                    var queue = it.next();
+                    if (queue.removeIf(job -> job.op() == op)) {
+                        queued--;
+                        if (queue.isEmpty()) {
+                            it.remove();
+                        }
+                        break;
+                    }
+                }
+                forget(op);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        cancelledCounter.increment();
+        op.cancellation().cancel();
+        return true;
+    }
+
+    /**
+     * The IDs of the tasks whose operations are queued or running on this node, including the ones whose tasks
+     * are being created.
+     */
+    public List<UUID> activeTasks() {
+        lock.lock();
+        try {
+            return List.copyOf(byTask.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The IDs of the tasks whose operations are running on this node.
+     */
+    public List<UUID> runningTasks() {
+        lock.lock();
+        try {
+            return List.copyOf(running.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queuedCount() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int runningCount() {
+        lock.lock();
+        try {
+            return running.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the workers. Queued operations are discarded and running operations are cancelled, their tasks are
+     * left as they are.
+     */
+    public void shutdown() {
+        List<Operation> toCancel;
+        lock.lock();
+        try {
+            stopped = true;
+            toCancel = List.copyOf(running.values());
+            queues.clear();
+            queued = 0;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toCancel.forEach(op -> op.cancellation().cancel());
+    }
+
+    private void work() {
+        while (true) {
+            Job job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (job == null) {
+                return;
+            }
+            run(job);
+        }
+    }
+
+    /**
+     * Takes the next operation from the queue of the user that was served least recently.
+     *
+     * @return null once the executor is stopped.
+     */
+    private Job take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queued == 0 && !stopped) {
+                available.await();
+            }
+            if (stopped) {
+                return null;
+            }
+
+            var it = queues.entrySet().iterator();
+            var entry = it.next();
+            var job = entry.getValue().poll();
+            it.remove();
+            if (!entry.getValue().isEmpty()) {
+                queues.put(entry.getKey(), entry.getValue());
+            }
+            queued--;
+            running.put(job.op().task().id(), job.op());
+            return job;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run(Job job) {
+        var op = job.op();
+        var start = System.nanoTime();
+        timer("biobank.operations.wait", "time operations wait for a worker", op)
+            .record(start - job.queuedAt(), TimeUnit.NANOSECONDS);
+
+        try {
+            publisher.publishEvent(op);
+        } catch (CancellationException e) {
+            logger.info("task {}: operation {} cancelled", op.task().id(), op.type());
+        } catch (RuntimeException e) {
+            logger.error("task {}: operation {} failed", op.task().id(), op.type(), e);
+            failed(op, e);
+        } finally {
+            timer("biobank.operations.duration", "time taken to run operations", op)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            lock.lock();
+            try {
+                running.remove(op.task().id());
+                forget(op);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void failed(Operation op, RuntimeException cause) {
+        try {
+            publisher.publishEvent(new OperationFailedEvent(op, cause));
+        } catch (RuntimeException e) {
+            logger.error("task {}: could not mark the task as failed", op.task().id(), e);
+        }
+    }
+
+    private AppErrorException rejected() {
+        rejectedCounter.increment();
+        return new AppErrorException(new ServiceUnavailable("too many operations waiting, try again later"));
+    }
+
+    private void forget(Operation op) {
+        byKey.remove(op.deduplicationKey(), op);
+        byTask.remove(op.task().id(), op);
+    }
+
+    private Timer timer(String name, String description, Operation op) {
+        return Timer.builder(name).description(description).tag("type", op.type()).register(meterRegistry);
+    }
+}
@@ -0,0 +1,10 @@
+package edu.ualberta.med.biobank.services.tasks;
+
+import edu.ualberta.med.biobank.domain.Operation;
+
+/**
+ * Published by the {@link OperationExecutor} when an operation's listener throws, so that the operation's task
+ * can be marked as failed.
+ */
+public record OperationFailedEvent(Operation op, Throwable cause) {
+}
@@ -0,0 +1,83 @@
+package edu.ualberta.med.biobank.services.tasks;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import edu.ualberta.med.biobank.domain.Task;
+
+/**
+ * Where {@link edu.ualberta.med.biobank.services.TaskService} keeps its tasks.
+ *
+ * A task is claimed by the node that runs its operation. The claim is a lease that the node renews with
+ * {@link #heartbeat(String, Collection, Duration)}; when a lease expires, because the node stopped, any node can
+ * claim the task with {@link #claimExpired(String, Duration, int)} and run the operation again. A node only
+ * changes the state of the tasks it has claimed, see {@link #updateClaimed}.
+ *
+ * The implementation is selected with the {@code biobank.tasks.store} property: {@code memory}, the default,
+ * or {@code jdbc}.
+ */
+public interface TaskStore {
+
+    /**
+     * A stored task and what is needed to create its operation again.
+     */
+    record StoredTask(Task task, String owner, String operationType, String payload) {
+    }
+
+    /**
+     * Stores a new task, claimed by {@code node}.
+     */
+    void create(StoredTask task, String node, Duration lease);
+
+    Optional<Task> get(UUID id);
+
+    /**
+     * Applies {@code change} to the task and stores the result before returning. Used for changes of state.
+     *
+     * @return the updated task, or empty if the task does not exist.
+     */
+    Optional<Task> update(UUID id, UnaryOperator<Task> change);
+
+    /**
+     * Same as {@link #update}, but only while the task is claimed by {@code node}. Used by the node running the
+     * task's operation, so that a node whose claim expired, and was taken by another node, does not change the
+     * task.
+     *
+     * @return the task, unchanged if it is claimed by another node, or empty if the task does not exist.
+     */
+    Optional<Task> updateClaimed(UUID id, String node, UnaryOperator<Task> change);
+
+    /**
+     * Stores the task's progress. Implementations may delay and coalesce these writes.
+     */
+    void progress(UUID id, int progress);
+
+    /**
+     * Renews the leases of the tasks in {@code ids} that are unfinished and claimed by {@code node}. The IDs are
+     * the tasks whose operations the node is running or has queued, a task whose operation was lost is not renewed
+     * so that another node can claim it.
+     */
+    void heartbeat(String node, Collection<UUID> ids, Duration lease);
+
+    /**
+     * Claims up to {@code limit} unfinished tasks whose lease has expired. The tasks are returned in the
+     * {@code CREATED} state, with their progress reset.
+     */
+    List<StoredTask> claimExpired(String node, Duration lease, int limit);
+
+    /**
+     * Called when {@code node} shuts down. Its unfinished tasks are either cancelled, or released so they can be
+     * claimed by another node.
+     */
+    void release(String node);
+
+    /**
+     * Removes the finished tasks that have not changed for {@code age}.
+     *
+     * @return the number of tasks removed.
+     */
+    int purge(Duration age);
+}
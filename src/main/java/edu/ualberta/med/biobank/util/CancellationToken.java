@@ -0,0 +1,69 @@
+package edu.ualberta.med.biobank.util;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Signals that a long running piece of work should stop.
+ *
+ * The work either checks {@link #throwIfCancelled()} regularly, or registers a callback with
+ * {@link #onCancel(Runnable)} to stop something it is blocked on, for example a running database statement.
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    private final List<Runnable> callbacks = new CopyOnWriteArrayList<>();
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Marks the work as cancelled and runs the registered callbacks. Only the first call has an effect.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+        callbacks.forEach(CancellationToken::runQuietly);
+    }
+
+    /**
+     * Registers a callback to run when the work is cancelled. If it was already cancelled, the callback runs
+     * before this method returns.
+     *
+     * @return a {@link Runnable} that unregisters the callback.
+     */
+    public Runnable onCancel(Runnable callback) {
+        boolean runNow;
+        synchronized (this) {
+            runNow = cancelled;
+            if (!runNow) {
+                callbacks.add(callback);
+            }
+        }
+        if (runNow) {
+            runQuietly(callback);
+        }
+        return () -> callbacks.remove(callback);
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            // the work is being stopped, failing to stop one part of it is not an error for the caller
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package edu.ualberta.med.biobank.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A small in-memory cache where entries expire after a fixed time.
+ *
+ * When the cache holds {@code maxSize} entries, the least recently used entry is removed to make room for a
+ * new one. A cache created with a {@code maxSize} or {@code ttl} of zero never stores anything, so every
+ * lookup goes to the loader.
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+public class ExpiringCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final Map<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongSupplier nanoTime;
+
+    public ExpiringCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    /**
+     * Reads the time from {@code nanoTime}, so that tests can expire entries without waiting.
+     */
+    ExpiringCache(int maxSize, Duration ttl, LongSupplier nanoTime) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > ExpiringCache.this.maxSize;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * Returns the value for {@code key} if it is present and has not expired.
+     */
+    public Optional<V> get(K key) {
+        if (!isEnabled()) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (entry != null && entry.expiresAt - nanoTime.getAsLong() > 0) {
+                hits.increment();
+                return Optional.of(entry.value);
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the value for {@code key}, calling {@code loader} if it is not present or has expired.
+     *
+     * The loader is called without holding the cache's lock. A {@code null} returned by the loader is not
+     * stored.
+     */
+    public V get(K key, Function<K, V> loader) {
+        var cached = get(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        var value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttlNanos);
+    }
+
+    /**
+     * Stores {@code value} for no longer than {@code ttl}, or the cache's TTL if that is shorter.
+     */
+    public void put(K key, V value, Duration ttl) {
+        put(key, value, Math.min(ttlNanos, ttl.toNanos()));
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Registers the cache's size and hit and miss counts with {@code registry}, tagged with {@code name}.
+     */
+    public ExpiringCache<K, V> bindTo(MeterRegistry registry, String name) {
+        Gauge.builder("biobank.cache.size", this, ExpiringCache::size)
+            .tag("cache", name)
+            .register(registry);
+        FunctionCounter.builder("biobank.cache.gets", this, ExpiringCache::hitCount)
+            .tag("cache", name)
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("biobank.cache.gets", this, ExpiringCache::missCount)
+            .tag("cache", name)
+            .tag("result", "miss")
+            .register(registry);
+        return this;
+    }
+
+    private void put(K key, V value, long ttl) {
+        if (!isEnabled() || ttl <= 0) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, nanoTime.getAsLong() + ttl));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package edu.ualberta.med.biobank.auth;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+class CachingJwtDecoderTest {
+
+    /**
+     * Decodes any token to a JWT expiring after {@code expiresIn}, and counts the calls.
+     */
+    private static class CountingDecoder implements JwtDecoder {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        final Duration expiresIn;
+
+        CountDownLatch release = new CountDownLatch(0);
+
+        CountingDecoder(Duration expiresIn) {
+            this.expiresIn = expiresIn;
+        }
+
+        @Override
+        public Jwt decode(String token) {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (token.startsWith("bad")) {
+                throw new BadJwtException("bad token");
+            }
+            var now = Instant.now();
+            return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("testuser")
+                .issuedAt(now)
+                .expiresAt(now.plus(expiresIn))
+                .build();
+        }
+    }
+
+    @Test
+    void decodesTokenOnce() {
+        var delegate = new CountingDecoder(Duration.ofHours(1));
+        var decoder = new CachingJwtDecoder(delegate, 10, Duration.ofMinutes(5));
+
+        var first = decoder.decode("token-1");
+        var second = decoder.decode("token-1");
+
+        assertThat(second, sameInstance(first));
+        assertThat(delegate.calls.get(), equalTo(1));
+
+        decoder.decode("token-2");
+        assertThat(delegate.calls.get(), equalTo(2));
+    }
+
+    @Test
+    void expiredTokenIsNotCached() {
+        var delegate = new CountingDecoder(Duration.ofSeconds(-1));
+        var decoder = new CachingJwtDecoder(delegate, 10, Duration.ofMinutes(5));
+
+        decoder.decode("token-1");
+        decoder.decode("token-1");
+
+        assertThat(delegate.calls.get(), equalTo(2));
+    }
+
+    @Test
+    void invalidTokenIsNotCached() {
+        var delegate = new CountingDecoder(Duration.ofHours(1));
+        var decoder = new CachingJwtDecoder(delegate, 10, Duration.ofMinutes(5));
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("bad-token"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("bad-token"));
+
+        assertThat(delegate.calls.get(), equalTo(2));
+    }
+
+    @Test
+    void concurrentRequestsDecodeTokenOnce() throws Exception {
+        var delegate = new CountingDecoder(Duration.ofHours(1));
+        delegate.release = new CountDownLatch(1);
+        var decoder = new CachingJwtDecoder(delegate, 10, Duration.ofMinutes(5));
+
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            var results = new ArrayList<Future<Jwt>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> decoder.decode("token-1")));
+            }
+
+            // let the requests queue up behind the first one
+            Thread.sleep(100);
+            delegate.release.countDown();
+
+            var first = results.get(0).get();
+            for (Future<Jwt> result : results) {
+                assertThat(result.get(), sameInstance(first));
+            }
+        }
+        assertThat(delegate.calls.get(), equalTo(1));
+    }
+
+    @Test
+    void disabledCacheDecodesEveryTime() {
+        var delegate = new CountingDecoder(Duration.ofHours(1));
+        var decoder = new CachingJwtDecoder(delegate, 0, Duration.ofMinutes(5));
+
+        decoder.decode("token-1");
+        decoder.decode("token-1");
+
+        assertThat(delegate.calls.get(), equalTo(2));
+    }
+}
@@ -0,0 +1,71 @@
+package edu.ualberta.med.biobank.controllers;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.util.HexFormat;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.ResultMatcher;
+import edu.ualberta.med.biobank.controllers.endpoints.LoggingLatestEndpoint;
+import edu.ualberta.med.biobank.services.UserService;
+import edu.ualberta.med.biobank.test.ControllerTest;
+
+class ApiKeyAuthTest extends ControllerTest {
+
+    @SuppressWarnings("unused")
+    private final Logger logger = LoggerFactory.getLogger(ApiKeyAuthTest.class);
+
+    private static final String HEADER_NAME = "x-biobank-api-key";
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void unknownKeyIsForbiddenUntilTheKeysChange() throws Exception {
+        var apiKey = randomApiKey();
+        userService.checkApiKeys();
+
+        expectStatus(apiKey, status().isForbidden());
+
+        // the unknown key is cached, adding it has no effect until the keys are checked
+        addApiKey(apiKey, "testuser");
+        expectStatus(apiKey, status().isForbidden());
+
+        userService.checkApiKeys();
+        expectStatus(apiKey, status().isOk());
+    }
+
+    @Test
+    void deletedKeyIsForbiddenOnceTheKeysAreChecked() throws Exception {
+        var apiKey = randomApiKey();
+        addApiKey(apiKey, "testuser");
+        userService.checkApiKeys();
+
+        expectStatus(apiKey, status().isOk());
+
+        em.createNativeQuery("delete from USER_API_KEY where API_KEY = ?").setParameter(1, apiKey).executeUpdate();
+        expectStatus(apiKey, status().isOk());
+
+        userService.checkApiKeys();
+        expectStatus(apiKey, status().isForbidden());
+    }
+
+    private void expectStatus(String apiKey, ResultMatcher matcher) throws Exception {
+        this.mvc.perform(get(new LoggingLatestEndpoint().url()).header(HEADER_NAME, apiKey)).andExpect(matcher);
+    }
+
+    private void addApiKey(String apiKey, String login) {
+        em.createNativeQuery("insert into USER_API_KEY (USER_ID, API_KEY) select ID, ? from principal where LOGIN = ?")
+            .setParameter(1, apiKey)
+            .setParameter(2, login)
+            .executeUpdate();
+    }
+
+    private static String randomApiKey() {
+        var bytes = new byte[20];
+        getR().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+}
@@ -1,12 +1,18 @@
 package edu.ualberta.med.biobank.controllers;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.util.Date;
+import com.jayway.jsonpath.JsonPath;
+import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.test.context.support.WithMockUser;
+import edu.ualberta.med.biobank.controllers.endpoints.LoggingEntriesEndpoint;
 import edu.ualberta.med.biobank.controllers.endpoints.LoggingLatestEndpoint;
+import edu.ualberta.med.biobank.domain.Log;
 import edu.ualberta.med.biobank.test.ControllerTest;
 
 class LoggingControllerTest extends ControllerTest {
@@ -28,4 +34,109 @@ class LoggingControllerTest extends ControllerTest {
         this.mvc.perform(get(new LoggingLatestEndpoint().url()))
             .andExpect(status().isUnauthorized());
     }
+
+    @Test
+    @WithMockUser
+    void getEntriesPagesFromNewestWithTokens() throws Exception {
+        var pnumber = getMethodNameR();
+        var ids = createLogs(pnumber, 5);
+        var url = new LoggingEntriesEndpoint().url();
+
+        var first = this.mvc.perform(get(url).param("pnumber", pnumber).param("size", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.entries[*].id", Matchers.contains(ids[4], ids[3])))
+            .andReturn();
+        String next = JsonPath.read(first.getResponse().getContentAsString(), "$.next");
+
+        var second = this.mvc.perform(
+                get(url).param("pnumber", pnumber).param("size", "2").param("token", next)
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.entries[*].id", Matchers.contains(ids[2], ids[1])))
+            .andReturn();
+        next = JsonPath.read(second.getResponse().getContentAsString(), "$.next");
+
+        this.mvc.perform(
+                get(url).param("pnumber", pnumber).param("size", "2").param("token", next)
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.entries[*].id", Matchers.contains(ids[0])))
+            .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void getEntriesPagesThroughEntriesWithoutCreationTimeLast() throws Exception {
+        var pnumber = getMethodNameR();
+        var start = System.currentTimeMillis() / 1000 * 1000;
+        var untimed = createLog(pnumber, null);
+        var oldest = createLog(pnumber, new Date(start));
+        var tiedFirst = createLog(pnumber, new Date(start + 1000));
+        var tiedSecond = createLog(pnumber, new Date(start + 1000));
+        var untimedLater = createLog(pnumber, null);
+        var url = new LoggingEntriesEndpoint().url();
+
+        var expected = new Integer[][] { { tiedSecond, tiedFirst }, { oldest, untimedLater }, { untimed } };
+        String next = null;
+        for (var page : expected) {
+            var request = get(url).param("pnumber", pnumber).param("size", "2");
+            if (next != null) {
+                request.param("token", next);
+            }
+            var result = this.mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entries[*].id", Matchers.contains(page)))
+                .andReturn();
+            next = JsonPath.read(result.getResponse().getContentAsString(), "$.next");
+        }
+    }
+
+    @Test
+    @WithMockUser
+    void getEntriesWithNewerTokenReturnsEntriesAddedSince() throws Exception {
+        var pnumber = getMethodNameR();
+        createLogs(pnumber, 2);
+
+        var first = this.mvc.perform(get(new LoggingEntriesEndpoint().url()).param("pnumber", pnumber))
+            .andExpect(status().isOk())
+            .andReturn();
+        String newer = JsonPath.read(first.getResponse().getContentAsString(), "$.newer");
+
+        var ids = createLogs(pnumber, 2);
+        this.mvc.perform(get(new LoggingEntriesEndpoint().url()).param("pnumber", pnumber).param("token", newer))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.entries[*].id", Matchers.contains(ids[0], ids[1])));
+    }
+
+    @Test
+    @WithMockUser
+    void getEntriesWithInvalidTokenIsBadRequest() throws Exception {
+        this.mvc.perform(get(new LoggingEntriesEndpoint().url()).param("token", "not a token"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private Integer createLog(String pnumber, Date createdAt) {
+        var log = new Log.LogBuilder().action("select").username("testuser").patientNumber(pnumber).build();
+        log.setCreatedAt(createdAt);
+        em.persist(log);
+        em.flush();
+        return log.getId();
+    }
+
+    /**
+     * Creates {@code count} entries for the patient, one second apart, and returns their IDs from oldest to
+     * newest.
+     */
+    private Integer[] createLogs(String pnumber, int count) {
+        var start = System.currentTimeMillis() / 1000 * 1000;
+        var ids = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            var log = new Log.LogBuilder().action("select").username("testuser").patientNumber(pnumber).build();
+            log.setCreatedAt(new Date(start + i * 1000));
+            em.persist(log);
+            ids[i] = log.getId();
+        }
+        em.flush();
+        return ids;
+    }
 }
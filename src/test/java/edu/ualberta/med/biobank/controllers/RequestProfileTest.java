@@ -0,0 +1,62 @@
+package edu.ualberta.med.biobank.controllers;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.test.context.support.WithMockUser;
+import edu.ualberta.med.biobank.controllers.endpoints.PatientNumberEndpoint;
+import edu.ualberta.med.biobank.profiling.RequestProfile;
+import edu.ualberta.med.biobank.profiling.RequestProfileFilter;
+import edu.ualberta.med.biobank.test.ControllerTest;
+import edu.ualberta.med.biobank.test.StatementBudget;
+import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
+
+class RequestProfileTest extends ControllerTest {
+
+    @SuppressWarnings("unused")
+    private final Logger logger = LoggerFactory.getLogger(RequestProfileTest.class);
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void responseHasServerTimingHeader() throws Exception {
+        var patient = new PatientFixtureBuilder().numCollectionEvents(1).numSpecimens(1).build(factory);
+
+        var result = this.mvc.perform(get(new PatientNumberEndpoint(patient.getPnumber()).url()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(RequestProfileFilter.SERVER_TIMING_HEADER, Matchers.containsString("db;dur=")))
+            .andExpect(header().string(RequestProfileFilter.SERVER_TIMING_HEADER, Matchers.containsString("perm;dur=")))
+            .andReturn();
+
+        var profile = (RequestProfile) result.getRequest().getAttribute(RequestProfileFilter.PROFILE_ATTRIBUTE);
+        assertThat(profile.statements(), Matchers.greaterThan(0));
+        assertThat(profile.rows(), Matchers.greaterThan(0L));
+        assertThat(profile.queries(), Matchers.not(Matchers.empty()));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void profileIsDetachedAfterRequest() throws Exception {
+        this.mvc.perform(get(new PatientNumberEndpoint(factory.getFaker().lorem().word()).url()))
+            .andExpect(status().isNotFound())
+            .andExpect(header().exists(RequestProfileFilter.SERVER_TIMING_HEADER));
+
+        assertThat(RequestProfile.current(), Matchers.nullValue());
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void exceededBudgetListsStatements() throws Exception {
+        var patient = new PatientFixtureBuilder().numCollectionEvents(1).build(factory);
+        var request = get(new PatientNumberEndpoint(patient.getPnumber()).url());
+
+        var error = assertThrows(AssertionError.class, () -> performWithin(new StatementBudget(1, 1000), request));
+        assertThat(error.getMessage(), Matchers.containsString("the budget is 1 statements"));
+        assertThat(error.getMessage().toLowerCase(), Matchers.containsString("select"));
+    }
+}
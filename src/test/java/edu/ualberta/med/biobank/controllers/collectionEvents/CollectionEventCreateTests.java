@@ -1,9 +1,11 @@
 package edu.ualberta.med.biobank.controllers.collectionEvents;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.jayway.jsonpath.JsonPath;
 import edu.ualberta.med.biobank.controllers.endpoints.CollectionEventEndpoint;
 import edu.ualberta.med.biobank.domain.Status;
 import edu.ualberta.med.biobank.dtos.CollectionEventAddDTO;
@@ -56,6 +58,34 @@ class CollectionEventCreateTests extends ControllerTest {
             .andReturn();
     }
 
+    @Test
+    @WithMockUser("testuser")
+    void post_creates_empty_summary() throws Exception {
+        var patient = new PatientFixtureBuilder().numCollectionEvents(1).build(factory);
+        var data = new CollectionEventAddDTO(patient.getCollectionEvents().size() + 1);
+
+        var result = this.mvc.perform(
+                post(new CollectionEventEndpoint(patient.getPnumber()).url())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(JsonUtil.asJsonString(data))
+            )
+            .andExpect(status().isCreated())
+            .andReturn();
+        Integer ceventId = JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+
+        em.flush();
+        var summary = (Object[]) em
+            .createNativeQuery(
+                "select SPECIMEN_COUNT, COMMENT_COUNT, FIRST_SPECIMEN_AT from COLLECTION_EVENT_SUMMARY "
+                    + "where COLLECTION_EVENT_ID = ?1"
+            )
+            .setParameter(1, ceventId)
+            .getSingleResult();
+        assertThat(((Number) summary[0]).longValue(), Matchers.equalTo(0L));
+        assertThat(((Number) summary[1]).longValue(), Matchers.equalTo(0L));
+        assertThat(summary[2], Matchers.nullValue());
+    }
+
     @Test
     @WithMockUser("testuser")
     void post_when_vnumber_exists_is_bad_request() throws Exception {
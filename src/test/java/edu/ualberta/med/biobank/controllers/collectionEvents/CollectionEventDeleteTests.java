@@ -7,6 +7,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.hamcrest.Matchers;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -15,6 +17,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import edu.ualberta.med.biobank.controllers.endpoints.VisitNumberEndpoint;
 import edu.ualberta.med.biobank.dtos.CollectionEventDTO;
 import edu.ualberta.med.biobank.matchers.CollectionEventMatcher;
+import edu.ualberta.med.biobank.services.SummaryCountService;
 import edu.ualberta.med.biobank.test.ControllerTest;
 import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
 import edu.ualberta.med.biobank.util.LoggingUtils;
@@ -29,6 +32,9 @@ class CollectionEventDeleteTests extends ControllerTest {
     @SuppressWarnings("unused")
     private final Logger logger = LoggerFactory.getLogger(CollectionEventDeleteTests.class);
 
+    @Autowired
+    private SummaryCountService summaryCountService;
+
     @Test
     @WithMockUser
     void delete_not_exists_not_found() throws Exception {
@@ -63,6 +69,25 @@ class CollectionEventDeleteTests extends ControllerTest {
             .andReturn();
     }
 
+    @Test
+    @WithMockUser(value = "testuser")
+    void delete_removes_summary() throws Exception {
+        var patient = new PatientFixtureBuilder()
+            .numCollectionEvents(1)
+            .build(factory);
+        var collectionEvent = patient.getCollectionEvents().stream().findFirst().get();
+
+        // fixtures are created without summaries, the repair creates them
+        summaryCountService.repair();
+        assertThat(summaryCount(collectionEvent.getId()), Matchers.equalTo(1L));
+
+        this.mvc.perform(delete(new VisitNumberEndpoint(patient.getPnumber(), collectionEvent.getVisitNumber()).url()))
+            .andExpect(status().isNoContent());
+
+        em.flush();
+        assertThat(summaryCount(collectionEvent.getId()), Matchers.equalTo(0L));
+    }
+
     @Test
     @WithMockUser(value = "non_member_user")
     void delete_when_present_and_notmember_is_forbidden() throws Exception {
@@ -90,4 +115,11 @@ class CollectionEventDeleteTests extends ControllerTest {
          this.mvc.perform(delete(new VisitNumberEndpoint(patient.getPnumber(), collectionEvent.getVisitNumber()).url()))
             .andExpect(status().isForbidden());
     }
+
+    private long summaryCount(Integer ceventId) {
+        return ((Number) em
+            .createNativeQuery("select count(*) from COLLECTION_EVENT_SUMMARY where COLLECTION_EVENT_ID = ?1")
+            .setParameter(1, ceventId)
+            .getSingleResult()).longValue();
+    }
 }
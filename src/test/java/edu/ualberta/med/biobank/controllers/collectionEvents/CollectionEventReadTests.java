@@ -16,6 +16,7 @@ import edu.ualberta.med.biobank.controllers.endpoints.VisitNumberEndpoint;
 import edu.ualberta.med.biobank.dtos.CollectionEventDTO;
 import edu.ualberta.med.biobank.matchers.CollectionEventMatcher;
 import edu.ualberta.med.biobank.test.ControllerTest;
+import edu.ualberta.med.biobank.test.StatementBudget;
 import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
 import edu.ualberta.med.biobank.util.LoggingUtils;
 import jakarta.transaction.Transactional;
@@ -29,6 +30,14 @@ class CollectionEventReadTests extends ControllerTest {
     @SuppressWarnings("unused")
     private final Logger logger = LoggerFactory.getLogger(CollectionEventReadTests.class);
 
+    private static final int ANNOTATIONS = 3;
+
+    private static final int SPECIMENS = 3;
+
+    // measured: the visit, its annotations (a row for each of the study's types) and its source specimens, then the
+    // permission check reads the user's membership, the study and the membership again
+    private static final StatementBudget GET_BUDGET = new StatementBudget(6, 1 + ANNOTATIONS + SPECIMENS + 3);
+
     @Test
     @WithMockUser
     void get_when_empty_table_is_not_found() throws Exception {
@@ -52,19 +61,19 @@ class CollectionEventReadTests extends ControllerTest {
     @Test
     @WithMockUser(value = "testuser")
     void get_when_present_is_ok() throws Exception {
+        createStudyWithAnnotationTypes(ANNOTATIONS);
         var patient = new PatientFixtureBuilder()
-            .numCollectionEvents(1)
+            .numCollectionEvents(3)
             .numCollectionEventComments(2)
-            .numSpecimens(3)
+            .numSpecimens(SPECIMENS)
             .numAliquots(4)
+            .withAnnotationValues()
             .build(factory);
 
         var collectionEvent = patient.getCollectionEvents().stream().findFirst().get();
 
-        MvcResult result =
-            this.mvc.perform(get(new VisitNumberEndpoint(patient.getPnumber(), collectionEvent.getVisitNumber()).url()))
-                .andExpect(status().isOk())
-                .andReturn();
+        var url = new VisitNumberEndpoint(patient.getPnumber(), collectionEvent.getVisitNumber()).url();
+        MvcResult result = performWithin(GET_BUDGET, get(url)).andExpect(status().isOk()).andReturn();
 
         ObjectMapper mapper = new ObjectMapper();
         CollectionEventDTO dto = mapper.readValue(result.getResponse().getContentAsString(), CollectionEventDTO.class);
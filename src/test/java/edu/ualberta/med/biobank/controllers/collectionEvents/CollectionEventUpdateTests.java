@@ -21,9 +21,11 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import edu.ualberta.med.biobank.controllers.endpoints.CollectionEventUpdateEndpoint;
 import edu.ualberta.med.biobank.domain.Status;
+import edu.ualberta.med.biobank.dtos.AnnotationDTO;
 import edu.ualberta.med.biobank.dtos.CollectionEventDTO;
 import edu.ualberta.med.biobank.dtos.CollectionEventUpdateDTO;
 import edu.ualberta.med.biobank.test.ControllerTest;
+import edu.ualberta.med.biobank.test.StatementBudget;
 import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
 import edu.ualberta.med.biobank.util.JsonUtil;
 import edu.ualberta.med.biobank.util.LoggingUtils;
@@ -38,6 +40,22 @@ class CollectionEventUpdateTests extends ControllerTest {
     @SuppressWarnings("unused")
     private final Logger logger = LoggerFactory.getLogger(CollectionEventUpdateTests.class);
 
+    private static final int ANNOTATIONS = 3;
+
+    private static final int SPECIMENS = 2;
+
+    // measured, with a value already present for each annotation type:
+    //   6 to read the visit and check the permission, as a GET does
+    //   3 to load the visit, its patient and study, and the study's annotation types
+    //   1 for each annotation type's global type, and 1 for the text type they share
+    //   1 for the visit's annotation values, 1 to update each value
+    //   3 to read the reply back
+    // the study's research group is a one-to-one Hibernate may or may not load, so one statement of slack is allowed
+    private static final StatementBudget PUT_BUDGET = new StatementBudget(
+        6 + 3 + ANNOTATIONS + 1 + 1 + ANNOTATIONS + 3 + 1,
+        8 + 5 * ANNOTATIONS + 2 * SPECIMENS
+    );
+
     private static List<Status> provideStatusValues() {
         return Status.valuesList();
     }
@@ -54,23 +72,38 @@ class CollectionEventUpdateTests extends ControllerTest {
     @Test
     @WithMockUser(value = "testuser")
     void put_succeeds() throws Exception {
-        var patient = new PatientFixtureBuilder().numCollectionEvents(1).build(factory);
+        var study = createStudyWithAnnotationTypes(ANNOTATIONS);
+        var patient = new PatientFixtureBuilder()
+            .numCollectionEvents(3)
+            .numSpecimens(SPECIMENS)
+            .numAliquots(2)
+            .withAnnotationValues()
+            .build(factory);
         var collectionEvent = patient.getCollectionEvents().stream().findFirst().get();
+        var annotations = study
+            .getStudyEventAttrs()
+            .stream()
+            .map(attr -> attr.getGlobalEventAttr().getLabel())
+            .map(label -> new AnnotationDTO("text", label, factory.getFaker().lorem().word()))
+            .toList();
         var newData = new CollectionEventUpdateDTO(
             collectionEvent.getVisitNumber(),
             collectionEvent.getActivityStatus().toString(),
-            List.of()
+            annotations
         );
 
-        MvcResult result = mvc
-            .perform(
-                put(new CollectionEventUpdateEndpoint(patient.getPnumber(), collectionEvent.getVisitNumber()).url())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .content(JsonUtil.asJsonString(newData))
+        var url = new CollectionEventUpdateEndpoint(patient.getPnumber(), collectionEvent.getVisitNumber()).url();
+        MvcResult result = performWithin(
+                PUT_BUDGET,
+                put(url).contentType(MediaType.APPLICATION_JSON).content(JsonUtil.asJsonString(newData))
             )
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.pnumber", Matchers.is(patient.getPnumber())))
             .andExpect(jsonPath("$.vnumber", Matchers.is(newData.vnumber())))
+            .andExpect(jsonPath("$.annotations[*].value", Matchers.containsInAnyOrder(
+                annotations.stream().map(AnnotationDTO::value).toArray()
+            )))
+            .andExpect(jsonPath("$.sourceSpecimens", Matchers.hasSize(SPECIMENS)))
             .andReturn();
 
         CollectionEventDTO resultDto = objectMapper().readValue(result.getResponse().getContentAsString(), CollectionEventDTO.class);
@@ -0,0 +1,8 @@
+package edu.ualberta.med.biobank.controllers.endpoints;
+
+public record LoggingEntriesEndpoint() implements Endpoint {
+    @Override
+    public String url() {
+        return "/logging/entries";
+    }
+}
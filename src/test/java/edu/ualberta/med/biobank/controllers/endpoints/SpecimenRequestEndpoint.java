@@ -0,0 +1,8 @@
+package edu.ualberta.med.biobank.controllers.endpoints;
+
+public record SpecimenRequestEndpoint() implements Endpoint {
+    @Override
+    public String url() {
+        return "/specimens/request";
+    }
+}
@@ -0,0 +1,8 @@
+package edu.ualberta.med.biobank.controllers.endpoints;
+
+public record StudyCatalogueDownloadEndpoint(String name) implements Endpoint {
+    @Override
+    public String url() {
+        return "/studies/catalogues/download/%s".formatted(name);
+    }
+}
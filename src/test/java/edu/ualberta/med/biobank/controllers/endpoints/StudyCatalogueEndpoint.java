@@ -0,0 +1,8 @@
+package edu.ualberta.med.biobank.controllers.endpoints;
+
+public record StudyCatalogueEndpoint(String nameshort) implements Endpoint {
+    @Override
+    public String url() {
+        return "/studies/catalogues/%s".formatted(nameshort);
+    }
+}
@@ -1,6 +1,7 @@
 package edu.ualberta.med.biobank.controllers.patients;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -13,6 +14,7 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
@@ -21,7 +23,9 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import edu.ualberta.med.biobank.controllers.endpoints.PatientCommentAddEndpoint;
+import edu.ualberta.med.biobank.controllers.endpoints.PatientNumberEndpoint;
 import edu.ualberta.med.biobank.dtos.CommentAddDTO;
+import edu.ualberta.med.biobank.services.SummaryCountService;
 import edu.ualberta.med.biobank.test.ControllerTest;
 import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
 import edu.ualberta.med.biobank.util.JsonUtil;
@@ -37,6 +41,9 @@ class PatientCommentAddTests extends ControllerTest {
     @SuppressWarnings("unused")
     private final Logger logger = LoggerFactory.getLogger(PatientCommentAddTests.class);
 
+    @Autowired
+    private SummaryCountService summaryCountService;
+
     @Test
     @WithMockUser(value = "testuser")
     void post_succeeds() throws Exception {
@@ -58,6 +65,31 @@ class PatientCommentAddTests extends ControllerTest {
         assertThat(Instant.parse(createdAt), InstantMatchers.within(1, ChronoUnit.MINUTES, new Date().toInstant()));
     }
 
+    @Test
+    @WithMockUser(value = "testuser")
+    void post_increments_patient_comment_count() throws Exception {
+        var patient = new PatientFixtureBuilder().numCollectionEvents(1).build(factory);
+
+        // fixtures are created without summaries, the repair creates them
+        summaryCountService.repair();
+
+        MvcResult before = mvc.perform(get(new PatientNumberEndpoint(patient.getPnumber()).url())).andReturn();
+        Integer commentCount = JsonPath.read(before.getResponse().getContentAsString(), "$.commentCount");
+
+        mvc
+            .perform(
+                post(new PatientCommentAddEndpoint(patient.getPnumber()).url())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(JsonUtil.asJsonString(new CommentAddDTO(new Faker().lorem().paragraph(2))))
+            )
+            .andExpect(status().isCreated());
+
+        mvc
+            .perform(get(new PatientNumberEndpoint(patient.getPnumber()).url()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.commentCount", Matchers.is(commentCount + 1)));
+    }
+
     @Test
     void post_when_anonymous_is_unauthorized() throws Exception {
         var patient = new PatientFixtureBuilder().numCollectionEvents(1).build(factory);
@@ -0,0 +1,136 @@
+package edu.ualberta.med.biobank.controllers.patients;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import edu.ualberta.med.biobank.controllers.endpoints.PatientNumberEndpoint;
+import edu.ualberta.med.biobank.controllers.endpoints.VisitNumberEndpoint;
+import edu.ualberta.med.biobank.services.SummaryCountService;
+import edu.ualberta.med.biobank.test.ControllerTest;
+import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
+import jakarta.transaction.Transactional;
+
+/**
+ * Checks the counts returned with a patient and its visits, when they are read from the summaries and after the
+ * summaries are repaired.
+ */
+@Testcontainers
+@Transactional
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+class PatientCountsTests extends ControllerTest {
+
+    @SuppressWarnings("unused")
+    private final Logger logger = LoggerFactory.getLogger(PatientCountsTests.class);
+
+    @Autowired
+    private SummaryCountService summaryCountService;
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void get_counts_aliquots_added_outside_the_application() throws Exception {
+        var patient = new PatientFixtureBuilder().numCollectionEvents(1).numSpecimens(1).numAliquots(1).build(factory);
+        summaryCountService.repair();
+
+        // added the way the legacy client does, without changing the summaries
+        factory.createChildSpecimen();
+        factory.createChildSpecimen();
+        em.flush();
+
+        this.mvc.perform(get(new PatientNumberEndpoint(patient.getPnumber()).url()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.specimenCount", Matchers.is(1)))
+            .andExpect(jsonPath("$.aliquotCount", Matchers.is(3)))
+            .andExpect(jsonPath("$.collectionEvents[0].specimenCount", Matchers.is(1)))
+            .andExpect(jsonPath("$.collectionEvents[0].aliquotCount", Matchers.is(3)));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void repair_recounts_drifted_summaries() throws Exception {
+        var patient = new PatientFixtureBuilder()
+            .numCollectionEvents(2)
+            .numSpecimens(2)
+            .numAliquots(1)
+            .numPatientComments(2)
+            .numCollectionEventComments(1)
+            .build(factory);
+        var collectionEvent = patient.getCollectionEvents().stream().findFirst().get();
+        summaryCountService.repair();
+
+        em.createNativeQuery(
+                "update COLLECTION_EVENT_SUMMARY set SPECIMEN_COUNT = 99, COMMENT_COUNT = 99, FIRST_SPECIMEN_AT = null "
+                    + "where COLLECTION_EVENT_ID = ?1"
+            )
+            .setParameter(1, collectionEvent.getId())
+            .executeUpdate();
+        em.createNativeQuery("update PATIENT_SUMMARY set SPECIMEN_COUNT = 99, COMMENT_COUNT = 99 where PATIENT_ID = ?1")
+            .setParameter(1, patient.getId())
+            .executeUpdate();
+
+        this.mvc.perform(get(new PatientNumberEndpoint(patient.getPnumber()).url()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.specimenCount", Matchers.is(99)))
+            .andExpect(jsonPath("$.commentCount", Matchers.is(99)));
+
+        summaryCountService.repair();
+
+        this.mvc.perform(get(new PatientNumberEndpoint(patient.getPnumber()).url()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.specimenCount", Matchers.is(4)))
+            .andExpect(jsonPath("$.aliquotCount", Matchers.is(4)))
+            .andExpect(jsonPath("$.commentCount", Matchers.is(2)))
+            .andExpect(jsonPath("$.collectionEvents[*].specimenCount", Matchers.contains(2, 2)))
+            .andExpect(jsonPath("$.collectionEvents[*].aliquotCount", Matchers.contains(2, 2)))
+            .andExpect(jsonPath("$.collectionEvents[*].createdAt", Matchers.everyItem(Matchers.notNullValue())));
+
+        this.mvc.perform(get(new VisitNumberEndpoint(patient.getPnumber(), collectionEvent.getVisitNumber()).url()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.commentCount", Matchers.is(1)));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void repair_deletes_summaries_of_deleted_rows() throws Exception {
+        new PatientFixtureBuilder().numCollectionEvents(1).build(factory);
+        summaryCountService.repair();
+
+        var orphanCeventId = nextId("collection_event");
+        var orphanPatientId = nextId("patient");
+        em.createNativeQuery("insert into COLLECTION_EVENT_SUMMARY (COLLECTION_EVENT_ID) values (?1)")
+            .setParameter(1, orphanCeventId)
+            .executeUpdate();
+        em.createNativeQuery("insert into PATIENT_SUMMARY (PATIENT_ID) values (?1)")
+            .setParameter(1, orphanPatientId)
+            .executeUpdate();
+
+        summaryCountService.repair();
+
+        assertThat(summaryCount("COLLECTION_EVENT_SUMMARY", "COLLECTION_EVENT_ID", orphanCeventId), Matchers.is(0L));
+        assertThat(summaryCount("PATIENT_SUMMARY", "PATIENT_ID", orphanPatientId), Matchers.is(0L));
+    }
+
+    private int nextId(String table) {
+        em.flush();
+        var maxId = em.createNativeQuery("select coalesce(max(ID), 0) from " + table).getSingleResult();
+        return ((Number) maxId).intValue() + 1000;
+    }
+
+    private long summaryCount(String table, String idColumn, int id) {
+        var count = em
+            .createNativeQuery("select count(*) from %s where %s = ?1".formatted(table, idColumn))
+            .setParameter(1, id)
+            .getSingleResult();
+        return ((Number) count).longValue();
+    }
+}
@@ -18,6 +18,7 @@ import edu.ualberta.med.biobank.controllers.endpoints.PatientNumberEndpoint;
 import edu.ualberta.med.biobank.dtos.PatientDTO;
 import edu.ualberta.med.biobank.matchers.PatientMatcher;
 import edu.ualberta.med.biobank.test.ControllerTest;
+import edu.ualberta.med.biobank.test.StatementBudget;
 import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
 import edu.ualberta.med.biobank.util.LoggingUtils;
 import jakarta.transaction.Transactional;
@@ -32,6 +33,12 @@ class PatientListTests extends ControllerTest {
     @SuppressWarnings("unused")
     private final Logger logger = LoggerFactory.getLogger(PatientListTests.class);
 
+    private static final int VISITS = 3;
+
+    // measured: the patient and its visits' summaries, then the permission check reads the user's membership, the
+    // study and the membership again
+    private static final StatementBudget GET_BUDGET = new StatementBudget(5, 1 + VISITS + 3);
+
     @Test
     @WithMockUser
     void get_when_empty_table_is_not_found() throws Exception {
@@ -49,10 +56,16 @@ class PatientListTests extends ControllerTest {
     @Test
     @WithMockUser(value = "testuser")
     void get_when_present_is_ok() throws Exception {
-        var patient = new PatientFixtureBuilder().numCollectionEvents(1).numSpecimens(1).build(factory);
+        var patient = new PatientFixtureBuilder()
+            .numCollectionEvents(VISITS)
+            .numSpecimens(2)
+            .numAliquots(2)
+            .numPatientComments(2)
+            .numCollectionEventComments(1)
+            .build(factory);
 
         MvcResult result =
-            this.mvc.perform(get(new PatientNumberEndpoint(patient.getPnumber()).url()))
+            performWithin(GET_BUDGET, get(new PatientNumberEndpoint(patient.getPnumber()).url()))
                 .andExpect(status().isOk())
                 .andReturn();
 
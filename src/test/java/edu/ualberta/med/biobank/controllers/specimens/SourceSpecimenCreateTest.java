@@ -18,12 +18,14 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.testcontainers.junit.jupiter.Testcontainers;
+import edu.ualberta.med.biobank.controllers.endpoints.PatientNumberEndpoint;
 import edu.ualberta.med.biobank.controllers.endpoints.SourceSpecimenAddEdnpoint;
 import edu.ualberta.med.biobank.controllers.endpoints.VisitNumberEndpoint;
 import edu.ualberta.med.biobank.domain.CollectionEvent;
@@ -33,6 +35,7 @@ import edu.ualberta.med.biobank.domain.Status;
 import edu.ualberta.med.biobank.dtos.SourceSpecimenAddDTO;
 import edu.ualberta.med.biobank.dtos.SourceSpecimenDTO;
 import edu.ualberta.med.biobank.matchers.SourceSpecimenMatcher;
+import edu.ualberta.med.biobank.services.SummaryCountService;
 import edu.ualberta.med.biobank.test.ControllerTest;
 import edu.ualberta.med.biobank.test.fixtures.PatientFixtureBuilder;
 import jakarta.transaction.Transactional;
@@ -56,6 +59,9 @@ class SourceSpecimenCreateTest extends ControllerTest {
     @SuppressWarnings("unused")
     private final Logger logger = LoggerFactory.getLogger(SourceSpecimenCreateTest.class);
 
+    @Autowired
+    private SummaryCountService summaryCountService;
+
     @ParameterizedTest
     @MethodSource("provideInvalidValues")
     @WithMockUser(value = "testuser")
@@ -107,6 +113,42 @@ class SourceSpecimenCreateTest extends ControllerTest {
         MatcherAssert.assertThat(resultDto.worksheet(), Matchers.nullValue());
     }
 
+    @Test
+    @WithMockUser(value = "testuser")
+    void post_increments_visit_and_patient_specimen_counts() throws Exception {
+        var patient = new PatientFixtureBuilder().numCollectionEvents(1).numSpecimens(1).numAliquots(2).build(factory);
+        var collectionEvent = patient.getCollectionEvents().stream().findFirst().get();
+
+        // fixtures are created without summaries, the repair creates them
+        summaryCountService.repair();
+
+        mvc.perform(
+                post(new SourceSpecimenAddEdnpoint().url())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(JsonUtil.asJsonString(createSpecimen(patient, collectionEvent))))
+            .andExpect(status().isCreated());
+
+        mvc.perform(get(new PatientNumberEndpoint(patient.getPnumber()).url()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.specimenCount", Matchers.is(2)))
+            .andExpect(jsonPath("$.aliquotCount", Matchers.is(2)))
+            .andExpect(jsonPath("$.collectionEvents[0].specimenCount", Matchers.is(2)))
+            .andExpect(jsonPath("$.collectionEvents[0].aliquotCount", Matchers.is(2)));
+
+        // the counts come from the summaries, not from counting the specimens again
+        em.flush();
+        var visitCount = em
+            .createNativeQuery("select SPECIMEN_COUNT from COLLECTION_EVENT_SUMMARY where COLLECTION_EVENT_ID = ?1")
+            .setParameter(1, collectionEvent.getId())
+            .getSingleResult();
+        var patientCount = em
+            .createNativeQuery("select SPECIMEN_COUNT from PATIENT_SUMMARY where PATIENT_ID = ?1")
+            .setParameter(1, patient.getId())
+            .getSingleResult();
+        MatcherAssert.assertThat(((Number) visitCount).longValue(), Matchers.equalTo(2L));
+        MatcherAssert.assertThat(((Number) patientCount).longValue(), Matchers.equalTo(2L));
+    }
+
     @Test
     @WithMockUser(value = "testuser")
     void post_when_specimen_exists_is_bad_request() throws Exception {
@@ -0,0 +1,248 @@
+package edu.ualberta.med.biobank.controllers.specimens;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.IntFunction;
+import org.apache.commons.csv.CSVFormat;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.request.MockMultipartHttpServletRequestBuilder;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.ualberta.med.biobank.controllers.endpoints.SpecimenRequestEndpoint;
+import edu.ualberta.med.biobank.domain.Patient;
+import edu.ualberta.med.biobank.test.ControllerTest;
+
+class SpecimenRequestTests extends ControllerTest {
+
+    @SuppressWarnings("unused")
+    private final Logger logger = LoggerFactory.getLogger(SpecimenRequestTests.class);
+
+    private static final LocalDate DRAWN = LocalDate.of(2023, 3, 10);
+
+    /**
+     * Runs the streamed responses on the request's thread, so that they read the fixtures of the test's
+     * transaction.
+     */
+    @TestConfiguration
+    static class SyncStreamingConfig {
+
+        @Bean
+        WebMvcConfigurer syncStreaming() {
+            return new WebMvcConfigurer() {
+                @Override
+                public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                    configurer.setTaskExecutor(new ConcurrentTaskExecutor(new SyncTaskExecutor()));
+                }
+            };
+        }
+    }
+
+    private record Pull(String pnumber, String inventoryId, String location) {
+
+        static Pull of(JsonNode node) {
+            return new Pull(
+                node.path("pnumber").asText(),
+                node.path("inventoryId").asText(),
+                node.path("location").asText()
+            );
+        }
+
+        boolean found() {
+            return !location.startsWith("NOT_FOUND");
+        }
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void requests_in_several_batches_are_resolved_in_line_order() throws Exception {
+        var patient = patientWithAliquots(DRAWN, 2);
+        var aliquots = aliquotIds(patient);
+        var type = factory.getDefaultAliquotedSpecimenType().getNameShort();
+
+        var lines = requestLines(1201, line -> switch (line) {
+            case 1, 600, 1201 -> line(patient.getPnumber(), DRAWN, type, 1);
+            default -> line("missing-" + line, DRAWN, type, 1);
+        });
+
+        var pulls = request(lines, null);
+        assertThat(pulls, Matchers.hasSize(1201));
+        assertThat(pulls.get(0).inventoryId(), Matchers.in(aliquots));
+        assertThat(pulls.get(599).inventoryId(), Matchers.in(aliquots));
+        assertThat(pulls.get(599).inventoryId(), Matchers.not(pulls.get(0).inventoryId()));
+        assertThat(pulls.get(1200), Matchers.equalTo(new Pull(patient.getPnumber(), "", "NOT_FOUND(1)")));
+        assertThat(pulls.get(1), Matchers.equalTo(new Pull("missing-2", "", "NOT_FOUND(1)")));
+        assertThat(pulls.get(1199), Matchers.equalTo(new Pull("missing-1200", "", "NOT_FOUND(1)")));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void specimen_matching_several_requests_is_picked_once() throws Exception {
+        var patient = patientWithAliquots(DRAWN, 3);
+        var type = factory.getDefaultAliquotedSpecimenType().getNameShort();
+
+        var lines = List.of(
+            line(patient.getPnumber(), DRAWN, type, 2),
+            line(patient.getPnumber(), DRAWN.plusDays(1), type, 2)
+        );
+
+        var pulls = request(lines, null);
+        var found = pulls.stream().filter(Pull::found).map(Pull::inventoryId).toList();
+        assertThat(found, Matchers.hasSize(3));
+        assertThat(new HashSet<>(found), Matchers.equalTo(new HashSet<>(aliquotIds(patient))));
+        assertThat(pulls.get(pulls.size() - 1).location(), Matchers.equalTo("NOT_FOUND(1)"));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void specimens_are_matched_on_date_drawn() throws Exception {
+        var patient = patientWithAliquots(DRAWN, 1);
+        var type = factory.getDefaultAliquotedSpecimenType().getNameShort();
+
+        for (var drawn : List.of(DRAWN.minusDays(3), DRAWN.plusDays(3))) {
+            var pulls = request(List.of(line(patient.getPnumber(), drawn, type, 1)), null);
+            var notFound = new Pull(patient.getPnumber(), "", "NOT_FOUND(1)");
+            assertThat(drawn.toString(), pulls, Matchers.contains(notFound));
+        }
+
+        var pulls = request(List.of(line(patient.getPnumber(), DRAWN, type, 1)), null);
+        assertThat(pulls, Matchers.hasSize(1));
+        assertThat(pulls.get(0).inventoryId(), Matchers.in(aliquotIds(patient)));
+
+        pulls = request(List.of(line(patient.getPnumber(), DRAWN, "not-" + type, 1)), null);
+        assertThat(pulls.get(0).location(), Matchers.equalTo("NOT_FOUND(1)"));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void streamed_results_match_results() throws Exception {
+        var first = patientWithAliquots(DRAWN, 6);
+        var second = patientWithAliquots(DRAWN.plusDays(1), 4);
+        var type = factory.getDefaultAliquotedSpecimenType().getNameShort();
+
+        var lines = requestLines(1201, line -> {
+            if (line % 300 == 1) {
+                return line(first.getPnumber(), DRAWN, type, 2);
+            }
+            if (line % 400 == 2) {
+                return line(second.getPnumber(), DRAWN.plusDays(1), type, 1);
+            }
+            return line("missing-" + line, DRAWN, type, 1);
+        });
+
+        for (var seed : new String[] { null, "7" }) {
+            var pulls = request(lines, seed);
+            assertThat(pulls.stream().filter(Pull::found).count(), Matchers.equalTo(9L));
+            assertThat(requestStreamed(lines, seed, "ndjson"), Matchers.equalTo(pulls));
+            assertThat(requestStreamed(lines, seed, "csv"), Matchers.equalTo(pulls));
+        }
+    }
+
+    private Patient patientWithAliquots(LocalDate drawn, int count) {
+        var patient = factory.createPatient();
+        factory.createCollectionEvent();
+        var source = factory.createParentSpecimen();
+        source.setCreatedAt(Date.from(drawn.atTime(12, 0).toInstant(ZoneOffset.UTC)));
+        factory.createContainer();
+        for (int i = 0; i < count; i++) {
+            factory.createPositionedSpecimen();
+        }
+        return patient;
+    }
+
+    private List<String> aliquotIds(Patient patient) {
+        return em
+            .createQuery(
+                "select s.inventoryId from Specimen s where s.collectionEvent.patient = :patient "
+                    + "and s.parentSpecimen is not null",
+                String.class
+            )
+            .setParameter("patient", patient)
+            .getResultList();
+    }
+
+    private static String line(String pnumber, LocalDate drawn, String specimenType, int count) {
+        return "%s,%s,%s,%d".formatted(pnumber, drawn, specimenType, count);
+    }
+
+    private static List<String> requestLines(int count, IntFunction<String> line) {
+        var lines = new ArrayList<String>(count);
+        for (int n = 1; n <= count; n++) {
+            lines.add(line.apply(n));
+        }
+        return lines;
+    }
+
+    private MockMultipartHttpServletRequestBuilder requestBuilder(List<String> lines, String seed) {
+        var file = new MockMultipartFile(
+            "file",
+            "request.csv",
+            "text/csv",
+            String.join("\n", lines).getBytes(StandardCharsets.UTF_8)
+        );
+        var builder = multipart(new SpecimenRequestEndpoint().url()).file(file);
+        builder.param("timezone", "UTC");
+        if (seed != null) {
+            builder.param("seed", seed);
+        }
+        return builder;
+    }
+
+    private List<Pull> request(List<String> lines, String seed) throws Exception {
+        em.flush();
+        var content = this.mvc.perform(requestBuilder(lines, seed))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+        var pulls = new ArrayList<Pull>();
+        objectMapper().readTree(content).forEach(node -> pulls.add(Pull.of(node)));
+        return pulls;
+    }
+
+    private List<Pull> requestStreamed(List<String> lines, String seed, String format) throws Exception {
+        em.flush();
+        var builder = requestBuilder(lines, seed);
+        builder.param("format", format);
+        var started = this.mvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        var content = this.mvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+        var pulls = new ArrayList<Pull>();
+        if (format.equals("csv")) {
+            var csvFormat = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build();
+            for (var record : csvFormat.parse(new StringReader(content))) {
+                pulls.add(new Pull(record.get("Patient #"), record.get("Inventory ID"), record.get("Location")));
+            }
+        } else {
+            for (var line : content.split("\n")) {
+                pulls.add(Pull.of(objectMapper().readTree(line)));
+            }
+        }
+        return pulls;
+    }
+}
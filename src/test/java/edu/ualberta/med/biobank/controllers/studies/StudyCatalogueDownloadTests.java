@@ -0,0 +1,217 @@
+package edu.ualberta.med.biobank.controllers.studies;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import edu.ualberta.med.biobank.controllers.endpoints.StudyCatalogueDownloadEndpoint;
+import edu.ualberta.med.biobank.test.ControllerTest;
+
+@TestPropertySource(properties = "biobank.catalogue.folder=target/test-downloads")
+class StudyCatalogueDownloadTests extends ControllerTest {
+
+    @SuppressWarnings("unused")
+    private final Logger logger = LoggerFactory.getLogger(StudyCatalogueDownloadTests.class);
+
+    private static final Path FOLDER = Paths.get("target/test-downloads");
+
+    private static final int SIZE = 100;
+
+    private final UUID taskId = UUID.randomUUID();
+
+    private final String name = "STUDY_%s.csv".formatted(taskId);
+
+    private final String etag = "\"%s-%d\"".formatted(taskId, SIZE);
+
+    private byte[] bytes;
+
+    @BeforeEach
+    public void setup(TestInfo testInfo) {
+        super.setup(testInfo);
+        bytes = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        try {
+            Files.createDirectories(FOLDER);
+            Files.write(FOLDER.resolve(name), bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MockHttpServletRequestBuilder download() {
+        return get(new StudyCatalogueDownloadEndpoint(name).url());
+    }
+
+    private MockHttpServletRequestBuilder range(String range) {
+        return download().header(HttpHeaders.RANGE, range);
+    }
+
+    private byte[] bytes(int first, int last) {
+        return Arrays.copyOfRange(bytes, first, last + 1);
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void get_is_ok_with_whole_file() throws Exception {
+        this.mvc.perform(download())
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, SIZE))
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+            .andExpect(content().bytes(bytes));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void range_is_partial_content() throws Exception {
+        this.mvc.perform(range("bytes=10-19"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/100"))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+            .andExpect(content().bytes(bytes(10, 19)));
+
+        // the end of the range is limited to the end of the file
+        this.mvc.perform(range("bytes=90-500"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 90-99/100"))
+            .andExpect(content().bytes(bytes(90, 99)));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void open_ended_range_is_sent_to_end_of_file() throws Exception {
+        this.mvc.perform(range("bytes=95-"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 95-99/100"))
+            .andExpect(content().bytes(bytes(95, 99)));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void suffix_range_is_end_of_file() throws Exception {
+        this.mvc.perform(range("bytes=-5"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 95-99/100"))
+            .andExpect(content().bytes(bytes(95, 99)));
+
+        // a suffix longer than the file is the whole file
+        this.mvc.perform(range("bytes=-500"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-99/100"))
+            .andExpect(content().bytes(bytes));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void range_past_end_of_file_is_not_satisfiable() throws Exception {
+        for (var range : new String[] { "bytes=100-", "bytes=150-200", "bytes=-0" }) {
+            this.mvc.perform(range(range))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */100"))
+                .andExpect(content().bytes(new byte[0]));
+        }
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void invalid_or_multiple_ranges_are_ignored() throws Exception {
+        for (var range : new String[] { "bytes=20-10", "bytes=0-1,5-6", "items=0-10", "bytes=-" }) {
+            this.mvc.perform(range(range))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(bytes));
+        }
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void range_is_sent_when_if_range_matches() throws Exception {
+        this.mvc.perform(range("bytes=0-9").header(HttpHeaders.IF_RANGE, etag))
+            .andExpect(status().isPartialContent())
+            .andExpect(content().bytes(bytes(0, 9)));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void whole_file_is_sent_when_if_range_does_not_match() throws Exception {
+        var stale = "\"%s-%d\"".formatted(taskId, SIZE - 1);
+        this.mvc.perform(range("bytes=0-9").header(HttpHeaders.IF_RANGE, stale))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, SIZE))
+            .andExpect(content().bytes(bytes));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void matching_etag_is_not_modified() throws Exception {
+        for (var ifNoneMatch : new String[] { etag, "W/" + etag, "\"other\", " + etag, "*" }) {
+            this.mvc.perform(download().header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+        }
+
+        this.mvc.perform(download().header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(bytes));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void whole_file_is_compressed_when_gzip_is_accepted() throws Exception {
+        var response = this.mvc.perform(download().header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"%s-%d-gzip\"".formatted(taskId, SIZE)))
+            .andReturn()
+            .getResponse();
+
+        try (var input = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertThat(input.readAllBytes(), Matchers.equalTo(bytes));
+        }
+
+        // ranges are of the file as saved
+        this.mvc.perform(range("bytes=0-9").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+            .andExpect(content().bytes(bytes(0, 9)));
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void invalid_name_is_bad_request() throws Exception {
+        this.mvc.perform(get(new StudyCatalogueDownloadEndpoint("STUDY_not-a-task.csv").url()))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void missing_file_is_not_found() throws Exception {
+        var missing = "STUDY_%s.csv".formatted(UUID.randomUUID());
+        this.mvc.perform(get(new StudyCatalogueDownloadEndpoint(missing).url()))
+            .andExpect(status().isNotFound());
+    }
+}
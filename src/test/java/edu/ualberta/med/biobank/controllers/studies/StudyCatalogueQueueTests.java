@@ -0,0 +1,27 @@
+package edu.ualberta.med.biobank.controllers.studies;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
+import edu.ualberta.med.biobank.controllers.endpoints.StudyCatalogueEndpoint;
+import edu.ualberta.med.biobank.test.ControllerTest;
+
+@TestPropertySource(properties = "biobank.operations.queue-capacity=0")
+class StudyCatalogueQueueTests extends ControllerTest {
+
+    @SuppressWarnings("unused")
+    private final Logger logger = LoggerFactory.getLogger(StudyCatalogueQueueTests.class);
+
+    @Test
+    @WithMockUser(value = "testuser")
+    void post_when_queue_is_full_is_service_unavailable() throws Exception {
+        var study = factory.createStudy();
+
+        this.mvc.perform(post(new StudyCatalogueEndpoint(study.getNameShort()).url()).param("format", "csv"))
+            .andExpect(status().isServiceUnavailable());
+    }
+}
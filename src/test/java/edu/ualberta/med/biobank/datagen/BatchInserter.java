@@ -0,0 +1,95 @@
+package edu.ualberta.med.biobank.datagen;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inserts rows into a table with multi-row insert statements, {@code batchSize} rows at a time.
+ *
+ * Rows are buffered until a batch is full, {@link #close()} inserts the rows left. Each batch is committed when
+ * the connection is not in auto-commit mode, so a large load does not build a single huge transaction.
+ */
+final class BatchInserter implements AutoCloseable {
+
+    private final Connection connection;
+
+    private final String table;
+
+    private final int columns;
+
+    private final int batchSize;
+
+    private final String rowPlaceholders;
+
+    private final String insertPrefix;
+
+    private final List<Object> values = new ArrayList<>();
+
+    private PreparedStatement fullBatch;
+
+    private long rows = 0;
+
+    BatchInserter(Connection connection, String table, List<String> columns, int batchSize) {
+        this.connection = connection;
+        this.table = table;
+        this.columns = columns.size();
+        this.batchSize = batchSize;
+        this.rowPlaceholders = "(" + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+        this.insertPrefix = "insert into `%s` (%s) values ".formatted(
+            table,
+            String.join(",", columns.stream().map(column -> "`" + column + "`").toList())
+        );
+    }
+
+    void add(Object... row) throws SQLException {
+        if (row.length != columns) {
+            throw new IllegalArgumentException("%s: expected %d values, got %d".formatted(table, columns, row.length));
+        }
+        Collections.addAll(values, row);
+        if (values.size() == columns * batchSize) {
+            if (fullBatch == null) {
+                fullBatch = connection.prepareStatement(sql(batchSize));
+            }
+            execute(fullBatch);
+        }
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (!values.isEmpty()) {
+                try (var statement = connection.prepareStatement(sql(values.size() / columns))) {
+                    execute(statement);
+                }
+            }
+        } finally {
+            if (fullBatch != null) {
+                fullBatch.close();
+            }
+        }
+    }
+
+    private void execute(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < values.size(); i++) {
+            statement.setObject(i + 1, values.get(i));
+        }
+        statement.executeUpdate();
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+        rows += values.size() / columns;
+        values.clear();
+    }
+
+    private String sql(int rowCount) {
+        return insertPrefix + String.join(",", Collections.nCopies(rowCount, rowPlaceholders));
+    }
+}
@@ -0,0 +1,95 @@
+package edu.ualberta.med.biobank.datagen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The size and shape of a generated dataset.
+ *
+ * @param studies the number of studies.
+ * @param patients the number of patients, split between the studies.
+ * @param visits the number of visits, split between the patients. Each patient has at least one.
+ * @param specimens the number of specimens. Each visit has {@code sourcesPerVisit} source specimens, the rest
+ * are aliquots of the source specimens, each stored in a position of a box.
+ * @param sourcesPerVisit the number of source specimens of each visit.
+ * @param skew how unevenly the dataset is split: 0 splits it evenly. Patients are split between studies following
+ * Zipf's law with this exponent, visits and aliquots have log-normal counts with a sigma of half the skew.
+ * @param seed the seed of the random values, the same configuration and seed always give the same dataset.
+ * @param prefix added to the names, patient numbers and inventory IDs, so that the generated rows can be found
+ * and do not clash with existing ones.
+ * @param batchSize the number of rows inserted by each statement.
+ */
+public record DatasetConfig(
+    int studies,
+    int patients,
+    int visits,
+    int specimens,
+    int sourcesPerVisit,
+    double skew,
+    long seed,
+    String prefix,
+    int batchSize
+) {
+
+    /**
+     * The dataset used to reason about capacity: 10k patients, 200k visits and 5M specimens.
+     */
+    public static final DatasetConfig LARGE = new DatasetConfig(20, 10_000, 200_000, 5_000_000, 2, 0.8, 1, "DG", 1000);
+
+    /**
+     * A dataset small enough to create in a few seconds, for tests.
+     */
+    public static final DatasetConfig SMALL = new DatasetConfig(2, 50, 200, 5_000, 2, 0.8, 1, "DG", 500);
+
+    public DatasetConfig {
+        if (studies <= 0 || patients < studies || visits < patients) {
+            throw new IllegalArgumentException("need at least one patient per study and one visit per patient");
+        }
+        if (sourcesPerVisit <= 0 || (long) visits * sourcesPerVisit > specimens) {
+            throw new IllegalArgumentException("not enough specimens for the source specimens of every visit");
+        }
+        if (skew < 0) {
+            throw new IllegalArgumentException("skew can not be negative");
+        }
+        if (prefix == null || !prefix.matches("[A-Z][A-Z0-9]{0,5}")) {
+            throw new IllegalArgumentException("prefix must be 1 to 6 upper case letters or digits");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+    }
+
+    public int sources() {
+        return visits * sourcesPerVisit;
+    }
+
+    public int aliquots() {
+        return specimens - sources();
+    }
+
+    /**
+     * Parses {@code --name=value} options, the options that are not given are taken from {@code defaults}.
+     */
+    public static DatasetConfig fromArgs(String[] args, DatasetConfig defaults) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                continue;
+            }
+            var separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        return new DatasetConfig(
+            Integer.parseInt(options.getOrDefault("studies", String.valueOf(defaults.studies()))),
+            Integer.parseInt(options.getOrDefault("patients", String.valueOf(defaults.patients()))),
+            Integer.parseInt(options.getOrDefault("visits", String.valueOf(defaults.visits()))),
+            Integer.parseInt(options.getOrDefault("specimens", String.valueOf(defaults.specimens()))),
+            Integer.parseInt(options.getOrDefault("sources-per-visit", String.valueOf(defaults.sourcesPerVisit()))),
+            Double.parseDouble(options.getOrDefault("skew", String.valueOf(defaults.skew()))),
+            Long.parseLong(options.getOrDefault("seed", String.valueOf(defaults.seed()))),
+            options.getOrDefault("prefix", defaults.prefix()),
+            Integer.parseInt(options.getOrDefault("batch-size", String.valueOf(defaults.batchSize())))
+        );
+    }
+}
@@ -0,0 +1,548 @@
+package edu.ualberta.med.biobank.datagen;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ualberta.med.biobank.domain.ContainerLabelingScheme;
+import edu.ualberta.med.biobank.domain.Status;
+import edu.ualberta.med.biobank.domain.type.LabelingLayout;
+import edu.ualberta.med.biobank.domain.util.RowColPos;
+import net.datafaker.Faker;
+
+/**
+ * Creates a large dataset of studies, patients, visits and specimens, with the aliquots stored in boxes, directly
+ * in the database.
+ *
+ * Rows are inserted with multi-row insert statements, without going through JPA, so that millions of specimens
+ * can be created in minutes. The same {@link DatasetConfig} always creates the same rows, only the IDs depend on
+ * the rows already in the database. Foreign key checks are disabled while loading.
+ *
+ * The IDs of the new rows are reserved in the application's ID sequences before the first row is inserted, so the
+ * application can keep inserting while the dataset is loaded, in batches of their own transaction, without being
+ * given the same IDs.
+ *
+ * <pre>
+ * mvn -Pdatagen test-compile exec:exec@datagen -Ddatagen.args="--patients=10000 --seed=7"
+ * </pre>
+ *
+ * The connection is read from {@code --url}, {@code --user} and {@code --password}, or from the same
+ * {@code DB_*} environment variables as the application. {@code --manifest=<file>} saves a description of the
+ * dataset as JSON, see {@link Dataset}.
+ */
+public final class DatasetGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    /**
+     * Freezers hold 96 boxes, labelled with the 2 char numeric scheme.
+     */
+    private static final int FREEZER_SCHEME = 3;
+
+    /**
+     * Boxes hold 96 aliquots, labelled with the SBS standard.
+     */
+    private static final int BOX_SCHEME = 1;
+
+    private static final int ROWS = 8;
+
+    private static final int COLS = 12;
+
+    private static final LocalDateTime FIRST_VISIT = LocalDateTime.of(2010, 1, 1, 9, 0);
+
+    private static final int VISIT_DAYS = 14 * 365;
+
+    private static final String[] DEFAULT_SPECIMEN_TYPES = {
+        "Whole Blood EDTA", "Urine", "Plasma", "Serum", "Buffy coat", "Red Blood Cells", "Urine aliquot"
+    };
+
+    /**
+     * A description of a generated dataset, for the suites that use it.
+     *
+     * @param pnumbers the patient numbers, each patient has visits numbered from 1.
+     */
+    public record Dataset(
+        DatasetConfig config,
+        String siteNameShort,
+        List<String> studyNamesShort,
+        List<String> pnumbers
+    ) {
+    }
+
+    private final DatasetConfig config;
+
+    private final SplittableRandom random;
+
+    private final Faker faker;
+
+    private final Map<String, Integer> nextIds = new HashMap<>();
+
+    private final Map<String, Integer> reservedIds = new HashMap<>();
+
+    private final int activeStatus = Status.ACTIVE.getId();
+
+    public DatasetGenerator(DatasetConfig config) {
+        this.config = config;
+        this.random = new SplittableRandom(config.seed());
+        this.faker = new Faker(new Random(config.seed()));
+    }
+
+    public static void main(String[] args) throws SQLException, IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            var separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 0) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+
+        var url = options.getOrDefault(
+            "url",
+            "jdbc:mariadb://%s:%s/%s".formatted(
+                env("DB_HOST", "localhost"),
+                env("DB_PORT", "3306"),
+                env("DB_NAME", "biobank")
+            )
+        );
+        var user = options.getOrDefault("user", env("DB_USER", "biobank"));
+        var password = options.getOrDefault("password", env("DB_PASSWORD", "biobank"));
+        var config = DatasetConfig.fromArgs(args, DatasetConfig.LARGE);
+
+        try (var connection = DriverManager.getConnection(url, user, password)) {
+            var dataset = new DatasetGenerator(config).generate(connection);
+            if (options.containsKey("manifest")) {
+                new ObjectMapper()
+                    .writerWithDefaultPrettyPrinter()
+                    .writeValue(Path.of(options.get("manifest")).toFile(), dataset);
+            }
+        }
+    }
+
+    /**
+     * Creates the dataset. The connection's auto-commit and foreign key settings are restored when done.
+     *
+     * @throws IllegalStateException if a dataset with the same prefix is already in the database.
+     */
+    public Dataset generate(Connection connection) throws SQLException {
+        var start = System.nanoTime();
+        var autoCommit = connection.getAutoCommit();
+        try (var statement = connection.createStatement()) {
+            try (var rs = statement.executeQuery(
+                "select count(*) from study where name_short like '%s-%%'".formatted(config.prefix())
+            )) {
+                rs.next();
+                if (rs.getInt(1) > 0) {
+                    throw new IllegalStateException(
+                        "a dataset with prefix %s already exists".formatted(config.prefix())
+                    );
+                }
+            }
+
+            statement.execute("set foreign_key_checks = 0");
+            statement.execute("set unique_checks = 0");
+            connection.setAutoCommit(false);
+            try {
+                reserveIds(connection);
+                var dataset = load(connection);
+                checkReservedIds();
+                connection.commit();
+                logger.info(
+                    "created {} patients, {} visits and {} specimens in {} s",
+                    config.patients(),
+                    config.visits(),
+                    config.specimens(),
+                    (System.nanoTime() - start) / 1_000_000_000
+                );
+                return dataset;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                statement.execute("set unique_checks = 1");
+                statement.execute("set foreign_key_checks = 1");
+            }
+        }
+    }
+
+    private Dataset load(Connection connection) throws SQLException {
+        var prefix = config.prefix();
+        var specimenTypes = specimenTypes(connection);
+        var sourceTypes = specimenTypes.subList(0, 2);
+        var aliquotTypes = specimenTypes.subList(2, specimenTypes.size());
+
+        int siteId;
+        List<Integer> clinicIds = new ArrayList<>();
+        try (
+            var addresses = inserter(connection, "address", "ID", "VERSION", "STREET1", "CITY", "PROVINCE",
+                "POSTAL_CODE", "COUNTRY");
+            var centers = inserter(connection, "center", "DISCRIMINATOR", "ID", "VERSION", "ACTIVITY_STATUS_ID",
+                "NAME", "NAME_SHORT", "SENDS_SHIPMENTS", "ADDRESS_ID")
+        ) {
+            siteId = nextId("center");
+            centers.add("Site", siteId, 0, activeStatus, prefix + " Repository", prefix + "-SITE", null,
+                address(addresses));
+            for (int i = 0; i < Math.max(1, config.studies() / 2); i++) {
+                var clinicId = nextId("center");
+                clinicIds.add(clinicId);
+                centers.add("Clinic", clinicId, 0, activeStatus, truncate(faker.medical().hospitalName(), 255),
+                    "%s-C%02d".formatted(prefix, i + 1), true, address(addresses));
+            }
+        }
+
+        List<String> studyNames = new ArrayList<>();
+        List<Integer> studyIds = new ArrayList<>();
+        try (
+            var studies = inserter(connection, "study", "ID", "VERSION", "ACTIVITY_STATUS_ID", "NAME",
+                "NAME_SHORT");
+            var siteStudies = inserter(connection, "site_study", "SITE_ID", "STUDY_ID")
+        ) {
+            for (int i = 0; i < config.studies(); i++) {
+                var studyId = nextId("study");
+                var nameShort = "%s-S%02d".formatted(prefix, i + 1);
+                var name = "%s %s".formatted(faker.medical().diseaseName(), nameShort);
+                studies.add(studyId, 0, activeStatus, truncate(name, 255), nameShort);
+                siteStudies.add(siteId, studyId);
+                studyNames.add(nameShort);
+                studyIds.add(studyId);
+            }
+        }
+
+        var containers = new Containers(connection, siteId, aliquotTypes);
+        var patientsByStudy = Skew.zipf(config.patients(), config.studies(), 1, config.skew(), random);
+        var visitsByPatient = Skew.logNormal(config.visits(), config.patients(), 1, config.skew() / 2, random);
+        var aliquotsBySource = Skew.logNormal(config.aliquots(), config.sources(), 0, config.skew() / 2, random);
+
+        List<String> pnumbers = new ArrayList<>();
+        int patient = 0;
+        int source = 0;
+        int inventoryId = 0;
+        try (
+            var patients = inserter(connection, "patient", "ID", "VERSION", "CREATED_AT", "PNUMBER", "STUDY_ID");
+            var visits = inserter(connection, "collection_event", "ID", "VERSION", "ACTIVITY_STATUS_ID",
+                "VISIT_NUMBER", "PATIENT_ID");
+            var origins = inserter(connection, "origin_info", "ID", "VERSION", "CENTER_ID", "RECEIVER_SITE_ID");
+            var processingEvents = inserter(connection, "processing_event", "ID", "VERSION", "ACTIVITY_STATUS_ID",
+                "CREATED_AT", "PROCESSED_BY", "WORKSHEET", "CENTER_ID");
+            var specimens = inserter(connection, "specimen", "ID", "VERSION", "ACTIVITY_STATUS_ID", "CREATED_AT",
+                "INVENTORY_ID", "QUANTITY", "COLLECTION_EVENT_ID", "CURRENT_CENTER_ID", "ORIGIN_INFO_ID",
+                "ORIGINAL_COLLECTION_EVENT_ID", "PARENT_SPECIMEN_ID", "PROCESSING_EVENT_ID", "SPECIMEN_TYPE_ID",
+                "TOP_SPECIMEN_ID");
+            var positions = inserter(connection, "specimen_position", "ID", "VERSION", "COL", "ROW",
+                "POSITION_STRING", "CONTAINER_ID", "CONTAINER_TYPE_ID", "SPECIMEN_ID", "SPECIMEN_TYPE_ID")
+        ) {
+            for (int study = 0; study < config.studies(); study++) {
+                var clinicId = clinicIds.get(study % clinicIds.size());
+                for (int p = 0; p < patientsByStudy[study]; p++, patient++) {
+                    var patientId = nextId("patient");
+                    var pnumber = "%s%06d".formatted(prefix, patient + 1);
+                    pnumbers.add(pnumber);
+
+                    var visitTime = FIRST_VISIT.plusDays(random.nextInt(VISIT_DAYS))
+                        .plusMinutes(random.nextInt(8 * 60));
+                    patients.add(patientId, 0, Timestamp.valueOf(visitTime), pnumber, studyIds.get(study));
+
+                    for (int vnumber = 1; vnumber <= visitsByPatient[patient]; vnumber++) {
+                        var visitId = nextId("collection_event");
+                        var originId = nextId("origin_info");
+                        var processingId = nextId("processing_event");
+                        var created = Timestamp.valueOf(visitTime);
+                        visits.add(visitId, 0, activeStatus, vnumber, patientId);
+                        origins.add(originId, 0, clinicId, siteId);
+                        processingEvents.add(processingId, 0, activeStatus, created,
+                            truncate(faker.name().fullName(), 63), "%sW%07d".formatted(prefix, processingId),
+                            siteId);
+
+                        for (int s = 0; s < config.sourcesPerVisit(); s++, source++) {
+                            var sourceId = nextId("specimen");
+                            specimens.add(sourceId, 0, activeStatus, created,
+                                "%s%09d".formatted(prefix, ++inventoryId), null, visitId, siteId, originId, visitId,
+                                null, processingId, sourceTypes.get(s % sourceTypes.size()), sourceId);
+
+                            for (int a = 0; a < aliquotsBySource[source]; a++) {
+                                var aliquotId = nextId("specimen");
+                                var aliquotType = aliquotTypes.get(random.nextInt(aliquotTypes.size()));
+                                specimens.add(aliquotId, 0, activeStatus, created,
+                                    "%s%09d".formatted(prefix, ++inventoryId),
+                                    BigDecimal.valueOf(5 + random.nextInt(46), 1), visitId, siteId, originId,
+                                    null, sourceId, null, aliquotType, sourceId);
+                                containers.store(positions, aliquotId, aliquotType);
+                            }
+                        }
+                        visitTime = visitTime.plusDays(30 + random.nextInt(335));
+                    }
+                }
+                logger.info("study {}: {} specimens so far", studyNames.get(study), specimens.rows());
+            }
+        }
+        containers.close();
+
+        return new Dataset(config, prefix + "-SITE", studyNames, pnumbers);
+    }
+
+    /**
+     * Creates the freezers and boxes as aliquots are stored, filling each box before starting the next.
+     */
+    private final class Containers {
+
+        private final BatchInserter containers;
+
+        private final BatchInserter containerPositions;
+
+        private final int siteId;
+
+        private final int freezerTypeId;
+
+        private final int boxTypeId;
+
+        private int freezerId = 0;
+
+        private String freezerLabel;
+
+        private int boxesInFreezer = ROWS * COLS;
+
+        private int boxId = 0;
+
+        private int aliquotsInBox = ROWS * COLS;
+
+        private int freezers = 0;
+
+        Containers(Connection connection, int siteId, List<Integer> aliquotTypes) throws SQLException {
+            this.siteId = siteId;
+            this.freezerTypeId = nextId("container_type");
+            this.boxTypeId = nextId("container_type");
+
+            List<String> columns = new ArrayList<>(List.of("ID", "VERSION", "ACTIVITY_STATUS_ID", "COL_CAPACITY",
+                "ROW_CAPACITY", "DEFAULT_TEMPERATURE", "NAME", "NAME_SHORT", "TOP_LEVEL", "CHILD_LABELING_SCHEME_ID",
+                "SITE_ID"));
+            var hasLayout = hasColumn(connection, "container_type", "LABELING_LAYOUT");
+            if (hasLayout) {
+                columns.add("LABELING_LAYOUT");
+            }
+            try (var types = new BatchInserter(connection, "container_type", columns, config.batchSize())) {
+                var freezer = new ArrayList<Object>(List.of(freezerTypeId, 0, activeStatus, COLS, ROWS, -80.0,
+                    config.prefix() + " Freezer", config.prefix() + "-FRZ", true, FREEZER_SCHEME, siteId));
+                var box = new ArrayList<Object>(List.of(boxTypeId, 0, activeStatus, COLS, ROWS, -80.0,
+                    config.prefix() + " Box 96", config.prefix() + "-B96", false, BOX_SCHEME, siteId));
+                if (hasLayout) {
+                    freezer.add(LabelingLayout.HORIZONTAL.getId());
+                    box.add(LabelingLayout.HORIZONTAL.getId());
+                }
+                types.add(freezer.toArray());
+                types.add(box.toArray());
+            }
+            try (
+                var children = inserter(connection, "container_type_container_type", "PARENT_CONTAINER_TYPE_ID",
+                    "CHILD_CONTAINER_TYPE_ID", "SITE_ID");
+                var allowed = inserter(connection, "container_type_specimen_type", "CONTAINER_TYPE_ID",
+                    "SPECIMEN_TYPE_ID")
+            ) {
+                children.add(freezerTypeId, boxTypeId, siteId);
+                for (Integer type : aliquotTypes) {
+                    allowed.add(boxTypeId, type);
+                }
+            }
+
+            this.containers = inserter(connection, "container", "ID", "VERSION", "ACTIVITY_STATUS_ID", "LABEL",
+                "PATH", "TEMPERATURE", "CONTAINER_TYPE_ID", "SITE_ID", "TOP_CONTAINER_ID");
+            this.containerPositions = inserter(connection, "container_position", "ID", "VERSION", "COL", "ROW",
+                "CONTAINER_ID", "CONTAINER_TYPE_ID", "PARENT_CONTAINER_ID", "PARENT_CONTAINER_TYPE_ID");
+        }
+
+        void store(BatchInserter positions, int aliquotId, int aliquotType) throws SQLException {
+            if (aliquotsInBox == ROWS * COLS) {
+                newBox();
+            }
+            var position = new RowColPos(aliquotsInBox / COLS, aliquotsInBox % COLS);
+            var label = ContainerLabelingScheme.getPositionString(position, BOX_SCHEME, ROWS, COLS,
+                LabelingLayout.HORIZONTAL);
+            positions.add(nextId("specimen_position"), 0, position.getCol(), position.getRow(), label, boxId,
+                boxTypeId, aliquotId, aliquotType);
+            aliquotsInBox++;
+        }
+
+        private void newBox() throws SQLException {
+            if (boxesInFreezer == ROWS * COLS) {
+                freezerId = nextId("container");
+                freezerLabel = "%sF%03d".formatted(config.prefix(), ++freezers);
+                containers.add(freezerId, 0, activeStatus, freezerLabel, null, -80.0, freezerTypeId, siteId,
+                    freezerId);
+                boxesInFreezer = 0;
+            }
+
+            var position = new RowColPos(boxesInFreezer / COLS, boxesInFreezer % COLS);
+            var label = ContainerLabelingScheme.getPositionString(position, FREEZER_SCHEME, ROWS, COLS,
+                LabelingLayout.HORIZONTAL);
+            boxId = nextId("container");
+            containers.add(boxId, 0, activeStatus, freezerLabel + label, String.valueOf(freezerId), -80.0,
+                boxTypeId, siteId, freezerId);
+            containerPositions.add(nextId("container_position"), 0, position.getCol(), position.getRow(), boxId,
+                boxTypeId, freezerId, freezerTypeId);
+            boxesInFreezer++;
+            aliquotsInBox = 0;
+        }
+
+        void close() throws SQLException {
+            try {
+                containers.close();
+            } finally {
+                containerPositions.close();
+            }
+        }
+    }
+
+    /**
+     * The specimen types already in the database, the first two are used for source specimens and the others
+     * for aliquots. The default types are added when there are fewer than three.
+     */
+    private List<Integer> specimenTypes(Connection connection) throws SQLException {
+        List<Integer> types = new ArrayList<>();
+        try (
+            var statement = connection.createStatement();
+            var rs = statement.executeQuery("select ID from specimen_type order by ID limit 8")
+        ) {
+            while (rs.next()) {
+                types.add(rs.getInt(1));
+            }
+        }
+        if (types.size() >= 3) {
+            return types;
+        }
+
+        types.clear();
+        try (var inserter = inserter(connection, "specimen_type", "ID", "VERSION", "NAME", "NAME_SHORT")) {
+            for (String name : DEFAULT_SPECIMEN_TYPES) {
+                var id = nextId("specimen_type");
+                inserter.add(id, 0, "%s %s".formatted(config.prefix(), name), "%s %s".formatted(config.prefix(), name));
+                types.add(id);
+            }
+        }
+        return types;
+    }
+
+    private int address(BatchInserter addresses) throws SQLException {
+        var id = nextId("address");
+        addresses.add(id, 0, truncate(faker.address().streetAddress(), 255), truncate(faker.address().city(), 50),
+            truncate(faker.address().state(), 50), truncate(faker.address().zipCode(), 50), "Canada");
+        return id;
+    }
+
+    /**
+     * The number of rows created in each table. The default specimen types are counted even when they are not
+     * needed.
+     */
+    private Map<String, Integer> rowCounts() {
+        var centers = 1 + Math.max(1, config.studies() / 2);
+        var boxes = Math.ceilDiv(config.aliquots(), ROWS * COLS);
+        var counts = new LinkedHashMap<String, Integer>();
+        counts.put("address", centers);
+        counts.put("center", centers);
+        counts.put("study", config.studies());
+        counts.put("specimen_type", DEFAULT_SPECIMEN_TYPES.length);
+        counts.put("container_type", 2);
+        counts.put("container", boxes + Math.ceilDiv(boxes, ROWS * COLS));
+        counts.put("container_position", boxes);
+        counts.put("patient", config.patients());
+        counts.put("collection_event", config.visits());
+        counts.put("origin_info", config.visits());
+        counts.put("processing_event", config.visits());
+        counts.put("specimen", config.specimens());
+        counts.put("specimen_position", config.aliquots());
+        return counts;
+    }
+
+    /**
+     * Reserves the IDs of the new rows in the {@code hibernate_sequences} segments used by
+     * {@code CustomIdGenerator}, and commits. The range of each table starts after its largest ID and after the
+     * IDs the application has already reserved. The segment row is locked until the commit, so the application
+     * waits instead of reserving a block from the old value.
+     */
+    private void reserveIds(Connection connection) throws SQLException {
+        try (
+            var select = connection.prepareStatement(
+                "select next_val from hibernate_sequences where sequence_name = ? for update"
+            );
+            var update = connection.prepareStatement(
+                "update hibernate_sequences set next_val = ? where sequence_name = ?"
+            );
+            var insert = connection.prepareStatement(
+                "insert into hibernate_sequences (sequence_name, next_val) values (?, ?)"
+            );
+            var statement = connection.createStatement()
+        ) {
+            for (var entry : rowCounts().entrySet()) {
+                var table = entry.getKey();
+                var segment = table.toUpperCase();
+
+                select.setString(1, segment);
+                Long reserved = null;
+                try (var rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        reserved = rs.getLong(1);
+                    }
+                }
+                int first;
+                try (var rs = statement.executeQuery("select coalesce(max(ID), 0) + 1 from `%s`".formatted(table))) {
+                    rs.next();
+                    first = (int) Math.max(rs.getLong(1), reserved == null ? 0 : reserved);
+                }
+                var next = first + entry.getValue();
+
+                if (reserved == null) {
+                    insert.setString(1, segment);
+                    insert.setLong(2, next);
+                    insert.executeUpdate();
+                } else {
+                    update.setLong(1, next);
+                    update.setString(2, segment);
+                    update.executeUpdate();
+                }
+                nextIds.put(table, first);
+                reservedIds.put(table, next);
+            }
+        }
+        connection.commit();
+    }
+
+    private void checkReservedIds() {
+        nextIds.forEach((table, next) -> {
+            if (next > reservedIds.getOrDefault(table, 0)) {
+                throw new IllegalStateException("%s: more rows created than IDs reserved".formatted(table));
+            }
+        });
+    }
+
+    private BatchInserter inserter(Connection connection, String table, String... columns) {
+        return new BatchInserter(connection, table, List.of(columns), config.batchSize());
+    }
+
+    private int nextId(String table) {
+        return nextIds.merge(table, 1, Integer::sum) - 1;
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (var rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    private static String truncate(String value, int length) {
+        return value.length() <= length ? value : value.substring(0, length);
+    }
+
+    private static String env(String name, String defaultValue) {
+        var value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
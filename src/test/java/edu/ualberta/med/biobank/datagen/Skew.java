@@ -0,0 +1,80 @@
+package edu.ualberta.med.biobank.datagen;
+
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Splits a number of items between buckets unevenly, the way a few studies have most of the patients and some
+ * patients have many more visits than others.
+ */
+final class Skew {
+
+    private Skew() {
+    }
+
+    /**
+     * Splits {@code total} items following Zipf's law: the bucket of rank r, in a random order, gets a share
+     * proportional to {@code 1 / r^skew}. Suited to a few buckets, such as studies.
+     */
+    static int[] zipf(int total, int buckets, int minimum, double skew, SplittableRandom random) {
+        var weights = new double[buckets];
+        for (int i = 0; i < buckets; i++) {
+            weights[i] = 1 / Math.pow(i + 1, skew);
+        }
+        for (int i = buckets - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            var weight = weights[i];
+            weights[i] = weights[j];
+            weights[j] = weight;
+        }
+        return split(total, minimum, weights);
+    }
+
+    /**
+     * Splits {@code total} items with log-normal shares: most buckets get close to the average, a few get
+     * several times more. {@code sigma} 0 splits evenly. Suited to many buckets, such as patients.
+     */
+    static int[] logNormal(int total, int buckets, int minimum, double sigma, SplittableRandom random) {
+        var weights = new double[buckets];
+        for (int i = 0; i < buckets; i++) {
+            weights[i] = Math.exp(sigma * random.nextGaussian());
+        }
+        return split(total, minimum, weights);
+    }
+
+    /**
+     * Each bucket gets {@code minimum} items, the rest are split in proportion to the weights. Rounding
+     * errors go to the buckets with the largest remainders, so the counts add up to {@code total}.
+     */
+    private static int[] split(int total, int minimum, double[] weights) {
+        var buckets = weights.length;
+        if ((long) buckets * minimum > total) {
+            throw new IllegalArgumentException("not enough items for the minimum of each bucket");
+        }
+
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+        }
+
+        var counts = new int[buckets];
+        var remainders = new double[buckets];
+        long remaining = total - (long) buckets * minimum;
+        long assigned = 0;
+        for (int i = 0; i < buckets; i++) {
+            var share = remaining * weights[i] / sum;
+            counts[i] = minimum + (int) share;
+            remainders[i] = share - Math.floor(share);
+            assigned += (int) share;
+        }
+
+        var left = (int) (remaining - assigned);
+        IntStream.range(0, buckets)
+            .boxed()
+            .sorted(Comparator.comparingDouble((Integer i) -> remainders[i]).reversed().thenComparing(i -> i))
+            .limit(left)
+            .forEach(i -> counts[i]++);
+        return counts;
+    }
+}
@@ -0,0 +1,44 @@
+package edu.ualberta.med.biobank.datagen;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class SkewTest {
+
+    @Test
+    void zipf_counts_add_up_to_total() {
+        var counts = Skew.zipf(10_000, 20, 1, 0.8, new SplittableRandom(1));
+        assertThat(Arrays.stream(counts).sum(), equalTo(10_000));
+        assertThat(Arrays.stream(counts).boxed().toList(), everyItem(greaterThanOrEqualTo(1)));
+
+        var sorted = counts.clone();
+        Arrays.sort(sorted);
+        assertThat(sorted[sorted.length - 1], greaterThan(sorted[0] * 5));
+    }
+
+    @Test
+    void log_normal_counts_add_up_to_total() {
+        var counts = Skew.logNormal(200_000, 10_000, 1, 0.4, new SplittableRandom(1));
+        assertThat(Arrays.stream(counts).sum(), equalTo(200_000));
+        assertThat(Arrays.stream(counts).boxed().toList(), everyItem(greaterThanOrEqualTo(1)));
+    }
+
+    @Test
+    void no_skew_splits_evenly() {
+        var counts = Skew.logNormal(1000, 10, 0, 0, new SplittableRandom(1));
+        assertThat(Arrays.stream(counts).boxed().toList(), everyItem(equalTo(100)));
+    }
+
+    @Test
+    void same_seed_gives_same_counts() {
+        var first = Skew.zipf(5000, 7, 1, 1.2, new SplittableRandom(42));
+        var second = Skew.zipf(5000, 7, 1, 1.2, new SplittableRandom(42));
+        assertThat(first, equalTo(second));
+    }
+}
@@ -0,0 +1,188 @@
+package edu.ualberta.med.biobank.domain.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import javax.sql.DataSource;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.migration.Context;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import edu.ualberta.med.biobank.db.migration.V1_5__HibernateSequences;
+import edu.ualberta.med.biobank.domain.DomainEntity;
+import edu.ualberta.med.biobank.domain.Role;
+import edu.ualberta.med.biobank.domain.ShippingMethod;
+import edu.ualberta.med.biobank.domain.SpecimenType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Checks the IDs handed out by {@link CustomIdGenerator}.
+ *
+ * The generator keeps the current block of each table in memory, so this suite has a database and an application
+ * context of its own, and each test uses a table that no other test inserts into. The entities are persisted in
+ * transactions that are rolled back, the reserved blocks are written to {@code hibernate_sequences} in transactions
+ * of their own.
+ */
+@Testcontainers
+@SpringBootTest(
+    properties = {
+        "spring.datasource.url=jdbc:tc:mariadb:///biobank_ids?TC_INITSCRIPT=file:src/test/resources/sql/V1__init.sql"
+    }
+)
+class CustomIdGeneratorTest {
+
+    private static final int INCREMENT_SIZE = 50;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Test
+    void ids_are_reserved_in_blocks() throws Exception {
+        assertThat(maxId("role"), equalTo(0));
+
+        var ids = persist(INCREMENT_SIZE, n -> role("block" + n));
+        assertThat(ids, equalTo(range(1, INCREMENT_SIZE)));
+        assertThat(nextValue("ROLE"), equalTo(1L + INCREMENT_SIZE));
+
+        ids = persist(1, n -> role("next block"));
+        assertThat(ids, contains(1 + INCREMENT_SIZE));
+        assertThat(nextValue("ROLE"), equalTo(1L + 2 * INCREMENT_SIZE));
+    }
+
+    @Test
+    void new_segment_starts_after_existing_rows() throws Exception {
+        var max = maxId("shipping_method");
+        assertThat(nextValue("SHIPPING_METHOD"), nullValue());
+
+        var ids = persist(3, n -> shippingMethod("seeded" + n));
+        assertThat(ids, equalTo(range(max + 1, 3)));
+        assertThat(nextValue("SHIPPING_METHOD"), equalTo((long) max + 1 + INCREMENT_SIZE));
+    }
+
+    @Test
+    void migration_moves_stale_segment_past_existing_rows() throws Exception {
+        var max = maxId("specimen_type");
+        execute("INSERT INTO hibernate_sequences (sequence_name, next_val) VALUES ('SPECIMEN_TYPE', 1)");
+        execute("INSERT INTO hibernate_sequences (sequence_name, next_val) VALUES ('NOT_A_TABLE', 7)");
+
+        try (var connection = dataSource.getConnection()) {
+            new V1_5__HibernateSequences().migrate(context(connection));
+        }
+        assertThat(nextValue("SPECIMEN_TYPE"), equalTo((long) max + 1));
+        assertThat(nextValue("NOT_A_TABLE"), equalTo(7L));
+
+        var ids = persist(2, n -> specimenType("stale" + n));
+        assertThat(ids, equalTo(range(max + 1, 2)));
+    }
+
+    @Test
+    void migration_keeps_segment_ahead_of_rows() throws Exception {
+        var max = maxId("contact");
+        var ahead = max + 1000;
+        execute("INSERT INTO hibernate_sequences (sequence_name, next_val) VALUES ('CONTACT', " + ahead + ")");
+
+        try (var connection = dataSource.getConnection()) {
+            new V1_5__HibernateSequences().migrate(context(connection));
+        }
+        assertThat(nextValue("CONTACT"), equalTo((long) ahead));
+    }
+
+    private <T extends DomainEntity> List<Integer> persist(int count, IntFunction<T> entity) {
+        return transactionTemplate.execute(status -> {
+            List<Integer> ids = new ArrayList<>();
+            for (int n = 0; n < count; n++) {
+                var e = entity.apply(n);
+                em.persist(e);
+                ids.add(e.getId());
+            }
+            em.flush();
+            status.setRollbackOnly();
+            return ids;
+        });
+    }
+
+    private static List<Integer> range(int first, int count) {
+        return IntStream.range(first, first + count).boxed().toList();
+    }
+
+    private static Role role(String name) {
+        var role = new Role();
+        role.setName(name);
+        return role;
+    }
+
+    private static ShippingMethod shippingMethod(String name) {
+        var shippingMethod = new ShippingMethod();
+        shippingMethod.setName(name);
+        return shippingMethod;
+    }
+
+    private static SpecimenType specimenType(String name) {
+        var specimenType = new SpecimenType();
+        specimenType.setName(name);
+        specimenType.setNameShort(name);
+        return specimenType;
+    }
+
+    private int maxId(String table) throws SQLException {
+        try (
+            var connection = dataSource.getConnection();
+            var statement = connection.createStatement();
+            var resultSet = statement.executeQuery("SELECT coalesce(max(ID), 0) FROM " + table)
+        ) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private Long nextValue(String segment) throws SQLException {
+        try (
+            var connection = dataSource.getConnection();
+            var statement = connection.prepareStatement(
+                "SELECT next_val FROM hibernate_sequences WHERE sequence_name = ?"
+            )
+        ) {
+            statement.setString(1, segment);
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static Context context(Connection connection) {
+        return new Context() {
+            @Override
+            public Configuration getConfiguration() {
+                return null;
+            }
+
+            @Override
+            public Connection getConnection() {
+                return connection;
+            }
+        };
+    }
+}
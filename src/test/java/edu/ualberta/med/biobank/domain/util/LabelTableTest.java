@@ -0,0 +1,83 @@
+package edu.ualberta.med.biobank.domain.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import edu.ualberta.med.biobank.domain.ContainerLabelingScheme;
+import edu.ualberta.med.biobank.domain.type.LabelingLayout;
+
+/**
+ * Checks that the labels and positions found in the label tables are the same as the ones computed by the
+ * labeling schemes.
+ */
+class LabelTableTest {
+
+    static Stream<Arguments> schemes() {
+        return Stream.of(
+            Arguments.of(scheme(1, 2, 3), 8, 12, LabelingLayout.HORIZONTAL),
+            Arguments.of(scheme(1, 2, 3), 16, 24, LabelingLayout.HORIZONTAL),
+            Arguments.of(scheme(2, 2, 2), 4, 6, LabelingLayout.VERTICAL),
+            Arguments.of(scheme(2, 2, 2), 24, 24, LabelingLayout.HORIZONTAL),
+            Arguments.of(scheme(2, 2, 2), 1, 12, LabelingLayout.VERTICAL),
+            Arguments.of(scheme(3, 2, 2), 9, 10, LabelingLayout.VERTICAL),
+            Arguments.of(scheme(3, 2, 2), 5, 5, LabelingLayout.HORIZONTAL),
+            Arguments.of(scheme(4, 2, 2), 2, 2, LabelingLayout.HORIZONTAL),
+            Arguments.of(scheme(5, 2, 2), 9, 9, LabelingLayout.HORIZONTAL),
+            Arguments.of(scheme(6, 2, 2), 26, 26, LabelingLayout.VERTICAL),
+            Arguments.of(scheme(6, 2, 2), 10, 1, LabelingLayout.HORIZONTAL),
+            Arguments.of(scheme(7, 2, 3), 85, 2, LabelingLayout.VERTICAL)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("schemes")
+    void labels_match_scheme(ContainerLabelingScheme scheme, int rows, int cols, LabelingLayout layout)
+        throws Exception {
+        var table = ContainerLabelingScheme.labelTable(scheme.getId(), rows, cols, layout);
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                var rcp = new RowColPos(row, col);
+                var expected = ContainerLabelingScheme.getPositionString(null, rcp, scheme.getId(), rows, cols, layout);
+                var label = ContainerLabelingScheme.getPositionString(table, rcp, scheme.getId(), rows, cols, layout);
+                assertThat(label, equalTo(expected));
+                assertThat(
+                    scheme.getRowColFromPositionString(table, label, rows, cols, layout),
+                    equalTo(scheme.getRowColFromPositionString(null, label, rows, cols, layout))
+                );
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("schemes")
+    void tables_are_shared(ContainerLabelingScheme scheme, int rows, int cols, LabelingLayout layout) {
+        assertThat(
+            ContainerLabelingScheme.labelTable(scheme.getId(), rows, cols, layout),
+            sameInstance(ContainerLabelingScheme.labelTable(scheme.getId(), rows, cols, layout))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("schemes")
+    void unknown_labels_are_not_found(ContainerLabelingScheme scheme, int rows, int cols, LabelingLayout layout) {
+        var table = ContainerLabelingScheme.labelTable(scheme.getId(), rows, cols, layout);
+        assertThat(table.position("?"), nullValue());
+        assertThat(table.position("a1"), nullValue());
+        assertThat(table.label(rows, 0), nullValue());
+        assertThat(table.label(0, cols), nullValue());
+    }
+
+    private static ContainerLabelingScheme scheme(int id, int minChars, int maxChars) {
+        var scheme = new ContainerLabelingScheme();
+        scheme.setId(id);
+        scheme.setMinChars(minChars);
+        scheme.setMaxChars(maxChars);
+        return scheme;
+    }
+}
@@ -0,0 +1,212 @@
+package edu.ualberta.med.biobank.dtos;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import edu.ualberta.med.biobank.domain.PermissionEnum;
+
+/**
+ * Checks {@link UserPermissions} against {@link MembershipDTO#isAllowed}, the check it replaces, for every
+ * permission and for centers and studies that are, and are not, in the memberships' domains.
+ */
+class UserPermissionsTest {
+
+    private static final Integer[] IDS = { null, 1, 4, 5, 6, 16, 17, 18, 29, 30, 31, 999 };
+
+    private static int nextId = 1;
+
+    private static DomainDTO domain(
+        boolean allCenters,
+        boolean allStudies,
+        Set<Integer> centers,
+        Set<Integer> studies
+    ) {
+        return new DomainDTO(nextId++, allCenters, allStudies, centers, studies);
+    }
+
+    private static MembershipDTO membership(
+        boolean everyPermission,
+        Set<PermissionEnum> permissions,
+        List<RoleDTO> roles,
+        DomainDTO... domains
+    ) {
+        var domainMap = new HashMap<Integer, DomainDTO>();
+        Arrays.stream(domains).forEach(domain -> domainMap.put(domain.domainId(), domain));
+        var roleMap = new HashMap<Integer, RoleDTO>();
+        roles.forEach(role -> roleMap.put(role.id(), role));
+        return new MembershipDTO(nextId++, everyPermission, domainMap, roleMap, permissions);
+    }
+
+    private static RoleDTO role(PermissionEnum... permissions) {
+        return new RoleDTO(nextId++, "role", Set.of(permissions));
+    }
+
+    /**
+     * Checks that the compiled permissions give the same answer as the memberships, for every permission and
+     * every pair of IDs.
+     */
+    private static void assertSameAsMemberships(List<MembershipDTO> memberships) {
+        var compiled = UserPermissions.fromMemberships(memberships);
+        for (PermissionEnum permission : PermissionEnum.values()) {
+            for (Integer centerId : IDS) {
+                for (Integer studyId : IDS) {
+                    boolean expected = memberships
+                        .stream()
+                        .anyMatch(membership -> membership.isAllowed(permission, centerId, studyId));
+                    assertThat(
+                        "%s, center %s, study %s".formatted(permission, centerId, studyId),
+                        compiled.hasPermission(permission, centerId, studyId),
+                        equalTo(expected)
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    void every_permission_grants_all_permissions_in_the_domain() {
+        var membership = membership(true, Set.of(), List.of(), domain(false, false, Set.of(5), Set.of(17)));
+        var compiled = UserPermissions.fromMemberships(List.of(membership));
+
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_DELETE, 5, 17), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_DELETE, 6, 17), equalTo(false));
+        assertThat(compiled.hasPermission(PermissionEnum.STUDY_CREATE, 5, 17), equalTo(false));
+        assertSameAsMemberships(List.of(membership));
+    }
+
+    @Test
+    void permissions_come_from_the_membership_and_its_roles() {
+        var membership = membership(
+            false,
+            Set.of(PermissionEnum.PATIENT_READ),
+            List.of(role(PermissionEnum.SPECIMEN_READ), role(PermissionEnum.COLLECTION_EVENT_READ)),
+            domain(false, false, Set.of(5), Set.of(17))
+        );
+        var compiled = UserPermissions.fromMemberships(List.of(membership));
+
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, 5, 17), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.SPECIMEN_READ, 5, 17), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.COLLECTION_EVENT_READ, 5, 17), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_UPDATE, 5, 17), equalTo(false));
+        assertSameAsMemberships(List.of(membership));
+    }
+
+    @Test
+    void required_all_centers_and_all_studies_follow_the_domain() {
+        var centersOnly = membership(true, Set.of(), List.of(), domain(true, false, Set.of(), Set.of(17)));
+        var studiesOnly = membership(true, Set.of(), List.of(), domain(false, true, Set.of(5), Set.of()));
+        var both = membership(true, Set.of(), List.of(), domain(true, true, Set.of(), Set.of()));
+
+        var compiled = UserPermissions.fromMemberships(List.of(centersOnly));
+        assertThat(compiled.hasPermission(PermissionEnum.SITE_CREATE, null, null), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.STUDY_CREATE, null, null), equalTo(false));
+        assertThat(compiled.hasPermission(PermissionEnum.SPECIMEN_TYPE_CREATE, null, null), equalTo(false));
+        assertThat(compiled.hasAllCenters(), equalTo(true));
+        assertThat(compiled.hasAllStudies(), equalTo(false));
+
+        compiled = UserPermissions.fromMemberships(List.of(studiesOnly));
+        assertThat(compiled.hasPermission(PermissionEnum.SITE_CREATE, null, null), equalTo(false));
+        assertThat(compiled.hasPermission(PermissionEnum.STUDY_CREATE, null, null), equalTo(true));
+
+        compiled = UserPermissions.fromMemberships(List.of(both));
+        assertThat(compiled.hasPermission(PermissionEnum.SPECIMEN_TYPE_CREATE, 999, 999), equalTo(true));
+
+        assertSameAsMemberships(List.of(centersOnly));
+        assertSameAsMemberships(List.of(studiesOnly));
+        assertSameAsMemberships(List.of(both));
+    }
+
+    @Test
+    void null_center_or_study_is_not_checked() {
+        var membership = membership(
+            false,
+            Set.of(PermissionEnum.PATIENT_READ),
+            List.of(),
+            domain(false, false, Set.of(), Set.of())
+        );
+        var compiled = UserPermissions.fromMemberships(List.of(membership));
+
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, null, null), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, 1, null), equalTo(false));
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, null, 1), equalTo(false));
+        assertSameAsMemberships(List.of(membership));
+    }
+
+    @Test
+    void ids_are_found_in_the_domain() {
+        // not in order, the compiled IDs are sorted for the binary search
+        var membership = membership(
+            false,
+            Set.of(PermissionEnum.PATIENT_READ),
+            List.of(),
+            domain(false, false, Set.of(30, 5, 17), Set.of(17, 30, 5, 1))
+        );
+        var compiled = UserPermissions.fromMemberships(List.of(membership));
+
+        for (int id : new int[] { 5, 17, 30 }) {
+            assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, id, 1), equalTo(true));
+        }
+        for (int id : new int[] { 1, 4, 6, 16, 18, 29, 31, 999 }) {
+            assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, id, 1), equalTo(false));
+        }
+        assertSameAsMemberships(List.of(membership));
+    }
+
+    @Test
+    void any_membership_can_grant_the_permission() {
+        var reader = membership(
+            false,
+            Set.of(PermissionEnum.PATIENT_READ),
+            List.of(),
+            domain(false, false, Set.of(5), Set.of(17))
+        );
+        var updater = membership(
+            false,
+            Set.of(PermissionEnum.PATIENT_UPDATE),
+            List.of(),
+            domain(false, false, Set.of(6), Set.of(18))
+        );
+        var compiled = UserPermissions.fromMemberships(List.of(reader, updater));
+
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, 5, 17), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_UPDATE, 6, 18), equalTo(true));
+        // the permission of one membership does not apply to the domain of the other
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, 6, 18), equalTo(false));
+        assertSameAsMemberships(List.of(reader, updater));
+    }
+
+    @Test
+    void membership_with_several_domains_grants_nothing() {
+        var several = membership(
+            true,
+            Set.of(),
+            List.of(),
+            domain(true, true, Set.of(), Set.of()),
+            domain(false, false, Set.of(5), Set.of(17))
+        );
+        var single = membership(
+            false,
+            Set.of(PermissionEnum.PATIENT_READ),
+            List.of(),
+            domain(false, false, Set.of(5), Set.of(17))
+        );
+
+        // the membership failed the check, the compiled permissions skip it and keep the user's other memberships
+        assertThrows(RuntimeException.class, () -> several.isAllowed(PermissionEnum.PATIENT_READ, 5, 17));
+
+        var compiled = UserPermissions.fromMemberships(List.of(several, single));
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_READ, 5, 17), equalTo(true));
+        assertThat(compiled.hasPermission(PermissionEnum.PATIENT_UPDATE, 5, 17), equalTo(false));
+        assertThat(compiled.hasPermission(PermissionEnum.SITE_CREATE, null, null), equalTo(false));
+        assertThat(compiled.hasAllCenters(), equalTo(false));
+        assertThat(compiled.hasAllStudies(), equalTo(false));
+
+        var none = UserPermissions.fromMemberships(List.of(membership(true, Set.of(), List.of())));
+        assertThat(none.hasPermission(PermissionEnum.PATIENT_READ, null, null), equalTo(false));
+    }
+}
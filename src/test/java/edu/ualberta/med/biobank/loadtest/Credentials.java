@@ -0,0 +1,63 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import edu.ualberta.med.biobank.loadtest.LoadSettings.AuthMode;
+
+/**
+ * Adds the authentication headers to the requests, a bearer token or an API key depending on the mode.
+ *
+ * Tokens from {@code /api/token} expire after an hour, a new one is requested once the token is older than
+ * {@link #TOKEN_REFRESH}. Only used by the thread that creates the requests.
+ */
+final class Credentials {
+
+    static final String API_KEY_HEADER = "x-biobank-api-key";
+
+    private static final Duration TOKEN_REFRESH = Duration.ofMinutes(30);
+
+    private final AuthMode mode;
+
+    private final Callable<String> tokenSource;
+
+    private final String apiKey;
+
+    private String token;
+
+    private long tokenTime;
+
+    Credentials(AuthMode mode, Callable<String> tokenSource, String apiKey) {
+        this.mode = mode;
+        this.tokenSource = tokenSource;
+        this.apiKey = apiKey;
+    }
+
+    void apply(HttpRequest.Builder builder, SplittableRandom random) {
+        var useToken = switch (mode) {
+            case JWT -> true;
+            case API_KEY -> false;
+            case MIXED -> random.nextBoolean();
+        };
+
+        if (useToken) {
+            builder.header("Authorization", "Bearer " + token());
+        } else {
+            builder.header(API_KEY_HEADER, apiKey);
+        }
+    }
+
+    private String token() {
+        var now = System.nanoTime();
+        if (token == null || now - tokenTime > TOKEN_REFRESH.toNanos()) {
+            try {
+                token = tokenSource.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("could not get a token", e);
+            }
+            tokenTime = now;
+        }
+        return token;
+    }
+}
@@ -0,0 +1,80 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The latencies and responses of the requests of one scenario. Safe to update from many threads.
+ *
+ * Latencies are recorded in microseconds, from the time the request was due to be sent, so that a server that
+ * falls behind is not hidden by requests that are sent late.
+ */
+final class EndpointStats {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final String name;
+
+    private final ConcurrentHistogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * Records a response. {@code status} is the HTTP status, or the name of the exception when there was no
+     * response.
+     */
+    void record(long latencyNanos, String status, boolean error) {
+        var micros = Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY_MICROS);
+        latencies.recordValue(Math.max(micros, 1));
+        statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Records a request that was not sent because too many requests were waiting for a response.
+     */
+    void drop() {
+        dropped.increment();
+    }
+
+    Histogram latencies() {
+        return latencies.copy();
+    }
+
+    long requests() {
+        return latencies.getTotalCount();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    Map<String, Long> statuses() {
+        Map<String, Long> result = new TreeMap<>();
+        statuses.forEach((status, count) -> result.put(status, count.sum()));
+        return result;
+    }
+}
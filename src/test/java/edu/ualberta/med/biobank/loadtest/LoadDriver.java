@@ -0,0 +1,125 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends requests at a fixed rate, an open model: a request is started when it is due whether or not the earlier
+ * ones have completed, the way independent users do. Each request is sent and waited for on its own virtual
+ * thread.
+ *
+ * When the server falls behind, the latencies recorded include the time the requests spent waiting to be sent.
+ * Requests due while {@code maxInFlight} requests are waiting for a response are dropped and counted.
+ */
+final class LoadDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client;
+
+    private final URI base;
+
+    private final List<Scenario> scenarios;
+
+    private final int totalWeight;
+
+    private final Credentials credentials;
+
+    private final LoadSettings settings;
+
+    /**
+     * The results of a run.
+     *
+     * @param duration how long requests were started for, the throughput is computed over this time.
+     */
+    record LoadResult(List<EndpointStats> endpoints, Duration duration) {
+    }
+
+    LoadDriver(HttpClient client, URI base, List<Scenario> scenarios, Credentials credentials, LoadSettings settings) {
+        this.client = client;
+        this.base = base;
+        this.scenarios = scenarios;
+        this.totalWeight = scenarios.stream().mapToInt(Scenario::weight).sum();
+        this.credentials = credentials;
+        this.settings = settings;
+    }
+
+    /**
+     * Starts requests for {@code duration}, then waits for the requests still in flight.
+     */
+    LoadResult run(Duration duration, SplittableRandom random) {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        for (Scenario scenario : scenarios) {
+            stats.put(scenario.name(), new EndpointStats(scenario.name()));
+        }
+
+        var inFlight = new Semaphore(settings.maxInFlight());
+        var nanosPerRequest = 1_000_000_000d / settings.rate();
+        var start = System.nanoTime();
+        var end = start + duration.toNanos();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0;; i++) {
+                var due = start + (long) (i * nanosPerRequest);
+                if (due >= end) {
+                    break;
+                }
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                var scenario = Scenario.pick(scenarios, totalWeight, random);
+                var endpoint = stats.get(scenario.name());
+                var builder = scenario.request().create(base, random).timeout(REQUEST_TIMEOUT);
+                credentials.apply(builder, random);
+                var request = builder.build();
+
+                if (!inFlight.tryAcquire()) {
+                    endpoint.drop();
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        send(request, endpoint, due);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        return new LoadResult(List.copyOf(stats.values()), duration);
+    }
+
+    private void send(HttpRequest request, EndpointStats endpoint, long due) {
+        try {
+            var response = client.send(request, BodyHandlers.discarding());
+            var status = response.statusCode();
+            endpoint.record(System.nanoTime() - due, String.valueOf(status), status >= 400);
+            if (status >= 500) {
+                logger.debug("{} {}: {}", request.method(), request.uri(), status);
+            }
+        } catch (IOException e) {
+            endpoint.record(System.nanoTime() - due, e.getClass().getSimpleName(), true);
+            logger.debug("{} {}: {}", request.method(), request.uri(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.ualberta.med.biobank.loadtest.LoadDriver.LoadResult;
+import org.springframework.web.util.HtmlUtils;
+
+/**
+ * The results of a load test, per scenario and for all the requests.
+ *
+ * Written as {@code report.json}, {@code report.html}, and the full latency distribution of each scenario in
+ * HdrHistogram's {@code .hgrm} format, which can be plotted and compared between runs.
+ */
+record LoadReport(Instant finishedAt, LoadSettings settings, double durationSeconds, List<Row> endpoints, Row total) {
+
+    /**
+     * The results of a scenario, latencies in milliseconds.
+     */
+    record Row(
+        String name,
+        long requests,
+        long errors,
+        long dropped,
+        double throughput,
+        double p50,
+        double p90,
+        double p99,
+        double p999,
+        double max,
+        double mean,
+        Map<String, Long> statuses
+    ) {
+
+        static Row of(
+            String name,
+            Histogram latencies,
+            long errors,
+            long dropped,
+            Map<String, Long> statuses,
+            double seconds
+        ) {
+            return new Row(
+                name,
+                latencies.getTotalCount(),
+                errors,
+                dropped,
+                latencies.getTotalCount() / seconds,
+                millis(latencies.getValueAtPercentile(50)),
+                millis(latencies.getValueAtPercentile(90)),
+                millis(latencies.getValueAtPercentile(99)),
+                millis(latencies.getValueAtPercentile(99.9)),
+                millis(latencies.getMaxValue()),
+                latencies.getMean() / 1000,
+                statuses
+            );
+        }
+
+        /**
+         * The percentage of the requests that failed or were dropped.
+         */
+        double errorPercent() {
+            var all = requests + dropped;
+            return all == 0 ? 0 : 100.0 * (errors + dropped) / all;
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+
+    static LoadReport of(LoadResult result, LoadSettings settings) {
+        var seconds = result.duration().toNanos() / 1e9;
+        var all = new Histogram(3);
+        long errors = 0;
+        long dropped = 0;
+        List<Row> rows = new ArrayList<>();
+        for (EndpointStats endpoint : result.endpoints()) {
+            var latencies = endpoint.latencies();
+            rows.add(Row.of(
+                endpoint.name(),
+                latencies,
+                endpoint.errors(),
+                endpoint.dropped(),
+                endpoint.statuses(),
+                seconds
+            ));
+            all.add(latencies);
+            errors += endpoint.errors();
+            dropped += endpoint.dropped();
+        }
+        var total = Row.of("all", all, errors, dropped, Map.of(), seconds);
+        return new LoadReport(Instant.now(), settings, seconds, rows, total);
+    }
+
+    void write(LoadResult result, Path folder) throws IOException {
+        Files.createDirectories(folder);
+        new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .writerWithDefaultPrettyPrinter()
+            .writeValue(folder.resolve("report.json").toFile(), this);
+        Files.writeString(folder.resolve("report.html"), html());
+
+        for (EndpointStats endpoint : result.endpoints()) {
+            var file = folder.resolve(endpoint.name() + ".hgrm").toFile();
+            try (var out = new PrintStream(file, StandardCharsets.UTF_8)) {
+                // values are in microseconds, the distribution is written in milliseconds
+                endpoint.latencies().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private String html() {
+        var rows = new StringBuilder();
+        for (Row row : endpoints) {
+            rows.append(htmlRow(row, "td"));
+        }
+        rows.append(htmlRow(total, "th"));
+
+        return """
+            <!DOCTYPE html>
+            <html>
+            <head>
+            <meta charset="utf-8">
+            <title>Biobank load test</title>
+            <style>
+              body { font-family: sans-serif; margin: 2em; }
+              table { border-collapse: collapse; }
+              th, td { border: 1px solid #ccc; padding: 4px 10px; text-align: right; }
+              th:first-child, td:first-child { text-align: left; }
+              .errors { color: #b00; }
+            </style>
+            </head>
+            <body>
+            <h1>Biobank load test</h1>
+            <p>Finished at %s. %.1f requests per second for %.0f s after a %d s warmup, %s authentication,
+            at most %d requests in flight.</p>
+            <p>Latencies in milliseconds, from the time each request was due to be sent.</p>
+            <table>
+            <tr><th>Scenario</th><th>Requests</th><th>Errors</th><th>Dropped</th><th>Req/s</th>
+            <th>p50</th><th>p90</th><th>p99</th><th>p99.9</th><th>Max</th><th>Mean</th><th>Statuses</th></tr>
+            %s</table>
+            </body>
+            </html>
+            """.formatted(
+                finishedAt,
+                settings.rate(),
+                durationSeconds,
+                settings.warmup().toSeconds(),
+                settings.auth().name().toLowerCase(),
+                settings.maxInFlight(),
+                rows
+            );
+    }
+
+    private static String htmlRow(Row row, String cell) {
+        var values = List.of(
+            HtmlUtils.htmlEscape(row.name()),
+            String.valueOf(row.requests()),
+            String.valueOf(row.errors()),
+            String.valueOf(row.dropped()),
+            "%.1f".formatted(row.throughput()),
+            "%.1f".formatted(row.p50()),
+            "%.1f".formatted(row.p90()),
+            "%.1f".formatted(row.p99()),
+            "%.1f".formatted(row.p999()),
+            "%.1f".formatted(row.max()),
+            "%.1f".formatted(row.mean()),
+            HtmlUtils.htmlEscape(row.statuses().toString())
+        );
+
+        var html = new StringBuilder(row.errors() + row.dropped() > 0 ? "<tr class=\"errors\">" : "<tr>");
+        for (String value : values) {
+            html.append("<%1$s>%2$s</%1$s>".formatted(cell, value));
+        }
+        return html.append("</tr>\n").toString();
+    }
+}
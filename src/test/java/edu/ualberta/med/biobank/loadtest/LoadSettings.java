@@ -0,0 +1,60 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * The settings of a load test run, read from {@code biobank.loadtest.*} system properties.
+ *
+ * @param rate the number of requests started per second, whether or not the earlier ones have completed.
+ * @param warmup how long requests are sent before the latencies are recorded.
+ * @param duration how long the latencies are recorded for.
+ * @param auth how the requests are authenticated.
+ * @param maxInFlight the most requests waiting for a response. Requests due when this many are waiting are
+ * counted as dropped instead of being sent late.
+ * @param datasetArgs the {@code --name=value} options of the generated dataset, see
+ * {@link edu.ualberta.med.biobank.datagen.DatasetConfig#fromArgs}.
+ * @param seed the seed used to pick the scenarios and their parameters.
+ * @param reportFolder where the JSON and HTML reports are written.
+ * @param maxErrorPercent the run fails when more requests than this fail or are dropped.
+ */
+record LoadSettings(
+    double rate,
+    Duration warmup,
+    Duration duration,
+    AuthMode auth,
+    int maxInFlight,
+    String datasetArgs,
+    long seed,
+    Path reportFolder,
+    double maxErrorPercent
+) {
+
+    enum AuthMode {
+        /** A bearer token from {@code /api/token}. */
+        JWT,
+
+        /** The {@code x-biobank-api-key} header. */
+        API_KEY,
+
+        /** Each request picks one of the other modes at random. */
+        MIXED
+    }
+
+    static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+            Double.parseDouble(System.getProperty("biobank.loadtest.rate", "50")),
+            Duration.ofSeconds(Long.getLong("biobank.loadtest.warmup-seconds", 15)),
+            Duration.ofSeconds(Long.getLong("biobank.loadtest.duration-seconds", 60)),
+            AuthMode.valueOf(
+                System.getProperty("biobank.loadtest.auth", "mixed").toUpperCase(Locale.ROOT).replace('-', '_')
+            ),
+            Integer.getInteger("biobank.loadtest.max-in-flight", 1000),
+            System.getProperty("biobank.loadtest.dataset", ""),
+            Long.getLong("biobank.loadtest.seed", 1),
+            Path.of(System.getProperty("biobank.loadtest.report", "target/loadtest")),
+            Double.parseDouble(System.getProperty("biobank.loadtest.max-error-percent", "1"))
+        );
+    }
+}
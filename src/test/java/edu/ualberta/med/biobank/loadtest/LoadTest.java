@@ -0,0 +1,165 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import edu.ualberta.med.biobank.datagen.DatasetConfig;
+import edu.ualberta.med.biobank.datagen.DatasetGenerator;
+
+/**
+ * Sends the standard scenarios to the application, started on a random port with a Testcontainers database, and
+ * writes the latencies and throughput of each scenario to {@code target/loadtest}.
+ *
+ * A dataset is generated first, {@link DatasetConfig#SMALL} unless {@code biobank.loadtest.dataset} gives other
+ * options. The requests are sent as {@code testuser}, with a JWT or an API key. See {@link LoadSettings} for the
+ * other settings. Only runs when the {@code biobank.loadtest} system property is {@code true}:
+ *
+ * <pre>
+ * mvn test -Dtest=LoadTest -Dbiobank.loadtest=true -Dbiobank.loadtest.rate=100 \
+ *     -Dbiobank.loadtest.dataset="--patients=1000 --visits=20000 --specimens=500000"
+ * </pre>
+ *
+ * The test fails when more than {@code biobank.loadtest.max-error-percent} of the requests fail.
+ */
+@Tag("loadtest")
+@EnabledIfSystemProperty(named = "biobank.loadtest", matches = "true")
+@Testcontainers
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        // the controllers have "/api" in their paths, the same as when deployed
+        "server.servlet.context-path=",
+        "biobank.users.membership-cache.ttl-seconds=60"
+    }
+)
+class LoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String LOGIN = "testuser";
+
+    private static final String PASSWORD = "test";
+
+    // the number of source specimens and pull request lines the scenarios pick from
+    private static final int WORKLOAD_SAMPLE = 10_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void standard_scenarios() throws Exception {
+        var settings = LoadSettings.fromSystemProperties();
+        var config = DatasetConfig.fromArgs(settings.datasetArgs().trim().split("\\s+"), DatasetConfig.SMALL);
+
+        Workload workload;
+        String apiKey;
+        try (var connection = dataSource.getConnection()) {
+            var dataset = new DatasetGenerator(config).generate(connection);
+            workload = Workload.load(connection, dataset, WORKLOAD_SAMPLE);
+            apiKey = createApiKey(connection, LOGIN);
+        }
+
+        var base = URI.create("http://localhost:%d".formatted(port));
+        var client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        var credentials = new Credentials(settings.auth(), () -> token(client, base), apiKey);
+        var driver = new LoadDriver(client, base, Scenarios.standard(workload), credentials, settings);
+        var random = new SplittableRandom(settings.seed());
+
+        if (!settings.warmup().isZero()) {
+            logger.info("warming up for {} s", settings.warmup().toSeconds());
+            driver.run(settings.warmup(), random);
+        }
+        logger.info("sending {} requests per second for {} s", settings.rate(), settings.duration().toSeconds());
+        var result = driver.run(settings.duration(), random);
+
+        var report = LoadReport.of(result, settings);
+        report.write(result, settings.reportFolder());
+        for (var row : report.endpoints()) {
+            logger.info(
+                "{}: {} requests, {} errors, {} dropped, p50 {} ms, p99 {} ms, p99.9 {} ms",
+                row.name(),
+                row.requests(),
+                row.errors(),
+                row.dropped(),
+                row.p50(),
+                row.p99(),
+                row.p999()
+            );
+        }
+        logger.info("report written to {}", settings.reportFolder().toAbsolutePath());
+
+        assertThat(report.total().errorPercent(), lessThanOrEqualTo(settings.maxErrorPercent()));
+    }
+
+    /**
+     * Gets a JWT with the user's password, the same way the web client does.
+     */
+    private static String token(HttpClient client, URI base) throws IOException, InterruptedException {
+        var basic = Base64.getEncoder().encodeToString((LOGIN + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+        var request = HttpRequest.newBuilder(base.resolve("/api/token"))
+            .header("Authorization", "Basic " + basic)
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build();
+        var response = client.send(request, BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("token request failed: " + response.statusCode());
+        }
+        return response.headers()
+            .firstValue("Authorization")
+            .orElseThrow(() -> new IllegalStateException("no token in the response"));
+    }
+
+    /**
+     * Replaces the user's API key with a new random one.
+     */
+    private static String createApiKey(Connection connection, String login) throws SQLException {
+        var bytes = new byte[20];
+        new SecureRandom().nextBytes(bytes);
+        var apiKey = HexFormat.of().formatHex(bytes);
+
+        try (var statement = connection.prepareStatement(
+            "delete from USER_API_KEY where USER_ID = (select ID from principal where LOGIN = ?)"
+        )) {
+            statement.setString(1, login);
+            statement.executeUpdate();
+        }
+        try (var statement = connection.prepareStatement(
+            "insert into USER_API_KEY (USER_ID, API_KEY) select ID, ? from principal where LOGIN = ?"
+        )) {
+            statement.setString(1, apiKey);
+            statement.setString(2, login);
+            if (statement.executeUpdate() != 1) {
+                throw new IllegalStateException("user not found: " + login);
+            }
+        }
+        return apiKey;
+    }
+}
@@ -0,0 +1,35 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A request sent during a load test.
+ *
+ * @param name the name used in the reports.
+ * @param weight how often the scenario is picked, relative to the weights of the other scenarios.
+ * @param request creates the request, with parameters picked at random.
+ */
+record Scenario(String name, int weight, RequestFactory request) {
+
+    @FunctionalInterface
+    interface RequestFactory {
+        HttpRequest.Builder create(URI base, SplittableRandom random);
+    }
+
+    /**
+     * Picks one of the scenarios, in proportion to their weights.
+     */
+    static Scenario pick(List<Scenario> scenarios, int totalWeight, SplittableRandom random) {
+        var value = random.nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            value -= scenario.weight();
+            if (value < 0) {
+                return scenario;
+            }
+        }
+        throw new IllegalStateException("the weights add up to more than " + totalWeight);
+    }
+}
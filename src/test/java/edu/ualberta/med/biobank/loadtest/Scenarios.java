@@ -0,0 +1,149 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ualberta.med.biobank.domain.Status;
+import edu.ualberta.med.biobank.dtos.CollectionEventUpdateDTO;
+import edu.ualberta.med.biobank.dtos.SourceSpecimenAddDTO;
+
+/**
+ * The scenarios of the standard load test, weighted to resemble a day at a biobank: mostly lookups, some updates,
+ * and an occasional specimen pull request or catalogue.
+ */
+final class Scenarios {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String MULTIPART_BOUNDARY = "biobank-loadtest-boundary";
+
+    private static final int PULL_REQUEST_LINES = 20;
+
+    private Scenarios() {
+    }
+
+    static List<Scenario> standard(Workload workload) {
+        // inventory IDs of the added specimens, unique between runs
+        var addedPrefix = "LT%d-".formatted(System.currentTimeMillis() / 1000);
+        var added = new AtomicLong();
+
+        return List.of(
+            new Scenario("patient-lookup", 30, (base, random) -> {
+                var patient = pick(workload.patients(), random);
+                return HttpRequest.newBuilder(resolve(base, "/api/patients/%s", patient.pnumber())).GET();
+            }),
+
+            new Scenario("visit-read", 25, (base, random) -> {
+                var patient = pick(workload.patients(), random);
+                var uri = resolve(
+                    base,
+                    "/api/patients/%s/collection-events/%d",
+                    patient.pnumber(),
+                    1 + random.nextInt(patient.count())
+                );
+                return HttpRequest.newBuilder(uri).GET();
+            }),
+
+            new Scenario("visit-update", 5, (base, random) -> {
+                var patient = pick(workload.patients(), random);
+                var vnumber = 1 + random.nextInt(patient.count());
+                var uri = resolve(base, "/api/patients/%s/collection-events/%d", patient.pnumber(), vnumber);
+                var body = new CollectionEventUpdateDTO(vnumber, Status.ACTIVE.getName(), List.of());
+                return json(HttpRequest.newBuilder(uri), "PUT", body);
+            }),
+
+            new Scenario("specimen-add", 5, (base, random) -> {
+                var patient = pick(workload.patients(), random);
+                var body = new SourceSpecimenAddDTO(
+                    addedPrefix + added.incrementAndGet(),
+                    pick(workload.sourceSpecimenTypes(), random),
+                    new Date(),
+                    BigDecimal.ONE,
+                    Status.ACTIVE.getName(),
+                    patient.pnumber(),
+                    1 + random.nextInt(patient.count()),
+                    pick(workload.clinics(), random)
+                );
+                return json(HttpRequest.newBuilder(base.resolve("/api/specimens")), "POST", body);
+            }),
+
+            new Scenario("aliquot-list", 25, (base, random) -> {
+                var inventoryId = pick(workload.sourceInventoryIds(), random);
+                return HttpRequest.newBuilder(resolve(base, "/api/specimens/%s/aliquots", inventoryId)).GET();
+            }),
+
+            new Scenario("pull-request-csv", 4, (base, random) -> {
+                var csv = new StringBuilder();
+                for (int i = 0; i < PULL_REQUEST_LINES; i++) {
+                    var line = pick(workload.pullLines(), random);
+                    csv.append("%s,%s,%s,%d\r\n".formatted(
+                        line.pnumber(),
+                        line.dateDrawn(),
+                        line.specimenType(),
+                        1 + random.nextInt(2)
+                    ));
+                }
+                var uri = base.resolve("/api/specimens/request?format=csv&timezone=UTC");
+                return multipart(HttpRequest.newBuilder(uri), "file", "request.csv", csv.toString());
+            }),
+
+            new Scenario("catalogue-create", 1, (base, random) -> {
+                var uri = resolve(base, "/api/studies/catalogues/%s", pick(workload.studies(), random));
+                return HttpRequest.newBuilder(URI.create(uri + "?format=csv")).POST(BodyPublishers.noBody());
+            })
+        );
+    }
+
+    private static <T> T pick(List<T> items, SplittableRandom random) {
+        return items.get(random.nextInt(items.size()));
+    }
+
+    /**
+     * Resolves the path against the base URI, with the arguments URL encoded.
+     */
+    private static URI resolve(URI base, String path, Object... args) {
+        var encoded = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            encoded[i] = URLEncoder.encode(String.valueOf(args[i]), StandardCharsets.UTF_8).replace("+", "%20");
+        }
+        return base.resolve(path.formatted(encoded));
+    }
+
+    private static HttpRequest.Builder json(HttpRequest.Builder builder, String method, Object body) {
+        try {
+            return builder
+                .header("Content-Type", "application/json")
+                .method(method, BodyPublishers.ofString(MAPPER.writeValueAsString(body)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static HttpRequest.Builder multipart(
+        HttpRequest.Builder builder,
+        String field,
+        String fileName,
+        String content
+    ) {
+        var body = """
+            --%1$s\r
+            Content-Disposition: form-data; name="%2$s"; filename="%3$s"\r
+            Content-Type: text/csv\r
+            \r
+            %4$s\r
+            --%1$s--\r
+            """.formatted(MULTIPART_BOUNDARY, field, fileName, content);
+        return builder
+            .header("Content-Type", "multipart/form-data; boundary=" + MULTIPART_BOUNDARY)
+            .POST(BodyPublishers.ofString(body));
+    }
+}
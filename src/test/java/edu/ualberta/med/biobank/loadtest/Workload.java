@@ -0,0 +1,145 @@
+package edu.ualberta.med.biobank.loadtest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import edu.ualberta.med.biobank.datagen.DatasetGenerator.Dataset;
+
+/**
+ * The entities the scenarios pick their parameters from, sampled from a generated dataset.
+ */
+record Workload(
+    List<Visits> patients,
+    List<String> sourceInventoryIds,
+    List<PullLine> pullLines,
+    List<String> studies,
+    List<String> clinics,
+    List<String> sourceSpecimenTypes
+) {
+
+    /**
+     * A patient and the number of visits it has, numbered from 1.
+     */
+    record Visits(String pnumber, int count) {
+    }
+
+    /**
+     * A line of a specimen pull request: the patient, the day the source specimen was drawn and the type of the
+     * aliquots.
+     */
+    record PullLine(String pnumber, LocalDate dateDrawn, String specimenType) {
+    }
+
+    private static final String PATIENTS_SQL =
+        """
+        select p.pnumber, count(*)
+        from patient p
+          join study on study.id = p.study_id
+          join collection_event ce on ce.patient_id = p.id
+        where study.name_short like ?
+        group by p.pnumber
+        """;
+
+    private static final String SOURCE_SPECIMENS_SQL =
+        """
+        select spc.inventory_id
+        from specimen spc
+        where spc.inventory_id like ?
+          and spc.parent_specimen_id is null
+        order by rand(?)
+        limit ?
+        """;
+
+    private static final String PULL_LINES_SQL =
+        """
+        select p.pnumber, date(stop.created_at), stype.name_short
+        from specimen spc
+          join specimen stop on stop.id = spc.top_specimen_id
+          join specimen_type stype on stype.id = spc.specimen_type_id
+          join collection_event ce on ce.id = spc.collection_event_id
+          join patient p on p.id = ce.patient_id
+        where spc.inventory_id like ?
+          and spc.parent_specimen_id is not null
+        order by rand(?)
+        limit ?
+        """;
+
+    private static final String SOURCE_TYPES_SQL =
+        """
+        select distinct stype.name_short
+        from specimen spc
+          join specimen_type stype on stype.id = spc.specimen_type_id
+        where spc.inventory_id like ?
+          and spc.parent_specimen_id is null
+        """;
+
+    /**
+     * Samples up to {@code sampleSize} source specimens and pull request lines from the dataset, all the
+     * patients are used.
+     */
+    static Workload load(Connection connection, Dataset dataset, int sampleSize) throws SQLException {
+        var prefix = dataset.config().prefix();
+        var seed = dataset.config().seed();
+
+        List<Visits> patients = new ArrayList<>();
+        try (var statement = connection.prepareStatement(PATIENTS_SQL)) {
+            statement.setString(1, prefix + "-%");
+            try (var rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    patients.add(new Visits(rs.getString(1), rs.getInt(2)));
+                }
+            }
+        }
+
+        List<String> sources = new ArrayList<>();
+        try (var statement = connection.prepareStatement(SOURCE_SPECIMENS_SQL)) {
+            statement.setString(1, prefix + "%");
+            statement.setLong(2, seed);
+            statement.setInt(3, sampleSize);
+            try (var rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    sources.add(rs.getString(1));
+                }
+            }
+        }
+
+        List<PullLine> pullLines = new ArrayList<>();
+        try (var statement = connection.prepareStatement(PULL_LINES_SQL)) {
+            statement.setString(1, prefix + "%");
+            statement.setLong(2, seed);
+            statement.setInt(3, sampleSize);
+            try (var rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    pullLines.add(new PullLine(rs.getString(1), rs.getDate(2).toLocalDate(), rs.getString(3)));
+                }
+            }
+        }
+
+        List<String> sourceTypes = new ArrayList<>();
+        try (var statement = connection.prepareStatement(SOURCE_TYPES_SQL)) {
+            statement.setString(1, prefix + "%");
+            try (var rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    sourceTypes.add(rs.getString(1));
+                }
+            }
+        }
+
+        List<String> clinics = new ArrayList<>();
+        try (var statement = connection.prepareStatement("select name_short from center where name_short like ?")) {
+            statement.setString(1, prefix + "-C%");
+            try (var rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    clinics.add(rs.getString(1));
+                }
+            }
+        }
+
+        if (patients.isEmpty() || sources.isEmpty() || pullLines.isEmpty() || clinics.isEmpty()) {
+            throw new IllegalStateException("the dataset with prefix %s is empty".formatted(prefix));
+        }
+        return new Workload(patients, sources, pullLines, dataset.studyNamesShort(), clinics, sourceTypes);
+    }
+}
@@ -0,0 +1,573 @@
+package edu.ualberta.med.biobank.repositories;
+
+import static org.junit.jupiter.api.Assertions.fail;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import edu.ualberta.med.biobank.datagen.DatasetConfig;
+import edu.ualberta.med.biobank.datagen.DatasetGenerator;
+import edu.ualberta.med.biobank.domain.Status;
+
+/**
+ * Runs {@code EXPLAIN FORMAT=JSON} for every native query of the repositories, and for the queries
+ * {@link CustomSpecimenRepository} and {@link CustomLogRepository} run with JDBC, on a generated dataset, and fails
+ * when a query reads every row of SPECIMEN, COLLECTION_EVENT, PATIENT or LOG.
+ *
+ * The dataset is created in a database of its own, with the indexes added by the migrations in
+ * {@code edu.ualberta.med.biobank.db.migration}, and the tables are analyzed before the queries are explained so
+ * that the optimizer's statistics match the rows. The query parameters are bound to rows of the dataset, see
+ * {@link #parameterValues}, and paged queries get the limit added by Spring Data.
+ *
+ * The plans, with the rows the optimizer expects to examine in each table, are logged and written to
+ * {@code target/explain-plans.txt}, so that a change to a plan shows up when comparing two builds.
+ */
+@Tag("explain")
+@Testcontainers
+@SpringBootTest(
+    properties = {
+        // a database of its own, the dataset would change the results of the other suites
+        "spring.datasource.url=jdbc:tc:mariadb:///biobank_plans?TC_INITSCRIPT=file:src/test/resources/sql/V1__init.sql"
+    }
+)
+class NativeQueryPlanTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeQueryPlanTest.class);
+
+    private static final String REPOSITORIES_PACKAGE = "edu.ualberta.med.biobank.repositories";
+
+    private static final Set<String> LARGE_TABLES = Set.of("specimen", "collection_event", "patient", "log");
+
+    /**
+     * Queries that are expected to read a whole table, with the reason.
+     */
+    private static final Map<String, String> ALLOWED_FULL_SCANS = Map.of();
+
+    /**
+     * The access type a query must use on a large table, for queries whose cost must not grow with the table, as
+     * a scan of a whole index, access type {@code index}, is not caught by the full scan check.
+     */
+    private static final Map<String, Map<String, String>> REQUIRED_ACCESS = Map.of(
+        "CustomLogRepository.findPage(before)", Map.of("log", "range")
+    );
+
+    private static final DatasetConfig DATASET =
+        new DatasetConfig(5, 1_000, 5_000, 50_000, 2, 0.8, 1, "XP", 1000);
+
+    private static final int LOG_ENTRIES = 20_000;
+
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * The number of requests in the explained pull choices query, each for a different patient.
+     */
+    private static final int PULL_REQUESTS = 100;
+
+    private static final Path REPORT = Path.of("target", "explain-plans.txt");
+
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<![:\\w]):(\\w+)");
+
+    private static final Pattern TABLE_REFERENCE = Pattern.compile(
+        "\\b(?:from|join|update|into)\\s+`?(\\w+)`?(?:\\s+(?:as\\s+)?(\\w+))?",
+        Pattern.CASE_INSENSITIVE
+    );
+
+    private static final Set<String> KEYWORDS = Set.of(
+        "where", "on", "left", "right", "inner", "outer", "cross", "join", "straight_join", "natural", "order",
+        "group", "having", "limit", "set", "using", "union", "select", "values"
+    );
+
+    private record NativeQuery(Class<?> repository, String name, String sql, boolean paged) {
+
+        static NativeQuery of(Class<?> repository, Method method, String sql) {
+            return new NativeQuery(
+                repository,
+                repository.getSimpleName() + "." + method.getName(),
+                sql,
+                Arrays.asList(method.getParameterTypes()).contains(Pageable.class)
+            );
+        }
+
+        static NativeQuery jdbc(Class<?> repository, String method, String sql) {
+            return new NativeQuery(repository, repository.getSimpleName() + "." + method, sql, false);
+        }
+    }
+
+    private record TableAccess(String table, String alias, String accessType, String key, long rows) {
+
+        boolean fullScan() {
+            return "ALL".equals(accessType) && LARGE_TABLES.contains(table);
+        }
+
+        @Override
+        public String toString() {
+            var name = table.equals(alias) ? table : "%s %s".formatted(table, alias);
+            return "%s: %s%s, rows %d".formatted(name, accessType, key == null ? "" : " " + key, rows);
+        }
+    }
+
+    private record Plan(NativeQuery query, List<TableAccess> tables) {
+
+        long rows() {
+            return tables.stream().mapToLong(TableAccess::rows).sum();
+        }
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TestFactory
+    Stream<DynamicTest> native_queries_do_not_scan_large_tables() throws Exception {
+        migrate();
+
+        List<Plan> plans = new ArrayList<>();
+        try (var connection = dataSource.getConnection()) {
+            var dataset = new DatasetGenerator(DATASET).generate(connection);
+            addLogEntries(connection, dataset.pnumbers());
+            analyze(connection);
+
+            var values = parameterValues(connection, dataset);
+            for (NativeQuery query : nativeQueries()) {
+                plans.add(explain(connection, query, bind(query, values)));
+            }
+            for (var query : jdbcQueries(connection, dataset, values).entrySet()) {
+                plans.add(explain(connection, query.getKey(), query.getValue()));
+            }
+        }
+        report(plans);
+
+        return plans.stream().map(plan -> DynamicTest.dynamicTest(plan.query().name(), () -> check(plan)));
+    }
+
+    private static void check(Plan plan) {
+        var required = REQUIRED_ACCESS.getOrDefault(plan.query().name(), Map.of());
+        for (var entry : required.entrySet()) {
+            var accesses = plan.tables().stream().filter(table -> table.table().equals(entry.getKey())).toList();
+            if (accesses.isEmpty() || !accesses.stream().allMatch(t -> entry.getValue().equals(t.accessType()))) {
+                fail(
+                    "%s must read %s with %s access:\n  %s".formatted(
+                        plan.query().name(),
+                        entry.getKey(),
+                        entry.getValue(),
+                        plan.tables().stream().map(TableAccess::toString).collect(Collectors.joining("\n  "))
+                    )
+                );
+            }
+        }
+
+        var scans = plan.tables().stream().filter(TableAccess::fullScan).toList();
+        if (!scans.isEmpty() && !ALLOWED_FULL_SCANS.containsKey(plan.query().name())) {
+            fail(
+                "%s reads every row of %s:\n  %s".formatted(
+                    plan.query().name(),
+                    scans.stream().map(TableAccess::table).distinct().collect(Collectors.joining(", ")),
+                    plan.tables().stream().map(TableAccess::toString).collect(Collectors.joining("\n  "))
+                )
+            );
+        }
+    }
+
+    /**
+     * Adds the indexes, and the tables, of the migrations that come after the test database's schema.
+     */
+    private void migrate() {
+        Flyway.configure()
+            .dataSource(dataSource)
+            .locations("classpath:edu/ualberta/med/biobank/db/migration")
+            .table("explain_schema_history")
+            .baselineOnMigrate(true)
+            .baselineVersion("1")
+            .load()
+            .migrate();
+    }
+
+    private static void addLogEntries(Connection connection, List<String> pnumbers) throws SQLException {
+        try (
+            var statement = connection.prepareStatement(
+                """
+                insert into log (USERNAME, CREATED_AT, CENTER, ACTION, PATIENT_NUMBER, INVENTORY_ID, TYPE)
+                values (?, ?, 'XP-SITE', ?, ?, ?, 'Patient')
+                """
+            )
+        ) {
+            var now = System.currentTimeMillis();
+            for (int i = 0; i < LOG_ENTRIES; i++) {
+                statement.setString(1, "user" + (i % 20));
+                statement.setTimestamp(2, new Timestamp(now - i * 60_000L));
+                statement.setString(3, i % 3 == 0 ? "update" : "select");
+                statement.setString(4, pnumbers.get(i % pnumbers.size()));
+                statement.setString(5, "XP%09d".formatted(i + 1));
+                statement.addBatch();
+                if (i % 1000 == 999) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static void analyze(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute(
+                "analyze table specimen, collection_event, patient, log, COLLECTION_EVENT_SUMMARY, PATIENT_SUMMARY"
+            );
+        }
+    }
+
+    /**
+     * The values bound to the named parameters of the queries, taken from the dataset. A value under
+     * {@code <repository>.<parameter>} is used before one under {@code <parameter>}.
+     */
+    private static Map<String, Object> parameterValues(Connection connection, DatasetGenerator.Dataset dataset)
+        throws SQLException {
+        var pnumber = dataset.pnumbers().get(0);
+        var studyNameShort = dataset.studyNamesShort().get(0);
+        var active = List.of(Status.ACTIVE.getId());
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("pnumber", pnumber);
+        values.put("vnumber", 1);
+        values.put("nameshort", studyNameShort);
+        values.put("login", "testuser");
+        values.put("apiKey", "0000000000000000000000000000000000000000");
+        values.put("statusValues", active);
+        values.put("afterId", 0);
+        values.put("limit", 1000);
+        values.put("specimens", 1);
+        values.put("aliquots", 1);
+        values.put("comments", 1);
+        values.put("createdAt", new Timestamp(System.currentTimeMillis()));
+
+        var patientId = queryForObject(connection, "select ID from patient where PNUMBER = '%s'".formatted(pnumber));
+        var studyId = queryForObject(connection, "select STUDY_ID from patient where ID = " + patientId);
+        var ceventId = queryForObject(
+            connection,
+            "select ID from collection_event where PATIENT_ID = %s and VISIT_NUMBER = 1".formatted(patientId)
+        );
+        var clinicId = queryForObject(connection, "select min(ID) from center where DISCRIMINATOR = 'Clinic'");
+        values.put("patientId", patientId);
+        values.put("studyId", studyId);
+        values.put("studyIds", List.of(studyId));
+        values.put("ceventId", ceventId);
+        values.put("clinicId", clinicId);
+        values.put("clinicIds", List.of(clinicId));
+        values.put(
+            "inventoryId",
+            queryForObject(
+                connection,
+                "select min(INVENTORY_ID) from specimen where ORIGINAL_COLLECTION_EVENT_ID = " + ceventId
+            )
+        );
+        values.put("nameShort", queryForObject(connection, "select min(NAME_SHORT) from specimen_type"));
+        values.put(
+            "PatientRepository.ids",
+            queryForList(connection, "select ID from patient order by ID desc limit 100")
+        );
+        values.put(
+            "CollectionEventRepository.ids",
+            queryForList(connection, "select ID from collection_event order by ID desc limit 100")
+        );
+        return values;
+    }
+
+    private static Object queryForObject(Connection connection, String sql) throws SQLException {
+        var values = queryForList(connection, sql);
+        if (values.size() != 1 || values.get(0) == null) {
+            throw new IllegalStateException("expected one value from: " + sql);
+        }
+        return values.get(0);
+    }
+
+    private static List<Object> queryForList(Connection connection, String sql) throws SQLException {
+        List<Object> values = new ArrayList<>();
+        try (var statement = connection.createStatement(); var rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                values.add(rs.getObject(1));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The methods annotated with a native {@link Query} in the repository interfaces.
+     */
+    private static List<NativeQuery> nativeQueries() throws ClassNotFoundException {
+        var scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition definition) {
+                return definition.getMetadata().isInterface();
+            }
+        };
+        scanner.addIncludeFilter(new AssignableTypeFilter(Repository.class));
+
+        List<NativeQuery> queries = new ArrayList<>();
+        for (var definition : scanner.findCandidateComponents(REPOSITORIES_PACKAGE)) {
+            var repository = Class.forName(definition.getBeanClassName());
+            for (Method method : repository.getDeclaredMethods()) {
+                var query = method.getAnnotation(Query.class);
+                if (query != null && query.nativeQuery()) {
+                    queries.add(NativeQuery.of(repository, method, query.value()));
+                }
+            }
+        }
+        queries.sort(Comparator.comparing(NativeQuery::name));
+        return queries;
+    }
+
+    /**
+     * The queries of {@link CustomSpecimenRepository} and {@link CustomLogRepository}, which are built in code
+     * and run with JDBC, with their parameters bound to rows of the dataset.
+     */
+    private static Map<NativeQuery, String> jdbcQueries(
+        Connection connection,
+        DatasetGenerator.Dataset dataset,
+        Map<String, Object> values
+    ) throws SQLException {
+        var studyNameShort = values.get("nameshort");
+        var partitions = queryForList(
+            connection,
+            bindPositional(CustomSpecimenRepository.CATALOGUE_PARTITIONS_SQL, List.of(studyNameShort, 4))
+        );
+        var dayDrawn = queryForObject(
+            connection,
+            "select date(min(CREATED_AT)) from specimen where ORIGINAL_COLLECTION_EVENT_ID = " + values.get("ceventId")
+        );
+
+        var pullRequests = Math.min(PULL_REQUESTS, dataset.pnumbers().size());
+        List<Object> pullArguments = new ArrayList<>();
+        for (int i = 0; i < pullRequests; i++) {
+            pullArguments.addAll(List.of(i, dataset.pnumbers().get(i), dayDrawn, values.get("nameShort")));
+        }
+
+        var logId = queryForObject(
+            connection,
+            "select ID from log where INVENTORY_ID = 'XP%09d'".formatted(LOG_ENTRIES / 2)
+        );
+        var logCreatedAt = queryForObject(connection, "select CREATED_AT from log where ID = " + logId);
+
+        var specimens = CustomSpecimenRepository.class;
+        var logs = CustomLogRepository.class;
+        Map<NativeQuery, String> queries = new LinkedHashMap<>();
+        queries.put(
+            NativeQuery.jdbc(specimens, "catalogue", CustomSpecimenRepository.CATALOGUE_SQL),
+            bindPositional(CustomSpecimenRepository.CATALOGUE_SQL, List.of(studyNameShort))
+        );
+        queries.put(
+            NativeQuery.jdbc(specimens, "catalogue(range)", CustomSpecimenRepository.CATALOGUE_RANGE_SQL),
+            bindPositional(
+                CustomSpecimenRepository.CATALOGUE_RANGE_SQL,
+                List.of(studyNameShort, partitions.get(1), partitions.get(2), partitions.get(2))
+            )
+        );
+        queries.put(
+            NativeQuery.jdbc(specimens, "catalogueCount", CustomSpecimenRepository.CATALOGUE_COUNT_SQL),
+            bindPositional(CustomSpecimenRepository.CATALOGUE_COUNT_SQL, List.of(studyNameShort))
+        );
+        queries.put(
+            NativeQuery.jdbc(specimens, "catalogueFingerprint", CustomSpecimenRepository.CATALOGUE_FINGERPRINT_SQL),
+            bindPositional(CustomSpecimenRepository.CATALOGUE_FINGERPRINT_SQL, List.of(studyNameShort))
+        );
+        queries.put(
+            NativeQuery.jdbc(specimens, "cataloguePartitions", CustomSpecimenRepository.CATALOGUE_PARTITIONS_SQL),
+            bindPositional(CustomSpecimenRepository.CATALOGUE_PARTITIONS_SQL, List.of(studyNameShort, 4))
+        );
+
+        var pullChoicesSql = CustomSpecimenRepository.pullChoicesSql(pullRequests);
+        queries.put(
+            NativeQuery.jdbc(specimens, "pullChoices", pullChoicesSql),
+            bindPositional(pullChoicesSql, pullArguments)
+        );
+
+        var firstPageSql = CustomLogRepository.pageSql(List.of(), CustomLogRepository.NEWEST_FIRST);
+        queries.put(
+            NativeQuery.jdbc(logs, "findPage(first)", firstPageSql),
+            bindPositional(firstPageSql, List.of(PAGE_SIZE))
+        );
+        var beforeSql = CustomLogRepository.pageSql(
+            List.of(CustomLogRepository.BEFORE_SQL),
+            CustomLogRepository.NEWEST_FIRST
+        );
+        queries.put(
+            NativeQuery.jdbc(logs, "findPage(before)", beforeSql),
+            bindPositional(beforeSql, List.of(logCreatedAt, logCreatedAt, logId, PAGE_SIZE))
+        );
+        var nullTailSql = CustomLogRepository.pageSql(
+            List.of(CustomLogRepository.NULL_TAIL_SQL),
+            CustomLogRepository.NULL_TAIL_ORDER
+        );
+        queries.put(
+            NativeQuery.jdbc(logs, "findPage(nullTail)", nullTailSql),
+            bindPositional(nullTailSql, List.of(PAGE_SIZE))
+        );
+        var beforeNullSql = CustomLogRepository.pageSql(
+            List.of(CustomLogRepository.BEFORE_NULL_SQL),
+            CustomLogRepository.NEWEST_FIRST
+        );
+        queries.put(
+            NativeQuery.jdbc(logs, "findPage(beforeNull)", beforeNullSql),
+            bindPositional(beforeNullSql, List.of(logId, PAGE_SIZE))
+        );
+        return queries;
+    }
+
+    private Plan explain(Connection connection, NativeQuery query, String sql) throws Exception {
+        JsonNode plan;
+        try (
+            var statement = connection.createStatement();
+            var rs = statement.executeQuery("explain format=json " + sql)
+        ) {
+            rs.next();
+            plan = mapper.readTree(rs.getString(1));
+        }
+
+        var aliases = aliases(query.sql());
+        List<TableAccess> tables = new ArrayList<>();
+        for (JsonNode table : plan.findParents("table_name")) {
+            var alias = table.get("table_name").asText();
+            tables.add(
+                new TableAccess(
+                    aliases.getOrDefault(alias.toLowerCase(Locale.ROOT), alias),
+                    alias,
+                    table.path("access_type").asText(null),
+                    table.path("key").asText(null),
+                    table.path("rows").asLong(0)
+                )
+            );
+        }
+        return new Plan(query, tables);
+    }
+
+    /**
+     * Replaces the named parameters of the query with the values as SQL literals, collections are expanded the way
+     * Hibernate expands them.
+     */
+    private static String bind(NativeQuery query, Map<String, Object> values) {
+        var matcher = NAMED_PARAMETER.matcher(query.sql());
+        var sql = new StringBuilder();
+        while (matcher.find()) {
+            var name = matcher.group(1);
+            var value = values.getOrDefault(query.repository().getSimpleName() + "." + name, values.get(name));
+            if (value == null) {
+                throw new IllegalStateException(
+                    "no value for :%s of %s, add one to parameterValues".formatted(name, query.name())
+                );
+            }
+
+            var literal = literal(value);
+            var parenthesized = query.sql().substring(0, matcher.start()).stripTrailing().endsWith("(");
+            if (value instanceof Collection<?> && !parenthesized) {
+                literal = "(" + literal + ")";
+            }
+            matcher.appendReplacement(sql, Matcher.quoteReplacement(literal));
+        }
+        matcher.appendTail(sql);
+
+        if (query.paged()) {
+            sql.append("\nlimit ").append(PAGE_SIZE);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Replaces the {@code ?} parameters of {@code sql}, in order, with {@code arguments} as SQL literals.
+     */
+    private static String bindPositional(String sql, List<?> arguments) {
+        var parts = sql.split("\\?", -1);
+        if (parts.length != arguments.size() + 1) {
+            throw new IllegalStateException(
+                "%d arguments for %d parameters of: %s".formatted(arguments.size(), parts.length - 1, sql)
+            );
+        }
+
+        var bound = new StringBuilder(parts[0]);
+        for (int i = 0; i < arguments.size(); i++) {
+            bound.append(literal(arguments.get(i))).append(parts[i + 1]);
+        }
+        return bound.toString();
+    }
+
+    private static String literal(Object value) {
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().map(NativeQueryPlanTest::literal).collect(Collectors.joining(", "));
+        }
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    /**
+     * Maps the names the tables are known by in the query, the table names themselves and their aliases, to the
+     * table names. {@code EXPLAIN} names the tables by their alias.
+     */
+    private static Map<String, String> aliases(String sql) {
+        Map<String, String> aliases = new HashMap<>();
+        var matcher = TABLE_REFERENCE.matcher(sql);
+        while (matcher.find()) {
+            var table = matcher.group(1).toLowerCase(Locale.ROOT);
+            if (KEYWORDS.contains(table)) {
+                continue;
+            }
+            aliases.put(table, table);
+
+            var alias = matcher.group(2);
+            if (alias != null && !KEYWORDS.contains(alias.toLowerCase(Locale.ROOT))) {
+                aliases.put(alias.toLowerCase(Locale.ROOT), table);
+            }
+        }
+        return aliases;
+    }
+
+    private static void report(List<Plan> plans) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Plan plan : plans) {
+            lines.add("%s: about %d rows".formatted(plan.query().name(), plan.rows()));
+            plan.tables().forEach(table -> lines.add("    " + table));
+            logger.info(
+                "{}: about {} rows, {}",
+                plan.query().name(),
+                plan.rows(),
+                plan.tables().stream().map(TableAccess::toString).collect(Collectors.joining("; "))
+            );
+        }
+        Files.createDirectories(REPORT.getParent());
+        Files.write(REPORT, lines);
+    }
+}
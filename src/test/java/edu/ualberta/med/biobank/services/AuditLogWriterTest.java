@@ -0,0 +1,212 @@
+package edu.ualberta.med.biobank.services;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import edu.ualberta.med.biobank.domain.Log;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AuditLogWriterTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static final String WORKER = "audit-log-writer";
+
+    /**
+     * The usernames of the records in a batch, and the thread that wrote it.
+     */
+    private record Batch(String thread, List<String> usernames) {}
+
+    /**
+     * Records the batches instead of inserting them. When blocked, writes from the worker wait until they are
+     * released.
+     */
+    private class StubJdbcTemplate extends JdbcTemplate {
+
+        final CountDownLatch writing = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        StubJdbcTemplate(boolean blocked) {
+            if (!blocked) {
+                release.countDown();
+            }
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(
+            String sql,
+            Collection<T> batchArgs,
+            int batchSize,
+            ParameterizedPreparedStatementSetter<T> pss
+        ) {
+            var thread = Thread.currentThread().getName();
+            if (thread.equals(WORKER)) {
+                writing.countDown();
+                try {
+                    release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            var usernames = batchArgs.stream().map(log -> ((Log) log).getUsername()).toList();
+            batches.add(new Batch(thread, usernames));
+            return new int[0][];
+        }
+    }
+
+    private final List<Batch> batches = new CopyOnWriteArrayList<>();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private StubJdbcTemplate jdbcTemplate;
+
+    private AuditLogWriter writer;
+
+    private AuditLogWriter writer(int queueCapacity, int batchSize, long flushInterval) {
+        return writer(false, queueCapacity, batchSize, flushInterval);
+    }
+
+    private AuditLogWriter writer(boolean blocked, int queueCapacity, int batchSize, long flushInterval) {
+        jdbcTemplate = new StubJdbcTemplate(blocked);
+        writer = new AuditLogWriter(jdbcTemplate, registry, queueCapacity, batchSize, flushInterval);
+        return writer;
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (writer != null) {
+            jdbcTemplate.release.countDown();
+            shutdownWriter();
+        }
+    }
+
+    private void shutdownWriter() {
+        writer.shutdownSubscriber(new ContextClosedEvent(new GenericApplicationContext()));
+    }
+
+    private static Log log(String username) {
+        return new Log.LogBuilder().username(username).build();
+    }
+
+    private void awaitBatches(int count) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (batches.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(batches.size(), equalTo(count));
+    }
+
+    private double count(String counter) {
+        return registry.get(counter).counter().count();
+    }
+
+    @Test
+    void full_batch_is_written_before_the_interval() throws Exception {
+        long flushInterval = TimeUnit.SECONDS.toMillis(2);
+        writer(100, 3, flushInterval).start();
+
+        var started = System.nanoTime();
+        for (String username : List.of("a", "b", "c", "d")) {
+            writer.submit(log(username));
+        }
+
+        awaitBatches(1);
+        assertThat(System.nanoTime() - started, lessThan(TimeUnit.MILLISECONDS.toNanos(flushInterval)));
+        assertThat(batches.get(0), equalTo(new Batch(WORKER, List.of("a", "b", "c"))));
+
+        // the last record is written once the interval has passed
+        awaitBatches(2);
+        assertThat(batches.get(1), equalTo(new Batch(WORKER, List.of("d"))));
+        assertThat(count("biobank.audit.written"), equalTo(4.0));
+        assertThat(count("biobank.audit.backpressure"), equalTo(0.0));
+    }
+
+    @Test
+    void partial_batch_is_written_after_the_interval() throws Exception {
+        writer(100, 100, 50).start();
+
+        writer.submit(log("a"));
+        writer.submit(log("b"));
+
+        awaitBatches(1);
+        assertThat(batches.get(0), equalTo(new Batch(WORKER, List.of("a", "b"))));
+        assertThat(writer.queueDepth(), equalTo(0));
+        assertThat(count("biobank.audit.written"), equalTo(2.0));
+    }
+
+    @Test
+    void caller_writes_the_record_when_the_queue_is_full() throws Exception {
+        writer(true, 1, 1, 50).start();
+
+        // the worker is kept busy with the first record, the second fills the queue
+        writer.submit(log("a"));
+        assertThat(jdbcTemplate.writing.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), equalTo(true));
+        writer.submit(log("b"));
+        assertThat(writer.queueDepth(), equalTo(1));
+
+        writer.submit(log("c"));
+        assertThat(batches, contains(new Batch(Thread.currentThread().getName(), List.of("c"))));
+        assertThat(count("biobank.audit.backpressure"), equalTo(1.0));
+        assertThat(count("biobank.audit.written"), equalTo(1.0));
+
+        // the queued records are still written by the worker
+        jdbcTemplate.release.countDown();
+        awaitBatches(3);
+        assertThat(batches.get(1), equalTo(new Batch(WORKER, List.of("a"))));
+        assertThat(batches.get(2), equalTo(new Batch(WORKER, List.of("b"))));
+        assertThat(count("biobank.audit.written"), equalTo(3.0));
+    }
+
+    @Test
+    void queue_is_written_on_shutdown() throws Exception {
+        // the worker is not started, the records stay in the queue until shutdown
+        writer(100, 100, 50);
+        writer.submit(log("a"));
+        writer.submit(log("b"));
+        writer.submit(log("c"));
+        assertThat(writer.queueDepth(), equalTo(3));
+        assertThat(batches, equalTo(List.of()));
+
+        shutdownWriter();
+
+        assertThat(batches, contains(new Batch(Thread.currentThread().getName(), List.of("a", "b", "c"))));
+        assertThat(writer.queueDepth(), equalTo(0));
+        assertThat(count("biobank.audit.written"), equalTo(3.0));
+        assertThat(count("biobank.audit.backpressure"), equalTo(0.0));
+    }
+
+    @Test
+    void records_are_not_lost_when_the_worker_is_shut_down() throws Exception {
+        writer(100, 100, 50).start();
+        for (String username : List.of("a", "b", "c")) {
+            writer.submit(log(username));
+        }
+
+        shutdownWriter();
+
+        // each record is written once, by the worker or by the shutdown
+        var written = batches.stream().flatMap(batch -> batch.usernames().stream()).toList();
+        assertThat(written, containsInAnyOrder("a", "b", "c"));
+        assertThat(writer.queueDepth(), equalTo(0));
+
+        // records submitted after shutdown are written by the caller
+        writer.submit(log("d"));
+        assertThat(batches.get(batches.size() - 1), equalTo(new Batch(Thread.currentThread().getName(), List.of("d"))));
+        assertThat(count("biobank.audit.written"), equalTo(4.0));
+        assertThat(count("biobank.audit.backpressure"), equalTo(1.0));
+    }
+}
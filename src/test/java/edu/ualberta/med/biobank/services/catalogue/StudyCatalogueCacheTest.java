@@ -0,0 +1,140 @@
+package edu.ualberta.med.biobank.services.catalogue;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import edu.ualberta.med.biobank.domain.Task;
+import edu.ualberta.med.biobank.test.ControllerTest;
+
+/**
+ * The catalogues are not created here, the tests write small files in their place and record the study's
+ * fingerprint the way {@link StudyCalatogueService} does once a catalogue is saved.
+ */
+@TestPropertySource(
+    properties = { "biobank.catalogue.folder=target/test-catalogues", "biobank.catalogue.disk-budget-mb=1" }
+)
+class StudyCatalogueCacheTest extends ControllerTest {
+
+    @SuppressWarnings("unused")
+    private final Logger logger = LoggerFactory.getLogger(StudyCatalogueCacheTest.class);
+
+    private static final Path FOLDER = Paths.get("target/test-catalogues");
+
+    @Autowired
+    private StudyCatalogueCache cache;
+
+    private String study;
+
+    @BeforeEach
+    public void setup(TestInfo testInfo) {
+        super.setup(testInfo);
+        try (Stream<Path> files = Files.exists(FOLDER) ? Files.list(FOLDER) : Stream.empty()) {
+            for (Path path : files.toList()) {
+                Files.delete(path);
+            }
+            Files.createDirectories(FOLDER);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        factory.createPatient();
+        factory.createCollectionEvent();
+        factory.createParentSpecimen();
+        factory.createContainer();
+        factory.createPositionedSpecimen();
+        study = factory.getDefaultStudy().getNameShort();
+    }
+
+    private UUID save(CatalogueFormat format, int size) throws IOException {
+        em.flush();
+        var taskId = UUID.randomUUID();
+        Files.write(cache.catalogueFile(study, taskId, format), new byte[size]);
+        cache.saved(study, taskId, format, cache.fingerprint(study));
+        return taskId;
+    }
+
+    private Optional<UUID> find(CatalogueFormat format) {
+        em.flush();
+        return cache.find(study, format).map(Task::id);
+    }
+
+    @Test
+    void catalogue_is_reused_while_study_is_unchanged() throws Exception {
+        var taskId = save(CatalogueFormat.CSV, 10);
+
+        assertThat(cache.find(study, CatalogueFormat.CSV), equalTo(Optional.of(Task.completed(taskId))));
+        assertThat(find(CatalogueFormat.CSV), equalTo(Optional.of(taskId)));
+        assertThat(find(CatalogueFormat.XLSX), equalTo(Optional.empty()));
+        assertThat(cache.savedFormat(study, taskId), equalTo(Optional.of(CatalogueFormat.CSV)));
+    }
+
+    @Test
+    void catalogue_is_rebuilt_after_a_specimen_is_added() throws Exception {
+        save(CatalogueFormat.CSV, 10);
+
+        factory.createPositionedSpecimen();
+        assertThat(find(CatalogueFormat.CSV), equalTo(Optional.empty()));
+
+        var rebuilt = save(CatalogueFormat.CSV, 10);
+        assertThat(find(CatalogueFormat.CSV), equalTo(Optional.of(rebuilt)));
+    }
+
+    @Test
+    void catalogue_is_rebuilt_after_a_specimen_is_changed() throws Exception {
+        save(CatalogueFormat.CSV, 10);
+
+        var specimen = factory.getDefaultParentSpecimen();
+        specimen.setInventoryId(specimen.getInventoryId() + "-changed");
+        assertThat(find(CatalogueFormat.CSV), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void catalogue_without_its_file_is_not_reused() throws Exception {
+        var taskId = save(CatalogueFormat.CSV, 10);
+
+        Files.delete(cache.catalogueFile(study, taskId, CatalogueFormat.CSV));
+        assertThat(find(CatalogueFormat.CSV), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void reused_catalogue_and_fingerprint_are_touched() throws Exception {
+        var taskId = save(CatalogueFormat.CSV, 10);
+        var catalogue = cache.catalogueFile(study, taskId, CatalogueFormat.CSV);
+        var fingerprint = catalogue.resolveSibling(catalogue.getFileName() + ".fingerprint");
+        var dayAgo = FileTime.fromMillis(System.currentTimeMillis() - 25 * 60 * 60 * 1000L);
+        Files.setLastModifiedTime(catalogue, dayAgo);
+        Files.setLastModifiedTime(fingerprint, dayAgo);
+
+        assertThat(find(CatalogueFormat.CSV), equalTo(Optional.of(taskId)));
+
+        assertThat(Files.getLastModifiedTime(catalogue).compareTo(dayAgo) > 0, equalTo(true));
+        assertThat(Files.getLastModifiedTime(fingerprint).compareTo(dayAgo) > 0, equalTo(true));
+    }
+
+    @Test
+    void least_recently_used_catalogue_is_removed_over_budget() throws Exception {
+        var older = save(CatalogueFormat.CSV, 600 * 1024);
+        var olderFile = cache.catalogueFile(study, older, CatalogueFormat.CSV);
+        Files.setLastModifiedTime(olderFile, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        var newer = save(CatalogueFormat.TSV, 600 * 1024);
+
+        assertThat(Files.exists(olderFile), equalTo(false));
+        assertThat(Files.exists(cache.catalogueFile(study, newer, CatalogueFormat.TSV)), equalTo(true));
+        assertThat(find(CatalogueFormat.TSV), equalTo(Optional.of(newer)));
+    }
+}
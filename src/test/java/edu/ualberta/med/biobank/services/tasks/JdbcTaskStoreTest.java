@@ -0,0 +1,228 @@
+package edu.ualberta.med.biobank.services.tasks;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import edu.ualberta.med.biobank.domain.Task;
+import edu.ualberta.med.biobank.services.tasks.TaskStore.StoredTask;
+
+/**
+ * Checks the claims, leases, changes of state and purges of {@link JdbcTaskStore}.
+ *
+ * Leases are given in whole seconds and compared to the database's clock, so instead of waiting for a lease to run
+ * out the tests move it into the past.
+ */
+@Testcontainers
+@SpringBootTest(
+    properties = {
+        "spring.datasource.url=jdbc:tc:mariadb:///biobank_tasks?TC_INITSCRIPT=file:src/test/resources/sql/V1__init.sql"
+    }
+)
+class JdbcTaskStoreTest {
+
+    private static final Duration LEASE = Duration.ofSeconds(60);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcTaskStore store;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from TASK");
+        store = new JdbcTaskStore(jdbcTemplate);
+    }
+
+    private StoredTask create(String node) {
+        var stored = new StoredTask(Task.create(), "testuser", "test", "payload");
+        store.create(stored, node, LEASE);
+        return stored;
+    }
+
+    private void expireLease(UUID id) {
+        jdbcTemplate.update("update TASK set LEASE_UNTIL = now() - interval 1 second where ID = ?", id.toString());
+    }
+
+    private void age(UUID id, Duration age) {
+        jdbcTemplate.update(
+            "update TASK set UPDATED_AT = now() - interval ? second where ID = ?",
+            age.toSeconds(),
+            id.toString()
+        );
+    }
+
+    private String node(UUID id) {
+        return jdbcTemplate.queryForObject("select NODE from TASK where ID = ?", String.class, id.toString());
+    }
+
+    private int storedProgress(UUID id) {
+        return jdbcTemplate.queryForObject("select PROGRESS from TASK where ID = ?", Integer.class, id.toString());
+    }
+
+    @Test
+    void created_task_is_read_back() {
+        var stored = create("node-a");
+
+        assertThat(store.get(stored.task().id()), equalTo(Optional.of(stored.task())));
+        assertThat(store.get(UUID.randomUUID()), equalTo(Optional.empty()));
+        assertThat(node(stored.task().id()), equalTo("node-a"));
+    }
+
+    @Test
+    void task_with_a_lease_is_not_claimed() {
+        create("node-a");
+
+        assertThat(store.claimExpired("node-b", LEASE, 10), empty());
+    }
+
+    @Test
+    void task_with_expired_lease_is_claimed_once() {
+        var id = create("node-a").task().id();
+        store.update(id, task -> task.toRunning().withProgress(40));
+        expireLease(id);
+
+        var claimed = store.claimExpired("node-b", LEASE, 10);
+        assertThat(
+            claimed,
+            contains(new StoredTask(Task.fromStateName(id, 0, "CREATED"), "testuser", "test", "payload"))
+        );
+        assertThat(node(id), equalTo("node-b"));
+
+        // the claim gave the task a new lease
+        assertThat(store.claimExpired("node-c", LEASE, 10), empty());
+    }
+
+    @Test
+    void heartbeat_renews_the_node_leases() {
+        var id = create("node-a").task().id();
+        var other = create("node-b").task().id();
+        expireLease(id);
+        expireLease(other);
+
+        store.heartbeat("node-a", List.of(id, other), LEASE);
+
+        assertThat(store.claimExpired("node-c", LEASE, 10).stream().map(t -> t.task().id()).toList(), contains(other));
+    }
+
+    @Test
+    void heartbeat_does_not_renew_tasks_the_node_is_not_running() {
+        var running = create("node-a").task().id();
+        var lost = create("node-a").task().id();
+        expireLease(running);
+        expireLease(lost);
+
+        store.heartbeat("node-a", List.of(running), LEASE);
+        store.heartbeat("node-a", List.of(), LEASE);
+
+        assertThat(store.claimExpired("node-b", LEASE, 10).stream().map(t -> t.task().id()).toList(), contains(lost));
+    }
+
+    @Test
+    void cancelled_task_is_not_completed() {
+        var id = create("node-a").task().id();
+        store.updateClaimed(id, "node-a", Task::toRunning);
+        store.update(id, Task::toCancelled);
+
+        var completed = store.updateClaimed(id, "node-a", Task::toCompleted);
+
+        assertThat(completed.map(Task::isCancelled), equalTo(Optional.of(true)));
+        assertThat(store.get(id).map(Task::isCancelled), equalTo(Optional.of(true)));
+    }
+
+    @Test
+    void update_after_the_task_is_claimed_by_another_node_is_ignored() {
+        var id = create("node-a").task().id();
+        store.updateClaimed(id, "node-a", Task::toRunning);
+        expireLease(id);
+        assertThat(store.claimExpired("node-b", LEASE, 10).size(), equalTo(1));
+
+        var completed = store.updateClaimed(id, "node-a", Task::toCompleted);
+        assertThat(completed.map(Task::stateName), equalTo(Optional.of("CREATED")));
+        assertThat(store.get(id).map(Task::stateName), equalTo(Optional.of("CREATED")));
+
+        store.updateClaimed(id, "node-b", Task::toRunning);
+        assertThat(store.get(id).map(Task::isRunning), equalTo(Optional.of(true)));
+    }
+
+    @Test
+    void finished_task_is_not_claimed() {
+        var completed = create("node-a").task().id();
+        var cancelled = create("node-a").task().id();
+        store.update(completed, Task::toCompleted);
+        store.update(cancelled, Task::toCancelled);
+        expireLease(completed);
+        expireLease(cancelled);
+
+        assertThat(store.claimExpired("node-b", LEASE, 10), empty());
+    }
+
+    @Test
+    void claim_is_limited() {
+        for (int i = 0; i < 3; i++) {
+            expireLease(create("node-a").task().id());
+        }
+
+        assertThat(store.claimExpired("node-b", LEASE, 2).size(), equalTo(2));
+        assertThat(store.claimExpired("node-b", LEASE, 2).size(), equalTo(1));
+    }
+
+    @Test
+    void released_lease_ends_now() {
+        var id = create("node-a").task().id();
+
+        store.release("node-a");
+
+        var expired = jdbcTemplate.queryForObject(
+            "select LEASE_UNTIL <= now() from TASK where ID = ?",
+            Boolean.class,
+            id.toString()
+        );
+        assertThat(expired, equalTo(true));
+    }
+
+    @Test
+    void progress_is_written_in_batches() {
+        var id = create("node-a").task().id();
+        store.update(id, Task::toRunning);
+
+        store.progress(id, 10);
+        store.progress(id, 20);
+        assertThat(store.get(id).map(Task::progress), equalTo(Optional.of(20)));
+        assertThat(storedProgress(id), equalTo(0));
+
+        store.flushProgress();
+        assertThat(storedProgress(id), equalTo(20));
+    }
+
+    @Test
+    void old_finished_tasks_are_purged() {
+        var oldCompleted = create("node-a").task().id();
+        var oldCancelled = create("node-a").task().id();
+        var recentCompleted = create("node-a").task().id();
+        var oldRunning = create("node-a").task().id();
+        store.update(oldCompleted, Task::toCompleted);
+        store.update(oldCancelled, Task::toCancelled);
+        store.update(recentCompleted, Task::toCompleted);
+        store.update(oldRunning, Task::toRunning);
+        for (var id : new UUID[] { oldCompleted, oldCancelled, oldRunning }) {
+            age(id, Duration.ofHours(2));
+        }
+
+        assertThat(store.purge(Duration.ofHours(1)), equalTo(2));
+        assertThat(store.get(oldCompleted), equalTo(Optional.empty()));
+        assertThat(store.get(oldCancelled), equalTo(Optional.empty()));
+        assertThat(store.get(recentCompleted).map(Task::isCompleted), equalTo(Optional.of(true)));
+        assertThat(store.get(oldRunning).map(Task::isRunning), equalTo(Optional.of(true)));
+    }
+}
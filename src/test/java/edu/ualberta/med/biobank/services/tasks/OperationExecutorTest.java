@@ -0,0 +1,302 @@
+package edu.ualberta.med.biobank.services.tasks;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import edu.ualberta.med.biobank.domain.Operation;
+import edu.ualberta.med.biobank.domain.Task;
+import edu.ualberta.med.biobank.errors.ServiceUnavailable;
+import edu.ualberta.med.biobank.exception.AppErrorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OperationExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * An operation that is run until it is released or cancelled.
+     */
+    private static class TestOp extends Operation {
+
+        final String key;
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        RuntimeException failure;
+
+        TestOp(String key) {
+            super(Task.create());
+            this.key = key;
+        }
+
+        static TestOp released(String key) {
+            var op = new TestOp(key);
+            op.release.countDown();
+            return op;
+        }
+
+        @Override
+        public String type() {
+            return "test";
+        }
+
+        @Override
+        public String payload() {
+            return key;
+        }
+
+        void run() throws InterruptedException {
+            started.countDown();
+            while (!cancellation().isCancelled() && !release.await(10, TimeUnit.MILLISECONDS)) {
+                // wait
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private final List<String> ran = new CopyOnWriteArrayList<>();
+
+    private final List<OperationFailedEvent> failed = new CopyOnWriteArrayList<>();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private OperationExecutor executor;
+
+    private OperationExecutor executor(int concurrency, int queueCapacity) {
+        executor = new OperationExecutor(
+            event -> {
+                if (event instanceof OperationFailedEvent failure) {
+                    failed.add(failure);
+                    return;
+                }
+                var op = (TestOp) event;
+                try {
+                    op.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ran.add(op.key);
+                }
+            },
+            registry,
+            concurrency,
+            queueCapacity
+        );
+        executor.start();
+        return executor;
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Submits an operation that keeps the only worker busy until it is released.
+     */
+    private TestOp occupyWorker() throws InterruptedException {
+        var blocker = new TestOp("blocker");
+        executor.submit(blocker, "a", () -> {});
+        assertThat(blocker.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), equalTo(true));
+        return blocker;
+    }
+
+    private void awaitRan(int count) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (ran.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(ran.size(), equalTo(count));
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (executor.runningCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(executor.runningCount(), equalTo(0));
+    }
+
+    @Test
+    void owners_are_served_in_turn() throws Exception {
+        executor(1, 10);
+        var blocker = occupyWorker();
+
+        executor.submit(TestOp.released("a1"), "a", () -> {});
+        executor.submit(TestOp.released("a2"), "a", () -> {});
+        executor.submit(TestOp.released("a3"), "a", () -> {});
+        executor.submit(TestOp.released("b1"), "b", () -> {});
+        executor.submit(TestOp.released("c1"), "c", () -> {});
+        blocker.release.countDown();
+
+        awaitRan(6);
+        assertThat(ran, contains("blocker", "a1", "b1", "c1", "a2", "a3"));
+    }
+
+    @Test
+    void same_operation_is_joined() throws Exception {
+        executor(1, 10);
+        var blocker = occupyWorker();
+        var accepted = new AtomicInteger();
+
+        var first = TestOp.released("x");
+        assertThat(executor.submit(first, "a", accepted::incrementAndGet), sameInstance(first));
+        assertThat(executor.submit(TestOp.released("x"), "b", accepted::incrementAndGet), sameInstance(first));
+        assertThat(executor.submit(new TestOp("blocker"), "b", accepted::incrementAndGet), sameInstance(blocker));
+        assertThat(accepted.get(), equalTo(1));
+        assertThat(registry.get("biobank.operations.joined").counter().count(), equalTo(2.0));
+
+        blocker.release.countDown();
+        awaitRan(2);
+        assertThat(ran, contains("blocker", "x"));
+    }
+
+    @Test
+    void full_queue_rejects_operations() throws Exception {
+        executor(1, 2);
+        var blocker = occupyWorker();
+        var accepted = new AtomicInteger();
+
+        executor.submit(TestOp.released("q1"), "a", accepted::incrementAndGet);
+        executor.submit(TestOp.released("q2"), "b", accepted::incrementAndGet);
+        var error = assertThrows(
+            AppErrorException.class,
+            () -> executor.submit(TestOp.released("q3"), "c", accepted::incrementAndGet)
+        );
+
+        assertThat(error.appError, instanceOf(ServiceUnavailable.class));
+        assertThat(accepted.get(), equalTo(2));
+        assertThat(registry.get("biobank.operations.rejected").counter().count(), equalTo(1.0));
+
+        blocker.release.countDown();
+        awaitRan(3);
+        executor.submit(TestOp.released("q3"), "c", accepted::incrementAndGet);
+        awaitRan(4);
+    }
+
+    @Test
+    void queued_and_running_operations_are_cancelled() throws Exception {
+        executor(1, 10);
+        var blocker = occupyWorker();
+        var queued = new TestOp("queued");
+        executor.submit(queued, "a", () -> {});
+
+        assertThat(executor.cancel(queued.task().id()), equalTo(true));
+        assertThat(queued.cancellation().isCancelled(), equalTo(true));
+        assertThat(executor.queuedCount(), equalTo(0));
+
+        assertThat(executor.runningTasks(), contains(blocker.task().id()));
+        assertThat(executor.cancel(blocker.task().id()), equalTo(true));
+        awaitRan(1);
+        awaitIdle();
+        assertThat(blocker.cancellation().isCancelled(), equalTo(true));
+        assertThat(ran, contains("blocker"));
+        assertThat(executor.cancel(blocker.task().id()), equalTo(false));
+
+        // a cancelled operation can be submitted again
+        executor.submit(TestOp.released("queued"), "a", () -> {});
+        awaitRan(2);
+        assertThat(registry.get("biobank.operations.cancelled").counter().count(), equalTo(2.0));
+    }
+
+    @Test
+    void executor_is_not_locked_while_task_is_created() throws Exception {
+        executor(1, 10);
+        var creating = new CountDownLatch(1);
+        var created = new CountDownLatch(1);
+        var slow = TestOp.released("slow");
+
+        var submitter = Executors.newSingleThreadExecutor();
+        try {
+            var submitted = submitter.submit(() -> executor.submit(slow, "a", () -> {
+                creating.countDown();
+                try {
+                    created.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(creating.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), equalTo(true));
+
+            // other operations are submitted and run, and the one being created is joined
+            var other = TestOp.released("other");
+            assertThat(executor.submit(TestOp.released("slow"), "b", () -> {}), sameInstance(slow));
+            assertThat(executor.submit(other, "b", () -> {}), sameInstance(other));
+            awaitRan(1);
+            assertThat(ran, contains("other"));
+
+            created.countDown();
+            assertThat(submitted.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), sameInstance(slow));
+            awaitRan(2);
+        } finally {
+            submitter.shutdownNow();
+        }
+    }
+
+    @Test
+    void failed_operation_is_reported() throws Exception {
+        executor(1, 10);
+        var failing = TestOp.released("failing");
+        failing.failure = new IllegalStateException("could not create the result");
+
+        executor.submit(failing, "a", () -> {});
+        executor.submit(TestOp.released("next"), "a", () -> {});
+
+        awaitRan(2);
+        assertThat(failed, hasSize(1));
+        assertThat(failed.get(0).op(), sameInstance(failing));
+        assertThat(failed.get(0).cause(), sameInstance(failing.failure));
+        assertThat(ran, contains("failing", "next"));
+    }
+
+    @Test
+    void cancelled_operation_is_not_reported_as_failed() throws Exception {
+        executor(1, 10);
+        var cancelled = TestOp.released("cancelled");
+        cancelled.failure = new CancellationException();
+
+        executor.submit(cancelled, "a", () -> {});
+
+        awaitRan(1);
+        awaitIdle();
+        assertThat(failed, empty());
+    }
+
+    @Test
+    void failed_task_creation_releases_reservation() throws Exception {
+        executor(1, 1);
+        var blocker = occupyWorker();
+
+        assertThrows(IllegalStateException.class, () -> executor.submit(TestOp.released("failed"), "a", () -> {
+            throw new IllegalStateException("could not create the task");
+        }));
+        assertThat(executor.queuedCount(), equalTo(0));
+
+        var retry = TestOp.released("failed");
+        assertThat(executor.submit(retry, "a", () -> {}), sameInstance(retry));
+
+        blocker.release.countDown();
+        awaitRan(2);
+        assertThat(ran, contains("blocker", "failed"));
+    }
+}
@@ -8,12 +8,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import edu.ualberta.med.biobank.domain.CSMUser;
 import edu.ualberta.med.biobank.domain.Membership;
 import edu.ualberta.med.biobank.domain.Status;
+import edu.ualberta.med.biobank.domain.Study;
 import edu.ualberta.med.biobank.domain.User;
 import edu.ualberta.med.biobank.test.Factory.MembershipBuilder;
+import edu.ualberta.med.biobank.test.fixtures.StudyFixtureBuilder;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.CriteriaBuilder;
@@ -40,6 +44,17 @@ public class ControllerTest extends BaseTest {
         this.factory = new Factory(em);
     }
 
+    /**
+     * Performs the request and fails when it runs more statements, or reads more rows, than {@code budget}. The
+     * fixtures are written and the persistence context is cleared first, so that the statements counted are the
+     * ones the request runs on its own.
+     */
+    protected ResultActions performWithin(StatementBudget budget, RequestBuilder request) throws Exception {
+        em.flush();
+        em.clear();
+        return mvc.perform(request).andExpect(budget.matcher());
+    }
+
     protected User getOrCreateSuperUser() {
         // check if user already exists
         CriteriaBuilder builder = em.getCriteriaBuilder();
@@ -103,6 +118,18 @@ public class ControllerTest extends BaseTest {
         return createSingleStudyUser(username, false);
     }
 
+    /**
+     * Creates the default study with {@code count} text annotation types, labelled {@code label_0},
+     * {@code label_1}, and so on.
+     */
+    protected Study createStudyWithAnnotationTypes(int count) {
+        var builder = new StudyFixtureBuilder().setEntityManger(em);
+        for (int i = 0; i < count; i++) {
+            builder.withAttributeType("text", "label_" + i, Status.ACTIVE.getName(), false);
+        }
+        return builder.build(factory);
+    }
+
     protected static ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
         return mapper;
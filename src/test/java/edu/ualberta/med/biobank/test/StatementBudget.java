@@ -0,0 +1,42 @@
+package edu.ualberta.med.biobank.test;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+import edu.ualberta.med.biobank.profiling.RequestProfile;
+import edu.ualberta.med.biobank.profiling.RequestProfileFilter;
+
+/**
+ * The most SQL statements, and rows read, that one call to an endpoint may take. Budgets are kept next to the
+ * endpoint's tests and checked with {@link ControllerTest#performWithin}, so that a change that adds queries to an
+ * endpoint, such as an N+1 select or a join that multiplies rows, fails the build.
+ *
+ * The statements are counted by the data source, see {@link RequestProfile}, so native queries, JPA queries and
+ * lazy loads are all included.
+ */
+public record StatementBudget(int statements, long rows) {
+
+    public ResultMatcher matcher() {
+        return result -> {
+            var profile = (RequestProfile) result.getRequest().getAttribute(RequestProfileFilter.PROFILE_ATTRIBUTE);
+            if (profile == null) {
+                throw new AssertionError("request was not profiled, check biobank.request-profile.enabled");
+            }
+
+            if (profile.statements() > statements || profile.rows() > rows) {
+                var message = new StringBuilder(
+                    "%s %s ran %d statements and read %d rows, the budget is %d statements and %d rows:".formatted(
+                        result.getRequest().getMethod(),
+                        result.getRequest().getRequestURI(),
+                        profile.statements(),
+                        profile.rows(),
+                        statements,
+                        rows
+                    )
+                );
+                for (var query : profile.queries()) {
+                    message.append("\n  %dx, %d rows: %s".formatted(query.count(), query.rows(), query.sql().strip()));
+                }
+                throw new AssertionError(message.toString());
+            }
+        };
+    }
+}
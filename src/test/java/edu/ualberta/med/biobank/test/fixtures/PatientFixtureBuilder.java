@@ -3,6 +3,7 @@ package edu.ualberta.med.biobank.test.fixtures;
 import edu.ualberta.med.biobank.domain.CollectionEvent;
 import edu.ualberta.med.biobank.domain.Comment;
 import edu.ualberta.med.biobank.domain.Patient;
+import edu.ualberta.med.biobank.domain.StudyEventAttr;
 import edu.ualberta.med.biobank.domain.User;
 import edu.ualberta.med.biobank.test.Factory;
 
@@ -13,6 +14,7 @@ public final class PatientFixtureBuilder {
     private int numAliquots;
     private int numPatientComments;
     private int numCeventComments;
+    private boolean withAnnotationValues;
     private User commentUser;
 
     public PatientFixtureBuilder() {
@@ -21,6 +23,7 @@ public final class PatientFixtureBuilder {
         this.numAliquots = 0;
         this.numPatientComments = 0;
         this.numCeventComments = 0;
+        this.withAnnotationValues = false;
         this.commentUser = null;
     }
 
@@ -55,6 +58,14 @@ public final class PatientFixtureBuilder {
         return this;
     }
 
+    /**
+     * Gives each collection event a value for each of the study's annotation types.
+     */
+    public PatientFixtureBuilder withAnnotationValues() {
+        this.withAnnotationValues = true;
+        return this;
+    }
+
     public PatientFixtureBuilder commentUsername(User user) {
         this.commentUser = user;
         return this;
@@ -84,6 +95,13 @@ public final class PatientFixtureBuilder {
                 cevent.getComments().add(comment);
             }
 
+            if (withAnnotationValues) {
+                for (StudyEventAttr attr : patient.getStudy().getStudyEventAttrs()) {
+                    factory.setDefaultStudyEventAttr(attr);
+                    cevent.getEventAttrs().add(factory.createCeventEventAttr());
+                }
+            }
+
             for (int k = 0; k < numSpecimens; ++k) {
                 factory.createParentSpecimen();
 
@@ -0,0 +1,118 @@
+package edu.ualberta.med.biobank.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ExpiringCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private ExpiringCache<String, String> cache(int maxSize, Duration ttl) {
+        return new ExpiringCache<>(maxSize, ttl, now::get);
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void entryExpiresAfterTtl() {
+        var cache = cache(10, Duration.ofSeconds(30));
+        cache.put("a", "1");
+
+        advance(Duration.ofSeconds(29));
+        assertThat(cache.get("a"), equalTo(Optional.of("1")));
+
+        advance(Duration.ofSeconds(1));
+        assertThat(cache.get("a"), equalTo(Optional.empty()));
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test
+    void entryTtlIsCappedByCacheTtl() {
+        var cache = cache(10, Duration.ofSeconds(30));
+        cache.put("short", "1", Duration.ofSeconds(5));
+        cache.put("long", "2", Duration.ofMinutes(5));
+        cache.put("expired", "3", Duration.ofSeconds(-1));
+
+        assertThat(cache.get("expired"), equalTo(Optional.empty()));
+
+        advance(Duration.ofSeconds(5));
+        assertThat(cache.get("short"), equalTo(Optional.empty()));
+        assertThat(cache.get("long"), equalTo(Optional.of("2")));
+
+        advance(Duration.ofSeconds(25));
+        assertThat(cache.get("long"), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        var cache = cache(2, Duration.ofMinutes(1));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.get("a"), equalTo(Optional.of("1")));
+        assertThat(cache.get("b"), equalTo(Optional.empty()));
+        assertThat(cache.get("c"), equalTo(Optional.of("3")));
+    }
+
+    @Test
+    void loaderIsCalledOnMissOnly() {
+        var cache = cache(10, Duration.ofMinutes(1));
+        var calls = new AtomicInteger();
+
+        assertThat(cache.get("a", key -> key + calls.incrementAndGet()), equalTo("a1"));
+        assertThat(cache.get("a", key -> key + calls.incrementAndGet()), equalTo("a1"));
+        assertThat(cache.get("b", key -> null), nullValue());
+        assertThat(cache.size(), equalTo(1));
+
+        advance(Duration.ofMinutes(1));
+        assertThat(cache.get("a", key -> key + calls.incrementAndGet()), equalTo("a2"));
+    }
+
+    @Test
+    void disabledCacheStoresNothing() {
+        for (var disabled : List.of(cache(0, Duration.ofMinutes(1)), cache(10, Duration.ZERO))) {
+            var calls = new AtomicInteger();
+
+            assertThat(disabled.isEnabled(), equalTo(false));
+            disabled.put("a", "1");
+            disabled.get("b", key -> "loaded" + calls.incrementAndGet());
+            disabled.get("b", key -> "loaded" + calls.incrementAndGet());
+
+            assertThat(disabled.get("a"), equalTo(Optional.empty()));
+            assertThat(calls.get(), equalTo(2));
+            assertThat(disabled.size(), equalTo(0));
+        }
+    }
+
+    @Test
+    void hitsAndMissesAreMetered() {
+        var registry = new SimpleMeterRegistry();
+        var cache = cache(10, Duration.ofMinutes(1)).bindTo(registry, "test");
+
+        cache.get("a");
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("a", key -> "2");
+        advance(Duration.ofMinutes(1));
+        cache.get("a");
+
+        assertThat(registry.get("biobank.cache.gets").tag("cache", "test").tag("result", "hit").functionCounter()
+            .count(), equalTo(2.0));
+        assertThat(registry.get("biobank.cache.gets").tag("cache", "test").tag("result", "miss").functionCounter()
+            .count(), equalTo(2.0));
+        assertThat(registry.get("biobank.cache.size").tag("cache", "test").gauge().value(), equalTo(0.0));
+    }
+}
@@ -3067,6 +3067,68 @@ LOCK TABLES `study_contact` WRITE;
 /*!40000 ALTER TABLE `study_contact` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `COLLECTION_EVENT_SUMMARY`, see V1_4__SummaryCounts
+--
+
+DROP TABLE IF EXISTS `COLLECTION_EVENT_SUMMARY`;
+CREATE TABLE `COLLECTION_EVENT_SUMMARY` (
+  `COLLECTION_EVENT_ID` int(11) NOT NULL,
+  `SPECIMEN_COUNT` bigint(20) NOT NULL DEFAULT 0,
+  `COMMENT_COUNT` bigint(20) NOT NULL DEFAULT 0,
+  `FIRST_SPECIMEN_AT` datetime DEFAULT NULL,
+  PRIMARY KEY (`COLLECTION_EVENT_ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs;
+
+--
+-- Table structure for table `PATIENT_SUMMARY`, see V1_4__SummaryCounts
+--
+
+DROP TABLE IF EXISTS `PATIENT_SUMMARY`;
+CREATE TABLE `PATIENT_SUMMARY` (
+  `PATIENT_ID` int(11) NOT NULL,
+  `SPECIMEN_COUNT` bigint(20) NOT NULL DEFAULT 0,
+  `COMMENT_COUNT` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`PATIENT_ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs;
+
+--
+-- Table structure for table `TASK`, see V1_3__Task
+--
+
+DROP TABLE IF EXISTS `TASK`;
+CREATE TABLE `TASK` (
+  `ID` char(36) NOT NULL,
+  `STATE` varchar(20) NOT NULL,
+  `PROGRESS` int(11) NOT NULL DEFAULT 0,
+  `OWNER` varchar(255) DEFAULT NULL,
+  `OPERATION_TYPE` varchar(50) NOT NULL,
+  `PAYLOAD` text DEFAULT NULL,
+  `NODE` varchar(255) DEFAULT NULL,
+  `CREATED_AT` datetime NOT NULL,
+  `UPDATED_AT` datetime NOT NULL,
+  `HEARTBEAT_AT` datetime DEFAULT NULL,
+  `LEASE_UNTIL` datetime DEFAULT NULL,
+  PRIMARY KEY (`ID`),
+  KEY `TASK_STATE_LEASE_IDX` (`STATE`, `LEASE_UNTIL`),
+  KEY `TASK_NODE_IDX` (`NODE`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs;
+
+--
+-- Table structure for table `USER_API_KEY`, see V1_2__UserApiKey
+--
+
+DROP TABLE IF EXISTS `USER_API_KEY`;
+CREATE TABLE `USER_API_KEY` (
+  `ID` int(11) NOT NULL AUTO_INCREMENT,
+  `USER_ID` int(11) NOT NULL,
+  `API_KEY` varchar(40) NOT NULL,
+  PRIMARY KEY (`ID`),
+  UNIQUE KEY `API_KEY` (`API_KEY`),
+  CONSTRAINT `UK_7qf2tl5mch5s2hm6kv9xh7irb` FOREIGN KEY (`USER_ID`) REFERENCES `principal` (`ID`)
+    ON DELETE CASCADE ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=latin1 COLLATE=latin1_general_cs;
+
 /*!40101 SET SQL_MODE=@OLD_SQL_MODE */;
 /*!40014 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS */;
 /*!40014 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS */;